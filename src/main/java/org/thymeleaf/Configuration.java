@@ -30,12 +30,15 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.thymeleaf.cache.ICacheManager;
+import org.thymeleaf.cache.OutputCacheEntry;
 import org.thymeleaf.dialect.IDialect;
 import org.thymeleaf.doctype.DocTypeIdentifier;
 import org.thymeleaf.doctype.resolution.IDocTypeResolutionEntry;
 import org.thymeleaf.doctype.translation.IDocTypeTranslation;
+import org.thymeleaf.dom.Attribute;
 import org.thymeleaf.dom.Element;
 import org.thymeleaf.dom.NestableAttributeHolderNode;
 import org.thymeleaf.dom.Node;
@@ -46,6 +49,7 @@
 import org.thymeleaf.processor.ProcessorAndContext;
 import org.thymeleaf.standard.StandardDialect;
 import org.thymeleaf.templatemode.ITemplateModeHandler;
+import org.thymeleaf.templateparser.EntityResolver;
 import org.thymeleaf.templateresolver.ITemplateResolver;
 import org.thymeleaf.util.Validate;
 
@@ -87,6 +91,13 @@ public final class Configuration {
     private Set<ITemplateModeHandler> templateModeHandlers = new LinkedHashSet<ITemplateModeHandler>(8);
     
     private ICacheManager cacheManager = null;
+    private Executor templateRevalidationExecutor = null;
+    
+    private final PatternSpec pageOutputCachePatternSpec = new PatternSpec();
+    private Set<String> pageOutputCacheVariableNames = Collections.emptySet();
+    private long pageOutputCacheTTLMs = OutputCacheEntry.NO_TTL;
+    
+    private boolean whitespaceMinimizationEnabled = false;
     
     private Map<String,Set<ProcessorAndContext>> mergedSpecificProcessorsByElementName;
     private Map<String,Set<ProcessorAndContext>> mergedSpecificProcessorsByAttributeName;
@@ -95,6 +106,7 @@ public final class Configuration {
     private Map<String,Object> mergedExecutionAttributes = null;
     private Set<IDocTypeResolutionEntry> mergedDocTypeResolutionEntries = null;
     private Set<IDocTypeTranslation> mergedDocTypeTranslations = null;
+    private EntityResolver entityResolver = null;
 
     private final Map<String,ITemplateModeHandler> templateModeHandlersByName = new HashMap<String,ITemplateModeHandler>(8,1.0f);
     
@@ -268,6 +280,18 @@ public synchronized void initialize() {
             }
             
             
+            /*
+             * Initialize the page output cache patterns
+             */
+            this.pageOutputCachePatternSpec.initialize();
+            
+            
+            /*
+             * Create the entity resolver, shared by all parsings
+             */
+            this.entityResolver = new EntityResolver(this.mergedDocTypeResolutionEntries);
+            
+            
             /*
              * Mark as initialized
              */
@@ -301,6 +325,72 @@ public void setCacheManager(final ICacheManager cacheManager) {
         this.cacheManager = cacheManager;
     }
 
+
+    
+    public Executor getTemplateRevalidationExecutor() {
+        return this.templateRevalidationExecutor;
+    }
+    
+    
+    public void setTemplateRevalidationExecutor(final Executor templateRevalidationExecutor) {
+        // Can be set to null (= no stale-while-revalidate)
+        checkNotInitialized();
+        this.templateRevalidationExecutor = templateRevalidationExecutor;
+    }
+    
+    
+    
+    public Set<String> getPageOutputCachePatterns() {
+        return this.pageOutputCachePatternSpec.getPatterns();
+    }
+    
+    
+    public void setPageOutputCachePatterns(final Set<String> pageOutputCachePatterns) {
+        checkNotInitialized();
+        this.pageOutputCachePatternSpec.setPatterns(pageOutputCachePatterns);
+    }
+    
+    
+    public boolean isPageOutputCacheable(final String templateName) {
+        return this.pageOutputCachePatternSpec.matches(templateName);
+    }
+    
+    
+    public Set<String> getPageOutputCacheVariableNames() {
+        return this.pageOutputCacheVariableNames;
+    }
+    
+    
+    public void setPageOutputCacheVariableNames(final Set<String> pageOutputCacheVariableNames) {
+        checkNotInitialized();
+        Validate.notNull(pageOutputCacheVariableNames, "Page output cache variable names cannot be null");
+        Validate.containsNoNulls(pageOutputCacheVariableNames, "Page output cache variable names cannot contain nulls");
+        this.pageOutputCacheVariableNames = 
+                Collections.unmodifiableSet(new LinkedHashSet<String>(pageOutputCacheVariableNames));
+    }
+    
+    
+    public long getPageOutputCacheTTLMs() {
+        return this.pageOutputCacheTTLMs;
+    }
+    
+    
+    public void setPageOutputCacheTTLMs(final long pageOutputCacheTTLMs) {
+        checkNotInitialized();
+        this.pageOutputCacheTTLMs = pageOutputCacheTTLMs;
+    }
+    
+    
+    public boolean isWhitespaceMinimizationEnabled() {
+        return this.whitespaceMinimizationEnabled;
+    }
+    
+    
+    public void setWhitespaceMinimizationEnabled(final boolean whitespaceMinimizationEnabled) {
+        checkNotInitialized();
+        this.whitespaceMinimizationEnabled = whitespaceMinimizationEnabled;
+    }
+
  
     
     
@@ -483,6 +573,21 @@ public Set<IDocTypeResolutionEntry> getDocTypeResolutionEntries() {
         return this.mergedDocTypeResolutionEntries;
     }
 
+    
+    /**
+     * <p>
+     *   Returns the entity resolver to be used by template parsers for resolving DTDs
+     *   according to the DOCTYPE resolution entries of the configured dialects.
+     * </p>
+     * 
+     * @return the entity resolver, shared by all template parsings.
+     * @since 2.1.5
+     */
+    public EntityResolver getEntityResolver() {
+        checkInitialized();
+        return this.entityResolver;
+    }
+
 
     
     
@@ -523,10 +628,10 @@ public ArrayList<ProcessorAndContext> computeProcessorsForNode(final Node node)
                 
             }
 
-            final String[] normalizedAttributeNames = nestableNode.unsafeGetAttributeNormalizedNames();
-            final int normalizedAttributesLen = nestableNode.numAttributes();
-            for (int i = 0; i < normalizedAttributesLen; i++) {
-                final String normalizedAttributeName = normalizedAttributeNames[i];
+            final Attribute[] attributes = nestableNode.unsafeGetAttributes();
+            final int attributesLen = nestableNode.numAttributes();
+            for (int i = 0; i < attributesLen; i++) {
+                final String normalizedAttributeName = attributes[i].getNormalizedName();
                 final Set<ProcessorAndContext> processorsForAttributeName = 
                         this.mergedSpecificProcessorsByAttributeName.get(normalizedAttributeName);
                 if (processorsForAttributeName != null) {
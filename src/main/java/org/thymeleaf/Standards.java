@@ -503,6 +503,16 @@ public final class Standards {
             };
 
     
+    /*
+     * These are the tags in which whitespace is significant, and therefore
+     * should never be minimized (@since 2.1.5)
+     */
+    public static final String[] WHITESPACE_SENSITIVE_XHTML_TAGS =
+        new String[] {
+                "pre", "script", "style", "textarea"
+            };
+
+    
     
     
     public static final String[] HTML_CONDITIONAL_FIXED_VALUE_ATTR_NAMES = 
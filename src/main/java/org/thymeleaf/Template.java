@@ -19,7 +19,11 @@
  */
 package org.thymeleaf;
 
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.thymeleaf.dom.Document;
+import org.thymeleaf.dom.Node;
 import org.thymeleaf.templateresolver.TemplateResolution;
 
 /**
@@ -38,18 +42,49 @@
  */
 public final class Template {
 
+    static final long UNKNOWN_CONTENT_CHECKSUM = -1L;
+    
     private final String templateName;
     private final TemplateResolution templateResolution;
     private final Document document;
+    private final long contentChecksum;
+    
+    // Identifies the parsed contents of the template: shared by the templates which result from
+    // revalidating this one without finding any changes (and by its duplicates).
+    private final Object contentIdentity;
+    
+    // Fragments already extracted from the document of this template (only used on cached,
+    // shared instances), indexed by fragment spec key. Lives and dies with the template itself.
+    private final ConcurrentHashMap<String,List<Node>> extractedFragments =
+            new ConcurrentHashMap<String, List<Node>>(4);
     
     Template(
             final String templateName,
             final TemplateResolution templateResolution, 
             final Document document) {
+        this(templateName, templateResolution, document, UNKNOWN_CONTENT_CHECKSUM);
+    }
+    
+    Template(
+            final String templateName,
+            final TemplateResolution templateResolution, 
+            final Document document,
+            final long contentChecksum) {
+        this(templateName, templateResolution, document, contentChecksum, new Object());
+    }
+    
+    Template(
+            final String templateName,
+            final TemplateResolution templateResolution, 
+            final Document document,
+            final long contentChecksum,
+            final Object contentIdentity) {
         super();
         this.templateName = templateName;
         this.templateResolution = templateResolution;
         this.document = document;
+        this.contentChecksum = contentChecksum;
+        this.contentIdentity = contentIdentity;
     }
 
     public String getTemplateName() {
@@ -64,11 +99,39 @@ public Document getDocument() {
         return this.document;
     }
 
+    /*
+     * Checksum of the template resource contents (as read when parsed), used for avoiding
+     * re-parsing of unchanged templates. Might be UNKNOWN_CONTENT_CHECKSUM.
+     */
+    long getContentChecksum() {
+        return this.contentChecksum;
+    }
+
+    /*
+     * Object identifying (by identity) the parsed contents of the template, which is kept when
+     * a cached template is replaced by a revalidated one with the same contents.
+     */
+    Object getContentIdentity() {
+        return this.contentIdentity;
+    }
+
+    /*
+     * Extracted fragment nodes belong to the document of this template, so they must
+     * never be modified (clone them before processing).
+     */
+    List<Node> getExtractedFragment(final String fragmentSpecKey) {
+        return this.extractedFragments.get(fragmentSpecKey);
+    }
+
+    void putExtractedFragment(final String fragmentSpecKey, final List<Node> nodes) {
+        this.extractedFragments.putIfAbsent(fragmentSpecKey, nodes);
+    }
+
 
     public Template createDuplicate() {
         // clone() would not be comfortable to use here because the "document" property would need to be assigned
         // after calling super.clone(), and it is final (so no assignation would be possible).
-        return new Template(this.templateName, this.templateResolution, this.document.clone(true));
+        return new Template(this.templateName, this.templateResolution, this.document.clone(true), this.contentChecksum, this.contentIdentity);
     }
 
 }
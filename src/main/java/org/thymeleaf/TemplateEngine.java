@@ -24,19 +24,34 @@
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.thymeleaf.cache.AbstractCacheManager;
+import org.thymeleaf.cache.ICache;
 import org.thymeleaf.cache.ICacheManager;
+import org.thymeleaf.cache.OutputCacheEntry;
 import org.thymeleaf.cache.StandardCacheManager;
+import org.thymeleaf.context.Context;
 import org.thymeleaf.context.DialectAwareProcessingContext;
 import org.thymeleaf.context.IContext;
 import org.thymeleaf.context.IProcessingContext;
+import org.thymeleaf.context.VariablesMap;
 import org.thymeleaf.dialect.IDialect;
 import org.thymeleaf.dom.Document;
 import org.thymeleaf.dom.Node;
@@ -572,6 +587,234 @@ public void setCacheManager(final ICacheManager cacheManager) {
         this.configuration.setCacheManager(cacheManager);
     }
 
+
+    
+    /**
+     * <p>
+     *   Returns the executor used for revalidating (re-resolving and re-parsing) cached templates
+     *   that are no longer valid, while their stale versions are still being served. If null 
+     *   (the default), templates are revalidated synchronously at the first request after their
+     *   cache entry stops being valid.
+     * </p>
+     * 
+     * @return the template revalidation executor
+     * 
+     * @since 2.1.5
+     */
+    public Executor getTemplateRevalidationExecutor() {
+        return this.configuration.getTemplateRevalidationExecutor();
+    }
+    
+    /**
+     * <p>
+     *   Sets the executor to be used for revalidating cached templates in the background
+     *   (<i>stale-while-revalidate</i>).
+     * </p>
+     * <p>
+     *   When set, cached templates that are no longer valid (for example, because their TTL
+     *   has expired) will keep on being used for processing while they are re-resolved and
+     *   re-parsed by this executor, and then atomically substituted in the template cache. Templates
+     *   whose resource contents have not changed since they were last revalidated will not be
+     *   parsed again. 
+     * </p>
+     * <p>
+     *   Note that revalidation might run after the request that triggered it has finished, so it
+     *   is not performed with that request's context. Template resolvers and resource resolvers will
+     *   receive a context containing only the locale of the triggering request and, in web
+     *   environments, the <tt>ServletContext</tt>: no variables, and no request, response or session
+     *   (nor their parameters or attributes). They should therefore not depend on any other context
+     *   data for resolving templates. Also, template validity will be checked directly on each
+     *   cached template's 
+     *   {@link org.thymeleaf.templateresolver.ITemplateResolutionValidity}, instead of by the
+     *   validity checker configured at the template cache (if any).
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     * 
+     * @param templateRevalidationExecutor the executor to be used, or null for disabling
+     *                                     background revalidation.
+     * 
+     * @since 2.1.5
+     */
+    public void setTemplateRevalidationExecutor(final Executor templateRevalidationExecutor) {
+        this.configuration.setTemplateRevalidationExecutor(templateRevalidationExecutor);
+    }
+
+    
+    /**
+     * <p>
+     *   Returns the patterns (template names) of the templates whose complete output will be
+     *   cached by the <i>page output cache</i>. See {@link #setPageOutputCachePatterns(Set)}.
+     * </p>
+     * 
+     * @return the page output cache patterns (empty if the page output cache is disabled).
+     * 
+     * @since 2.1.5
+     */
+    public Set<String> getPageOutputCachePatterns() {
+        return this.configuration.getPageOutputCachePatterns();
+    }
+    
+    /**
+     * <p>
+     *   Sets the patterns (template names, admitting <tt>*</tt> wildcards) of the templates whose
+     *   complete output will be cached by the <i>page output cache</i>. By default no patterns
+     *   are set, so the page output cache is disabled.
+     * </p>
+     * <p>
+     *   When a template matching any of these patterns is processed as a whole (i.e. without a 
+     *   fragment spec), its output is stored at the <i>output cache</i> of the cache manager 
+     *   (see {@link org.thymeleaf.cache.AbstractCacheManager#getOutputCache()}), so that subsequent
+     *   executions with the same <i>fingerprint</i> write the stored output directly to the
+     *   {@link Writer} without processing the template. This fingerprint is computed from the
+     *   template name, the context locale and the values of the context variables specified by
+     *   {@link #setPageOutputCacheVariableNames(Set)}, so <b>the output of these templates must
+     *   depend on nothing else</b>.
+     * </p>
+     * <p>
+     *   Cached output is discarded whenever the cache entry of the template itself changes 
+     *   (for example, because it is no longer valid and gets re-parsed), and can also
+     *   expire after a TTL (see {@link #setPageOutputCacheTTLMs(long)}). Size limits are those
+     *   configured for the output cache. Note that changes in other templates the cached one
+     *   includes fragments from will not discard its cached output. Templates which are not 
+     *   cacheable or cannot be cached because there is no template cache are never 
+     *   output-cached either.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     * 
+     * @param pageOutputCachePatterns the new patterns.
+     * 
+     * @since 2.1.5
+     */
+    public void setPageOutputCachePatterns(final Set<String> pageOutputCachePatterns) {
+        this.configuration.setPageOutputCachePatterns(pageOutputCachePatterns);
+    }
+    
+    
+    /**
+     * <p>
+     *   Returns the names of the context variables which values will be part of the
+     *   <i>fingerprint</i> identifying each output stored at the page output cache.
+     * </p>
+     * 
+     * @return the variable names (never null).
+     * 
+     * @since 2.1.5
+     */
+    public Set<String> getPageOutputCacheVariableNames() {
+        return this.configuration.getPageOutputCacheVariableNames();
+    }
+    
+    /**
+     * <p>
+     *   Sets the names of the context variables which values will be part of the
+     *   <i>fingerprint</i> identifying each output stored at the page output cache (see
+     *   {@link #setPageOutputCachePatterns(Set)}). Values are converted to String for 
+     *   computing the fingerprint.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     * 
+     * @param pageOutputCacheVariableNames the variable names (cannot be null).
+     * 
+     * @since 2.1.5
+     */
+    public void setPageOutputCacheVariableNames(final Set<String> pageOutputCacheVariableNames) {
+        this.configuration.setPageOutputCacheVariableNames(pageOutputCacheVariableNames);
+    }
+    
+    
+    /**
+     * <p>
+     *   Returns the TTL (time-to-live) in milliseconds of the outputs stored at the page output
+     *   cache, or a negative number if they do not expire.
+     * </p>
+     * 
+     * @return the TTL in milliseconds.
+     * 
+     * @since 2.1.5
+     */
+    public long getPageOutputCacheTTLMs() {
+        return this.configuration.getPageOutputCacheTTLMs();
+    }
+    
+    /**
+     * <p>
+     *   Sets the TTL (time-to-live) in milliseconds of the outputs stored at the page output
+     *   cache (see {@link #setPageOutputCachePatterns(Set)}). A negative number (the default)
+     *   means outputs will not expire.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     * 
+     * @param pageOutputCacheTTLMs the TTL in milliseconds.
+     * 
+     * @since 2.1.5
+     */
+    public void setPageOutputCacheTTLMs(final long pageOutputCacheTTLMs) {
+        this.configuration.setPageOutputCacheTTLMs(pageOutputCacheTTLMs);
+    }
+
+    
+    /**
+     * <p>
+     *   Returns whether whitespace minimization is enabled for XHTML and HTML5 output
+     *   (see {@link #setWhitespaceMinimizationEnabled(boolean)}).
+     * </p>
+     * 
+     * @return true if whitespace minimization is enabled, false if not.
+     * 
+     * @since 2.1.5
+     */
+    public boolean isWhitespaceMinimizationEnabled() {
+        return this.configuration.isWhitespaceMinimizationEnabled();
+    }
+    
+    /**
+     * <p>
+     *   Sets whether whitespace should be minimized when writing XHTML and HTML5 output
+     *   (default: false). When enabled, sequences of whitespace in texts are collapsed into
+     *   a single space and comments (except IE conditional comments) are removed, both
+     *   outside <tt>&lt;pre&gt;</tt>, <tt>&lt;textarea&gt;</tt>, <tt>&lt;script&gt;</tt> and
+     *   <tt>&lt;style&gt;</tt> elements. Also, the whitespace preceding iterated elements
+     *   (<tt>th:each</tt>) will not be duplicated for each iteration.
+     * </p>
+     * <p>
+     *   Whitespace in texts coming from templates is collapsed only once, when templates are
+     *   parsed. XML output is never minimized, as whitespace might be significant in XML documents.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     * 
+     * @param whitespaceMinimizationEnabled whether whitespace minimization should be enabled or not.
+     * 
+     * @since 2.1.5
+     */
+    public void setWhitespaceMinimizationEnabled(final boolean whitespaceMinimizationEnabled) {
+        this.configuration.setWhitespaceMinimizationEnabled(whitespaceMinimizationEnabled);
+    }
+
     
     /**
      * <p>
@@ -795,6 +1038,161 @@ public void clearTemplateCacheFor(final String templateName) {
         }
         this.templateRepository.clearTemplateCacheFor(templateName);
     }
+
+
+    
+    
+    /**
+     * <p>
+     *   Warms up the Template Cache by resolving, parsing and precomputing the specified
+     *   templates in parallel, so that the first requests for them do not have to pay the
+     *   parsing cost.
+     * </p>
+     * <p>
+     *   Templates are resolved using an empty {@link Context}. If any of the configured
+     *   template resolvers requires a specific kind of context (e.g. an 
+     *   {@link org.thymeleaf.context.IWebContext}), use
+     *   {@link #warmUp(Collection, IContext, int)} instead.
+     * </p>
+     * <p>
+     *   If this method is called before the TemplateEngine has been initialized,
+     *   it causes its initialization.
+     * </p>
+     * 
+     * @param templateNames the names of the templates to be warmed up.
+     * @param parallelism the maximum number of templates to be parsed at the same time. If
+     *                    zero or negative, the number of available processors will be used.
+     *                    Note that parsers are pooled, so a parallelism higher than the size of
+     *                    the parser pools will not result in more templates being parsed at a time.
+     * @return the results for each of the specified templates, in the same order.
+     * 
+     * @since 2.1.5
+     */
+    public final List<TemplateWarmUpResult> warmUp(final Collection<String> templateNames, final int parallelism) {
+        return warmUp(templateNames, new Context(), parallelism);
+    }
+    
+    
+    /**
+     * <p>
+     *   Warms up the Template Cache by resolving, parsing and precomputing the specified
+     *   templates in parallel, using the specified context for template resolution.
+     * </p>
+     * <p>
+     *   If this method is called before the TemplateEngine has been initialized,
+     *   it causes its initialization.
+     * </p>
+     * 
+     * @param templateNames the names of the templates to be warmed up.
+     * @param context the context to be used for resolving the templates.
+     * @param parallelism the maximum number of templates to be parsed at the same time. If
+     *                    zero or negative, the number of available processors will be used.
+     * @return the results for each of the specified templates, in the same order.
+     * 
+     * @since 2.1.5
+     */
+    public final List<TemplateWarmUpResult> warmUp(
+            final Collection<String> templateNames, final IContext context, final int parallelism) {
+        
+        Validate.notNull(templateNames, "Template names cannot be null");
+        Validate.containsNoNulls(templateNames, "Template names cannot contain nulls");
+        Validate.notNull(context, "Context cannot be null");
+        
+        if (!isInitialized()) {
+            initialize();
+        }
+        
+        if (templateNames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        final int availableProcessors = Runtime.getRuntime().availableProcessors();
+        final int numThreads = 
+                Math.min((parallelism <= 0? availableProcessors : parallelism), templateNames.size());
+        
+        logger.info("[THYMELEAF] WARMING UP {} TEMPLATES USING {} THREADS", 
+                Integer.valueOf(templateNames.size()), Integer.valueOf(numThreads));
+        
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads, new WarmUpThreadFactory());
+        try {
+            
+            final List<Future<TemplateWarmUpResult>> futures = 
+                    new ArrayList<Future<TemplateWarmUpResult>>(templateNames.size());
+            for (final String templateName : templateNames) {
+                futures.add(executor.submit(new WarmUpTask(templateName, context)));
+            }
+            
+            final List<TemplateWarmUpResult> results = new ArrayList<TemplateWarmUpResult>(futures.size());
+            for (final Future<TemplateWarmUpResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TemplateProcessingException("Interrupted while warming up templates", e);
+                } catch (final ExecutionException e) {
+                    // Should never happen, as tasks capture all their exceptions
+                    throw new TemplateProcessingException("Exception warming up templates", e.getCause());
+                }
+            }
+            
+            logger.info("[THYMELEAF] TEMPLATE WARM UP FINISHED");
+            
+            return results;
+            
+        } finally {
+            executor.shutdownNow();
+        }
+        
+    }
+    
+    
+    
+    private final class WarmUpTask implements Callable<TemplateWarmUpResult> {
+        
+        private final String templateName;
+        private final IContext context;
+        
+        WarmUpTask(final String templateName, final IContext context) {
+            super();
+            this.templateName = templateName;
+            this.context = context;
+        }
+        
+        public TemplateWarmUpResult call() {
+            final long startNanos = System.nanoTime();
+            try {
+                final TemplateProcessingParameters templateProcessingParameters = 
+                        new TemplateProcessingParameters(
+                                TemplateEngine.this.configuration, this.templateName,
+                                new DialectAwareProcessingContext(this.context, getDialects()));
+                TemplateEngine.this.templateRepository.loadTemplateIntoCache(templateProcessingParameters);
+                return new TemplateWarmUpResult(this.templateName, System.nanoTime() - startNanos, null);
+            } catch (final Exception e) {
+                logger.warn("[THYMELEAF][{}] Exception warming up template \"{}\": {}", 
+                        new Object[] {TemplateEngine.threadIndex(), this.templateName, e.getMessage()});
+                return new TemplateWarmUpResult(this.templateName, System.nanoTime() - startNanos, e);
+            }
+        }
+        
+    }
+    
+    
+    private static final class WarmUpThreadFactory implements ThreadFactory {
+        
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+        
+        WarmUpThreadFactory() {
+            super();
+        }
+        
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = 
+                    new Thread(runnable, "thymeleaf-warmup-" + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+        
+    }
     
     
     
@@ -1057,7 +1455,11 @@ public final void process(final String templateName, final IProcessingContext pr
             final TemplateProcessingParameters templateProcessingParameters = 
                 new TemplateProcessingParameters(this.configuration, templateName, processingContext);
             
-            process(templateProcessingParameters, fragmentSpec, writer);
+            if (fragmentSpec == null && this.configuration.isPageOutputCacheable(templateName)) {
+                processWithPageOutputCache(templateProcessingParameters, writer);
+            } else {
+                process(templateProcessingParameters, fragmentSpec, writer);
+            }
             
             final long endNanos = System.nanoTime();
             
@@ -1096,6 +1498,86 @@ public final void process(final String templateName, final IProcessingContext pr
     
     
 
+    private void processWithPageOutputCache(
+            final TemplateProcessingParameters templateProcessingParameters, final Writer writer) {
+        
+        final ICacheManager cacheManager = this.configuration.getCacheManager();
+        final ICache<String,OutputCacheEntry> outputCache =
+                (cacheManager instanceof AbstractCacheManager? 
+                        ((AbstractCacheManager)cacheManager).getOutputCache() : null);
+        
+        // Identifies the contents of the cached template: if they change, cached output is discarded
+        final Template cachedTemplate =
+                (outputCache == null? null : this.templateRepository.getCachedTemplate(templateProcessingParameters));
+        
+        if (cachedTemplate == null) {
+            process(templateProcessingParameters, null, writer);
+            return;
+        }
+        
+        final String templateName = templateProcessingParameters.getTemplateName();
+        final String fingerprint = 
+                computePageOutputCacheFingerprint(templateName, templateProcessingParameters.getContext());
+        
+        final OutputCacheEntry cachedEntry = outputCache.get(fingerprint);
+        
+        String output = null;
+        if (cachedEntry != null) {
+            if (cachedEntry.isOwnedBy(cachedTemplate.getContentIdentity())) {
+                if (logger.isTraceEnabled()) {
+                    logger.trace("[THYMELEAF][{}] Page output cache hit for template \"{}\"", 
+                            TemplateEngine.threadIndex(), templateName);
+                }
+                output = cachedEntry.getOutput();
+            } else {
+                // Rendered from a template cache entry that has changed since
+                outputCache.clearKey(fingerprint);
+            }
+        }
+        
+        if (output == null) {
+            final StringWriter stringWriter = new StringWriter();
+            process(templateProcessingParameters, null, stringWriter);
+            output = stringWriter.toString();
+            outputCache.put(
+                    fingerprint, 
+                    new OutputCacheEntry(
+                            output, this.configuration.getPageOutputCacheTTLMs(), cachedTemplate.getContentIdentity()));
+        }
+        
+        try {
+            writer.write(output);
+            writer.flush();
+        } catch (final IOException e) {
+            throw new TemplateOutputException("Error during output of cached template", templateName, e);
+        }
+        
+    }
+    
+    
+    
+    private String computePageOutputCacheFingerprint(final String templateName, final IContext context) {
+        
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("PAGE|").append(templateName).append('|').append(context.getLocale());
+        
+        final VariablesMap<String,Object> variables = context.getVariables();
+        for (final String variableName : this.configuration.getPageOutputCacheVariableNames()) {
+            final Object value = variables.get(variableName);
+            final String valueStr = (value == null? null : value.toString());
+            strBuilder.append('|').append(variableName).append('=');
+            if (valueStr != null) {
+                // Length-prefixed so that values cannot collide by containing separators 
+                strBuilder.append(valueStr.length()).append(':').append(valueStr);
+            }
+        }
+        
+        return strBuilder.toString();
+        
+    }
+    
+    
+    
     private void process(final TemplateProcessingParameters templateProcessingParameters,
             final IFragmentSpec fragmentSpec, final Writer writer) {
         
@@ -19,28 +19,63 @@
  */
 package org.thymeleaf;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.thymeleaf.cache.ICache;
 import org.thymeleaf.cache.ICacheManager;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IContext;
+import org.thymeleaf.context.IWebContext;
+import org.thymeleaf.context.VariablesMap;
+import org.thymeleaf.dialect.IDialect;
+import org.thymeleaf.dom.Attribute;
 import org.thymeleaf.dom.Document;
 import org.thymeleaf.dom.Node;
 import org.thymeleaf.exceptions.TemplateInputException;
+import org.thymeleaf.fragment.ChainedFragmentSpec;
+import org.thymeleaf.fragment.DOMSelectorFragmentSpec;
+import org.thymeleaf.fragment.ElementAndAttributeNameFragmentSpec;
+import org.thymeleaf.fragment.IFragmentSpec;
+import org.thymeleaf.fragment.WholeFragmentSpec;
 import org.thymeleaf.resourceresolver.IResourceResolver;
+import org.thymeleaf.resourceresolver.PrecompiledTemplateResourceResolver;
+import org.thymeleaf.standard.StandardDialect;
+import org.thymeleaf.standard.fragment.StandardDOMSelectorFragmentSpec;
+import org.thymeleaf.standard.processor.attr.StandardFragmentAttrProcessor;
 import org.thymeleaf.templatemode.ITemplateModeHandler;
+import org.thymeleaf.templateparser.DecodedTemplateReader;
 import org.thymeleaf.templateparser.ITemplateParser;
+import org.thymeleaf.templateparser.precompiled.PrecompiledTemplateBundle;
 import org.thymeleaf.templateresolver.ITemplateResolver;
 import org.thymeleaf.templateresolver.TemplateResolution;
+import org.thymeleaf.util.SingleFlightLoader;
 import org.thymeleaf.util.StringUtils;
 import org.thymeleaf.util.Validate;
 
@@ -63,11 +98,22 @@
 public final class TemplateRepository {
 
     private static final Logger logger = LoggerFactory.getLogger(TemplateRepository.class);
+    
+    // Marks fragment specs that have been applied on a cached template and returned null
+    private static final List<Node> NO_EXTRACTED_NODES = new ArrayList<Node>(0);
 
     private final ICache<String,Template> templateCache; // might be null! (= no cache)
     private final ICache<String,List<Node>> fragmentCache; // might be null! (= no cache)
     private final Map<String,ITemplateParser> parsersByTemplateMode;
     
+    private final SingleFlightLoader<String,Template> templateLoader;
+    private final SingleFlightLoader<String,List<Node>> fragmentLoader;
+    
+    private final Executor revalidationExecutor; // might be null! (= no stale-while-revalidate)
+    private final ConcurrentHashMap<String,Boolean> revalidationsInProgress;
+    
+    private final Set<String> fragmentAttributeNames; // indexed in shared (cached) documents
+    
     
     /**
      * <p>
@@ -95,6 +141,15 @@ public TemplateRepository(final Configuration configuration) {
         for (final ITemplateModeHandler handler : configuration.getTemplateModeHandlers()) {
             this.parsersByTemplateMode.put(handler.getTemplateModeName(), handler.getTemplateParser());
         }
+        
+        this.templateLoader = new SingleFlightLoader<String, Template>();
+        this.fragmentLoader = new SingleFlightLoader<String, List<Node>>();
+        
+        this.revalidationExecutor = 
+                (this.templateCache == null? null : configuration.getTemplateRevalidationExecutor());
+        this.revalidationsInProgress = new ConcurrentHashMap<String, Boolean>(10);
+        
+        this.fragmentAttributeNames = computeFragmentAttributeNames(configuration);
     }
     
 
@@ -168,7 +223,11 @@ public void clearFragmentCacheFor(final String fragment) {
      *   {@link TemplateEngine} by following these steps:
      * </p>
      * <ul>
-     *   <li>Try to get the template from the cache (if it exists).</li>
+     *   <li>Try to get the template from the cache (if it exists). If a template revalidation executor
+     *       has been configured and the cached template is no longer valid, it will still be returned
+     *       while it is re-resolved and re-parsed in the background.</li>
+     *   <li>If not in cache, make sure only one thread performs the following steps for the template,
+     *       so that concurrent requests for it wait and share the result instead of parsing it again.</li>
      *   <li>Querying all the configured {@link ITemplateResolver} objects until one of them resolves
      *       the template.</li>
      *   <li>If resolved, use the associated {@link IResourceResolver} object to obtain an {@link InputStream}
@@ -188,16 +247,272 @@ public Template getTemplate(final TemplateProcessingParameters templateProcessin
         
         Validate.notNull(templateProcessingParameters, "Template Processing Parameters cannot be null");
 
+        if (this.templateCache == null) {
+            return loadTemplate(templateProcessingParameters);
+        }
+        
+        return getSharedTemplate(templateProcessingParameters).createDuplicate();
+        
+    }
+    
+    
+    
+    /**
+     * <p>
+     *   Obtains the nodes selected by a fragment spec from a template, ready to be processed
+     *   (e.g. included into another template).
+     * </p>
+     * <p>
+     *   When a template cache exists, fragments are extracted only once from the cached (shared)
+     *   template and kept together with it, so that they are invalidated along with the template's
+     *   cache entry. Each call then only clones the selected nodes instead of the whole template.
+     *   Fragment specs which might modify the selected nodes (e.g. by setting parameters on them)
+     *   are always applied on a duplicate of the complete template.
+     * </p>
+     * 
+     * @param templateProcessingParameters the parameters object containing all the necessary pieces of
+     *                                     data in order to adequately resolve the template.
+     * @param fragmentSpec the fragment spec to be applied to the template's document children.
+     * @return the selected nodes (might be null if the fragment spec returns null).
+     * @since 2.1.5
+     */
+    public List<Node> getTemplateFragment(
+            final TemplateProcessingParameters templateProcessingParameters, final IFragmentSpec fragmentSpec) {
+
+        Validate.notNull(templateProcessingParameters, "Template Processing Parameters cannot be null");
+        Validate.notNull(fragmentSpec, "Fragment spec cannot be null");
+
+        final Configuration configuration = templateProcessingParameters.getConfiguration();
+        final String fragmentSpecKey = computeExtractedFragmentKey(fragmentSpec);
+        
+        if (this.templateCache == null || fragmentSpecKey == null) {
+            // No template is shared: the returned Template object can be safely modified
+            final Template template = getTemplate(templateProcessingParameters);
+            return fragmentSpec.extractFragment(configuration, template.getDocument().getChildren());
+        }
+        
+        final Template sharedTemplate = getSharedTemplate(templateProcessingParameters);
+        
+        List<Node> extractedNodes = sharedTemplate.getExtractedFragment(fragmentSpecKey);
+        if (extractedNodes == null) {
+            final List<Node> extraction =
+                    fragmentSpec.extractFragment(configuration, sharedTemplate.getDocument().getChildren());
+            extractedNodes = (extraction == null? NO_EXTRACTED_NODES : new ArrayList<Node>(extraction));
+            sharedTemplate.putExtractedFragment(fragmentSpecKey, extractedNodes);
+        }
+        
+        if (extractedNodes == NO_EXTRACTED_NODES) {
+            return null;
+        }
+        
+        final List<Node> clonedNodes = new ArrayList<Node>(extractedNodes.size());
+        for (final Node extractedNode : extractedNodes) {
+            clonedNodes.add(extractedNode.cloneNode(null, true));
+        }
+        return clonedNodes;
+        
+    }
+    
+    
+    
+    /*
+     * Returns the template currently shared through the template cache (resolving and parsing it
+     * if needed), or null if there is no template cache or the template is not cacheable. The
+     * returned object must never be modified, and its content identity can be used for checking
+     * whether the contents of the cached template have changed.
+     */
+    Template getCachedTemplate(final TemplateProcessingParameters templateProcessingParameters) {
+        
+        if (this.templateCache == null) {
+            return null;
+        }
+        
+        final Template sharedTemplate = getSharedTemplate(templateProcessingParameters);
+        if (!sharedTemplate.getTemplateResolution().getValidity().isCacheable()) {
+            return null;
+        }
+        return sharedTemplate;
+        
+    }
+    
+    
+    
+    /*
+     * Resolves, parses and precomputes a template so that it is put into the template cache (if it
+     * exists and the template is cacheable), without duplicating it as no one is going to process it.
+     * Used for warming up the template cache.
+     */
+    void loadTemplateIntoCache(final TemplateProcessingParameters templateProcessingParameters) {
+        
+        Validate.notNull(templateProcessingParameters, "Template Processing Parameters cannot be null");
+        
+        if (this.templateCache == null) {
+            // Nothing to populate, but template errors are still reported
+            loadTemplate(templateProcessingParameters);
+            return;
+        }
+        getSharedTemplate(templateProcessingParameters);
+        
+    }
+    
+    
+    
+    /*
+     * Returns the template without duplicating it, so it might be shared (e.g. be the one in cache)
+     * and must never be modified.
+     */
+    private Template getSharedTemplate(final TemplateProcessingParameters templateProcessingParameters) {
+        
+        final String templateName = templateProcessingParameters.getTemplateName();
+        
+        if (this.revalidationExecutor != null) {
+            
+            // Validity is checked here instead of by the cache, so that no-longer-valid templates can
+            // still be served while they are revalidated in the background.
+            final Template cached = this.templateCache.get(templateName, null);
+            if (cached != null) {
+                if (!cached.getTemplateResolution().getValidity().isCacheStillValid()) {
+                    scheduleRevalidation(templateProcessingParameters, cached);
+                }
+                return cached;
+            }
+            
+        } else {
+            
+            final Template cached = this.templateCache.get(templateName);
+            if (cached != null) {
+                return cached;
+            }
+            
+        }
+
+        // Only one thread will resolve and parse the template, any other threads asking
+        // for it in the meantime will wait and receive the same (shared) result.
+        final boolean[] loadedByThisThread = new boolean[] { false };
+        final Template template = this.templateLoader.load(templateName, new Callable<Template>() {
+            public Template call() {
+                loadedByThisThread[0] = true;
+                // Another thread might have just loaded it before we entered the loader
+                final Template cachedMeanwhile = TemplateRepository.this.templateCache.get(templateName);
+                if (cachedMeanwhile != null) {
+                    return cachedMeanwhile;
+                }
+                return loadTemplate(templateProcessingParameters);
+            }
+        });
+        
+        if (!loadedByThisThread[0] && !template.getTemplateResolution().getValidity().isCacheable()) {
+            // Non-cacheable templates are resolved for each request (i.e. with its own context), so
+            // the result of a load performed for a different request cannot be shared.
+            return loadTemplate(templateProcessingParameters);
+        }
+        return template;
+        
+    }
+    
+    
+    
+    /*
+     * Fragment specs are only considered safe for sharing their extraction results if they are
+     * known not to modify the selected nodes and their String representation completely identifies
+     * the selection they perform. Otherwise, null is returned.
+     */
+    private static String computeExtractedFragmentKey(final IFragmentSpec fragmentSpec) {
+        
+        if (fragmentSpec instanceof WholeFragmentSpec || fragmentSpec instanceof StandardDOMSelectorFragmentSpec) {
+            return fragmentSpec.toString();
+        }
+        if (fragmentSpec instanceof DOMSelectorFragmentSpec) {
+            // Custom reference checkers might be configured differently for the same class
+            return (((DOMSelectorFragmentSpec)fragmentSpec).getReferenceChecker() == null? fragmentSpec.toString() : null);
+        }
+        if (fragmentSpec instanceof ElementAndAttributeNameFragmentSpec) {
+            // Parameter values are set on the selected nodes (only if there are any), and are not part of toString()
+            return (((ElementAndAttributeNameFragmentSpec)fragmentSpec).hasParameterValues()? null : fragmentSpec.toString());
+        }
+        if (fragmentSpec instanceof ChainedFragmentSpec) {
+            final ChainedFragmentSpec chainedFragmentSpec = (ChainedFragmentSpec) fragmentSpec;
+            final String key1 = computeExtractedFragmentKey(chainedFragmentSpec.getFragmentSpec1());
+            final String key2 = computeExtractedFragmentKey(chainedFragmentSpec.getFragmentSpec2());
+            return (key1 == null || key2 == null? null : fragmentSpec.toString());
+        }
+        return null;
+        
+    }
+    
+    
+    
+    /*
+     * Names of the attributes defining fragments in the Standard Dialects present in the configuration
+     * (e.g. "th:fragment" and "data-th-fragment").
+     */
+    private static Set<String> computeFragmentAttributeNames(final Configuration configuration) {
+        final Set<String> fragmentAttributeNames = new HashSet<String>(4);
+        for (final Map.Entry<String,IDialect> dialectByPrefix : configuration.getDialects().entrySet()) {
+            if (dialectByPrefix.getValue() instanceof StandardDialect) {
+                fragmentAttributeNames.addAll(
+                        Arrays.asList(
+                                Attribute.applyPrefixToAttributeName(
+                                        StandardFragmentAttrProcessor.ATTR_NAME, dialectByPrefix.getKey())));
+            }
+        }
+        return fragmentAttributeNames;
+    }
+    
+    
+    
+    /*
+     * Resolves, parses and precomputes a template, putting it into the template cache if it exists
+     * and the template is cacheable. The returned template will be the one in cache (if cached), so
+     * it should be duplicated before being processed.
+     */
+    private Template loadTemplate(final TemplateProcessingParameters templateProcessingParameters) {
+        
         final String templateName = templateProcessingParameters.getTemplateName();
+        final Configuration configuration = templateProcessingParameters.getConfiguration();
+        
+        final ResolvedTemplateResource resolvedResource = resolveTemplateResource(templateProcessingParameters);
+        final TemplateResolution templateResolution = resolvedResource.templateResolution;
+        
+        final Document document;
+        final long contentChecksum;
+        if (this.revalidationExecutor != null) {
+            // Contents are checksummed so that revalidations can avoid parsing them again if unchanged
+            final byte[] content = readFully(templateName, resolvedResource.inputStream);
+            contentChecksum = computeContentChecksum(content);
+            document = parseTemplate(configuration, templateName, templateResolution, null, content);
+        } else {
+            contentChecksum = Template.UNKNOWN_CONTENT_CHECKSUM;
+            document = parseTemplate(configuration, templateName, templateResolution, resolvedResource.inputStream, null);
+        }
 
+        document.precompute(configuration);
+        
         if (this.templateCache != null) {
-            final Template cached = 
-                this.templateCache.get(templateName);
-            if (cached != null) {
-                return cached.createDuplicate();
+            // Loaded documents are shared and only their duplicates will be processed, so they can be indexed
+            document.buildFragmentIndex(this.fragmentAttributeNames);
+        }
+        
+        final Template template =
+            new Template(templateName, templateResolution, document, contentChecksum);
+
+        if (this.templateCache != null) {
+            if (templateResolution.getValidity().isCacheable()) {
+                this.templateCache.put(templateName, template);
             }
         }
         
+        return template;
+        
+    }
+    
+    
+    
+    private static ResolvedTemplateResource resolveTemplateResource(
+            final TemplateProcessingParameters templateProcessingParameters) {
+        
+        final String templateName = templateProcessingParameters.getTemplateName();
+        
         final Configuration configuration = templateProcessingParameters.getConfiguration();
         final Set<ITemplateResolver> templateResolvers = configuration.getTemplateResolvers();
         TemplateResolution templateResolution = null;
@@ -249,6 +564,18 @@ public Template getTemplate(final TemplateProcessingParameters templateProcessin
         }
 
         
+        return new ResolvedTemplateResource(templateResolution, templateInputStream);
+        
+    }
+    
+    
+    
+    /*
+     * Parses the template from its input stream or, if not null, from its already read contents.
+     */
+    private Document parseTemplate(final Configuration configuration, final String templateName, 
+            final TemplateResolution templateResolution, final InputStream templateInputStream, final byte[] content) {
+        
         final String templateMode = templateResolution.getTemplateMode();
         
         final ITemplateParser templateParser = this.parsersByTemplateMode.get(templateMode);
@@ -257,48 +584,243 @@ public Template getTemplate(final TemplateProcessingParameters templateProcessin
                     "Template mode \"" + templateMode + "\" has not been configured");
         }
         
-        if (logger.isTraceEnabled()) {
-            logger.trace("[THYMELEAF][{}] Starting parsing of template \"{}\"", TemplateEngine.threadIndex(), templateName);
-        }
-        
+        final Document document;
+        if (templateResolution.getResourceResolver() instanceof PrecompiledTemplateResourceResolver) {
+            
+            // Precompiled templates are already parsed, so we only need to read the resulting DOM
+            if (logger.isTraceEnabled()) {
+                logger.trace("[THYMELEAF][{}] Reading precompiled template \"{}\"", TemplateEngine.threadIndex(), templateName);
+            }
+            
+            document = 
+                    PrecompiledTemplateBundle.readDocument(
+                            (content != null? new ByteArrayInputStream(content) : templateInputStream));
+            
+        } else {
         
-        final String characterEncoding = templateResolution.getCharacterEncoding();
-        Reader reader = null;
-        if (!StringUtils.isEmptyOrWhitespace(characterEncoding)) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("[THYMELEAF][{}] Starting parsing of template \"{}\"", TemplateEngine.threadIndex(), templateName);
+            }
+            
+            
+            final String characterEncoding = templateResolution.getCharacterEncoding();
+            
+            // Template files are read and decoded in bulk instead of being streamed
+            DecodedTemplateReader decodedReader = null;
             try {
-                reader = new InputStreamReader(templateInputStream, characterEncoding);
-            } catch (final UnsupportedEncodingException e) {
+                if (content != null) {
+                    decodedReader = DecodedTemplateReader.forBytes(content, content.length, characterEncoding);
+                } else if (templateInputStream instanceof FileInputStream) {
+                    decodedReader = 
+                            DecodedTemplateReader.forFile((FileInputStream)templateInputStream, characterEncoding);
+                }
+            } catch (final IOException e) {
+                throw new TemplateInputException("Exception parsing document", e);
+            } catch (final IllegalArgumentException e) {
+                // Unsupported or illegal charset name
                 throw new TemplateInputException("Exception parsing document", e);
             }
-        } else {
-            reader = new InputStreamReader(templateInputStream);
+            
+            Reader reader = decodedReader;
+            if (reader == null) {
+                if (!StringUtils.isEmptyOrWhitespace(characterEncoding)) {
+                    try {
+                        reader = new InputStreamReader(templateInputStream, characterEncoding);
+                    } catch (final UnsupportedEncodingException e) {
+                        throw new TemplateInputException("Exception parsing document", e);
+                    }
+                } else {
+                    reader = new InputStreamReader(templateInputStream);
+                }
+            }
+            
+            try {
+                document = templateParser.parseTemplate(configuration, templateName, reader);
+            } finally {
+                if (decodedReader != null) {
+                    // Returns the decoded buffer to the pool (parsers might have already closed it)
+                    decodedReader.close();
+                }
+            }
+            
+            if (logger.isTraceEnabled()) {
+                logger.trace("[THYMELEAF][{}] Finished parsing of template \"{}\"", TemplateEngine.threadIndex(), templateName);
+            }
+            
         }
+
+        return document;
         
-        final Document document = 
-                templateParser.parseTemplate(configuration, templateName, reader);
+    }
+    
+    
+    
+    
+    /*
+     * Schedules the asynchronous re-resolution and re-parsing of a template which cache entry is
+     * no longer valid but is still being served (stale-while-revalidate). At most one revalidation
+     * is scheduled per template at a time.
+     */
+    private void scheduleRevalidation(
+            final TemplateProcessingParameters templateProcessingParameters, final Template staleTemplate) {
+        
+        final String templateName = templateProcessingParameters.getTemplateName();
+        
+        if (this.revalidationsInProgress.putIfAbsent(templateName, Boolean.TRUE) != null) {
+            // Already being revalidated
+            return;
+        }
         
         if (logger.isTraceEnabled()) {
-            logger.trace("[THYMELEAF][{}] Finished parsing of template \"{}\"", TemplateEngine.threadIndex(), templateName);
+            logger.trace("[THYMELEAF][{}] Serving stale template \"{}\" while it is revalidated", TemplateEngine.threadIndex(), templateName);
         }
-
-        document.precompute(configuration);
         
-        final Template template =
-            new Template(templateName, templateResolution, document);
-
-        if (this.templateCache != null) {
-            if (templateResolution.getValidity().isCacheable()) {
-                this.templateCache.put(templateName, template);
-                return template.createDuplicate();
+        // The revalidation might run after the current request has finished, so it is not given its parameters
+        final TemplateProcessingParameters revalidationParameters = 
+                createRevalidationParameters(templateProcessingParameters);
+        
+        try {
+            this.revalidationExecutor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        revalidateTemplate(revalidationParameters, staleTemplate);
+                    } finally {
+                        TemplateRepository.this.revalidationsInProgress.remove(templateName);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // Revalidation will be retried at the next request for this template
+            this.revalidationsInProgress.remove(templateName);
+            logger.warn("[THYMELEAF][{}] Revalidation of template \"{}\" rejected by executor: {}", 
+                    new Object[] {TemplateEngine.threadIndex(), templateName, e.getMessage()});
+        }
+        
+    }
+    
+    
+    
+    /*
+     * Only what template resolution might need is kept from the original parameters: the configuration,
+     * the template name, the locale and, in web environments, the ServletContext.
+     */
+    private static TemplateProcessingParameters createRevalidationParameters(
+            final TemplateProcessingParameters templateProcessingParameters) {
+        
+        final IContext context = templateProcessingParameters.getContext();
+        final IContext revalidationContext =
+                (context instanceof IWebContext?
+                        new RevalidationWebContext(context.getLocale(), ((IWebContext)context).getServletContext()) :
+                        new Context(context.getLocale()));
+        
+        return new TemplateProcessingParameters(
+                templateProcessingParameters.getConfiguration(), templateProcessingParameters.getTemplateName(), 
+                revalidationContext);
+        
+    }
+    
+    
+    
+    private void revalidateTemplate(
+            final TemplateProcessingParameters templateProcessingParameters, final Template staleTemplate) {
+        
+        final String templateName = templateProcessingParameters.getTemplateName();
+        
+        try {
+            // Executed inside the loader so that requests finding no entry in cache while it is
+            // being replaced wait for the revalidated template instead of parsing it again.
+            this.templateLoader.load(templateName, new Callable<Template>() {
+                public Template call() {
+                    return reloadTemplate(templateProcessingParameters, staleTemplate);
+                }
+            });
+        } catch (final Exception e) {
+            // The stale entry is removed so that the next request tries to load the template
+            // synchronously, and therefore receives the corresponding exception.
+            this.templateCache.clearKey(templateName);
+            logger.warn("[THYMELEAF][{}] Exception revalidating template \"{}\": {}", 
+                    new Object[] {TemplateEngine.threadIndex(), templateName, e.getMessage()});
+        }
+        
+    }
+    
+    
+    
+    private Template reloadTemplate(
+            final TemplateProcessingParameters templateProcessingParameters, final Template staleTemplate) {
+        
+        final String templateName = templateProcessingParameters.getTemplateName();
+        final Configuration configuration = templateProcessingParameters.getConfiguration();
+        
+        final ResolvedTemplateResource resolvedResource = resolveTemplateResource(templateProcessingParameters);
+        final TemplateResolution templateResolution = resolvedResource.templateResolution;
+        
+        final byte[] content = readFully(templateName, resolvedResource.inputStream);
+        final long contentChecksum = computeContentChecksum(content);
+        
+        final Template template;
+        if (contentChecksum == staleTemplate.getContentChecksum()) {
+            
+            if (logger.isTraceEnabled()) {
+                logger.trace("[THYMELEAF][{}] Template \"{}\" has not changed, no parsing needed", TemplateEngine.threadIndex(), templateName);
             }
+            // Cached documents are never processed directly (only their duplicates are), so they can be shared.
+            // The content identity is kept too, so that output cached for the stale template is still valid.
+            template = 
+                    new Template(
+                            templateName, templateResolution, staleTemplate.getDocument(), contentChecksum, 
+                            staleTemplate.getContentIdentity());
+            
+        } else {
+            
+            final Document document = 
+                    parseTemplate(configuration, templateName, templateResolution, null, content);
+            document.precompute(configuration);
+            document.buildFragmentIndex(this.fragmentAttributeNames);
+            template = new Template(templateName, templateResolution, document, contentChecksum);
+            
+        }
+        
+        // Entries are not overwritten by ICache#put, so the stale one has to be removed first
+        this.templateCache.clearKey(templateName);
+        if (templateResolution.getValidity().isCacheable()) {
+            this.templateCache.put(templateName, template);
         }
         
         return template;
         
     }
-
+    
+    
+    
+    private static long computeContentChecksum(final byte[] content) {
+        final CRC32 crc32 = new CRC32();
+        crc32.update(content);
+        return crc32.getValue();
+    }
+    
+    
+    
+    private static byte[] readFully(final String templateName, final InputStream inputStream) {
+        try {
+            try {
+                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(4096);
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
+                return outputStream.toByteArray();
+            } finally {
+                inputStream.close();
+            }
+        } catch (final IOException e) {
+            throw new TemplateInputException("Exception reading template", templateName, e);
+        }
+    }
     
 
+    
     /**
      * <p>
      *   Obtains a fragment. A <tt>fragment</tt> is a piece of template code that is usually
@@ -323,32 +845,45 @@ public List<Node> getFragment(final Arguments arguments, final String fragment)
         final String templateMode = arguments.getTemplateResolution().getTemplateMode();
         final String cacheKey = computeFragmentCacheKey(templateMode, fragment);
 
-        if (this.fragmentCache != null) {
-            final List<Node> fragmentNodes = this.fragmentCache.get(cacheKey);
-            if (fragmentNodes != null) {
-                return cloneFragmentNodes(fragmentNodes);
-            }
-        }
-        
         final Configuration configuration = arguments.getConfiguration();
         
-        final ITemplateParser templateParser =
-                configuration.getTemplateModeHandler(templateMode).getTemplateParser();
-      
-        final List<Node> fragmentNodes = templateParser.parseFragment(configuration, fragment);
+        if (this.fragmentCache == null) {
+            return parseFragment(configuration, templateMode, fragment);
+        }
         
-        if (this.fragmentCache != null) {
-            this.fragmentCache.put(cacheKey, fragmentNodes);
-            return cloneFragmentNodes(fragmentNodes);
+        final List<Node> cachedFragmentNodes = this.fragmentCache.get(cacheKey);
+        if (cachedFragmentNodes != null) {
+            return cloneFragmentNodes(cachedFragmentNodes);
         }
-
-
-        return fragmentNodes;
+        
+        final List<Node> fragmentNodes =
+                this.fragmentLoader.load(cacheKey, new Callable<List<Node>>() {
+                    public List<Node> call() {
+                        final List<Node> cachedMeanwhile = TemplateRepository.this.fragmentCache.get(cacheKey);
+                        if (cachedMeanwhile != null) {
+                            return cachedMeanwhile;
+                        }
+                        final List<Node> parsedFragmentNodes = parseFragment(configuration, templateMode, fragment);
+                        TemplateRepository.this.fragmentCache.put(cacheKey, parsedFragmentNodes);
+                        return parsedFragmentNodes;
+                    }
+                });
+        
+        return cloneFragmentNodes(fragmentNodes);
         
     }
     
     
     
+    private static List<Node> parseFragment(
+            final Configuration configuration, final String templateMode, final String fragment) {
+        final ITemplateParser templateParser =
+                configuration.getTemplateModeHandler(templateMode).getTemplateParser();
+        return templateParser.parseFragment(configuration, fragment);
+    }
+    
+    
+    
     private static String computeFragmentCacheKey(final String templateMode, final String fragment) {
         return '{' +  templateMode + '}' + fragment;
     }
@@ -365,4 +900,73 @@ private static List<Node> cloneFragmentNodes(final List<Node> fragmentNodes) {
         return clonedNodes;
     }
     
+
+    
+    
+    
+    private static final class ResolvedTemplateResource {
+        
+        final TemplateResolution templateResolution;
+        final InputStream inputStream;
+        
+        ResolvedTemplateResource(final TemplateResolution templateResolution, final InputStream inputStream) {
+            super();
+            this.templateResolution = templateResolution;
+            this.inputStream = inputStream;
+        }
+        
+    }
+    
+    
+    
+    
+    /*
+     * Web context used for revalidating templates in the background, which gives access to the
+     * ServletContext (e.g. for resolving templates as ServletContext resources) but not to any
+     * request, response or session.
+     */
+    private static final class RevalidationWebContext extends Context implements IWebContext {
+        
+        private final ServletContext servletContext;
+        
+        RevalidationWebContext(final Locale locale, final ServletContext servletContext) {
+            super(locale);
+            this.servletContext = servletContext;
+        }
+        
+        public HttpServletRequest getHttpServletRequest() {
+            return null;
+        }
+        
+        public HttpServletResponse getHttpServletResponse() {
+            return null;
+        }
+        
+        public HttpSession getHttpSession() {
+            return null;
+        }
+        
+        public ServletContext getServletContext() {
+            return this.servletContext;
+        }
+        
+        public VariablesMap<String,String[]> getRequestParameters() {
+            return new VariablesMap<String, String[]>(1);
+        }
+        
+        public VariablesMap<String,Object> getRequestAttributes() {
+            return new VariablesMap<String, Object>(1);
+        }
+        
+        public VariablesMap<String,Object> getSessionAttributes() {
+            return new VariablesMap<String, Object>(1);
+        }
+        
+        public VariablesMap<String,Object> getApplicationAttributes() {
+            return new VariablesMap<String, Object>(1);
+        }
+        
+    }
+    
+
 }
@@ -0,0 +1,92 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf;
+
+
+
+/**
+ * <p>
+ *   Result of warming up (resolving, parsing and caching) a template by means of
+ *   {@link TemplateEngine#warmUp(java.util.Collection, int)}.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class TemplateWarmUpResult {
+
+    private final String templateName;
+    private final long elapsedNanos;
+    private final Exception exception;
+    
+    
+    TemplateWarmUpResult(final String templateName, final long elapsedNanos, final Exception exception) {
+        super();
+        this.templateName = templateName;
+        this.elapsedNanos = elapsedNanos;
+        this.exception = exception;
+    }
+
+
+    public String getTemplateName() {
+        return this.templateName;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the time (in nanoseconds) needed for resolving, parsing and
+     *   precomputing the template, or for failing to do so.
+     * </p>
+     * 
+     * @return the elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    
+    public boolean isSuccess() {
+        return this.exception == null;
+    }
+
+    
+    /**
+     * <p>
+     *   Returns the exception raised while warming up the template, or
+     *   <tt>null</tt> if the operation was successful.
+     * </p>
+     * 
+     * @return the exception, or null.
+     */
+    public Exception getException() {
+        return this.exception;
+    }
+    
+    
+    @Override
+    public String toString() {
+        return "[" + this.templateName + ": " + (isSuccess()? "OK" : "FAILED (" + this.exception.getMessage() + ")") + 
+                " in " + this.elapsedNanos + " nanoseconds]";
+    }
+    
+}
@@ -59,6 +59,9 @@ public abstract class AbstractCacheManager implements ICacheManager {
     
     private volatile ICache<String,Properties> messageCache;
     private volatile boolean messageCacheInitialized = false;
+    
+    private volatile ICache<String,OutputCacheEntry> outputCache;
+    private volatile boolean outputCacheInitialized = false;
 
     
     protected AbstractCacheManager() {
@@ -116,6 +119,32 @@ public final ICache<String, Object> getExpressionCache() {
         return this.expressionCache;
     }
 
+
+    /**
+     * <p>
+     *   Returns the cache used for storing rendered output (e.g. by the <tt>th:cache</tt> attribute
+     *   of the Standard Dialect). Might be null if no output cache is used.
+     * </p>
+     * <p>
+     *   Note this cache is not part of the {@link ICacheManager} interface, so it will only be available
+     *   for cache managers extending this class.
+     * </p>
+     * 
+     * @return the output cache
+     * @since 2.1.5
+     */
+    public final ICache<String, OutputCacheEntry> getOutputCache() {
+        if (!this.outputCacheInitialized) {
+            synchronized(this) {
+                if (!this.outputCacheInitialized) {
+                    this.outputCache = initializeOutputCache();
+                    this.outputCacheInitialized = true;
+                }
+            }
+        }
+        return this.outputCache;
+    }
+
     
     public <K, V> ICache<K, V> getSpecificCache(final String name) {
         // No specific caches are used by default
@@ -151,6 +180,11 @@ public void clearAllCaches() {
             expressionCacheObj.clear();
         }
         
+        final ICache<String, OutputCacheEntry> outputCacheObj = getOutputCache();
+        if (outputCacheObj != null) {
+            outputCacheObj.clear();
+        }
+        
         final List<String> allSpecificCacheNamesObj = getAllSpecificCacheNames();
         if (allSpecificCacheNamesObj != null) {
             for (final String specificCacheName : allSpecificCacheNamesObj) {
@@ -172,4 +206,16 @@ public void clearAllCaches() {
     
     protected abstract ICache<String,Object> initializeExpressionCache();
     
+    /**
+     * <p>
+     *   Initializes the output cache. Returns null by default (no output cache).
+     * </p>
+     * 
+     * @return the output cache, or null if no output cache is to be used.
+     * @since 2.1.5
+     */
+    protected ICache<String,OutputCacheEntry> initializeOutputCache() {
+        return null;
+    }
+    
 }
@@ -0,0 +1,119 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+
+import org.thymeleaf.util.Validate;
+
+
+/**
+ * <p>
+ *   Entry of the <i>output cache</i> (see {@link AbstractCacheManager#getOutputCache()}), containing
+ *   the already rendered (processed and written) output of a template or a part of it, and an
+ *   optional TTL (time-to-live) for it.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class OutputCacheEntry implements Serializable {
+
+    private static final long serialVersionUID = 3519452893175326741L;
+
+    /**
+     * <p>
+     *   Value of the TTL for entries that should not expire.
+     * </p>
+     */
+    public static final long NO_TTL = -1L;
+    
+    private final String output;
+    private final long ttlMs;
+    // Not serialized: deserialized entries will simply not be owned by anything anymore
+    private final transient WeakReference<Object> owner;
+    
+    
+    public OutputCacheEntry(final String output, final long ttlMs) {
+        this(output, ttlMs, null);
+    }
+    
+    
+    /**
+     * <p>
+     *   Creates a new entry, bound to an <i>owner</i> object: the object the output was rendered
+     *   from (for example, a cached template). Entries can then be discarded if their owner is no
+     *   longer the one in use (see {@link #isOwnedBy(Object)}).
+     * </p>
+     * <p>
+     *   Owners are only weakly referenced, so that entries do not prevent them from being garbage
+     *   collected.
+     * </p>
+     * 
+     * @param output the rendered output.
+     * @param ttlMs the TTL in milliseconds, or {@link #NO_TTL}.
+     * @param owner the owner of the entry (can be null).
+     * 
+     * @since 2.1.5
+     */
+    public OutputCacheEntry(final String output, final long ttlMs, final Object owner) {
+        super();
+        Validate.notNull(output, "Output cannot be null");
+        this.output = output;
+        this.ttlMs = ttlMs;
+        this.owner = (owner == null? null : new WeakReference<Object>(owner));
+    }
+    
+
+    public String getOutput() {
+        return this.output;
+    }
+    
+    /**
+     * <p>
+     *   Returns the TTL of this entry in milliseconds, or {@link #NO_TTL} if it should not expire.
+     * </p>
+     * 
+     * @return the TTL in milliseconds.
+     */
+    public long getTtlMs() {
+        return this.ttlMs;
+    }
+    
+    public boolean hasTtl() {
+        return this.ttlMs >= 0;
+    }
+    
+    /**
+     * <p>
+     *   Checks whether this entry was created for the specified owner (by identity).
+     * </p>
+     * 
+     * @param candidate the object to be checked.
+     * @return true if the candidate is the (still alive) owner of this entry, false if not.
+     */
+    public boolean isOwnedBy(final Object candidate) {
+        return this.owner != null && candidate != null && this.owner.get() == candidate;
+    }
+    
+}
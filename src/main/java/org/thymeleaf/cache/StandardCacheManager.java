@@ -201,6 +201,50 @@ public class StandardCacheManager extends AbstractCacheManager {
      */
     public static final ICacheEntryValidityChecker<String,Object> DEFAULT_EXPRESSION_CACHE_VALIDITY_CHECKER = null;
 
+
+    
+    /**
+     * Default output cache name: "OUTPUT_CACHE"
+     * 
+     * @since 2.1.5
+     */
+    public static final String DEFAULT_OUTPUT_CACHE_NAME = "OUTPUT_CACHE";
+    
+    /**
+     * Default output cache initial size: 20
+     * 
+     * @since 2.1.5
+     */
+    public static final int DEFAULT_OUTPUT_CACHE_INITIAL_SIZE = 20;
+    
+    /**
+     * Default output cache maximum size: 200
+     * 
+     * @since 2.1.5
+     */
+    public static final int DEFAULT_OUTPUT_CACHE_MAX_SIZE = 200;
+    
+    /**
+     * Default output cache "use soft references" flag: true
+     * 
+     * @since 2.1.5
+     */
+    public static final boolean DEFAULT_OUTPUT_CACHE_USE_SOFT_REFERENCES = true;
+    
+    /**
+     * Default output cache logger name: null (default behaviour = org.thymeleaf.TemplateEngine.cache.OUTPUT_CACHE)
+     * 
+     * @since 2.1.5
+     */
+    public static final String DEFAULT_OUTPUT_CACHE_LOGGER_NAME = null;
+
+    /**
+     * Default output cache validity checker: an instance of {@link StandardOutputCacheEntryValidator}.
+     * 
+     * @since 2.1.5
+     */
+    public static final ICacheEntryValidityChecker<String,OutputCacheEntry> DEFAULT_OUTPUT_CACHE_VALIDITY_CHECKER = new StandardOutputCacheEntryValidator();
+
     
     
     
@@ -232,6 +276,13 @@ public class StandardCacheManager extends AbstractCacheManager {
     private String expressionCacheLoggerName = DEFAULT_EXPRESSION_CACHE_LOGGER_NAME;
     private ICacheEntryValidityChecker<String,Object> expressionCacheValidityChecker = DEFAULT_EXPRESSION_CACHE_VALIDITY_CHECKER;
     
+    private String outputCacheName = DEFAULT_OUTPUT_CACHE_NAME;
+    private int outputCacheInitialSize = DEFAULT_OUTPUT_CACHE_INITIAL_SIZE;
+    private int outputCacheMaxSize = DEFAULT_OUTPUT_CACHE_MAX_SIZE;
+    private boolean outputCacheUseSoftReferences = DEFAULT_OUTPUT_CACHE_USE_SOFT_REFERENCES;
+    private String outputCacheLoggerName = DEFAULT_OUTPUT_CACHE_LOGGER_NAME;
+    private ICacheEntryValidityChecker<String,OutputCacheEntry> outputCacheValidityChecker = DEFAULT_OUTPUT_CACHE_VALIDITY_CHECKER;
+    
     
     
     public StandardCacheManager() {
@@ -289,6 +340,19 @@ protected final ICache<String, Object> initializeExpressionCache() {
                 getExpressionCacheInitialSize(), maxSize, 
                 getExpressionCacheValidityChecker(), getExpressionCacheLogger());
     }
+
+    
+    @Override
+    protected final ICache<String, OutputCacheEntry> initializeOutputCache() {
+        final int maxSize = getOutputCacheMaxSize();
+        if (maxSize == 0) {
+            return null;
+        }
+        return new StandardCache<String, OutputCacheEntry>(
+                getOutputCacheName(), getOutputCacheUseSoftReferences(), 
+                getOutputCacheInitialSize(), maxSize, 
+                getOutputCacheValidityChecker(), getOutputCacheLogger());
+    }
     
     
     
@@ -434,6 +498,42 @@ public final Logger getExpressionCacheLogger() {
 
     
     
+    public String getOutputCacheName() {
+        return this.outputCacheName;
+    }
+    
+    public boolean getOutputCacheUseSoftReferences() {
+        return this.outputCacheUseSoftReferences;
+    }
+    
+    public int getOutputCacheInitialSize() {
+        return this.outputCacheInitialSize;
+    }
+    
+    public int getOutputCacheMaxSize() {
+        return this.outputCacheMaxSize;
+    }
+    
+    public String getOutputCacheLoggerName() {
+        return this.outputCacheLoggerName;
+    }
+    
+    public ICacheEntryValidityChecker<String,OutputCacheEntry> getOutputCacheValidityChecker() {
+        return this.outputCacheValidityChecker;
+    }
+
+    public final Logger getOutputCacheLogger() {
+        final String loggerName = getOutputCacheLoggerName();
+        if (loggerName != null) {
+            return LoggerFactory.getLogger(loggerName);
+        }
+        return LoggerFactory.getLogger(TemplateEngine.class.getName() + ".cache." + getOutputCacheName());
+    }
+
+
+
+    
+    
     public void setTemplateCacheName(final String templateCacheName) {
         this.templateCacheName = templateCacheName;
     }
@@ -536,6 +636,33 @@ public void setExpressionCacheValidityChecker(final ICacheEntryValidityChecker<S
         this.expressionCacheValidityChecker = expressionCacheValidityChecker;
     }
 
+
+    
+    
+    public void setOutputCacheName(final String outputCacheName) {
+        this.outputCacheName = outputCacheName;
+    }
+
+    public void setOutputCacheInitialSize(final int outputCacheInitialSize) {
+        this.outputCacheInitialSize = outputCacheInitialSize;
+    }
+
+    public void setOutputCacheMaxSize(final int outputCacheMaxSize) {
+        this.outputCacheMaxSize = outputCacheMaxSize;
+    }
+
+    public void setOutputCacheUseSoftReferences(final boolean outputCacheUseSoftReferences) {
+        this.outputCacheUseSoftReferences = outputCacheUseSoftReferences;
+    }
+
+    public void setOutputCacheLoggerName(final String outputCacheLoggerName) {
+        this.outputCacheLoggerName = outputCacheLoggerName;
+    }
+    
+    public void setOutputCacheValidityChecker(final ICacheEntryValidityChecker<String, OutputCacheEntry> outputCacheValidityChecker) {
+        this.outputCacheValidityChecker = outputCacheValidityChecker;
+    }
+
     
     
     
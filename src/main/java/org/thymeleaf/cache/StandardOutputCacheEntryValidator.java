@@ -0,0 +1,52 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+
+
+/**
+ * <p>
+ *   Validity checker for the <i>output cache</i>, which considers entries valid until their
+ *   TTL (if any) expires.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class StandardOutputCacheEntryValidator 
+        implements ICacheEntryValidityChecker<String,OutputCacheEntry> {
+    
+    private static final long serialVersionUID = -2261094752836734015L;
+
+    public StandardOutputCacheEntryValidator() {
+        super();
+    }
+
+    public boolean checkIsValueStillValid(
+            final String key, final OutputCacheEntry value, final long entryCreationTimestamp) {
+        if (!value.hasTtl()) {
+            return true;
+        }
+        return System.currentTimeMillis() < entryCreationTimestamp + value.getTtlMs();
+    }
+    
+}
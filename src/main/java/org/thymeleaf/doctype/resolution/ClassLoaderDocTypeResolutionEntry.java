@@ -19,7 +19,10 @@
  */
 package org.thymeleaf.doctype.resolution;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.thymeleaf.doctype.DocTypeIdentifier;
 import org.thymeleaf.util.ClassLoaderUtils;
@@ -28,6 +31,10 @@
 import org.xml.sax.SAXException;
 
 /**
+ * <p>
+ *   DOCTYPE resolution entry which resolves DTDs as class loader resources. As these cannot change,
+ *   their contents are read only once and kept in memory (since 2.1.5).
+ * </p>
  * 
  * @author Daniel Fern&aacute;ndez
  * 
@@ -40,6 +47,8 @@ public final class ClassLoaderDocTypeResolutionEntry implements IDocTypeResoluti
     private final DocTypeIdentifier publicID;
     private final String resourceName;
     
+    private volatile byte[] resourceContents = null;
+    
     
     public ClassLoaderDocTypeResolutionEntry(
             final DocTypeIdentifier publicID, final DocTypeIdentifier systemID, final String resourceName) {
@@ -61,8 +70,36 @@ public DocTypeIdentifier getPublicID() {
     }
 
     public InputSource createInputSource() throws SAXException, IOException {
-        return new InputSource(
-                ClassLoaderUtils.getClassLoader(ClassLoaderDocTypeResolutionEntry.class).getResourceAsStream(this.resourceName));
+        
+        byte[] contents = this.resourceContents;
+        if (contents == null) {
+            
+            final InputStream inputStream =
+                    ClassLoaderUtils.getClassLoader(ClassLoaderDocTypeResolutionEntry.class).getResourceAsStream(this.resourceName);
+            if (inputStream == null) {
+                // Not cached, so that it is looked for again (and the parser reports the error)
+                return new InputSource(inputStream);
+            }
+            
+            try {
+                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
+                contents = outputStream.toByteArray();
+            } finally {
+                inputStream.close();
+            }
+            
+            // No synchronization needed: at worst, the resource is read more than once
+            this.resourceContents = contents;
+            
+        }
+        
+        return new InputSource(new ByteArrayInputStream(contents));
+        
     }
 
 
@@ -19,8 +19,12 @@
  */
 package org.thymeleaf.dom;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import org.thymeleaf.Arguments;
 import org.thymeleaf.Configuration;
+import org.thymeleaf.util.EscapeUtils;
 import org.thymeleaf.util.Validate;
 import org.unbescape.html.HtmlEscape;
 
@@ -103,6 +107,25 @@ public String getEscapedContent() {
     }
 
 
+    /**
+     * <p>
+     *   Writes the escaped content of this node directly into the specified writer, without
+     *   creating an intermediate escaped String.
+     * </p>
+     *
+     * @param writer the writer the escaped content will be written to.
+     * @throws IOException if writing fails.
+     * @since 2.1.5
+     */
+    public void writeEscapedContent(final Writer writer) throws IOException {
+        if (this.contentIsEscaped) {
+            writer.write(this.content);
+            return;
+        }
+        EscapeUtils.escapeHtml4Xml(this.content, writer);
+    }
+
+
     /**
      * <p>
      *   Returns the original content of this node (escaped or not), as a String.
@@ -160,7 +183,7 @@ final void doAdditionalProcessableComputing(final boolean processable) {
     
     
     @Override
-    final void doAdditionalPrecomputeNode(final Configuration configuration) {
+    void doAdditionalPrecomputeNode(final Configuration configuration) {
         // Nothing to be done here!
     }
 
@@ -19,9 +19,12 @@
  */
 package org.thymeleaf.dom;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.Writer;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.thymeleaf.util.EscapeUtils;
 import org.thymeleaf.util.StringUtils;
 import org.thymeleaf.util.Validate;
 import org.unbescape.html.HtmlEscape;
@@ -57,6 +60,9 @@ public final class Attribute implements Serializable {
     private final boolean valueIsEscaped;
     private final String value;
 
+    // @since 2.1.5 - Not serialized: values can always be computed again
+    private transient volatile ConcurrentHashMap<String,Object> computedValues;
+
 
     public Attribute(final String name, final boolean onlyName, final String value) {
         this(name, onlyName, value, false);
@@ -256,6 +262,29 @@ public String getEscapedValue() {
 
 
 
+    /**
+     * <p>
+     *   Writes the escaped value of the attribute directly into the specified writer, without
+     *   creating an intermediate escaped String. Nothing is written if the attribute has no value.
+     * </p>
+     *
+     * @param writer the writer the escaped value will be written to.
+     * @throws IOException if writing fails.
+     * @since 2.1.5
+     */
+    public void writeEscapedValue(final Writer writer) throws IOException {
+        if (this.value == null) {
+            return;
+        }
+        if (this.valueIsEscaped) {
+            writer.write(this.value);
+            return;
+        }
+        EscapeUtils.escapeHtml4Xml(this.value, writer);
+    }
+
+
+
     /**
      * <p>
      *   Returns the original value (escaped or not) of the attribute.
@@ -308,6 +337,57 @@ public String getXmlnsPrefix() {
 
 
 
+    /**
+     * <p>
+     *   Returns a value computed from this attribute (for example, by a processor) and stored with
+     *   {@link #setComputedValue(String, Object)}, or null if no value has been stored for the
+     *   specified key.
+     * </p>
+     * <p>
+     *   Attribute objects are immutable and shared between nodes and their clones (for example,
+     *   between a cached template and the duplicates created from it for processing), so computed
+     *   values will also be shared by all of these, and discarded when the attribute's value is
+     *   modified (which creates a new Attribute object). Computed values must therefore depend only
+     *   on the attribute itself and on the key they are stored under.
+     * </p>
+     *
+     * @param key the key of the computed value.
+     * @return the computed value, or null if there is none.
+     * @since 2.1.5
+     */
+    public Object getComputedValue(final String key) {
+        final ConcurrentHashMap<String,Object> values = this.computedValues;
+        return (values == null? null : values.get(key));
+    }
+
+
+    /**
+     * <p>
+     *   Stores a value computed from this attribute (see {@link #getComputedValue(String)}).
+     * </p>
+     *
+     * @param key the key of the computed value.
+     * @param value the computed value (cannot be null).
+     * @since 2.1.5
+     */
+    public void setComputedValue(final String key, final Object value) {
+        Validate.notNull(key, "Key cannot be null");
+        Validate.notNull(value, "Computed value cannot be null");
+        ConcurrentHashMap<String,Object> values = this.computedValues;
+        if (values == null) {
+            synchronized (this) {
+                values = this.computedValues;
+                if (values == null) {
+                    values = new ConcurrentHashMap<String, Object>(2, 0.75f, 2);
+                    this.computedValues = values;
+                }
+            }
+        }
+        values.put(key, value);
+    }
+
+
+
     Attribute cloneForValue(final boolean onlyName, final String value, final boolean valueIsEscaped) {
         return new Attribute(
                 this.originalName, this.normalizedName,
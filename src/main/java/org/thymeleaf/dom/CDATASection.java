@@ -128,7 +128,7 @@ public void visit(final DOMVisitor visitor) {
     
     @Override
     Node createClonedInstance(final NestableNode newParent, final boolean cloneProcessors) {
-        return new CDATASection(this.content, this.getDocumentName(), this.getLineNumber(), this.contentIsEscaped);
+        return new CDATASection(this.content, this.getDocumentName(), null, this.contentIsEscaped);
     }
     
 
@@ -22,12 +22,16 @@
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.util.DOMUtils;
 import org.thymeleaf.util.StringUtils;
 import org.thymeleaf.util.Validate;
 
@@ -119,6 +123,12 @@
  *   </li>
  * </ul>
  * <p>
+ *   When executed on a whole document that has been indexed (see {@link Document#buildFragmentIndex(java.util.Set)}),
+ *   single-level <tt>//</tt> selectors with an element name, id, class or reference (the latter only when the
+ *   reference checker implements {@link IIndexableNodeReferenceChecker}) are resolved by means of lookups in
+ *   the document's indexes instead of traversing the whole DOM tree.
+ * </p>
+ * <p>
  *   Objects of this class are <b>thread-safe</b>.
  * </p>
  *
@@ -158,6 +168,11 @@ public final class DOMSelector implements Serializable {
 
     private final DOMSelector next;
 
+    // Computed at construction for resolving the selector from document indexes, if possible
+    private boolean indexable = false;
+    private String indexedIdValue = null;
+    private String indexedClassValue = null;
+
 
 
     /**
@@ -383,6 +398,31 @@ private DOMSelector(final String selectorExpression, final boolean atRootLevel)
             }
             
         }
+
+
+        /*
+         * Determine whether this selector can be resolved from document indexes: only single-level, descend-any-levels
+         * selectors without indexes can, because their result is simply the outermost matching nodes in document order.
+         */
+
+        this.indexable = this.descendMoreThanOneLevel && this.next == null && this.index == null && !this.text;
+        if (this.indexable) {
+            this.indexedIdValue = this.selectorPathIdModifier;
+            this.indexedClassValue = this.selectorPathClassModifier;
+            if (this.attributes != null) {
+                for (final AttributeCondition attributeCondition : this.attributes) {
+                    if (attributeCondition.getOperator() != AttributeCondition.Operator.EQUALS ||
+                            attributeCondition.getValue() == null) {
+                        continue;
+                    }
+                    if (this.indexedIdValue == null && ID_ATTRIBUTE_NAME.equals(attributeCondition.getName())) {
+                        this.indexedIdValue = attributeCondition.getValue();
+                    } else if (this.indexedClassValue == null && CLASS_ATTRIBUTE_NAME.equals(attributeCondition.getName())) {
+                        this.indexedClassValue = attributeCondition.getValue();
+                    }
+                }
+            }
+        }
         
     }
     
@@ -544,6 +584,16 @@ public List<Node> select(final List<Node> nodes, final INodeReferenceChecker ref
 
         Validate.notEmpty(nodes, "Nodes to be searched cannot be null or empty");
 
+        if (this.indexable) {
+            final Document indexedDocument = DOMUtils.getIndexedDocument(nodes);
+            if (indexedDocument != null) {
+                final List<Node> selected = selectFromIndexes(indexedDocument, referenceChecker);
+                if (selected != null) {
+                    return selected;
+                }
+            }
+        }
+
         if (nodes.size() == 1 && nodes.get(0) instanceof Document) {
             final List<Node> selected = new ArrayList<Node>(10);
             for (final Node node : nodes) {
@@ -592,6 +642,98 @@ public List<Node> select(final List<Node> nodes, final INodeReferenceChecker ref
 
 
     
+    /*
+     * Returns null if indexes cannot be used for this selector/document/reference checker.
+     */
+    private List<Node> selectFromIndexes(final Document document, final INodeReferenceChecker referenceChecker) {
+
+        final DocumentElementIndex elementIndex = document.getElementIndex();
+        if (elementIndex == null) {
+            return null;
+        }
+
+        final List<Node> candidates = new ArrayList<Node>(10);
+        if (this.indexedIdValue != null) {
+            candidates.addAll(elementIndex.getElementsById(this.indexedIdValue));
+        } else if (this.indexedClassValue != null) {
+            candidates.addAll(elementIndex.getElementsByClass(this.indexedClassValue));
+        } else if (this.selectorPathReferenceModifier != null) {
+            if (referenceChecker != null) {
+                if (!(referenceChecker instanceof IIndexableNodeReferenceChecker)) {
+                    return null;
+                }
+                final List<Node> referenceCandidates =
+                        ((IIndexableNodeReferenceChecker)referenceChecker).getReferenceCandidates(
+                                document, this.selectorPathReferenceModifier);
+                if (referenceCandidates == null) {
+                    return null;
+                }
+                candidates.addAll(referenceCandidates);
+            } // Without a reference checker, references never match
+        } else if (!StringUtils.isEmptyOrWhitespace(this.selectorPath)) {
+            candidates.addAll(elementIndex.getElementsByName(this.normalizedSelectorPath));
+            if (referenceChecker != null) {
+                // Element names can also be used as references
+                if (!(referenceChecker instanceof IIndexableNodeReferenceChecker)) {
+                    return null;
+                }
+                final List<Node> referenceCandidates =
+                        ((IIndexableNodeReferenceChecker)referenceChecker).getReferenceCandidates(
+                                document, this.selectorPath);
+                if (referenceCandidates == null) {
+                    return null;
+                }
+                candidates.addAll(referenceCandidates);
+            }
+        } else {
+            // Any element might match, so there is no index to use
+            return null;
+        }
+
+        if (candidates.size() > 1) {
+            Collections.sort(candidates, new Comparator<Node>() {
+                public int compare(final Node o1, final Node o2) {
+                    final int p1 = elementIndex.getPosition(o1);
+                    final int p2 = elementIndex.getPosition(o2);
+                    return (p1 < p2? -1 : (p1 == p2? 0 : 1));
+                }
+            });
+        }
+
+        final List<Node> selectedNodes = new ArrayList<Node>(candidates.size());
+        final Map<Node,Node> selectedNodesSet = new IdentityHashMap<Node, Node>(candidates.size() + 1);
+        Node previousCandidate = null;
+        for (final Node candidate : candidates) {
+
+            // Discard duplicates (they will be contiguous after sorting) and nodes not matching the selector
+            if (candidate == previousCandidate) {
+                continue;
+            }
+            previousCandidate = candidate;
+            if (!doCheckSpecificNodeSelection(candidate, referenceChecker)) {
+                continue;
+            }
+
+            // Nodes nested inside an already selected node are never selected by themselves
+            boolean nested = false;
+            NestableNode ancestor = candidate.getParent();
+            while (ancestor != null && !nested) {
+                nested = selectedNodesSet.containsKey(ancestor);
+                ancestor = ancestor.getParent();
+            }
+            if (!nested) {
+                selectedNodes.add(candidate);
+                selectedNodesSet.put(candidate, candidate);
+            }
+
+        }
+        return selectedNodes;
+
+    }
+
+
+
+    
     private boolean checkChildrenSelection(final List<Node> selectedNodes,
             final Node node, final INodeReferenceChecker referenceChecker) {
         // will return true if any nodes are added to selectedNodes
@@ -1027,6 +1169,39 @@ public static interface INodeReferenceChecker {
     }
 
 
+    /**
+     * <p>
+     *     Extension of {@link INodeReferenceChecker} for reference checkers able to compute, from the
+     *     indexes of a document, which of its nodes might match a reference.
+     * </p>
+     * <p>
+     *     When DOM selectors using references are executed on indexed documents, this allows them to avoid
+     *     traversing the whole DOM tree.
+     * </p>
+     *
+     * @author Daniel Fern&aacute;ndez
+     *
+     * @since 2.1.5
+     */
+    public static interface IIndexableNodeReferenceChecker extends INodeReferenceChecker {
+
+        /**
+         * <p>
+         *     Returns the nodes of the document that might match the specified reference value. All nodes
+         *     actually matching the reference must be included, though the returned list might also contain
+         *     nodes that do not match (all of them will be checked with
+         *     {@link #checkReference(Node, String)} afterwards).
+         * </p>
+         *
+         * @param document the (indexed) document.
+         * @param referenceValue the reference value.
+         * @return the candidate nodes, or null if they cannot be computed from the document's indexes.
+         */
+        public List<Node> getReferenceCandidates(final Document document, final String referenceValue);
+
+    }
+
+
     /**
      * <p>
      *     Common abstract implementation of {@link INodeReferenceChecker}.
@@ -1058,7 +1233,8 @@ protected AbstractNodeReferenceChecker() {
      *
      * @since 2.1.0
      */
-    public static final class AggregatingNodeReferenceChecker extends AbstractNodeReferenceChecker {
+    public static final class AggregatingNodeReferenceChecker 
+            extends AbstractNodeReferenceChecker implements IIndexableNodeReferenceChecker {
 
         private final INodeReferenceChecker one;
         private final INodeReferenceChecker two;
@@ -1078,6 +1254,24 @@ public boolean checkReference(final Node node, final String referenceValue) {
             return this.two.checkReference(node, referenceValue);
         }
 
+        public List<Node> getReferenceCandidates(final Document document, final String referenceValue) {
+            if (!(this.one instanceof IIndexableNodeReferenceChecker) ||
+                    !(this.two instanceof IIndexableNodeReferenceChecker)) {
+                return null;
+            }
+            final List<Node> candidatesOne =
+                    ((IIndexableNodeReferenceChecker)this.one).getReferenceCandidates(document, referenceValue);
+            final List<Node> candidatesTwo =
+                    ((IIndexableNodeReferenceChecker)this.two).getReferenceCandidates(document, referenceValue);
+            if (candidatesOne == null || candidatesTwo == null) {
+                return null;
+            }
+            final List<Node> candidates = new ArrayList<Node>(candidatesOne.size() + candidatesTwo.size());
+            candidates.addAll(candidatesOne);
+            candidates.addAll(candidatesTwo);
+            return candidates;
+        }
+
     }
 
 }
\ No newline at end of file
@@ -19,6 +19,10 @@
  */
 package org.thymeleaf.dom;
 
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.thymeleaf.Arguments;
 import org.thymeleaf.Configuration;
 import org.thymeleaf.util.Validate;
@@ -40,6 +44,13 @@ public final class Document extends NestableNode {
     
     private DocType docType;
     
+    // Only built on request for documents which will not be modified anymore. Never cloned.
+    private transient volatile DocumentFragmentIndex fragmentIndex = null;
+    // Lazily built (only if a fragment index exists) when first needed by a DOM selector. Never cloned.
+    private transient volatile DocumentElementIndex elementIndex = null;
+    // Created when first needed, and shared with all clones. Never serialized.
+    private transient volatile ConcurrentHashMap<Object,Object> computedValues = null;
+    
     
     
     public Document() {
@@ -96,6 +107,142 @@ public void process(final Arguments arguments) {
     
     
     
+    /**
+     * <p>
+     *   Builds an index of the nodes in this document that contain any of the specified
+     *   (fragment-defining) attributes, so that fragment lookups by attribute value can be
+     *   performed without traversing the whole DOM tree.
+     * </p>
+     * <p>
+     *   <b>This index is not updated when the DOM tree changes</b>, so this method should only
+     *   be called on documents that are not going to be modified anymore (e.g. cached templates).
+     *   Cloned documents never inherit the index.
+     * </p>
+     * <p>
+     *   Documents with a fragment index are also considered eligible for the (lazily built) indexes
+     *   by element name, <tt>id</tt> and <tt>class</tt> used by {@link DOMSelector}.
+     * </p>
+     * 
+     * @param normalizedAttributeNames the (normalized) names of the attributes to be indexed.
+     * @since 2.1.5
+     */
+    public void buildFragmentIndex(final Set<String> normalizedAttributeNames) {
+        Validate.notNull(normalizedAttributeNames, "Attribute names cannot be null");
+        this.fragmentIndex = new DocumentFragmentIndex(this, normalizedAttributeNames);
+    }
+    
+    
+    /**
+     * <p>
+     *   Returns whether a fragment index has been built for this document.
+     * </p>
+     * 
+     * @return true if the document has a fragment index, false if not.
+     * @since 2.1.5
+     */
+    public boolean hasFragmentIndex() {
+        return this.fragmentIndex != null;
+    }
+    
+    
+    /**
+     * <p>
+     *   Returns the indexed nodes (in document order) which contain the specified attribute with a
+     *   value defining the same fragment name as the specified value, i.e. being equal once trimmed and
+     *   removed any parameter specifications (<tt>"footer(a,b)"</tt> defines fragment <tt>"footer"</tt>).
+     *   Callers needing exact value matching should check returned nodes.
+     * </p>
+     * 
+     * @param normalizedAttributeName the (normalized) name of the attribute.
+     * @param attributeValue the attribute value to look for.
+     * @return the candidate nodes, or null if there is no index or the attribute has not been indexed.
+     * @since 2.1.5
+     */
+    public List<NestableAttributeHolderNode> getFragmentIndexCandidates(
+            final String normalizedAttributeName, final String attributeValue) {
+        final DocumentFragmentIndex index = this.fragmentIndex;
+        if (index == null || normalizedAttributeName == null || attributeValue == null) {
+            return null;
+        }
+        return index.getCandidates(normalizedAttributeName, attributeValue);
+    }
+
+    
+    /*
+     * Returns null if this document is not eligible for indexing (i.e. has no fragment index)
+     */
+    DocumentElementIndex getElementIndex() {
+        if (this.fragmentIndex == null) {
+            return null;
+        }
+        DocumentElementIndex index = this.elementIndex;
+        if (index == null) {
+            // Concurrent first calls might build it more than once, which is harmless
+            index = new DocumentElementIndex(this);
+            this.elementIndex = index;
+        }
+        return index;
+    }
+    
+    
+    
+    
+    /**
+     * <p>
+     *   Returns a value computed from an immutable part of this document (for example, the content
+     *   of one of its text nodes) and stored with {@link #setComputedValue(Object, Object)}, or 
+     *   null if no value has been stored for the specified key.
+     * </p>
+     * <p>
+     *   Computed values are shared between a document and all its clones (for example, between a
+     *   cached template and all the duplicates created from it for processing), so they must
+     *   depend only on the key they are stored under and never on the state of the DOM tree.
+     * </p>
+     * 
+     * @param key the key of the computed value.
+     * @return the computed value, or null if there is none.
+     * @since 2.1.5
+     */
+    public Object getComputedValue(final Object key) {
+        final ConcurrentHashMap<Object,Object> values = this.computedValues;
+        return (values == null? null : values.get(key));
+    }
+    
+    
+    /**
+     * <p>
+     *   Stores a value computed from an immutable part of this document (see 
+     *   {@link #getComputedValue(Object)}).
+     * </p>
+     * 
+     * @param key the key of the computed value.
+     * @param value the computed value (cannot be null).
+     * @since 2.1.5
+     */
+    public void setComputedValue(final Object key, final Object value) {
+        Validate.notNull(key, "Key cannot be null");
+        Validate.notNull(value, "Computed value cannot be null");
+        getOrCreateComputedValues().put(key, value);
+    }
+    
+    
+    private ConcurrentHashMap<Object,Object> getOrCreateComputedValues() {
+        ConcurrentHashMap<Object,Object> values = this.computedValues;
+        if (values == null) {
+            synchronized (this) {
+                values = this.computedValues;
+                if (values == null) {
+                    values = new ConcurrentHashMap<Object,Object>(16, 0.75f, 2);
+                    this.computedValues = values;
+                }
+            }
+        }
+        return values;
+    }
+    
+    
+    
+    
     public Document clone(final boolean cloneProcessors) {
         return (Document) cloneNode(null, cloneProcessors);
     }
@@ -111,7 +258,7 @@ Node createClonedInstance(final NestableNode newParent, final boolean cloneProce
     
     @Override
     void doCloneNestableNodeInternals(final NestableNode node, final NestableNode newParent, final boolean cloneProcessors) {
-        // Nothing to be done here
+        ((Document)node).computedValues = getOrCreateComputedValues();
     }
     
     
@@ -0,0 +1,145 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+
+
+/*
+ * Index of the elements in a document by normalized name, id and class, used by DOM selectors
+ * for avoiding full traversals. Also keeps the position of each element in document order, so that
+ * candidates coming from different sources can be sorted.
+ *
+ * Built lazily (once) on documents that are not going to be modified anymore (e.g. cached templates).
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.1.5
+ */
+final class DocumentElementIndex {
+
+    private static final String ID_ATTRIBUTE_NAME = "id";
+    private static final String CLASS_ATTRIBUTE_NAME = "class";
+
+    private final Map<String,List<Element>> elementsByName = new HashMap<String, List<Element>>(32);
+    private final Map<String,List<Element>> elementsById = new HashMap<String, List<Element>>(16);
+    private final Map<String,List<Element>> elementsByClass = new HashMap<String, List<Element>>(16);
+    private final Map<Node,Integer> positions = new IdentityHashMap<Node, Integer>(64);
+
+
+
+    DocumentElementIndex(final Document document) {
+        super();
+        indexNode(document);
+    }
+
+
+
+    private void indexNode(final NestableNode node) {
+
+        if (node instanceof Element) {
+
+            final Element element = (Element) node;
+            this.positions.put(element, Integer.valueOf(this.positions.size()));
+
+            addToIndex(this.elementsByName, element.getNormalizedName(), element);
+
+            if (element.hasAttributes()) {
+                final String id = element.getAttributeValueFromNormalizedName(ID_ATTRIBUTE_NAME);
+                if (id != null) {
+                    addToIndex(this.elementsById, id, element);
+                }
+                final String classes = element.getAttributeValueFromNormalizedName(CLASS_ATTRIBUTE_NAME);
+                if (classes != null) {
+                    // Same tokenization as applied by DOMSelector for multivalued attributes
+                    final StringTokenizer classesTokenizer = new StringTokenizer(classes, ", ");
+                    while (classesTokenizer.hasMoreTokens()) {
+                        addToIndex(this.elementsByClass, classesTokenizer.nextToken(), element);
+                    }
+                }
+            }
+
+        }
+
+        final Node[] children = node.unsafeGetChildrenNodeArray();
+        final int childrenLen = node.numChildren();
+        for (int i = 0; i < childrenLen; i++) {
+            if (children[i] instanceof NestableNode) {
+                indexNode((NestableNode) children[i]);
+            }
+        }
+
+    }
+
+
+    private static void addToIndex(final Map<String,List<Element>> index, final String key, final Element element) {
+        List<Element> elements = index.get(key);
+        if (elements == null) {
+            elements = new ArrayList<Element>(2);
+            index.put(key, elements);
+        }
+        // Avoid adding the same element twice (e.g. class="a a")
+        if (elements.isEmpty() || elements.get(elements.size() - 1) != element) {
+            elements.add(element);
+        }
+    }
+
+
+
+    List<Element> getElementsByName(final String normalizedElementName) {
+        return getFromIndex(this.elementsByName, normalizedElementName);
+    }
+
+    List<Element> getElementsById(final String id) {
+        return getFromIndex(this.elementsById, id);
+    }
+
+    List<Element> getElementsByClass(final String className) {
+        return getFromIndex(this.elementsByClass, className);
+    }
+
+
+    private static List<Element> getFromIndex(final Map<String,List<Element>> index, final String key) {
+        final List<Element> elements = index.get(key);
+        if (elements == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(elements);
+    }
+
+
+
+    /*
+     * Returns -1 if the node is not an indexed element of this document.
+     */
+    int getPosition(final Node node) {
+        final Integer position = this.positions.get(node);
+        return (position == null? -1 : position.intValue());
+    }
+
+
+}
@@ -0,0 +1,123 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.dom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+
+/*
+ * Index of the nodes in a document containing any of a set of (fragment-defining)
+ * attributes, by attribute name and fragment name. Built once on documents that are
+ * not going to be modified anymore (e.g. cached templates).
+ *
+ * Fragment names are computed from attribute values by trimming them and removing
+ * any parameter specification (e.g. "footer (a,b)" -> "footer"), so the candidates
+ * returned for a value might need further checking by the caller.
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.1.5
+ */
+final class DocumentFragmentIndex {
+
+    private final Map<String,Map<String,List<NestableAttributeHolderNode>>> nodesByAttributeName;
+
+
+
+    DocumentFragmentIndex(final Document document, final Set<String> normalizedAttributeNames) {
+        super();
+        this.nodesByAttributeName =
+                new HashMap<String, Map<String, List<NestableAttributeHolderNode>>>(normalizedAttributeNames.size() + 1, 1.0f);
+        for (final String normalizedAttributeName : normalizedAttributeNames) {
+            this.nodesByAttributeName.put(
+                    normalizedAttributeName, new HashMap<String, List<NestableAttributeHolderNode>>(8));
+        }
+        indexNode(document);
+    }
+
+
+
+    private void indexNode(final NestableNode node) {
+
+        if (node instanceof NestableAttributeHolderNode) {
+            final NestableAttributeHolderNode attributeHolderNode = (NestableAttributeHolderNode) node;
+            if (attributeHolderNode.hasAttributes()) {
+                for (final Map.Entry<String,Map<String,List<NestableAttributeHolderNode>>> entry :
+                            this.nodesByAttributeName.entrySet()) {
+                    final String attributeValue = attributeHolderNode.getAttributeValueFromNormalizedName(entry.getKey());
+                    if (attributeValue != null) {
+                        final String fragmentName = computeFragmentName(attributeValue);
+                        List<NestableAttributeHolderNode> nodes = entry.getValue().get(fragmentName);
+                        if (nodes == null) {
+                            nodes = new ArrayList<NestableAttributeHolderNode>(2);
+                            entry.getValue().put(fragmentName, nodes);
+                        }
+                        nodes.add(attributeHolderNode);
+                    }
+                }
+            }
+        }
+
+        final Node[] children = node.unsafeGetChildrenNodeArray();
+        final int childrenLen = node.numChildren();
+        for (int i = 0; i < childrenLen; i++) {
+            if (children[i] instanceof NestableNode) {
+                indexNode((NestableNode) children[i]);
+            }
+        }
+
+    }
+
+
+
+    /*
+     * Returns null if the attribute has not been indexed. Nodes are returned in document order.
+     */
+    List<NestableAttributeHolderNode> getCandidates(final String normalizedAttributeName, final String attributeValue) {
+        final Map<String,List<NestableAttributeHolderNode>> nodesByFragmentName =
+                this.nodesByAttributeName.get(normalizedAttributeName);
+        if (nodesByFragmentName == null) {
+            return null;
+        }
+        final List<NestableAttributeHolderNode> nodes = nodesByFragmentName.get(computeFragmentName(attributeValue));
+        if (nodes == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(nodes);
+    }
+
+
+
+    static String computeFragmentName(final String attributeValue) {
+        final int parametersStart = attributeValue.lastIndexOf('(');
+        if (parametersStart < 0) {
+            return attributeValue.trim();
+        }
+        return attributeValue.substring(0, parametersStart).trim();
+    }
+
+
+}
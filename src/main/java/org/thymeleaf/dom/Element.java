@@ -79,6 +79,7 @@ public static enum RepresentationInTemplate {STANDALONE, OPEN_AND_CLOSE_NONEMPTY
     private final String normalizedName;
 
     private final boolean minimizableIfWeb;
+    private final boolean whitespaceSensitiveIfWeb;
     
     private RepresentationInTemplate representationInTemplate;
 
@@ -121,6 +122,8 @@ public Element(final String name, final String documentName, final Integer lineN
 
         this.minimizableIfWeb = 
                 Arrays.binarySearch(Standards.MINIMIZABLE_XHTML_TAGS, this.normalizedName) >= 0;
+        this.whitespaceSensitiveIfWeb =
+                Arrays.binarySearch(Standards.WHITESPACE_SENSITIVE_XHTML_TAGS, this.normalizedName) >= 0;
 
         this.representationInTemplate = representationInTemplate;
                 
@@ -259,6 +262,21 @@ public boolean isMinimizableIfWeb() {
     }
     
     
+    /**
+     * <p>
+     *   Returns whether whitespace is significant inside this element when performing
+     *   XHTML or HTML5 output (e.g. <tt>&lt;pre&gt;</tt> or <tt>&lt;textarea&gt;</tt>), and
+     *   therefore its contents should never be whitespace-minimized.
+     * </p>
+     * 
+     * @return true if whitespace is significant inside the element in web-output scenarios, false if not.
+     * @since 2.1.5
+     */
+    public boolean isWhitespaceSensitiveIfWeb() {
+        return this.whitespaceSensitiveIfWeb;
+    }
+    
+    
     
     
     /**
@@ -367,7 +385,7 @@ public Element cloneElementNodeWithNewName(final NestableNode newParent, final S
 
     @Override
     Node createClonedInstance(final NestableNode newParent, final boolean cloneProcessors) {
-        return new Element(this.originalName, getDocumentName(), getLineNumber(), this.representationInTemplate);
+        return new Element(this.originalName, getDocumentName(), null, this.representationInTemplate);
     }
     
 
@@ -103,7 +103,7 @@ public GroupNode cloneElementNodeWithNewName(final NestableNode newParent, final
 
     @Override
     Node createClonedInstance(final NestableNode newParent, final boolean cloneProcessors) {
-        return new GroupNode(getDocumentName(), getLineNumber());
+        return new GroupNode(getDocumentName(), null);
     }
     
 
@@ -41,11 +41,14 @@
  */
 public abstract class NestableAttributeHolderNode extends NestableNode {
 
-    private static final long serialVersionUID = -292925657016881649L;
+    private static final long serialVersionUID = -6718904275629373718L;
 
     private static final int DEFAULT_ATTRIBUTES_SIZE = 4;
     
-    private String[] attributeNormalizedNames = null;
+    /*
+     * Normalized names are not kept in a separate array, but obtained from the Attribute
+     * objects themselves, so that no additional array is needed per element.
+     */
     private Attribute[] attributes = null;
     private int attributesLen = 0;
 
@@ -105,7 +108,7 @@ public final boolean hasAttribute(final String attributeName) {
         if (this.attributesLen > 0) {
             final String normalizedAttributeName = Attribute.normalizeAttributeName(attributeName);
             for (int i = 0; i < this.attributesLen; i++) {
-                if (this.attributeNormalizedNames[i].equals(normalizedAttributeName)) {
+                if (this.attributes[i].getNormalizedName().equals(normalizedAttributeName)) {
                     return true;
                 }
             }
@@ -126,7 +129,7 @@ public final boolean hasAttribute(final String attributeName) {
      */
     public final boolean hasNormalizedAttribute(final String normalizedAttributeName) {
         for (int i = 0; i < this.attributesLen; i++) {
-            if (this.attributeNormalizedNames[i].equals(normalizedAttributeName)) {
+            if (this.attributes[i].getNormalizedName().equals(normalizedAttributeName)) {
                 return true;
             }
         }
@@ -170,7 +173,7 @@ public final boolean hasNormalizedAttribute(final String dialectPrefix, final St
      */
     public final Attribute getAttributeFromNormalizedName(final String normalizedAttributeName) {
         for (int i = 0; i < this.attributesLen; i++) {
-            if (this.attributeNormalizedNames[i].equals(normalizedAttributeName)) {
+            if (this.attributes[i].getNormalizedName().equals(normalizedAttributeName)) {
                 return this.attributes[i];
             }
         }
@@ -180,16 +183,27 @@ public final Attribute getAttributeFromNormalizedName(final String normalizedAtt
 
     /**
      * <p>
-     *   Returns the inner array used for storing the normalized names of all the
-     *   existing attributes. This method is unsafe and for internal use, and should
-     *   not be called directly. Modifications to this array could produce severe
-     *   DOM inconsistencies.
+     *   Returns an array containing the normalized names of all the existing attributes.
+     * </p>
+     * <p>
+     *   Since 2.1.5, normalized names are no longer stored in an inner array, and this method
+     *   creates a new array with each call. Use {@link #unsafeGetAttributes()} and 
+     *   {@link Attribute#getNormalizedName()} instead.
      * </p>
      * 
-     * @return the unsafe array of normalized names.
+     * @return the array of normalized names.
+     * @deprecated Deprecated in 2.1.5. Use {@link #unsafeGetAttributes()} instead.
      */
+    @Deprecated
     public final String[] unsafeGetAttributeNormalizedNames() {
-        return this.attributeNormalizedNames;
+        if (this.attributes == null) {
+            return null;
+        }
+        final String[] attributeNormalizedNames = new String[this.attributes.length];
+        for (int i = 0; i < this.attributesLen; i++) {
+            attributeNormalizedNames[i] = this.attributes[i].getNormalizedName();
+        }
+        return attributeNormalizedNames;
     }
 
     /**
@@ -216,7 +230,7 @@ public final Attribute[] unsafeGetAttributes() {
      */
     public final String getAttributeOriginalNameFromNormalizedName(final String normalizedAttributeName) {
         for (int i = 0; i < this.attributesLen; i++) {
-            if (this.attributeNormalizedNames[i].equals(normalizedAttributeName)) {
+            if (this.attributes[i].getNormalizedName().equals(normalizedAttributeName)) {
                 return this.attributes[i].getOriginalName();
             }
         }
@@ -234,7 +248,7 @@ public final String getAttributeOriginalNameFromNormalizedName(final String norm
      */
     public final String getAttributeValueFromNormalizedName(final String normalizedAttributeName) {
         for (int i = 0; i < this.attributesLen; i++) {
-            if (this.attributeNormalizedNames[i].equals(normalizedAttributeName)) {
+            if (this.attributes[i].getNormalizedName().equals(normalizedAttributeName)) {
                 return this.attributes[i].getValue();
             }
         }
@@ -258,7 +272,7 @@ public final String getAttributeValueFromNormalizedName(final String dialectPref
                 Attribute.applyPrefixToAttributeName(normalizedAttributeName, dialectPrefix);
         for (int i = 0; i < this.attributesLen; i++) {
             for (final String prefixedAttributeName : prefixedAttributeNames) {
-                if (this.attributeNormalizedNames[i].equals(prefixedAttributeName)) {
+                if (this.attributes[i].getNormalizedName().equals(prefixedAttributeName)) {
                     return this.attributes[i].getValue();
                 }
             }
@@ -281,7 +295,7 @@ public final String getAttributeValue(final String attributeName) {
         if (this.attributesLen > 0) {
             final String normalizedAttributeName = Attribute.normalizeAttributeName(attributeName);
             for (int i = 0; i < this.attributesLen; i++) {
-                if (this.attributeNormalizedNames[i].equals(normalizedAttributeName)) {
+                if (this.attributes[i].getNormalizedName().equals(normalizedAttributeName)) {
                     return this.attributes[i].getValue();
                 }
             }
@@ -305,7 +319,7 @@ public final Map<String,Attribute> getAttributeMap() {
         if (this.attributesLen > 0) {
             final Map<String,Attribute> attributeMap = new LinkedHashMap<String, Attribute>(this.attributesLen + 1, 1.0f);
             for (int i = 0; i < this.attributesLen; i++) {
-                attributeMap.put(this.attributeNormalizedNames[i], this.attributes[i]);
+                attributeMap.put(this.attributes[i].getNormalizedName(), this.attributes[i]);
             }
             return attributeMap;
         }
@@ -366,7 +380,7 @@ public final void setAttribute(final String name, final boolean onlyName, final
         if (this.attributesLen > 0) {
             for (int i = 0; i < this.attributesLen; i++) {
                 // First, we will check if attribute already exists
-                if (this.attributeNormalizedNames[i].equals(attributeNormalizedName)) {
+                if (this.attributes[i].getNormalizedName().equals(attributeNormalizedName)) {
                     this.attributes[i] = this.attributes[i].cloneForValue(onlyName, value, valueIsEscaped);
                     return;
                 }
@@ -378,10 +392,7 @@ public final void setAttribute(final String name, final boolean onlyName, final
 
         if (this.attributesLen == 0) {
             
-            this.attributeNormalizedNames = new String[DEFAULT_ATTRIBUTES_SIZE];
             this.attributes = new Attribute[DEFAULT_ATTRIBUTES_SIZE];
-            
-            this.attributeNormalizedNames[0] = attributeNormalizedName;
             this.attributes[0] = attribute;
             
             this.attributesLen = 1;
@@ -391,14 +402,9 @@ public final void setAttribute(final String name, final boolean onlyName, final
         }
 
         if (this.attributesLen >= this.attributes.length) {
-            final int newLength = this.attributesLen * 2;
-            final String[] newAttributeNormalizedNames = ArrayUtils.copyOf(this.attributeNormalizedNames, newLength);
-            final Attribute[] newAttributes = ArrayUtils.copyOf(this.attributes, newLength);
-            this.attributeNormalizedNames = newAttributeNormalizedNames;
-            this.attributes = newAttributes;
+            this.attributes = ArrayUtils.copyOf(this.attributes, this.attributesLen * 2);
         }
         
-        this.attributeNormalizedNames[this.attributesLen] = attributeNormalizedName;
         this.attributes[this.attributesLen] = attribute;
         this.attributesLen++;
         
@@ -432,7 +438,6 @@ public final void setAttributes(final Map<String,String> newAttributes) {
      * </p> 
      */
     public final void clearAttributes() {
-        this.attributeNormalizedNames = null;
         this.attributes = null;
         this.attributesLen = 0;
     }
@@ -459,12 +464,12 @@ public final void removeAttribute(final String attributeName) {
             
             for (int i = 0; i < this.attributesLen; i++) {
                 
-                if (this.attributeNormalizedNames[i].equals(normalizedAttributeName)) {
+                if (this.attributes[i].getNormalizedName().equals(normalizedAttributeName)) {
                     for (int j = i + 1; j < this.attributesLen; j++) {
-                        this.attributeNormalizedNames[j - 1] = this.attributeNormalizedNames[j];
                         this.attributes[j - 1] = this.attributes[j];
                     }
                     this.attributesLen--;
+                    this.attributes[this.attributesLen] = null;
                     return;
                 }
                 
@@ -492,7 +497,6 @@ final void doCloneNestableNodeInternals(final NestableNode node, final NestableN
         final NestableAttributeHolderNode element = (NestableAttributeHolderNode) node;
         
         if (this.attributesLen > 0) {
-            element.attributeNormalizedNames = ArrayUtils.copyOf(this.attributeNormalizedNames, this.attributesLen);
             element.attributes = ArrayUtils.copyOf(this.attributes, this.attributesLen);
             element.attributesLen = this.attributesLen;
         }
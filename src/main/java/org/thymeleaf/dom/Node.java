@@ -48,7 +48,7 @@
  */
 public abstract class Node implements Serializable {
 
-    private static final long serialVersionUID = 3082306990735650683L;
+    private static final long serialVersionUID = -1384208867219657514L;
 
     /**
      * <p>
@@ -83,33 +83,45 @@ public abstract class Node implements Serializable {
      */
     public static final String NODE_PROPERTY_XML_STANDALONE = "XML_STANDALONE";
     
-    private final String documentName;
-    private final Integer lineNumber;
-    
-    NestableNode parent;
+    /*
+     * Node flags are packed into a single int field in order to reduce the memory footprint
+     * of DOM trees, especially that of the (possibly many) DOM trees kept in the template cache.
+     */
     
     /*
      * An internal flag determining whether a node "can" be skipped because there are
      * no processors that apply to it.
      */
-    private boolean skippable;
+    private static final int FLAG_SKIPPABLE = 1;
     
     /*
      * An externally-set flag determining that a specific subtree of the DOM
      * tree should not be processed at all.
      */
-    private boolean processable;
+    private static final int FLAG_PROCESSABLE = 1 << 1;
     
-    private boolean precomputed;
-    private boolean recomputeProcessorsAfterEachExecution;
-    private boolean recomputeProcessorsImmediately;
+    private static final int FLAG_PRECOMPUTED = 1 << 2;
+    private static final int FLAG_RECOMPUTE_PROCESSORS_AFTER_EACH_EXECUTION = 1 << 3;
+    private static final int FLAG_RECOMPUTE_PROCESSORS_IMMEDIATELY = 1 << 4;
+    private static final int FLAG_PROCESS_TEXT_NODES = 1 << 5;
+    private static final int FLAG_PROCESS_COMMENT_NODES = 1 << 6;
+    
+    /*
+     * Line numbers are stored as primitives (instead of the Integer objects received at
+     * the constructors) so that no boxed Integer has to be kept for each node.
+     */
+    private static final int NO_LINE_NUMBER = Integer.MIN_VALUE;
+    
+    private final String documentName;
+    private int lineNumber;
+    
+    NestableNode parent;
+    
+    private int flags;
     
     private NodeLocalVariablesMap nodeLocalVariables;
     private ArrayList<ProcessorAndContext> processors;
     private HashMap<String,Object> nodeProperties;
-
-    private boolean processTextNodes;
-    private boolean processCommentNodes;
     
 
     /**
@@ -164,17 +176,24 @@ public static String applyDialectPrefix(final String name, final String dialectP
     Node(final String documentName, final Integer lineNumber) {
         super();
         this.documentName = documentName;
-        this.lineNumber = lineNumber;
-        this.processable = true;
-        this.skippable = false;
-        this.precomputed = false;
-        this.recomputeProcessorsAfterEachExecution = false;
-        this.recomputeProcessorsImmediately = false;
+        this.lineNumber = (lineNumber == null? NO_LINE_NUMBER : lineNumber.intValue());
+        this.flags = FLAG_PROCESSABLE;
         this.nodeLocalVariables = null;
         this.processors = null;
         this.nodeProperties = null;
-        this.processTextNodes = false;
-        this.processCommentNodes = false;
+    }
+
+
+    private boolean getFlag(final int flag) {
+        return (this.flags & flag) != 0;
+    }
+    
+    private void setFlag(final int flag, final boolean value) {
+        if (value) {
+            this.flags |= flag;
+        } else {
+            this.flags &= ~flag;
+        }
     }
 
 
@@ -204,7 +223,7 @@ public String getDocumentName() {
      * @return the line number
      */
     public Integer getLineNumber() {
-        return this.lineNumber;
+        return (this.lineNumber == NO_LINE_NUMBER? null : Integer.valueOf(this.lineNumber));
     }
 
     
@@ -338,7 +357,7 @@ public final Map<String,Object> unsafeGetNodeProperties() {
      * @since 2.0.18
      */
     public final boolean getProcessTextNodes() {
-        return this.processTextNodes;
+        return getFlag(FLAG_PROCESS_TEXT_NODES);
     }
 
     /**
@@ -355,7 +374,7 @@ public final boolean getProcessTextNodes() {
      * @since 2.0.18
      */
     public void setProcessTextNodes(final boolean processTextNodes) {
-        this.processTextNodes = processTextNodes;
+        setFlag(FLAG_PROCESS_TEXT_NODES, processTextNodes);
     }
 
     /**
@@ -372,7 +391,7 @@ public void setProcessTextNodes(final boolean processTextNodes) {
      * @since 2.0.18
      */
     public final boolean getProcessCommentNodes() {
-        return this.processCommentNodes;
+        return getFlag(FLAG_PROCESS_COMMENT_NODES);
     }
 
     /**
@@ -389,7 +408,7 @@ public final boolean getProcessCommentNodes() {
      * @since 2.0.18
      */
     public void setProcessCommentNodes(final boolean processCommentNodes) {
-        this.processCommentNodes = processCommentNodes;
+        setFlag(FLAG_PROCESS_COMMENT_NODES, processCommentNodes);
     }
 
 
@@ -436,8 +455,8 @@ public final NestableNode getParent() {
      */
     public final void setParent(final NestableNode parent) {
         this.parent = parent;
-        this.processTextNodes = this.parent.getProcessTextNodes();
-        this.processCommentNodes = this.parent.getProcessCommentNodes();
+        setFlag(FLAG_PROCESS_TEXT_NODES, this.parent.getProcessTextNodes());
+        setFlag(FLAG_PROCESS_COMMENT_NODES, this.parent.getProcessCommentNodes());
     }
     
 
@@ -456,7 +475,7 @@ public final void setParent(final NestableNode parent) {
      *              false if not. 
      */
     public final boolean getRecomputeProcessorsAfterEachExecution() {
-        return this.recomputeProcessorsAfterEachExecution;
+        return getFlag(FLAG_RECOMPUTE_PROCESSORS_AFTER_EACH_EXECUTION);
     }
 
     
@@ -474,7 +493,7 @@ public final boolean getRecomputeProcessorsAfterEachExecution() {
      * @param recomputeProcessorsAfterEachExecution the new value for the flag
      */
     public final void setRecomputeProcessorsAfterEachExecution(final boolean recomputeProcessorsAfterEachExecution) {
-        this.recomputeProcessorsAfterEachExecution = recomputeProcessorsAfterEachExecution;
+        setFlag(FLAG_RECOMPUTE_PROCESSORS_AFTER_EACH_EXECUTION, recomputeProcessorsAfterEachExecution);
     }
 
 
@@ -498,7 +517,7 @@ public final void setRecomputeProcessorsAfterEachExecution(final boolean recompu
      * @return true if the list of applicable processors must be recomputed, false if not. 
      */
     public final boolean getRecomputeProcessorsImmediately() {
-        return this.recomputeProcessorsImmediately;
+        return getFlag(FLAG_RECOMPUTE_PROCESSORS_IMMEDIATELY);
     }
 
 
@@ -521,7 +540,7 @@ public final boolean getRecomputeProcessorsImmediately() {
      * @param recomputeProcessorsImmediately the new value for the flag
      */
     public final void setRecomputeProcessorsImmediately(final boolean recomputeProcessorsImmediately) {
-        this.recomputeProcessorsImmediately = recomputeProcessorsImmediately;
+        setFlag(FLAG_RECOMPUTE_PROCESSORS_IMMEDIATELY, recomputeProcessorsImmediately);
     }
 
     
@@ -540,12 +559,12 @@ public final void setRecomputeProcessorsImmediately(final boolean recomputeProce
      * @return the value of the 'skippable' flag
      */
     public final boolean isSkippable() {
-        return this.skippable;
+        return getFlag(FLAG_SKIPPABLE);
     }
     
 
     protected final void setSkippable(final boolean isSkippable) {
-        this.skippable = isSkippable;
+        setFlag(FLAG_SKIPPABLE, isSkippable);
         if (!isSkippable && hasParent()) {
             // If this node is marked as non-skippable, set its parent as
             // non-skippable too.
@@ -578,7 +597,7 @@ protected final void setSkippable(final boolean isSkippable) {
      * @since 2.0.13
      */
     public final boolean isProcessable() {
-        return this.processable;
+        return getFlag(FLAG_PROCESSABLE);
     }
     
 
@@ -600,7 +619,7 @@ public final boolean isProcessable() {
      * @since 2.0.13
      */
     public final void setProcessable(final boolean processable) {
-        this.processable = processable;
+        setFlag(FLAG_PROCESSABLE, processable);
         if (processable && hasParent()) {
             // If this node is marked as non-skippable, set its parent as
             // non-skippable too.
@@ -630,11 +649,11 @@ final boolean isDetached() {
     
     
     final boolean isPrecomputed() {
-        return this.precomputed;
+        return getFlag(FLAG_PRECOMPUTED);
     }
     
     final void setPrecomputed(final boolean precomputed) {
-        this.precomputed = precomputed;
+        setFlag(FLAG_PRECOMPUTED, precomputed);
     }
 
     
@@ -867,7 +886,7 @@ final void precomputeNode(final Configuration configuration) {
                 // Also, note that if any of this node's children has processors
                 // (and therefore sets itself as "non-skippable"), it will also
                 // set its parent as non-skippable, overriding this action.
-                this.skippable = true;
+                setFlag(FLAG_SKIPPABLE, true);
             } else {
                 // This time we execute "setSkippable" so that all parents at all
                 // levels are also set to "false"
@@ -908,16 +927,16 @@ void processNode(final Arguments arguments) {
             // Macros are never processed
             // Text/CDATAs and Comments will depend on their respective flag
             
-            if (!this.processTextNodes && !this.processCommentNodes) {
+            if (!getFlag(FLAG_PROCESS_TEXT_NODES) && !getFlag(FLAG_PROCESS_COMMENT_NODES)) {
                 // fail fast
                 return;
             }
             
-            if ((this instanceof Text || this instanceof CDATASection) && !this.processTextNodes) {
+            if ((this instanceof Text || this instanceof CDATASection) && !getFlag(FLAG_PROCESS_TEXT_NODES)) {
                 return;
             }
             
-            if (this instanceof Comment && !this.processCommentNodes) {
+            if (this instanceof Comment && !getFlag(FLAG_PROCESS_COMMENT_NODES)) {
                 return;
             }
             
@@ -927,9 +946,9 @@ void processNode(final Arguments arguments) {
             
         }
         
-        if (this.recomputeProcessorsImmediately || this.recomputeProcessorsAfterEachExecution) {
+        if (getFlag(FLAG_RECOMPUTE_PROCESSORS_IMMEDIATELY | FLAG_RECOMPUTE_PROCESSORS_AFTER_EACH_EXECUTION)) {
             precomputeNode(arguments.getConfiguration());
-            this.recomputeProcessorsImmediately = false;
+            setFlag(FLAG_RECOMPUTE_PROCESSORS_IMMEDIATELY, false);
         }
         
         if (!isPrecomputed()) {
@@ -977,10 +996,10 @@ void processNode(final Arguments arguments) {
                         executionArguments = processingArguments;
                     }
                     
-                    if (this.recomputeProcessorsImmediately || this.recomputeProcessorsAfterEachExecution) {
+                    if (getFlag(FLAG_RECOMPUTE_PROCESSORS_IMMEDIATELY | FLAG_RECOMPUTE_PROCESSORS_AFTER_EACH_EXECUTION)) {
                         setPrecomputed(false);
                         precomputeNode(arguments.getConfiguration());
-                        this.recomputeProcessorsImmediately = false;
+                        setFlag(FLAG_RECOMPUTE_PROCESSORS_IMMEDIATELY, false);
                     }
                     
                 }
@@ -1104,14 +1123,16 @@ public final Node cloneNode(final NestableNode newParent, final boolean clonePro
     
     final void cloneNodeInternals(final Node node, final NestableNode newParent, final boolean cloneProcessors) {
         doCloneNodeInternals(node, newParent, cloneProcessors);
+        // Line numbers are copied here (instead of being specified at createClonedInstance) to avoid boxing
+        node.lineNumber = this.lineNumber;
         if (cloneProcessors) {
             node.processors = this.processors;
-            node.skippable = this.skippable;
-            node.precomputed = this.precomputed;
+            node.setFlag(FLAG_SKIPPABLE, getFlag(FLAG_SKIPPABLE));
+            node.setFlag(FLAG_PRECOMPUTED, getFlag(FLAG_PRECOMPUTED));
         } else {
             node.processors = null;
-            node.skippable = false;
-            node.precomputed = false;
+            node.setFlag(FLAG_SKIPPABLE, false);
+            node.setFlag(FLAG_PRECOMPUTED, false);
         }
         node.parent = newParent;
         if (this.nodeLocalVariables != null) {
@@ -1121,8 +1142,8 @@ final void cloneNodeInternals(final Node node, final NestableNode newParent, fin
         if (this.nodeProperties != null) {
             node.nodeProperties = new HashMap<String,Object>(this.nodeProperties);
         }
-        node.processTextNodes = this.processTextNodes;
-        node.processCommentNodes = this.processCommentNodes;
+        node.setFlag(FLAG_PROCESS_TEXT_NODES, getFlag(FLAG_PROCESS_TEXT_NODES));
+        node.setFlag(FLAG_PROCESS_COMMENT_NODES, getFlag(FLAG_PROCESS_COMMENT_NODES));
     }
 
     
@@ -19,6 +19,11 @@
  */
 package org.thymeleaf.dom;
 
+import java.io.IOException;
+import java.io.Writer;
+
+import org.thymeleaf.Configuration;
+import org.thymeleaf.util.EscapeUtils;
 
 
 
@@ -37,6 +42,15 @@ public final class Text extends AbstractTextNode {
 
     private static final long serialVersionUID = 8715604048893435570L;
 
+    /*
+     * Whitespace-collapsed version of the content (@since 2.1.5). It is computed at precompute
+     * time when whitespace minimization is enabled (so that it is shared by all the clones of
+     * cached templates), and it is only valid for as long as the content it was computed from
+     * remains the current one. Both are kept in a single immutable object, so that concurrent
+     * readers never see a minimized content paired with a different source.
+     */
+    private transient MinimizedContent minimizedContent = null;
+
 
 
     public Text(final String content) {
@@ -122,9 +136,97 @@ public Text(final String content, final boolean escapeXml, final String document
 
     
 
+    /**
+     * <p>
+     *   Writes the escaped content of this node directly into the specified writer, collapsing
+     *   every sequence of whitespace characters into a single space.
+     * </p>
+     * <p>
+     *   This method will not check whether this node is contained in an element in
+     *   which whitespace is significant (e.g. <tt>&lt;pre&gt;</tt>).
+     * </p>
+     *
+     * @param writer the writer the minimized escaped content will be written to.
+     * @throws IOException if writing fails.
+     * @since 2.1.5
+     */
+    public void writeMinimizedEscapedContent(final Writer writer) throws IOException {
+        final String minimized = computeMinimizedContent();
+        if (this.contentIsEscaped) {
+            writer.write(minimized);
+            return;
+        }
+        EscapeUtils.escapeHtml4Xml(minimized, writer);
+    }
+
+
+    private String computeMinimizedContent() {
+        final String currentContent = this.content;
+        final MinimizedContent currentMinimizedContent = this.minimizedContent;
+        if (currentMinimizedContent != null && currentMinimizedContent.source == currentContent) {
+            return currentMinimizedContent.minimized;
+        }
+        final String minimized = collapseWhitespace(currentContent);
+        this.minimizedContent = new MinimizedContent(currentContent, minimized);
+        return minimized;
+    }
+
+
+    private static String collapseWhitespace(final String text) {
+
+        final int textLen = text.length();
+
+        // Most texts will have nothing to be collapsed, so we check that before building anything
+        int firstCollapsible = -1;
+        for (int i = 0; i < textLen; i++) {
+            final char c = text.charAt(i);
+            if (Character.isWhitespace(c) && 
+                    (c != ' ' || (i + 1 < textLen && Character.isWhitespace(text.charAt(i + 1))))) {
+                firstCollapsible = i;
+                break;
+            }
+        }
+        if (firstCollapsible < 0) {
+            return text;
+        }
+
+        final StringBuilder strBuilder = new StringBuilder(textLen);
+        strBuilder.append(text, 0, firstCollapsible);
+        boolean inWhitespace = false;
+        for (int i = firstCollapsible; i < textLen; i++) {
+            final char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!inWhitespace) {
+                    strBuilder.append(' ');
+                    inWhitespace = true;
+                }
+            } else {
+                strBuilder.append(c);
+                inWhitespace = false;
+            }
+        }
+        return strBuilder.toString();
+
+    }
+
+    
+    
+    @Override
+    void doAdditionalPrecomputeNode(final Configuration configuration) {
+        if (configuration.isWhitespaceMinimizationEnabled()) {
+            computeMinimizedContent();
+        }
+    }
+
+    
+
     @Override
     Node createClonedInstance(final NestableNode newParent, final boolean cloneProcessors) {
-        return new Text(this.content, this.getDocumentName(), this.getLineNumber(), this.contentIsEscaped);
+        final Text clonedText = 
+                new Text(this.content, this.getDocumentName(), null, this.contentIsEscaped);
+        // Minimized content (if any) can be shared, as its validity depends on the content itself
+        clonedText.minimizedContent = this.minimizedContent;
+        return clonedText;
     }
     
 
@@ -144,4 +246,20 @@ public void visit(final DOMVisitor visitor) {
 
     
     
+    
+    private static final class MinimizedContent {
+        
+        // Immutable (final fields), so it can be safely published without synchronization
+        final String source;
+        final String minimized;
+        
+        MinimizedContent(final String source, final String minimized) {
+            super();
+            this.source = source;
+            this.minimized = minimized;
+        }
+        
+    }
+    
+    
 }
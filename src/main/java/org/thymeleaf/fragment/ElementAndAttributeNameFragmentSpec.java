@@ -337,6 +337,10 @@ public List<Node> extractFragment(final Configuration configuration, final List<
 
 
     private static void applyParameters(final List<Node> nodes, final Map<String,Object> parameterValues) {
+        if (parameterValues == null || parameterValues.isEmpty()) {
+            // Nodes are left untouched, as they might belong to a shared (cached) template
+            return;
+        }
         for (final Node node : nodes) {
             node.setAllNodeLocalVariables(parameterValues);
         }
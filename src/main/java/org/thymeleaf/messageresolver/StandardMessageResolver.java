@@ -52,6 +52,7 @@ public class StandardMessageResolver
 
     
     private final Properties defaultMessages;
+    private long messageFileReloadCheckIntervalMs = -1L;
     
 
     public StandardMessageResolver() {
@@ -132,6 +133,44 @@ public void clearDefaultMessages() {
     }
 
     
+    /**
+     * <p>
+     *   Returns the interval (in milliseconds) between checks for modifications of the messages
+     *   files of templates, or a negative number if modifications are not checked (the default).
+     * </p>
+     * 
+     * @return the check interval in milliseconds.
+     * @since 2.1.5
+     */
+    public long getMessageFileReloadCheckIntervalMs() {
+        return this.messageFileReloadCheckIntervalMs;
+    }
+    
+    
+    /**
+     * <p>
+     *   Sets the interval (in milliseconds) between checks for modifications of the messages
+     *   files of templates. When set to zero or a positive number, cached messages for a template
+     *   will be reloaded if any of the messages files they were loaded from is modified, created
+     *   or deleted, discarding only the affected entries of the message cache (instead of the
+     *   whole cache). Negative numbers (the default) disable these checks.
+     * </p>
+     * <p>
+     *   Only messages files in the file system can be checked, i.e. those resolved by a 
+     *   {@link org.thymeleaf.resourceresolver.FileResourceResolver} or by a
+     *   {@link org.thymeleaf.resourceresolver.ClassLoaderResourceResolver} from a directory in 
+     *   the classpath.
+     * </p>
+     * 
+     * @param messageFileReloadCheckIntervalMs the check interval in milliseconds.
+     * @since 2.1.5
+     */
+    public void setMessageFileReloadCheckIntervalMs(final long messageFileReloadCheckIntervalMs) {
+        checkNotInitialized();
+        this.messageFileReloadCheckIntervalMs = messageFileReloadCheckIntervalMs;
+    }
+
+    
     
     
 
@@ -145,7 +184,8 @@ public MessageResolution resolveMessage(
         
         final String message =
             StandardMessageResolutionUtils.resolveMessageForTemplate(
-                    arguments, key, messageParameters, unsafeGetDefaultMessages());
+                    arguments, key, messageParameters, unsafeGetDefaultMessages(),
+                    this.messageFileReloadCheckIntervalMs);
         
         if (message == null) {
             return null;
@@ -28,6 +28,7 @@
 import org.thymeleaf.dom.Text;
 import org.thymeleaf.processor.IAttributeNameProcessorMatcher;
 import org.thymeleaf.processor.ProcessorResult;
+import org.thymeleaf.util.DOMUtils;
 import org.thymeleaf.util.EvaluationUtil;
 import org.thymeleaf.util.Validate;
 
@@ -70,13 +71,18 @@ public final ProcessorResult processAttribute(final Arguments arguments, final E
         final NestableNode parentNode = element.getParent();
 
         // Find out if there's some whitespace to duplicate so as to preserve the
-        // 'look' of the HTML code when completed
+        // 'look' of the HTML code when completed (unless output is being whitespace-minimized,
+        // in which case that whitespace would only be collapsed again)
+        final boolean minimizingWhitespace = 
+                DOMUtils.isMinimizingWhitespace(arguments) && !DOMUtils.isInsideWhitespaceSensitiveElement(element);
         Node previousNode = null;
-        for (final Node child: parentNode.getChildren()) {
-            if (child == element) {
-                break;
+        if (!minimizingWhitespace) {
+            for (final Node child: parentNode.getChildren()) {
+                if (child == element) {
+                    break;
+                }
+                previousNode = child;
             }
-            previousNode = child;
         }
         boolean preserveWhitespace = false;
         String whitespace = null;
@@ -0,0 +1,74 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.resourceresolver;
+
+import java.io.InputStream;
+
+import org.thymeleaf.TemplateProcessingParameters;
+import org.thymeleaf.templateparser.precompiled.PrecompiledTemplateBundle;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Implementation of {@link IResourceResolver} that resolves
+ *   resources as entries in a {@link PrecompiledTemplateBundle}.
+ * </p>
+ * <p>
+ *   Resources resolved by this resource resolver are not parsed by the
+ *   Template Engine, but directly read with 
+ *   {@link PrecompiledTemplateBundle#readDocument(java.io.InputStream)}.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class PrecompiledTemplateResourceResolver 
+        implements IResourceResolver {
+
+    public static final String NAME = "PRECOMPILED";
+
+    private final PrecompiledTemplateBundle bundle;
+    
+    
+    public PrecompiledTemplateResourceResolver(final PrecompiledTemplateBundle bundle) {
+        super();
+        Validate.notNull(bundle, "Bundle cannot be null");
+        this.bundle = bundle;
+    }
+    
+
+    public String getName() {
+        return NAME; 
+    }
+    
+    
+    public PrecompiledTemplateBundle getBundle() {
+        return this.bundle;
+    }
+    
+    
+    public InputStream getResourceAsStream(final TemplateProcessingParameters templateProcessingParameters, final String resourceName) {
+        Validate.notNull(resourceName, "Resource name cannot be null");
+        return this.bundle.getTemplateAsStream(resourceName);
+    }
+    
+}
@@ -49,6 +49,7 @@
 import org.thymeleaf.standard.processor.attr.StandardAttrAttrProcessor;
 import org.thymeleaf.standard.processor.attr.StandardAttrappendAttrProcessor;
 import org.thymeleaf.standard.processor.attr.StandardAttrprependAttrProcessor;
+import org.thymeleaf.standard.processor.attr.StandardCacheAttrProcessor;
 import org.thymeleaf.standard.processor.attr.StandardCaseAttrProcessor;
 import org.thymeleaf.standard.processor.attr.StandardClassappendAttrProcessor;
 import org.thymeleaf.standard.processor.attr.StandardConditionalFixedValueAttrProcessor;
@@ -786,6 +787,7 @@ public static Set<IProcessor> createStandardProcessorsSet() {
         processors.add(new StandardAttrAttrProcessor());
         processors.add(new StandardAttrappendAttrProcessor());
         processors.add(new StandardAttrprependAttrProcessor());
+        processors.add(new StandardCacheAttrProcessor());
         processors.add(new StandardCaseAttrProcessor());
         processors.add(new StandardClassappendAttrProcessor());
         processors.addAll(Arrays.asList(StandardConditionalFixedValueAttrProcessor.PROCESSORS));
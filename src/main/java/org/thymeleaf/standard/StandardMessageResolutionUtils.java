@@ -19,9 +19,10 @@
  */
 package org.thymeleaf.standard;
 
-import java.text.MessageFormat;
+import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +32,7 @@
 import org.thymeleaf.cache.ICacheManager;
 import org.thymeleaf.resourceresolver.IResourceResolver;
 import org.thymeleaf.util.MessageResolutionUtils;
+import org.thymeleaf.util.ResolvedMessages;
 import org.thymeleaf.util.Validate;
 
 
@@ -47,8 +49,6 @@ public final class StandardMessageResolutionUtils {
     
     private static final Logger logger = LoggerFactory.getLogger(StandardMessageResolutionUtils.class);
     
-    private static final Object[] EMPTY_MESSAGE_PARAMETERS = new Object[0];
-    
     private static final String THYMELEAF_MARKUP_SUFFIX = ".thtml";
     private static final String XML_SUFFIX = ".xml";
     private static final String XHTML_SUFFIX = ".xhtml";
@@ -64,6 +64,30 @@ public final class StandardMessageResolutionUtils {
     public static String resolveMessageForTemplate(
             final Arguments arguments, final String key, final Object[] messageParameters, 
             final Properties defaultMessages) {
+        return resolveMessageForTemplate(arguments, key, messageParameters, defaultMessages, -1L);
+    }
+    
+    
+    /**
+     * <p>
+     *   Resolves a message for the template being processed, reloading the cached messages for
+     *   the template if any of the messages files they were loaded from have been modified since
+     *   (checking at most once every <tt>reloadCheckIntervalMs</tt> milliseconds). Only the 
+     *   cache entries for the modified files and the template's messages are discarded.
+     * </p>
+     * 
+     * @param arguments the arguments.
+     * @param key the message key.
+     * @param messageParameters the message parameters (can be null).
+     * @param defaultMessages the default messages (can be null).
+     * @param reloadCheckIntervalMs the check interval in milliseconds, or a negative number for
+     *                              not checking messages files for modifications.
+     * @return the resolved message, or null if it could not be resolved.
+     * @since 2.1.5
+     */
+    public static String resolveMessageForTemplate(
+            final Arguments arguments, final String key, final Object[] messageParameters, 
+            final Properties defaultMessages, final long reloadCheckIntervalMs) {
         
         Validate.notNull(arguments, "Arguments cannot be null");
         Validate.notNull(arguments.getContext().getLocale(), "Locale in context cannot be null");
@@ -72,7 +96,7 @@ public static String resolveMessageForTemplate(
         final Locale locale = arguments.getContext().getLocale();
 
         final String templateName = arguments.getTemplateResolution().getTemplateName();
-        final String cacheKey = TEMPLATE_CACHE_PREFIX + templateName + '_' + locale.toString();
+        final String cacheKey = computeTemplateCacheKey(templateName, locale);
 
         Properties properties = null;
         ICache<String,Properties> messagesCache = null;
@@ -85,14 +109,31 @@ public static String resolveMessageForTemplate(
             }
         }
         
+        if (properties != null && reloadCheckIntervalMs >= 0 && properties instanceof ResolvedMessages) {
+            final List<String> modifiedSourceKeys = 
+                    ((ResolvedMessages)properties).checkModifiedSources(reloadCheckIntervalMs);
+            if (!modifiedSourceKeys.isEmpty()) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("[THYMELEAF][{}] Messages for template \"{}\" and locale \"{}\" will be reloaded: messages files have been modified", new Object[] {TemplateEngine.threadIndex(), templateName, locale});
+                }
+                for (final String modifiedSourceKey : modifiedSourceKeys) {
+                    messagesCache.clearKey(modifiedSourceKey);
+                }
+                messagesCache.clearKey(cacheKey);
+                properties = null;
+            }
+        }
+        
         if (properties == null) {
             if (logger.isDebugEnabled()) {
                 logger.debug("[THYMELEAF][{}] Resolving uncached messages for template \"{}\" and locale \"{}\". Messages will be retrieved from files", new Object[] {TemplateEngine.threadIndex(), templateName, locale});
             }
-            properties = loadMessagesForTemplate(arguments, defaultMessages);
-            if (messagesCache != null) {
-                messagesCache.put(cacheKey, properties);
-            }
+            properties = 
+                    MessageResolutionUtils.loadCachedMessages(messagesCache, cacheKey, new Callable<Properties>() {
+                        public Properties call() {
+                            return loadMessagesForTemplate(arguments, defaultMessages);
+                        }
+                    });
         } else {
             if (logger.isTraceEnabled()) {
                 logger.trace("[THYMELEAF][{}] Resolving messages for template \"{}\" and locale \"{}\". Messages are CACHED", new Object[] {TemplateEngine.threadIndex(), templateName, locale});
@@ -105,8 +146,7 @@ public static String resolveMessageForTemplate(
             return null;
         }
 
-        final MessageFormat messageFormat = new MessageFormat(messageValue, locale);
-        return messageFormat.format((messageParameters != null? messageParameters : EMPTY_MESSAGE_PARAMETERS));
+        return ResolvedMessages.formatMessage(properties, key, messageValue, locale, messageParameters);
 
     }
     
@@ -114,6 +154,47 @@ public static String resolveMessageForTemplate(
     
     
     
+    /**
+     * <p>
+     *   Returns the messages currently cached for the template being processed and the locale
+     *   in context, if any. The returned object identifies the message cache entry, and can therefore
+     *   be used for checking (by identity) whether values computed from these messages are still
+     *   up to date, i.e. whether the cache entry has been cleared or reloaded since.
+     * </p>
+     * 
+     * @param arguments the arguments.
+     * @return the cached messages, or null if there are no cached messages for the template and locale.
+     * @since 2.1.5
+     */
+    public static Properties getCachedMessagesForTemplate(final Arguments arguments) {
+        
+        Validate.notNull(arguments, "Arguments cannot be null");
+        
+        final ICacheManager cacheManager = arguments.getConfiguration().getCacheManager();
+        if (cacheManager == null) {
+            return null;
+        }
+        final ICache<String,Properties> messagesCache = cacheManager.getMessageCache();
+        if (messagesCache == null) {
+            return null;
+        }
+        
+        final Locale locale = arguments.getContext().getLocale();
+        final String templateName = arguments.getTemplateResolution().getTemplateName();
+        return messagesCache.get(computeTemplateCacheKey(templateName, locale));
+        
+    }
+    
+    
+    
+    private static String computeTemplateCacheKey(final String templateName, final Locale locale) {
+        return TEMPLATE_CACHE_PREFIX + templateName + '_' + locale.toString();
+    }
+    
+    
+    
+    
+    
     private static Properties loadMessagesForTemplate(
             final Arguments arguments, final Properties defaultMessages) {
 
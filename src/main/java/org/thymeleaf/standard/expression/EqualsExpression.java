@@ -59,7 +59,6 @@ public String getStringRepresentation() {
     
 
     
-    @SuppressWarnings({"unchecked","null"})
     static Object executeEquals(final Configuration configuration, final IProcessingContext processingContext, 
             final EqualsExpression expression, final StandardExpressionExecutionContext expContext) {
 
@@ -70,39 +69,61 @@ static Object executeEquals(final Configuration configuration, final IProcessing
         leftValue = LiteralValue.unwrap(leftValue);
         rightValue = LiteralValue.unwrap(rightValue);
 
-        if (leftValue == null) {
-            return Boolean.valueOf(rightValue == null);
+        final Boolean result = Boolean.valueOf(evaluateEquality(leftValue, rightValue));
+            
+        if (logger.isTraceEnabled()) {
+            logger.trace("[THYMELEAF][{}] Evaluating EQUALS expression: \"{}\". Left is \"{}\", right is \"{}\". Result is \"{}\"", 
+                    new Object[] {TemplateEngine.threadIndex(), expression.getStringRepresentation(), leftValue, rightValue, result});
         }
         
-        Boolean result = null;
+        return result; 
+        
+    }
 
+    
+    
+    /**
+     * <p>
+     *   Checks whether two already computed values are equal according to the semantics of the 
+     *   <tt>==</tt> operator: numbers (and texts representing numbers) are compared numerically,
+     *   characters are compared as texts and objects of the same {@link Comparable} class are compared
+     *   by means of <tt>compareTo</tt>. Any other values are compared by means of <tt>equals</tt>.
+     * </p>
+     * 
+     * @param left the left side value (can be a {@link LiteralValue}).
+     * @param right the right side value (can be a {@link LiteralValue}).
+     * @return whether both values are equal.
+     * @since 2.1.5
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean evaluateEquality(final Object left, final Object right) {
+        
+        Object leftValue = LiteralValue.unwrap(left);
+        Object rightValue = LiteralValue.unwrap(right);
+        
+        if (leftValue == null) {
+            return (rightValue == null);
+        }
+        
         final BigDecimal leftNumberValue = EvaluationUtil.evaluateAsNumber(leftValue);
         final BigDecimal rightNumberValue = EvaluationUtil.evaluateAsNumber(rightValue);
         
         if (leftNumberValue != null && rightNumberValue != null) {
-            result = Boolean.valueOf(leftNumberValue.compareTo(rightNumberValue) == 0);
-        } else {
-            if (leftValue instanceof Character) {
-                leftValue = leftValue.toString();  // Just a character, no need to use conversionService here
-            }
-            if (rightValue != null && rightValue instanceof Character) {
-                rightValue = rightValue.toString();  // Just a character, no need to use conversionService here
-            }
-            if (rightValue != null &&
-                    leftValue.getClass().equals(rightValue.getClass()) && 
-                    Comparable.class.isAssignableFrom(leftValue.getClass())) {
-                result = Boolean.valueOf(((Comparable<Object>)leftValue).compareTo(rightValue) == 0);
-            } else {
-                result = Boolean.valueOf(leftValue.equals(rightValue));
-            }
-        }
-            
-        if (logger.isTraceEnabled()) {
-            logger.trace("[THYMELEAF][{}] Evaluating EQUALS expression: \"{}\". Left is \"{}\", right is \"{}\". Result is \"{}\"", 
-                    new Object[] {TemplateEngine.threadIndex(), expression.getStringRepresentation(), leftValue, rightValue, result});
+            return (leftNumberValue.compareTo(rightNumberValue) == 0);
         }
         
-        return result; 
+        if (leftValue instanceof Character) {
+            leftValue = leftValue.toString();  // Just a character, no need to use conversionService here
+        }
+        if (rightValue != null && rightValue instanceof Character) {
+            rightValue = rightValue.toString();  // Just a character, no need to use conversionService here
+        }
+        if (rightValue != null &&
+                leftValue.getClass().equals(rightValue.getClass()) && 
+                Comparable.class.isAssignableFrom(leftValue.getClass())) {
+            return (((Comparable<Object>)leftValue).compareTo(rightValue) == 0);
+        }
+        return leftValue.equals(rightValue);
         
     }
 
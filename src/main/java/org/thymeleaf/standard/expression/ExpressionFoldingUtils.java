@@ -0,0 +1,288 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.standard.expression;
+
+import java.util.Properties;
+import java.util.Set;
+
+import org.thymeleaf.Arguments;
+import org.thymeleaf.Configuration;
+import org.thymeleaf.cache.ICacheManager;
+import org.thymeleaf.dom.Attribute;
+import org.thymeleaf.messageresolver.IMessageResolver;
+import org.thymeleaf.messageresolver.StandardMessageResolver;
+import org.thymeleaf.standard.StandardMessageResolutionUtils;
+import org.thymeleaf.util.Validate;
+
+
+/**
+ * <p>
+ *   Utility methods for <i>constant folding</i> of Standard Expressions: expressions which depend 
+ *   only on literals and on messages without parameters produce the same result every time they
+ *   are executed for the same template and locale, so their results can be computed only once and
+ *   then reused.
+ * </p>
+ * <p>
+ *   Messages are only considered constant if the only configured message resolvers are
+ *   {@link StandardMessageResolver} objects not reloading modified messages files, and messages
+ *   are cached, as other message resolvers might resolve messages in any way. Results depending
+ *   on messages are bound to the message cache entry they were resolved from, so that they are
+ *   discarded if that entry is cleared (e.g. by {@link ICacheManager#clearAllCaches()}).
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class ExpressionFoldingUtils {
+
+    
+    private static final String FOLDED_VALUE_KEY_PREFIX = "{folded}";
+    private static final String TYPE_CONVERSION_KEY_PREFIX = "{conv}";
+    private static final String PREPROCESSING_DELIMITER = "__";
+    
+    
+    
+    
+    /**
+     * <p>
+     *   Determines whether an expression depends only on literals (text, number, boolean, null or
+     *   token literals), on messages without parameters and on operations among them.
+     * </p>
+     * 
+     * @param configuration the configuration.
+     * @param expression the expression.
+     * @return true if the expression is constant for a template and locale, false if not.
+     */
+    public static boolean isFoldable(final Configuration configuration, final IStandardExpression expression) {
+        
+        Validate.notNull(configuration, "Configuration cannot be null");
+        
+        if (expression == null) {
+            return false;
+        }
+        if (expression instanceof Token || expression instanceof TextLiteralExpression) {
+            return true;
+        }
+        if (expression instanceof MessageExpression) {
+            final MessageExpression messageExpression = (MessageExpression) expression;
+            return !messageExpression.hasParameters() && 
+                   areMessagesFoldable(configuration) &&
+                   isFoldable(configuration, messageExpression.getBase());
+        }
+        if (expression instanceof BinaryOperationExpression) {
+            final BinaryOperationExpression operationExpression = (BinaryOperationExpression) expression;
+            return isFoldable(configuration, operationExpression.getLeft()) &&
+                   isFoldable(configuration, operationExpression.getRight());
+        }
+        if (expression instanceof NegationExpression) {
+            return isFoldable(configuration, ((NegationExpression) expression).getOperand());
+        }
+        if (expression instanceof MinusExpression) {
+            return isFoldable(configuration, ((MinusExpression) expression).getOperand());
+        }
+        if (expression instanceof ConditionalExpression) {
+            final ConditionalExpression conditionalExpression = (ConditionalExpression) expression;
+            return isFoldable(configuration, conditionalExpression.getConditionExpression()) &&
+                   isFoldable(configuration, conditionalExpression.getThenExpression()) &&
+                   (conditionalExpression.getElseExpression() == null ||
+                       isFoldable(configuration, conditionalExpression.getElseExpression()));
+        }
+        if (expression instanceof DefaultExpression) {
+            final DefaultExpression defaultExpression = (DefaultExpression) expression;
+            return isFoldable(configuration, defaultExpression.getQueriedExpression()) &&
+                   isFoldable(configuration, defaultExpression.getDefaultExpression());
+        }
+        
+        // Variable, selection, link and any other kinds of expressions
+        return false;
+        
+    }
+    
+    
+    
+    private static boolean areMessagesFoldable(final Configuration configuration) {
+        
+        final ICacheManager cacheManager = configuration.getCacheManager();
+        if (cacheManager == null || cacheManager.getMessageCache() == null) {
+            return false;
+        }
+        
+        final Set<IMessageResolver> messageResolvers = configuration.getMessageResolvers();
+        for (final IMessageResolver messageResolver : messageResolvers) {
+            if (!StandardMessageResolver.class.equals(messageResolver.getClass())) {
+                return false;
+            }
+            if (((StandardMessageResolver)messageResolver).getMessageFileReloadCheckIntervalMs() >= 0) {
+                // Messages might change at any moment
+                return false;
+            }
+        }
+        return true;
+        
+    }
+    
+    
+    
+    
+    /**
+     * <p>
+     *   Parses and executes the Standard Expression contained in an attribute's value, reusing
+     *   its result if the expression is foldable (see {@link #isFoldable(Configuration, IStandardExpression)})
+     *   and it has already been executed for the same template and locale. In such case, the 
+     *   expression will not even be parsed again.
+     * </p>
+     * <p>
+     *   Folded results are stored as computed values of the attribute (see 
+     *   {@link Attribute#getComputedValue(String)}), and therefore shared by all the DOM trees
+     *   sharing the same Attribute object, like the duplicates of a cached template. Expressions
+     *   that require preprocessing (<tt>__...__</tt>) are never folded.
+     * </p>
+     * 
+     * @param configuration the configuration.
+     * @param arguments the arguments.
+     * @param attribute the attribute containing the expression.
+     * @param expContext the expression execution context.
+     * @return the result of executing the expression.
+     */
+    public static Object executeFoldable(
+            final Configuration configuration, final Arguments arguments, final Attribute attribute, 
+            final StandardExpressionExecutionContext expContext) {
+        
+        Validate.notNull(configuration, "Configuration cannot be null");
+        Validate.notNull(arguments, "Arguments cannot be null");
+        Validate.notNull(attribute, "Attribute cannot be null");
+        Validate.notNull(expContext, "Expression execution context cannot be null");
+        
+        final String attributeValue = attribute.getValue();
+        final boolean preprocessable = 
+                (attributeValue == null || attributeValue.indexOf(PREPROCESSING_DELIMITER) != -1);
+        
+        final String key = (preprocessable? null : computeFoldedValueKey(arguments, expContext));
+        
+        if (key != null) {
+            final FoldedValue foldedValue = (FoldedValue) attribute.getComputedValue(key);
+            if (foldedValue != null && 
+                    (foldedValue.messages == null || 
+                        foldedValue.messages == StandardMessageResolutionUtils.getCachedMessagesForTemplate(arguments))) {
+                return foldedValue.value;
+            }
+        }
+        
+        final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
+        final IStandardExpression expression = 
+                expressionParser.parseExpression(configuration, arguments, attributeValue);
+
+        final Object result = expression.execute(configuration, arguments, expContext);
+
+        if (key != null && isFoldable(configuration, expression)) {
+            if (!containsMessages(expression)) {
+                attribute.setComputedValue(key, new FoldedValue(result, null));
+            } else {
+                // Bound to the message cache entry the messages were resolved from (if it still exists)
+                final Properties messages = StandardMessageResolutionUtils.getCachedMessagesForTemplate(arguments);
+                if (messages != null) {
+                    attribute.setComputedValue(key, new FoldedValue(result, messages));
+                }
+            }
+        }
+        
+        return result;
+        
+    }
+    
+    
+    
+    private static boolean containsMessages(final IStandardExpression expression) {
+        
+        if (expression instanceof MessageExpression) {
+            return true;
+        }
+        if (expression instanceof BinaryOperationExpression) {
+            final BinaryOperationExpression operationExpression = (BinaryOperationExpression) expression;
+            return containsMessages(operationExpression.getLeft()) || containsMessages(operationExpression.getRight());
+        }
+        if (expression instanceof NegationExpression) {
+            return containsMessages(((NegationExpression) expression).getOperand());
+        }
+        if (expression instanceof MinusExpression) {
+            return containsMessages(((MinusExpression) expression).getOperand());
+        }
+        if (expression instanceof ConditionalExpression) {
+            final ConditionalExpression conditionalExpression = (ConditionalExpression) expression;
+            return containsMessages(conditionalExpression.getConditionExpression()) ||
+                   containsMessages(conditionalExpression.getThenExpression()) ||
+                   (conditionalExpression.getElseExpression() != null &&
+                       containsMessages(conditionalExpression.getElseExpression()));
+        }
+        if (expression instanceof DefaultExpression) {
+            final DefaultExpression defaultExpression = (DefaultExpression) expression;
+            return containsMessages(defaultExpression.getQueriedExpression()) ||
+                   containsMessages(defaultExpression.getDefaultExpression());
+        }
+        return false;
+        
+    }
+    
+    
+    
+    private static String computeFoldedValueKey(
+            final Arguments arguments, final StandardExpressionExecutionContext expContext) {
+        // Messages are resolved for the template being processed, which might not be the one
+        // the attribute comes from (e.g. in included fragments).
+        final StringBuilder strBuilder = new StringBuilder(FOLDED_VALUE_KEY_PREFIX);
+        if (expContext.getPerformTypeConversion()) {
+            strBuilder.append(TYPE_CONVERSION_KEY_PREFIX);
+        }
+        strBuilder.append(arguments.getContext().getLocale());
+        strBuilder.append('|');
+        strBuilder.append(arguments.getTemplateResolution().getTemplateName());
+        return strBuilder.toString();
+    }
+    
+    
+    
+    
+    /*
+     * Result of a folded expression (might be null), together with the messages it was computed
+     * from (null if it does not depend on messages).
+     */
+    private static final class FoldedValue {
+        
+        final Object value;
+        final Properties messages;
+        
+        FoldedValue(final Object value, final Properties messages) {
+            super();
+            this.value = value;
+            this.messages = messages;
+        }
+        
+    }
+    
+    
+    
+    
+    private ExpressionFoldingUtils() {
+        super();
+    }
+    
+}
@@ -25,7 +25,6 @@
 
 import org.thymeleaf.Arguments;
 import org.thymeleaf.Configuration;
-import org.thymeleaf.Template;
 import org.thymeleaf.TemplateProcessingParameters;
 import org.thymeleaf.TemplateRepository;
 import org.thymeleaf.context.IProcessingContext;
@@ -198,11 +197,8 @@ public List<Node> extractFragment(
         final TemplateProcessingParameters fragmentTemplateProcessingParameters = 
                 new TemplateProcessingParameters(configuration, targetTemplateName, context);
         
-        final Template parsedFragmentTemplate = 
-                templateRepository.getTemplate(fragmentTemplateProcessingParameters);
-        
         final List<Node> nodes =
-                this.fragmentSpec.extractFragment(configuration, parsedFragmentTemplate.getDocument().getChildren());
+                templateRepository.getTemplateFragment(fragmentTemplateProcessingParameters, this.fragmentSpec);
 
         /*
          * CHECK RETURNED NODES: if there is only one node, check whether it contains a fragment signature (normally,
@@ -19,9 +19,13 @@
  */
 package org.thymeleaf.standard.fragment;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.thymeleaf.Configuration;
 import org.thymeleaf.dom.Attribute;
 import org.thymeleaf.dom.DOMSelector;
+import org.thymeleaf.dom.Document;
 import org.thymeleaf.dom.NestableAttributeHolderNode;
 import org.thymeleaf.dom.Node;
 import org.thymeleaf.standard.expression.FragmentSignature;
@@ -46,7 +50,8 @@
  * @since 2.1.0
  *
  */
-public final class StandardFragmentSignatureNodeReferenceChecker extends DOMSelector.AbstractNodeReferenceChecker {
+public final class StandardFragmentSignatureNodeReferenceChecker 
+        extends DOMSelector.AbstractNodeReferenceChecker implements DOMSelector.IIndexableNodeReferenceChecker {
 
     private final Configuration configuration;
     private final String dialectPrefix;
@@ -110,4 +115,39 @@ public boolean checkReference(final Node node, final String referenceValue) {
     }
 
 
+
+    /**
+     * <p>
+     *   Returns the nodes of an indexed document defining a fragment with the specified name (might
+     *   also include some that do not).
+     * </p>
+     *
+     * @param document the (indexed) document.
+     * @param referenceValue the fragment name.
+     * @return the candidate nodes, or null if the fragment attributes have not been indexed in the document.
+     * @since 2.1.5
+     */
+    public List<Node> getReferenceCandidates(final Document document, final String referenceValue) {
+
+        if (referenceValue == null) {
+            return null;
+        }
+
+        final String[] prefixedAttributeNames =
+                Attribute.applyPrefixToAttributeName(this.fragmentAttributeName, this.dialectPrefix);
+
+        final List<Node> candidates = new ArrayList<Node>(4);
+        for (final String prefixedAttributeName : prefixedAttributeNames) {
+            final List<NestableAttributeHolderNode> attributeCandidates =
+                    document.getFragmentIndexCandidates(prefixedAttributeName, referenceValue);
+            if (attributeCandidates == null) {
+                return null;
+            }
+            candidates.addAll(attributeCandidates);
+        }
+        return candidates;
+
+    }
+
+
 }
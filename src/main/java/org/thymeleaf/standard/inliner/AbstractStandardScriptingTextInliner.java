@@ -28,10 +28,7 @@
 import org.thymeleaf.Configuration;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.dom.AbstractTextNode;
-import org.thymeleaf.exceptions.TemplateProcessingException;
 import org.thymeleaf.standard.expression.IStandardExpression;
-import org.thymeleaf.standard.expression.IStandardExpressionParser;
-import org.thymeleaf.standard.expression.StandardExpressions;
 
 /**
  * 
@@ -86,15 +83,23 @@ public final void inline(final Arguments arguments, final AbstractTextNode text)
     private String processScriptingInline(
             final String input, final Arguments arguments) {
         
-        return
-            processScriptingVariableInline(
-                processScriptingVariableExpressionInline(
-                    processScriptingAddInline(
-                        processScriptingRemoveInline(
-                            input)
-                        )
-                    ),
-                arguments);
+        if (input == null || input.length() == 0) {
+            return input;
+        }
+        
+        // Matching is only performed the first time this content is inlined
+        TokenizedInlineText tokenized = TokenizedInlineText.getCached(arguments, this, input);
+        if (tokenized == null) {
+            final String processedInput =
+                    processScriptingVariableExpressionInline(
+                        processScriptingAddInline(
+                            processScriptingRemoveInline(
+                                input)));
+            tokenized = TokenizedInlineText.tokenize(processedInput, SCRIPT_INLINE_EVAL_PATTERN, 1, false);
+            TokenizedInlineText.cache(arguments, this, input, tokenized);
+        }
+        
+        return processScriptingVariableInline(tokenized, arguments);
             
     }
 
@@ -257,54 +262,46 @@ private static String computeLineEndForInline(final String lineRemainder) {
     
     
     
-    private String processScriptingVariableInline(final String input, final Arguments arguments) {
-        
-        final Matcher matcher = SCRIPT_INLINE_EVAL_PATTERN.matcher(input);
+    private String processScriptingVariableInline(final TokenizedInlineText tokenized, final Arguments arguments) {
         
-        if (matcher.find()) {
+        if (tokenized.hasExpressions()) {
 
             final Configuration configuration = arguments.getConfiguration();
-            final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
 
-            final StringBuilder strBuilder = new StringBuilder();
-            int curr = 0;
+            final StringBuilder strBuilder = new StringBuilder(tokenized.estimateLength());
             
-            do {
+            final int expressionCount = tokenized.getExpressionCount();
+            for (int i = 0; i < expressionCount; i++) {
                 
-                strBuilder.append(input.substring(curr,matcher.start(0)));
+                strBuilder.append(tokenized.getLiteral(i));
                 
-                final String match = matcher.group(1);
+                final String match = tokenized.getExpressionText(i);
                 
                 if (this.logger.isTraceEnabled()) {
                     this.logger.trace("[THYMELEAF][{}] Applying javascript variable inline evaluation on \"{}\"", TemplateEngine.threadIndex(), match);
                 }
 
-
-                IStandardExpression expression = null;
-                try {
-                    expression = expressionParser.parseExpression(configuration, arguments, match);
-                } catch (final TemplateProcessingException ignored) {
+                // Null if the text is not a standard expression (parsing is not retried then)
+                final IStandardExpression expression = tokenized.getExpression(arguments, i);
+                
+                if (expression == null) {
                     // If it is not a standard expression, just output it as original
                     strBuilder.append(SCRIPT_INLINE_PREFIX).append(match).append(SCRIPT_INLINE_SUFFIX);
-                }
-
-                if (expression != null) {
+                } else {
                     // If an exception raises during execution, we should let it through
                     final Object result = expression.execute(configuration, arguments);
-                    strBuilder.append(formatEvaluationResult(result));
+                    formatEvaluationResult(strBuilder, result);
                 }
                 
-                curr = matcher.end(0);
-                
-            } while (matcher.find());
+            }
             
-            strBuilder.append(input.substring(curr));
+            strBuilder.append(tokenized.getLiteral(expressionCount));
             
             return strBuilder.toString();
             
         }
         
-        return input;
+        return tokenized.getLiteral(0);
         
     }
     
@@ -314,5 +311,22 @@ private String processScriptingVariableInline(final String input, final Argument
     protected abstract String formatEvaluationResult(final Object result);
     
     
+    /**
+     * <p>
+     *   Formats the result of an evaluation directly into the output being built for the
+     *   inlined text. By default, it simply appends the result of 
+     *   {@link #formatEvaluationResult(Object)}, but subclasses can override this method in order
+     *   to avoid creating intermediate Strings.
+     * </p>
+     * 
+     * @param output the output being built.
+     * @param result the result of the evaluation.
+     * @since 2.1.5
+     */
+    protected void formatEvaluationResult(final StringBuilder output, final Object result) {
+        output.append(formatEvaluationResult(result));
+    }
+    
+    
 
 }
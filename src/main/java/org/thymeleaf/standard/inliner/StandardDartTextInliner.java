@@ -47,5 +47,11 @@ protected String formatEvaluationResult(final Object result) {
         return DartUtils.print(result);
     }
 
+    
+    @Override
+    protected void formatEvaluationResult(final StringBuilder output, final Object result) {
+        DartUtils.printTo(output, result);
+    }
+
 
 }
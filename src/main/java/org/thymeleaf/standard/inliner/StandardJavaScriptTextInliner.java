@@ -46,5 +46,11 @@ protected String formatEvaluationResult(final Object result) {
         return JavaScriptUtils.print(result);
     }
 
+    
+    @Override
+    protected void formatEvaluationResult(final StringBuilder output, final Object result) {
+        JavaScriptUtils.printTo(output, result);
+    }
+
 
 }
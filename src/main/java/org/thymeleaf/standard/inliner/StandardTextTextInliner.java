@@ -19,7 +19,6 @@
  */
 package org.thymeleaf.standard.inliner;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
@@ -30,8 +29,6 @@
 import org.thymeleaf.dom.AbstractTextNode;
 import org.thymeleaf.exceptions.TemplateProcessingException;
 import org.thymeleaf.standard.expression.IStandardExpression;
-import org.thymeleaf.standard.expression.IStandardExpressionParser;
-import org.thymeleaf.standard.expression.StandardExpressions;
 import org.unbescape.html.HtmlEscape;
 
 /**
@@ -79,46 +76,53 @@ static String processTextInline(
             return input;
         }
         
-        final Matcher matcher = TEXT_INLINE_EVAL_PATTERN.matcher(input);
+        // Matching is only performed the first time this content is inlined
+        TokenizedInlineText tokenized = TokenizedInlineText.getCached(arguments, INSTANCE, input);
+        if (tokenized == null) {
+            tokenized = TokenizedInlineText.tokenize(input, TEXT_INLINE_EVAL_PATTERN, 1, true);
+            TokenizedInlineText.cache(arguments, INSTANCE, input, tokenized);
+        }
         
-        if (matcher.find()) {
+        if (tokenized.hasExpressions()) {
 
             final Configuration configuration = arguments.getConfiguration();
-            final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
 
-            final StringBuilder strBuilder = new StringBuilder();
-            int curr = 0;
+            final StringBuilder strBuilder = new StringBuilder(tokenized.estimateLength());
             
-            do {
+            final int expressionCount = tokenized.getExpressionCount();
+            for (int i = 0; i < expressionCount; i++) {
                 
-                strBuilder.append(input.substring(curr,matcher.start(0)));
+                strBuilder.append(tokenized.getLiteral(i));
                 
-                final String match = HtmlEscape.unescapeHtml(matcher.group(1));
+                final String match = tokenized.getExpressionText(i);
                 
                 if (logger.isTraceEnabled()) {
                     logger.trace("[THYMELEAF][{}] Applying text inline evaluation on \"{}\"", TemplateEngine.threadIndex(), match);
                 }
                 
-                try {
-
-                    final IStandardExpression expression =
-                            expressionParser.parseExpression(configuration, arguments, match);
-                    final Object result = expression.execute(configuration, arguments);
-
-                    strBuilder.append(HtmlEscape.escapeHtml4Xml(String.valueOf(result)));
-                    
-                } catch (final TemplateProcessingException ignored) {
-                    
+                // Null if the text is not a standard expression (parsing is not retried then)
+                final IStandardExpression expression = tokenized.getExpression(arguments, i);
+                
+                String output = null;
+                if (expression != null) {
+                    try {
+                        final Object result = expression.execute(configuration, arguments);
+                        output = HtmlEscape.escapeHtml4Xml(String.valueOf(result));
+                    } catch (final TemplateProcessingException ignored) {
+                        // Will be output as original
+                    }
+                }
+                
+                if (output != null) {
+                    strBuilder.append(output);
+                } else {
                     // If it is not a standard expression, just output it as original
                     strBuilder.append(SCRIPT_INLINE_PREFIX).append(match).append(SCRIPT_INLINE_SUFFIX);
-                    
                 }
                 
-                curr = matcher.end(0);
-                
-            } while (matcher.find());
+            }
             
-            strBuilder.append(input.substring(curr));
+            strBuilder.append(tokenized.getLiteral(expressionCount));
             
             return strBuilder.toString();
             
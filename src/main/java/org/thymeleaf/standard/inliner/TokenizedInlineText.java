@@ -0,0 +1,251 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.standard.inliner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.thymeleaf.Arguments;
+import org.thymeleaf.Configuration;
+import org.thymeleaf.dom.Document;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.standard.expression.IStandardExpression;
+import org.thymeleaf.standard.expression.IStandardExpressionParser;
+import org.thymeleaf.standard.expression.StandardExpressions;
+import org.unbescape.html.HtmlEscape;
+
+
+/*
+ * Inlined text split into literal segments and expression slots, so that matching the inlining
+ * patterns against a text node's content is only done once. Tokenized texts are stored as computed
+ * values of the document being processed (keyed by inliner and original content), and are therefore
+ * shared by all the duplicates of a cached template. Only a limited number of them is kept per document,
+ * so that texts with dynamic contents (e.g. created by processors, or coming from included content)
+ * cannot make the map of computed values grow for as long as the template is cached.
+ *
+ * There is always one more literal than slots: literal[0] slot[0] literal[1] ... literal[n].
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.1.5
+ */
+final class TokenizedInlineText {
+
+    private static final String PREPROCESSING_DELIMITER = "__";
+    
+    private static final int MAX_CACHED_PER_DOCUMENT = 512;
+    private static final Object CACHED_COUNT_KEY = new Object();
+    
+    private final String[] literals;
+    private final ExpressionSlot[] slots;
+    
+    
+    
+    
+    /*
+     * Returns the tokenized version of a content, as previously cached by the same inliner for
+     * the document being processed, or null if it has not been cached.
+     */
+    static TokenizedInlineText getCached(
+            final Arguments arguments, final IStandardTextInliner inliner, final String content) {
+        final Document document = arguments.getDocument();
+        if (document == null) {
+            return null;
+        }
+        return (TokenizedInlineText) document.getComputedValue(new TokenizedInlineTextKey(inliner.getClass(), content));
+    }
+    
+    
+    static void cache(
+            final Arguments arguments, final IStandardTextInliner inliner, final String content, 
+            final TokenizedInlineText tokenized) {
+        final Document document = arguments.getDocument();
+        if (document == null) {
+            return;
+        }
+        AtomicInteger cachedCount = (AtomicInteger) document.getComputedValue(CACHED_COUNT_KEY);
+        if (cachedCount == null) {
+            // Concurrent first calls might create more than one counter, which only makes the limit less exact
+            cachedCount = new AtomicInteger(0);
+            document.setComputedValue(CACHED_COUNT_KEY, cachedCount);
+        }
+        if (cachedCount.incrementAndGet() > MAX_CACHED_PER_DOCUMENT) {
+            // Limit reached: the text will be tokenized again each time it is processed
+            return;
+        }
+        document.setComputedValue(new TokenizedInlineTextKey(inliner.getClass(), content), tokenized);
+    }
+    
+    
+    static TokenizedInlineText tokenize(
+            final String text, final Pattern expressionPattern, final int expressionGroup, 
+            final boolean unescapeExpressions) {
+        return new TokenizedInlineText(text, expressionPattern, expressionGroup, unescapeExpressions);
+    }
+    
+    
+    
+    private TokenizedInlineText(
+            final String content, final Pattern expressionPattern, final int expressionGroup, 
+            final boolean unescapeExpressions) {
+        
+        super();
+        
+        final List<String> literalList = new ArrayList<String>(4);
+        final List<ExpressionSlot> slotList = new ArrayList<ExpressionSlot>(4);
+        
+        final Matcher matcher = expressionPattern.matcher(content);
+        int curr = 0;
+        while (matcher.find()) {
+            literalList.add(content.substring(curr, matcher.start(0)));
+            final String match = matcher.group(expressionGroup);
+            slotList.add(new ExpressionSlot(unescapeExpressions? HtmlEscape.unescapeHtml(match) : match));
+            curr = matcher.end(0);
+        }
+        literalList.add(curr == 0? content : content.substring(curr));
+        
+        this.literals = literalList.toArray(new String[literalList.size()]);
+        this.slots = slotList.toArray(new ExpressionSlot[slotList.size()]);
+        
+    }
+    
+    
+    
+    boolean hasExpressions() {
+        return this.slots.length > 0;
+    }
+    
+    int getExpressionCount() {
+        return this.slots.length;
+    }
+    
+    String getLiteral(final int i) {
+        return this.literals[i];
+    }
+    
+    String getExpressionText(final int i) {
+        return this.slots[i].text;
+    }
+    
+    int estimateLength() {
+        int length = 0;
+        for (final String literal : this.literals) {
+            length += literal.length();
+        }
+        return length + (this.slots.length * 16);
+    }
+    
+    
+    
+    /*
+     * Returns null if the text for the slot is not a valid Standard Expression.
+     */
+    IStandardExpression getExpression(final Arguments arguments, final int i) {
+        return this.slots[i].getExpression(arguments);
+    }
+    
+    
+    
+    
+    private static final class ExpressionSlot {
+        
+        final String text;
+        // Parsing results, only kept for expressions that need no preprocessing
+        private final boolean cacheable;
+        private volatile IStandardExpression expression = null;
+        private volatile boolean nonExpression = false;
+        
+        ExpressionSlot(final String text) {
+            super();
+            this.text = text;
+            this.cacheable = (text.indexOf(PREPROCESSING_DELIMITER) == -1);
+        }
+        
+        IStandardExpression getExpression(final Arguments arguments) {
+            
+            if (this.nonExpression) {
+                return null;
+            }
+            final IStandardExpression cachedExpression = this.expression;
+            if (cachedExpression != null) {
+                return cachedExpression;
+            }
+            
+            final Configuration configuration = arguments.getConfiguration();
+            final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
+            
+            try {
+                final IStandardExpression parsedExpression = 
+                        expressionParser.parseExpression(configuration, arguments, this.text);
+                if (this.cacheable) {
+                    this.expression = parsedExpression;
+                }
+                return parsedExpression;
+            } catch (final TemplateProcessingException ignored) {
+                if (this.cacheable) {
+                    this.nonExpression = true;
+                }
+                return null;
+            }
+            
+        }
+        
+    }
+    
+    
+    
+    
+    private static final class TokenizedInlineTextKey {
+        
+        private final Class<?> inlinerClass;
+        private final String content;
+        private final int hash;
+        
+        TokenizedInlineTextKey(final Class<?> inlinerClass, final String content) {
+            super();
+            this.inlinerClass = inlinerClass;
+            this.content = content;
+            this.hash = 31 * inlinerClass.hashCode() + content.hashCode();
+        }
+        
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+        
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TokenizedInlineTextKey)) {
+                return false;
+            }
+            final TokenizedInlineTextKey other = (TokenizedInlineTextKey) obj;
+            return this.inlinerClass == other.inlinerClass && 
+                   (this.content == other.content || this.content.equals(other.content));
+        }
+        
+    }
+    
+}
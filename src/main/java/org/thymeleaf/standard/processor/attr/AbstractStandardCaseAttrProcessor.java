@@ -24,6 +24,7 @@
 import org.thymeleaf.Arguments;
 import org.thymeleaf.Configuration;
 import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.dom.Attribute;
 import org.thymeleaf.dom.Element;
 import org.thymeleaf.exceptions.TemplateProcessingException;
 import org.thymeleaf.processor.IAttributeNameProcessorMatcher;
@@ -33,7 +34,6 @@
 import org.thymeleaf.standard.expression.IStandardExpressionParser;
 import org.thymeleaf.standard.expression.StandardExpressions;
 import org.thymeleaf.standard.processor.attr.AbstractStandardSwitchStructureAttrProcessor.SwitchStructure;
-import org.thymeleaf.util.EvaluationUtil;
 
 /**
  * 
@@ -93,16 +93,30 @@ protected boolean isVisible(final Arguments arguments, final Element element, fi
             
         }
 
-        final Configuration configuration = arguments.getConfiguration();
-        final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
-
-        final IStandardExpression caseExpression = expressionParser.parseExpression(configuration, arguments, attributeValue);
+        final boolean visible;
         
-        final EqualsExpression equalsExpression = new EqualsExpression(switchStructure.getExpression(), caseExpression); 
-
-        final Object value = equalsExpression.execute(configuration, arguments);
-
-        final boolean visible = EvaluationUtil.evaluateAsBoolean(value);
+        final Boolean literalCaseMatch = 
+                switchStructure.matchesLiteralCase(
+                        arguments, attributeName, 
+                        element.getAttributeFromNormalizedName(Attribute.normalizeAttributeName(attributeName)));
+        
+        if (literalCaseMatch != null) {
+            
+            visible = literalCaseMatch.booleanValue();
+            
+        } else {
+            
+            final Configuration configuration = arguments.getConfiguration();
+            final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
+    
+            final IStandardExpression caseExpression = expressionParser.parseExpression(configuration, arguments, attributeValue);
+            
+            final Object switchValue = switchStructure.getValue(configuration, arguments);
+            final Object caseValue = caseExpression.execute(configuration, arguments);
+    
+            visible = EqualsExpression.evaluateEquality(switchValue, caseValue);
+            
+        }
         
         if (this.logger.isTraceEnabled()) {
             this.logger.trace("[THYMELEAF][{}][{}] Case expression \"{}\" in attribute \"{}\" has been evaluated as: \"{}\"",
@@ -19,17 +19,27 @@
  */
 package org.thymeleaf.standard.processor.attr;
 
+import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import org.thymeleaf.Arguments;
 import org.thymeleaf.Configuration;
+import org.thymeleaf.context.IProcessingContext;
+import org.thymeleaf.dom.Attribute;
 import org.thymeleaf.dom.Element;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.exceptions.TemplateProcessingException;
 import org.thymeleaf.processor.IAttributeNameProcessorMatcher;
 import org.thymeleaf.processor.attr.AbstractLocalVariableDefinitionAttrProcessor;
 import org.thymeleaf.standard.expression.IStandardExpression;
 import org.thymeleaf.standard.expression.IStandardExpressionParser;
+import org.thymeleaf.standard.expression.LiteralValue;
 import org.thymeleaf.standard.expression.StandardExpressions;
+import org.thymeleaf.standard.expression.TextLiteralExpression;
+import org.thymeleaf.standard.expression.Token;
+import org.thymeleaf.util.EvaluationUtil;
 
 /**
  * 
@@ -68,8 +78,11 @@ protected final Map<String, Object> getNewLocalVariables(
 
         final IStandardExpression switchExpression = expressionParser.parseExpression(configuration, arguments, attributeValue);
 
+        final Attribute switchAttribute = 
+                element.getAttributeFromNormalizedName(Attribute.normalizeAttributeName(attributeName));
+        
         final Map<String,Object> newVariables = new HashMap<String, Object>(2, 1.0f);
-        newVariables.put(SWITCH_VARIABLE_NAME, new SwitchStructure(switchExpression));
+        newVariables.put(SWITCH_VARIABLE_NAME, new SwitchStructure(switchExpression, element, switchAttribute));
         
         return newVariables;
         
@@ -78,14 +91,53 @@ protected final Map<String, Object> getNewLocalVariables(
 
 
     
+    /**
+     * <p>
+     *   Represents the state of the execution of a switch structure.
+     * </p>
+     * <p>
+     *   Since 2.1.5, the switch expression is executed only once, no matter how many cases are
+     *   evaluated, and cases specified as literals (e.g. <tt>th:case="'admin'"</tt> or <tt>th:case="3"</tt>)
+     *   in the children of the switch element are resolved by looking up the switch value in a table
+     *   of literal cases. This table is computed the first time it is needed and kept with the switch
+     *   attribute (see {@link Attribute#getComputedValue(String)}), so that it is shared by all the
+     *   duplicates of a cached template.
+     * </p>
+     */
     public static final class SwitchStructure {
         
+        private static final String LITERAL_CASE_TABLE_KEY_PREFIX = "SWITCH_LITERAL_CASES|";
+        
         private final IStandardExpression expression;
+        private final Element element;
+        private final Attribute attribute;
         private boolean executed;
         
+        private boolean valueComputed = false;
+        private Object value = null;
+        
+        private LiteralCaseTable literalCaseTable = null;
+        private boolean literalCasesSelected = false;
+        private Attribute[] selectedLiteralCases = null;
+        
+        
         public SwitchStructure(final IStandardExpression expression) {
+            this(expression, null, null);
+        }
+        
+        /**
+         * 
+         * @param expression the switch expression.
+         * @param element the switch element (can be null).
+         * @param attribute the switch attribute (can be null, in which case literal cases are not
+         *        resolved by means of a table of literal cases).
+         * @since 2.1.5
+         */
+        public SwitchStructure(final IStandardExpression expression, final Element element, final Attribute attribute) {
             super();
             this.expression = expression;
+            this.element = element;
+            this.attribute = attribute;
             this.executed = false;
         }
 
@@ -100,9 +152,220 @@ public boolean isExecuted() {
         public void setExecuted(final boolean executed) {
             this.executed = executed;
         }
+        
+        
+        /**
+         * <p>
+         *   Returns the result of executing the switch expression, which is executed only the first
+         *   time this method is called.
+         * </p>
+         * 
+         * @param configuration the configuration.
+         * @param processingContext the processing context.
+         * @return the switch value.
+         * @since 2.1.5
+         */
+        public Object getValue(final Configuration configuration, final IProcessingContext processingContext) {
+            if (!this.valueComputed) {
+                this.value = this.expression.execute(configuration, processingContext);
+                this.valueComputed = true;
+            }
+            return this.value;
+        }
+        
+        
+        /**
+         * <p>
+         *   Checks whether a case matches the switch value by means of the table of literal cases
+         *   of this switch structure.
+         * </p>
+         * 
+         * @param arguments the arguments.
+         * @param caseAttributeName the name of the case attribute.
+         * @param caseAttribute the case attribute of the element being evaluated.
+         * @return whether the case matches the switch value, or null if the case is not a literal
+         *         one (or the switch value is not one which can be looked up), in which case the
+         *         case expression will have to be executed and its result compared to the switch value.
+         * @since 2.1.5
+         */
+        public Boolean matchesLiteralCase(
+                final Arguments arguments, final String caseAttributeName, final Attribute caseAttribute) {
+            
+            if (this.attribute == null || caseAttribute == null) {
+                return null;
+            }
+            
+            if (this.literalCaseTable == null) {
+                this.literalCaseTable = getLiteralCaseTable(arguments, caseAttributeName);
+            }
+            if (!this.literalCaseTable.isLiteralCase(caseAttribute)) {
+                return null;
+            }
+            
+            if (!this.literalCasesSelected) {
+                final Object caseKey = 
+                        computeCaseKey(getValue(arguments.getConfiguration(), arguments));
+                if (caseKey == null) {
+                    // The switch value cannot be looked up, so cases will have to be evaluated one by one
+                    this.literalCaseTable = LiteralCaseTable.EMPTY;
+                    return null;
+                }
+                this.selectedLiteralCases = this.literalCaseTable.getCases(caseKey);
+                this.literalCasesSelected = true;
+            }
+            
+            if (this.selectedLiteralCases != null) {
+                for (final Attribute selectedLiteralCase : this.selectedLiteralCases) {
+                    if (selectedLiteralCase == caseAttribute) {
+                        return Boolean.TRUE;
+                    }
+                }
+            }
+            return Boolean.FALSE;
+            
+        }
+        
+        
+        private LiteralCaseTable getLiteralCaseTable(final Arguments arguments, final String caseAttributeName) {
+            
+            final String normalizedCaseAttributeName = Attribute.normalizeAttributeName(caseAttributeName);
+            final String tableKey = LITERAL_CASE_TABLE_KEY_PREFIX + normalizedCaseAttributeName;
+            
+            LiteralCaseTable table = (LiteralCaseTable) this.attribute.getComputedValue(tableKey);
+            if (table == null) {
+                table = LiteralCaseTable.build(arguments, this.element, normalizedCaseAttributeName);
+                this.attribute.setComputedValue(tableKey, table);
+            }
+            return table;
+            
+        }
                 
     }
     
+    
+    
+    
+    /*
+     * Computes the key under which a value is looked up in a table of literal cases, normalized
+     * so that keys are equal only if values are equal according to the semantics of the "=="
+     * operator (see EqualsExpression#evaluateEquality(Object, Object)). Returns null for
+     * values which cannot be looked up, i.e. those for which equality depends on their class.
+     */
+    static Object computeCaseKey(final Object value) {
+        final Object unwrappedValue = LiteralValue.unwrap(value);
+        if (unwrappedValue == null) {
+            return LiteralCaseTable.NULL_KEY;
+        }
+        final BigDecimal numberValue = EvaluationUtil.evaluateAsNumber(unwrappedValue);
+        if (numberValue != null) {
+            return (numberValue.signum() == 0? BigDecimal.ZERO : numberValue.stripTrailingZeros());
+        }
+        if (unwrappedValue instanceof String || unwrappedValue instanceof Character) {
+            return unwrappedValue.toString();
+        }
+        if (unwrappedValue instanceof Boolean) {
+            return unwrappedValue;
+        }
+        return null;
+    }
+    
+    
+    
+    
+    /*
+     * Table of the literal cases (attributes) specified in the children of a switch element, by key.
+     * Instances are immutable once built, and are shared by all the duplicates of a cached template.
+     */
+    private static final class LiteralCaseTable {
+        
+        static final Object NULL_KEY = new Object();
+        static final LiteralCaseTable EMPTY = 
+                new LiteralCaseTable(new HashMap<Object,Attribute[]>(1), new IdentityHashMap<Attribute,Object>(1));
+        
+        private final Map<Object,Attribute[]> casesByKey;
+        private final IdentityHashMap<Attribute,Object> literalCases;
+        
+        
+        static LiteralCaseTable build(
+                final Arguments arguments, final Element switchElement, final String normalizedCaseAttributeName) {
+            
+            final Configuration configuration = arguments.getConfiguration();
+            final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
+            
+            final Map<Object,Attribute[]> casesByKey = new HashMap<Object, Attribute[]>(16);
+            final IdentityHashMap<Attribute,Object> literalCases = new IdentityHashMap<Attribute, Object>(16);
+            
+            for (final Node child : switchElement.getChildren()) {
+                
+                if (!(child instanceof Element)) {
+                    continue;
+                }
+                final Attribute caseAttribute = 
+                        ((Element)child).getAttributeFromNormalizedName(normalizedCaseAttributeName);
+                if (caseAttribute == null) {
+                    continue;
+                }
+                
+                final String caseValue = caseAttribute.getValue();
+                if (caseValue == null || 
+                        caseValue.trim().equals(AbstractStandardCaseAttrProcessor.CASE_DEFAULT_ATTRIBUTE_VALUE) ||
+                        caseValue.contains("__")) {
+                    // Default cases are not looked up, and preprocessed expressions are not literals
+                    continue;
+                }
+                
+                final IStandardExpression caseExpression;
+                try {
+                    caseExpression = expressionParser.parseExpression(configuration, arguments, caseValue);
+                } catch (final TemplateProcessingException e) {
+                    // Left non-literal: it will be evaluated (and fail) only if cases before it do not match
+                    continue;
+                }
+                if (!(caseExpression instanceof Token || caseExpression instanceof TextLiteralExpression)) {
+                    continue;
+                }
+                
+                final Object caseKey = computeCaseKey(caseExpression.execute(configuration, arguments));
+                if (caseKey == null) {
+                    continue;
+                }
+                
+                final Attribute[] cases = casesByKey.get(caseKey);
+                if (cases == null) {
+                    casesByKey.put(caseKey, new Attribute[] { caseAttribute });
+                } else {
+                    final Attribute[] newCases = new Attribute[cases.length + 1];
+                    System.arraycopy(cases, 0, newCases, 0, cases.length);
+                    newCases[cases.length] = caseAttribute;
+                    casesByKey.put(caseKey, newCases);
+                }
+                literalCases.put(caseAttribute, caseKey);
+                
+            }
+            
+            return new LiteralCaseTable(casesByKey, literalCases);
+            
+        }
+        
+        
+        private LiteralCaseTable(
+                final Map<Object,Attribute[]> casesByKey, final IdentityHashMap<Attribute,Object> literalCases) {
+            super();
+            this.casesByKey = casesByKey;
+            this.literalCases = literalCases;
+        }
+        
+        
+        boolean isLiteralCase(final Attribute caseAttribute) {
+            return this.literalCases.containsKey(caseAttribute);
+        }
+        
+        Attribute[] getCases(final Object caseKey) {
+            return this.casesByKey.get(caseKey);
+        }
+        
+    }
+    
 
     
 }
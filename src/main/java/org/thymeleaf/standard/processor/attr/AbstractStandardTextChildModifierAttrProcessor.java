@@ -20,12 +20,11 @@
 package org.thymeleaf.standard.processor.attr;
 
 import org.thymeleaf.Arguments;
-import org.thymeleaf.Configuration;
+import org.thymeleaf.dom.Attribute;
 import org.thymeleaf.dom.Element;
 import org.thymeleaf.processor.IAttributeNameProcessorMatcher;
-import org.thymeleaf.standard.expression.IStandardExpression;
-import org.thymeleaf.standard.expression.IStandardExpressionParser;
-import org.thymeleaf.standard.expression.StandardExpressions;
+import org.thymeleaf.standard.expression.ExpressionFoldingUtils;
+import org.thymeleaf.standard.expression.StandardExpressionExecutionContext;
 
 /**
  * 
@@ -58,14 +57,14 @@ protected AbstractStandardTextChildModifierAttrProcessor(final String attributeN
     protected final String getText(
             final Arguments arguments, final Element element, final String attributeName) {
         
-        final String attributeValue = element.getAttributeValue(attributeName);
-
-        final Configuration configuration = arguments.getConfiguration();
-        final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
-
-        final IStandardExpression expression = expressionParser.parseExpression(configuration, arguments, attributeValue);
-
-        final Object result = expression.execute(configuration, arguments);
+        final Attribute attribute = 
+                element.getAttributeFromNormalizedName(Attribute.normalizeAttributeName(attributeName));
+
+        // Expressions depending only on literals and messages without parameters are only
+        // executed once per template and locale
+        final Object result = 
+                ExpressionFoldingUtils.executeFoldable(
+                        arguments.getConfiguration(), arguments, attribute, StandardExpressionExecutionContext.NORMAL);
 
         return (result == null? "" : result.toString());
 
@@ -20,14 +20,12 @@
 package org.thymeleaf.standard.processor.attr;
 
 import org.thymeleaf.Arguments;
-import org.thymeleaf.Configuration;
+import org.thymeleaf.dom.Attribute;
 import org.thymeleaf.dom.Element;
 import org.thymeleaf.processor.IAttributeNameProcessorMatcher;
 import org.thymeleaf.processor.attr.AbstractUnescapedTextChildModifierAttrProcessor;
-import org.thymeleaf.standard.expression.IStandardExpression;
-import org.thymeleaf.standard.expression.IStandardExpressionParser;
+import org.thymeleaf.standard.expression.ExpressionFoldingUtils;
 import org.thymeleaf.standard.expression.StandardExpressionExecutionContext;
-import org.thymeleaf.standard.expression.StandardExpressions;
 
 /**
  * 
@@ -59,15 +57,14 @@ protected AbstractStandardUnescapedTextChildModifierAttrProcessor(final String a
     protected final String getText(
             final Arguments arguments, final Element element, final String attributeName) {
 
-        final String attributeValue = element.getAttributeValue(attributeName);
+        final Attribute attribute = 
+                element.getAttributeFromNormalizedName(Attribute.normalizeAttributeName(attributeName));
 
-        final Configuration configuration = arguments.getConfiguration();
-        final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
-
-        final IStandardExpression expression = expressionParser.parseExpression(configuration, arguments, attributeValue);
-
-        final Object result =
-                expression.execute(configuration, arguments, StandardExpressionExecutionContext.UNESCAPED_EXPRESSION);
+        // Expressions depending only on literals and messages without parameters are only
+        // executed once per template and locale
+        final Object result = 
+                ExpressionFoldingUtils.executeFoldable(
+                        arguments.getConfiguration(), arguments, attribute, StandardExpressionExecutionContext.UNESCAPED_EXPRESSION);
 
         return (result == null? "" : result.toString());
 
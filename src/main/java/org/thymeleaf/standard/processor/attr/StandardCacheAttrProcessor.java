@@ -0,0 +1,353 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.standard.processor.attr;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.thymeleaf.Arguments;
+import org.thymeleaf.Configuration;
+import org.thymeleaf.cache.AbstractCacheManager;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.ICacheManager;
+import org.thymeleaf.cache.OutputCacheEntry;
+import org.thymeleaf.dom.Attribute;
+import org.thymeleaf.dom.Document;
+import org.thymeleaf.dom.Element;
+import org.thymeleaf.dom.Macro;
+import org.thymeleaf.dom.NestableNode;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.exceptions.TemplateOutputException;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.processor.ProcessorResult;
+import org.thymeleaf.processor.attr.AbstractAttrProcessor;
+import org.thymeleaf.standard.expression.IStandardExpression;
+import org.thymeleaf.standard.expression.IStandardExpressionParser;
+import org.thymeleaf.standard.expression.StandardExpressions;
+import org.thymeleaf.templatewriter.AbstractGeneralTemplateWriter;
+import org.thymeleaf.templatewriter.ITemplateWriter;
+import org.thymeleaf.util.DOMUtils;
+import org.thymeleaf.util.StringUtils;
+
+/**
+ * <p>
+ *   Caches the rendered output of an element (including its whole body) in the <i>output cache</i>
+ *   (see {@link AbstractCacheManager#getOutputCache()}), using the result of evaluating the attribute
+ *   value as a Standard Expression as (part of) the cache key: <tt>th:cache="${user.segment}"</tt>.
+ * </p>
+ * <p>
+ *   If cached output exists for the key, the element will be replaced by a {@link Macro} node containing
+ *   it, and neither the element nor its body will be processed. If not, the element will be processed and
+ *   written, and the resulting output will be cached before replacing the element. Cache keys also include
+ *   the name of the template the element was parsed from, an identifier of the attribute in that template
+ *   and the context locale. Output is only cached for elements coming from templates (or fragments) that
+ *   are themselves cached, starting at their second execution: elements in non-cacheable templates, or
+ *   when there is no template cache, are always processed normally.
+ * </p>
+ * <p>
+ *   An optional <tt>th:cache-ttl</tt> attribute establishes the time-to-live of the cached output, as a
+ *   number followed by an optional unit: <tt>ms</tt>, <tt>s</tt> (default), <tt>m</tt>, <tt>h</tt> or
+ *   <tt>d</tt>. For example: <tt>th:cache-ttl="60s"</tt>.
+ * </p>
+ * <p>
+ *   As this attribute is executed before any others in the same element, its expression cannot use variables
+ *   defined by them (e.g. <tt>th:with</tt>). If the evaluated key is null, or no output cache is available,
+ *   the element is processed normally.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class StandardCacheAttrProcessor
+        extends AbstractAttrProcessor {
+
+    public static final int ATTR_PRECEDENCE = 50;
+    public static final String ATTR_NAME = "cache";
+    public static final String TTL_ATTR_NAME = "cache-ttl";
+    
+    private static final String CACHE_ID_COMPUTED_VALUE_KEY = "CACHE_ID";
+    private static final AtomicLong NEXT_CACHE_ID = new AtomicLong(0L);
+
+    
+    
+    
+    public StandardCacheAttrProcessor() {
+        super(ATTR_NAME);
+    }
+
+
+
+    @Override
+    public int getPrecedence() {
+        return ATTR_PRECEDENCE;
+    }
+
+
+
+    @Override
+    public ProcessorResult processAttribute(final Arguments arguments, final Element element, final String attributeName) {
+
+        final String dialectPrefix = Attribute.getPrefixFromAttributeName(attributeName);
+        
+        final Attribute attribute = element.getAttributeFromNormalizedName(Attribute.normalizeAttributeName(attributeName));
+        final String attributeValue = element.getAttributeValue(attributeName);
+        final String ttlAttributeValue = 
+                element.getAttributeValueFromNormalizedName(dialectPrefix, TTL_ATTR_NAME);
+
+        element.removeAttribute(attributeName);
+        for (final String ttlAttributeName : Attribute.applyPrefixToAttributeName(TTL_ATTR_NAME, dialectPrefix)) {
+            element.removeAttribute(ttlAttributeName);
+        }
+
+        final String cacheId = getCacheId(arguments, element, attribute);
+        if (cacheId == null) {
+            // Without a stable identity, cached output could never be reused
+            return ProcessorResult.OK;
+        }
+        
+        final Configuration configuration = arguments.getConfiguration();
+        
+        final ICache<String,OutputCacheEntry> outputCache = getOutputCache(configuration);
+        if (outputCache == null) {
+            return ProcessorResult.OK;
+        }
+
+        final ITemplateWriter templateWriter =
+                configuration.getTemplateModeHandler(arguments.getTemplateResolution().getTemplateMode()).getTemplateWriter();
+        if (!(templateWriter instanceof AbstractGeneralTemplateWriter)) {
+            // We need to be able to write single nodes
+            return ProcessorResult.OK;
+        }
+
+        final IStandardExpressionParser expressionParser = StandardExpressions.getExpressionParser(configuration);
+        final IStandardExpression expression = expressionParser.parseExpression(configuration, arguments, attributeValue);
+        final Object key = expression.execute(configuration, arguments);
+        if (key == null) {
+            return ProcessorResult.OK;
+        }
+
+        final String cacheKey = computeCacheKey(arguments, cacheId, key);
+        
+        OutputCacheEntry entry = outputCache.get(cacheKey);
+        if (entry == null) {
+            final long ttlMs = parseTtl(ttlAttributeValue, attributeName);
+            final String output = 
+                    render(arguments, element, (AbstractGeneralTemplateWriter) templateWriter);
+            entry = new OutputCacheEntry(output, ttlMs);
+            outputCache.put(cacheKey, entry);
+        }
+
+        final NestableNode parent = element.getParent();
+        parent.insertBefore(element, new Macro(entry.getOutput()));
+        parent.removeChild(element);
+        
+        return ProcessorResult.OK;
+        
+    }
+    
+    
+    
+    private static ICache<String,OutputCacheEntry> getOutputCache(final Configuration configuration) {
+        final ICacheManager cacheManager = configuration.getCacheManager();
+        if (cacheManager == null || !(cacheManager instanceof AbstractCacheManager)) {
+            return null;
+        }
+        return ((AbstractCacheManager)cacheManager).getOutputCache();
+    }
+    
+    
+    
+    /*
+     * Identifies the th:cache attribute in the template it was parsed from. Attributes are shared
+     * between a cached template (or fragment) and the copies created from it for each execution (see
+     * Attribute#getComputedValue(String)), so the identifier is different for every element, even in
+     * the same line or in fragments included from other templates.
+     * 
+     * The identifier is only stable while the same Attribute object keeps being reused, which is not
+     * the case without a template cache, for non-cacheable templates or for elements created by
+     * processors: each of their executions would fill the output cache with entries never to be hit.
+     * So an identifier is only assigned when the attribute is found again in a different execution
+     * (i.e. processing a different document) than the one that first found it. Until then, or if the
+     * element has no document name, null is returned.
+     */
+    private static String getCacheId(final Arguments arguments, final Element element, final Attribute attribute) {
+        final String documentName = element.getDocumentName();
+        if (attribute == null || documentName == null) {
+            return null;
+        }
+        final Object cacheId = attribute.getComputedValue(CACHE_ID_COMPUTED_VALUE_KEY);
+        if (cacheId instanceof String) {
+            return (String) cacheId;
+        }
+        final Document document = arguments.getDocument();
+        // Synchronized so that concurrent executions agree on a single id
+        synchronized (attribute) {
+            final Object current = attribute.getComputedValue(CACHE_ID_COMPUTED_VALUE_KEY);
+            if (current instanceof String) {
+                return (String) current;
+            }
+            if (current == null) {
+                attribute.setComputedValue(CACHE_ID_COMPUTED_VALUE_KEY, new FirstExecution(document));
+                return null;
+            }
+            if (((FirstExecution)current).isFor(document)) {
+                // Same execution (e.g. an iterated element): reuse is still unproven
+                return null;
+            }
+            // Found by a different (maybe already finished) execution, so the attribute is being reused
+            final String newCacheId = documentName + '|' + NEXT_CACHE_ID.incrementAndGet();
+            attribute.setComputedValue(CACHE_ID_COMPUTED_VALUE_KEY, newCacheId);
+            return newCacheId;
+        }
+    }
+    
+    
+    /*
+     * Document of the execution which first found a th:cache attribute. Weakly referenced, so that
+     * cached attributes do not keep the documents of finished executions in memory (a collected
+     * document never matches the current one, as it belonged to a finished execution).
+     */
+    private static final class FirstExecution {
+        
+        private final WeakReference<Document> document;
+        
+        FirstExecution(final Document document) {
+            super();
+            this.document = new WeakReference<Document>(document);
+        }
+        
+        boolean isFor(final Document currentDocument) {
+            return this.document.get() == currentDocument;
+        }
+        
+    }
+    
+    
+    
+    private static String computeCacheKey(final Arguments arguments, final String cacheId, final Object key) {
+        final Locale locale = arguments.getContext().getLocale();
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append(cacheId);
+        strBuilder.append('|');
+        strBuilder.append(locale);
+        strBuilder.append('|');
+        strBuilder.append(key);
+        return strBuilder.toString();
+    }
+    
+    
+    
+    /*
+     * Processes a (detached) copy of the element and returns its written output. If the element is
+     * inside a whitespace-sensitive element (e.g. <pre>), the copy is placed inside an empty element
+     * of the same name, so that processors and the writer do not whitespace-minimize its contents.
+     */
+    private static String render(
+            final Arguments arguments, final Element element, final AbstractGeneralTemplateWriter templateWriter) {
+        
+        final Element whitespaceSensitiveAncestor = findWhitespaceSensitiveAncestor(element);
+        
+        final Document document = new Document(element.getDocumentName());
+        final NestableNode container;
+        if (whitespaceSensitiveAncestor == null) {
+            container = document;
+        } else {
+            container = new Element(whitespaceSensitiveAncestor.getOriginalName());
+            document.addChild(container);
+        }
+        container.addChild(element.cloneNode(null, false));
+        document.process(arguments);
+        
+        final StringWriter writer = new StringWriter();
+        try {
+            // The element might have been removed or replaced by several nodes during processing
+            final Node[] children = container.unsafeGetChildrenNodeArray();
+            final int childrenLen = container.numChildren();
+            for (int i = 0; i < childrenLen; i++) {
+                templateWriter.writeNode(arguments, writer, children[i], (whitespaceSensitiveAncestor != null));
+            }
+        } catch (final IOException e) {
+            throw new TemplateOutputException(
+                    "An error happened while writing cacheable output", arguments.getTemplateName(), e);
+        }
+        return writer.toString();
+        
+    }
+    
+    
+    
+    private static Element findWhitespaceSensitiveAncestor(final Element element) {
+        if (!DOMUtils.isInsideWhitespaceSensitiveElement(element)) {
+            return null;
+        }
+        NestableNode parent = element.getParent();
+        while (!(parent instanceof Element && ((Element)parent).isWhitespaceSensitiveIfWeb())) {
+            parent = parent.getParent();
+        }
+        return (Element) parent;
+    }
+    
+    
+    
+    private static long parseTtl(final String ttlAttributeValue, final String attributeName) {
+        
+        if (StringUtils.isEmptyOrWhitespace(ttlAttributeValue)) {
+            return OutputCacheEntry.NO_TTL;
+        }
+        
+        final String ttl = ttlAttributeValue.trim().toLowerCase();
+        int unitStart = 0;
+        while (unitStart < ttl.length() && Character.isDigit(ttl.charAt(unitStart))) {
+            unitStart++;
+        }
+        if (unitStart == 0) {
+            throw new TemplateProcessingException(
+                    "Invalid TTL \"" + ttlAttributeValue + "\" specified for \"" + attributeName + "\"");
+        }
+        
+        final long amount = Long.parseLong(ttl.substring(0, unitStart));
+        final String unit = ttl.substring(unitStart).trim();
+        if (unit.length() == 0 || "s".equals(unit)) {
+            return amount * 1000L;
+        }
+        if ("ms".equals(unit)) {
+            return amount;
+        }
+        if ("m".equals(unit)) {
+            return amount * 60L * 1000L;
+        }
+        if ("h".equals(unit)) {
+            return amount * 60L * 60L * 1000L;
+        }
+        if ("d".equals(unit)) {
+            return amount * 24L * 60L * 60L * 1000L;
+        }
+        throw new TemplateProcessingException(
+                "Invalid TTL unit \"" + unit + "\" specified for \"" + attributeName + "\": only 'ms', 's', " +
+                "'m', 'h' and 'd' are allowed");
+        
+    }
+
+}
@@ -0,0 +1,343 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.templateparser;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.thymeleaf.util.StringUtils;
+import org.thymeleaf.util.Validate;
+
+
+/**
+ * <p>
+ *   Reader on the complete, already decoded contents of a template file.
+ * </p>
+ * <p>
+ *   Contents are read from the file (or received already read) in one go and decoded in bulk by a {@link CharsetDecoder} into
+ *   a char buffer. Buffers are pooled, and are returned to the pool when the reader is closed, so
+ *   readers should always be closed once template parsing has finished.
+ * </p>
+ * <p>
+ *   Template parsers able to work directly on char arrays can obtain the decoded contents
+ *   by means of {@link #getBuffer()} and {@link #getLength()}, avoiding any copies.
+ * </p>
+ * <p>
+ *   Objects of this class are <b>not thread-safe</b>.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class DecodedTemplateReader extends Reader {
+
+    
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE / 4;
+
+    private static final int MAX_POOLED_BUFFERS = 8;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+    
+    private static final Queue<char[]> bufferPool = new ConcurrentLinkedQueue<char[]>();
+    private static final AtomicInteger bufferPoolSize = new AtomicInteger(0);
+    
+    
+    private char[] buffer;
+    private final int length;
+    private int pos = 0;
+    
+    
+    
+    
+    /**
+     * <p>
+     *   Creates a reader on the decoded contents of the file the specified stream is reading.
+     *   The stream is completely read and closed.
+     * </p>
+     * 
+     * @param inputStream the stream of the template file, which should not have been read yet.
+     * @param characterEncoding the character encoding of the file (platform default if null or empty).
+     * @return the reader, or null if the file is too big for being decoded in memory (in which
+     *         case the stream is left untouched).
+     * @throws IOException if the file cannot be read.
+     */
+    public static DecodedTemplateReader forFile(
+            final FileInputStream inputStream, final String characterEncoding) throws IOException {
+        
+        Validate.notNull(inputStream, "Input stream cannot be null");
+        
+        final FileChannel channel = inputStream.getChannel();
+        final long size = channel.size() - channel.position();
+        if (size > MAX_FILE_SIZE) {
+            return null;
+        }
+
+        try {
+            
+            final Charset charset =
+                    (StringUtils.isEmptyOrWhitespace(characterEncoding)? 
+                            Charset.defaultCharset() : Charset.forName(characterEncoding));
+            
+            // Contents are read in bulk into a heap buffer: memory-mapping the file would provide a direct
+            // buffer, which JDK decoders process much more slowly than heap ones.
+            final byte[] byteArray = new byte[(int) size];
+            int read = 0;
+            int n;
+            while (read < byteArray.length && (n = inputStream.read(byteArray, read, byteArray.length - read)) != -1) {
+                read += n;
+            }
+            
+            return decode(byteArray, read, charset);
+            
+        } finally {
+            inputStream.close();
+        }
+        
+    }
+    
+    
+    
+    /**
+     * <p>
+     *   Creates a reader on the decoded contents of a template which has already been read into
+     *   a byte array.
+     * </p>
+     * 
+     * @param content the template contents.
+     * @param length the number of bytes to be decoded, starting at position 0.
+     * @param characterEncoding the character encoding of the contents (platform default if null or empty).
+     * @return the reader.
+     * @throws IOException if the contents cannot be decoded.
+     */
+    public static DecodedTemplateReader forBytes(
+            final byte[] content, final int length, final String characterEncoding) throws IOException {
+        
+        Validate.notNull(content, "Content cannot be null");
+        
+        final Charset charset =
+                (StringUtils.isEmptyOrWhitespace(characterEncoding)? 
+                        Charset.defaultCharset() : Charset.forName(characterEncoding));
+        
+        return decode(content, length, charset);
+        
+    }
+    
+    
+    
+    private static DecodedTemplateReader decode(
+            final byte[] content, final int length, final Charset charset) throws IOException {
+        
+        final ByteBuffer bytes = ByteBuffer.wrap(content, 0, length);
+        
+        // Same error handling as java.io.InputStreamReader
+        final CharsetDecoder decoder = 
+                charset.newDecoder().
+                    onMalformedInput(CodingErrorAction.REPLACE).
+                    onUnmappableCharacter(CodingErrorAction.REPLACE);
+        
+        CharBuffer chars = CharBuffer.wrap(allocateBuffer((int) (length * decoder.averageCharsPerByte()) + 16));
+        
+        boolean flushing = false;
+        while (true) {
+            final CoderResult result = 
+                    (flushing? decoder.flush(chars) : decoder.decode(bytes, chars, true));
+            if (result.isOverflow()) {
+                final char[] newBuffer = new char[chars.capacity() * 2];
+                System.arraycopy(chars.array(), 0, newBuffer, 0, chars.position());
+                final int position = chars.position();
+                releaseBuffer(chars.array());
+                chars = CharBuffer.wrap(newBuffer);
+                chars.position(position);
+            } else if (result.isUnderflow()) {
+                if (flushing) {
+                    break;
+                }
+                flushing = true;
+            } else {
+                result.throwException();
+            }
+        }
+        
+        return new DecodedTemplateReader(chars.array(), chars.position());
+        
+    }
+    
+    
+    
+    
+    private DecodedTemplateReader(final char[] buffer, final int length) {
+        super();
+        this.buffer = buffer;
+        this.length = length;
+    }
+    
+    
+    
+    
+    /**
+     * <p>
+     *   Returns the buffer containing the decoded contents, from position 0 to {@link #getLength()}.
+     *   The buffer must not be used once the reader has been closed.
+     * </p>
+     * 
+     * @return the buffer.
+     */
+    public char[] getBuffer() {
+        return this.buffer;
+    }
+    
+    
+    /**
+     * <p>
+     *   Returns the amount of decoded chars in the buffer.
+     * </p>
+     * 
+     * @return the length of the decoded contents.
+     */
+    public int getLength() {
+        return this.length;
+    }
+    
+    
+    
+    
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (this.buffer == null) {
+            throw new IOException("Reader is closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (this.pos >= this.length) {
+            return -1;
+        }
+        final int read = Math.min(len, this.length - this.pos);
+        System.arraycopy(this.buffer, this.pos, cbuf, off, read);
+        this.pos += read;
+        return read;
+    }
+
+    
+    @Override
+    public int read() throws IOException {
+        if (this.buffer == null) {
+            throw new IOException("Reader is closed");
+        }
+        if (this.pos >= this.length) {
+            return -1;
+        }
+        return this.buffer[this.pos++];
+    }
+
+    
+    @Override
+    public boolean ready() throws IOException {
+        if (this.buffer == null) {
+            throw new IOException("Reader is closed");
+        }
+        return true;
+    }
+
+    
+    @Override
+    public void close() {
+        if (this.buffer != null) {
+            releaseBuffer(this.buffer);
+            this.buffer = null;
+        }
+    }
+    
+    
+    
+    
+    private static char[] allocateBuffer(final int size) {
+        
+        if (size > MAX_POOLED_BUFFER_SIZE) {
+            return new char[size];
+        }
+        
+        // Pooled buffers that are too small are put back into the pool afterwards, so that one big
+        // template does not drain the pool. Only if none is big enough, the smallest of them is
+        // discarded, so that it is replaced by the new (bigger) buffer when this one is released.
+        char[][] tooSmall = null;
+        int tooSmallLen = 0;
+        char[] found = null;
+        
+        char[] pooled;
+        while (tooSmallLen < MAX_POOLED_BUFFERS && (pooled = bufferPool.poll()) != null) {
+            bufferPoolSize.decrementAndGet();
+            if (pooled.length >= size) {
+                found = pooled;
+                break;
+            }
+            if (tooSmall == null) {
+                tooSmall = new char[MAX_POOLED_BUFFERS][];
+            }
+            tooSmall[tooSmallLen++] = pooled;
+        }
+        
+        if (tooSmallLen > 0) {
+            int discarded = -1;
+            if (found == null) {
+                discarded = 0;
+                for (int i = 1; i < tooSmallLen; i++) {
+                    if (tooSmall[i].length < tooSmall[discarded].length) {
+                        discarded = i;
+                    }
+                }
+            }
+            for (int i = 0; i < tooSmallLen; i++) {
+                if (i != discarded) {
+                    releaseBuffer(tooSmall[i]);
+                }
+            }
+        }
+        
+        return (found != null? found : new char[size]);
+        
+    }
+    
+    
+    private static void releaseBuffer(final char[] buffer) {
+        if (buffer.length > MAX_POOLED_BUFFER_SIZE) {
+            return;
+        }
+        if (bufferPoolSize.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            bufferPool.offer(buffer);
+        } else {
+            bufferPoolSize.decrementAndGet();
+        }
+    }
+    
+    
+}
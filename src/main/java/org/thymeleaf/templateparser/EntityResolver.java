@@ -21,6 +21,7 @@
 
 import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,10 +29,18 @@
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.doctype.resolution.IDocTypeResolutionEntry;
 import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.util.ClassLoaderUtils;
+import org.thymeleaf.util.Validate;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
+ * <p>
+ *   Since 2.1.5, a single instance of this class is created for each {@link Configuration} (see
+ *   {@link Configuration#getEntityResolver()}), which remembers the DOCTYPE resolution entry matching
+ *   each pair of PUBLIC and SYSTEM ids and holds the grammar pool in which Apache Xerces parsers can
+ *   cache the DTDs resolved by it (see {@link #getGrammarPool()}).
+ * </p>
  * 
  * @author Daniel Fern&aacute;ndez
  * 
@@ -42,13 +51,29 @@ public final class EntityResolver implements org.xml.sax.EntityResolver {
     
     private static final Logger logger = LoggerFactory.getLogger(EntityResolver.class);
     
+    private static final boolean XERCES_IN_CLASSPATH = isXercesInClasspath();
+    
 
     private final Set<IDocTypeResolutionEntry> docTypeResolutionEntries;
+    private final ConcurrentHashMap<String,IDocTypeResolutionEntry> docTypeResolutionEntriesByIds;
+    private volatile Object grammarPool = null;
 
     
     public EntityResolver(final Configuration configuration) {
+        this(configuration.getDocTypeResolutionEntries());
+    }
+    
+    
+    /**
+     * 
+     * @param docTypeResolutionEntries the DOCTYPE resolution entries to be used for resolving entities.
+     * @since 2.1.5
+     */
+    public EntityResolver(final Set<IDocTypeResolutionEntry> docTypeResolutionEntries) {
         super();
-        this.docTypeResolutionEntries = configuration.getDocTypeResolutionEntries();
+        Validate.notNull(docTypeResolutionEntries, "DOCTYPE resolution entries cannot be null");
+        this.docTypeResolutionEntries = docTypeResolutionEntries;
+        this.docTypeResolutionEntriesByIds = new ConcurrentHashMap<String, IDocTypeResolutionEntry>(16);
     }
     
     
@@ -63,12 +88,24 @@ public InputSource resolveEntity(final String publicID, final String systemID)
             }
         }
         
-        for (final IDocTypeResolutionEntry entry : this.docTypeResolutionEntries) {
-            if (entry.getPublicID().matches(publicID) && entry.getSystemID().matches(systemID)) {
-                return entry.createInputSource();
+        // Null ids cannot be confused with any actual id, as these never contain line feeds
+        final String ids = (publicID == null? "\n" : publicID) + '\n' + (systemID == null? "\n" : systemID);
+        
+        IDocTypeResolutionEntry matchingEntry = this.docTypeResolutionEntriesByIds.get(ids);
+        if (matchingEntry == null) {
+            for (final IDocTypeResolutionEntry entry : this.docTypeResolutionEntries) {
+                if (entry.getPublicID().matches(publicID) && entry.getSystemID().matches(systemID)) {
+                    matchingEntry = entry;
+                    this.docTypeResolutionEntriesByIds.put(ids, entry);
+                    break;
+                }
             }
         }
         
+        if (matchingEntry != null) {
+            return matchingEntry.createInputSource();
+        }
+        
         throw new TemplateProcessingException(
                 "Unsupported entity requested with PUBLICID \"" + publicID + "\" and " +
         		"SYSTEMID \"" + systemID + "\". Make sure a corresponding " + 
@@ -77,4 +114,71 @@ public InputSource resolveEntity(final String publicID, final String systemID)
     }
     
     
+    
+    
+    /**
+     * <p>
+     *   Returns the grammar pool (an <tt>org.apache.xerces.xni.grammars.XMLGrammarPool</tt>) in which
+     *   Apache Xerces parsers using this entity resolver can cache the DTDs they read, so that these
+     *   are not resolved and parsed again for each template. Grammars are kept for as long as this
+     *   entity resolver (i.e. its {@link Configuration}) exists.
+     * </p>
+     * <p>
+     *   The returned object can be set as the <tt>http://apache.org/xml/properties/internal/grammar-pool</tt>
+     *   property of Apache Xerces parsers only (not of the Xerces implementation internal to the JDK).
+     * </p>
+     * 
+     * @return the grammar pool, or null if Apache Xerces is not in the classpath.
+     * @since 2.1.5
+     */
+    public Object getGrammarPool() {
+        if (!XERCES_IN_CLASSPATH) {
+            return null;
+        }
+        Object pool = this.grammarPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = this.grammarPool;
+                if (pool == null) {
+                    pool = XercesGrammarPoolFactory.createGrammarPool();
+                    this.grammarPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+    
+    
+    
+    
+    private static boolean isXercesInClasspath() {
+        try {
+            ClassLoaderUtils.getClassLoader(EntityResolver.class).
+                    loadClass("org.apache.xerces.util.XMLGrammarPoolImpl");
+            return true;
+        } catch (final ClassNotFoundException ignored) {
+            return false;
+        } catch (final NoClassDefFoundError ignored) {
+            return false;
+        }
+    }
+    
+    
+    /*
+     * This is defined in a class apart so that the classloader does not try to load
+     * xerces classes that might not be in the classpath.
+     */
+    private static final class XercesGrammarPoolFactory {
+        
+        static Object createGrammarPool() {
+            return new org.apache.xerces.util.XMLGrammarPoolImpl();
+        }
+        
+        private XercesGrammarPoolFactory() {
+            super();
+        }
+        
+    }
+    
+    
 }
@@ -19,7 +19,6 @@
  */
 package org.thymeleaf.templateparser;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.nio.CharBuffer;
@@ -31,6 +30,18 @@
 
 
 /**
+ * <p>
+ *   Reader that preprocesses template contents before they are handed to a parser: removes
+ *   parser-level comment blocks (<tt>&lt;!--/* ... *&#47;--&gt;</tt>) and prototype-only comment
+ *   markers (<tt>&lt;!--/*&#47;</tt> and <tt>/*&#47;--&gt;</tt>), substitutes the <tt>&amp;</tt>
+ *   starting entity references by {@link #CHAR_ENTITY_START_SUBSTITUTE}, normalizes the DOCTYPE
+ *   clause and (optionally) wraps contents in a synthetic root element.
+ * </p>
+ * <p>
+ *   Since 2.1.5, contents are processed in a single pass over a (growing) input buffer: chars
+ *   are classified by means of a lookup table and runs of chars that cannot start any of the
+ *   structures mentioned above (usually most of the template) are copied in bulk.
+ * </p>
  * 
  * @author Daniel Fern&aacute;ndez
  * 
@@ -42,42 +53,36 @@ public final class TemplatePreprocessingReader extends Reader {
     
     private static final Logger readerLogger = LoggerFactory.getLogger(TemplatePreprocessingReader.class);
 
-    private static final int BUFFER_BLOCK_SIZE = 1024;
-    private static final int OVERFLOW_BLOCK_SIZE = 2048;
+    private static final int MIN_BUFFER_SIZE = 1024;
 
     public static final char CHAR_ENTITY_START_SUBSTITUTE = '\uFFF8';
 
-    
-    private static final char CHAR_OPTIONAL_WHITESPACE_WILDCARD = '\u0358';
-    private static final char CHAR_WHITESPACE_WILDCARD = '\u0359';
-    private static final char CHAR_ALPHANUMERIC_WILDCARD = '\u0360';
-    private static final char CHAR_ANY_WILDCARD = '\u0361';
+    private static final char CHAR_BOM = '\uFEFF';
 
-    
-    private static final char[] LOWER_CHARS = 
-            ("[]<>!?=-_.,:;+*()&/%$\"'@#~^ \t\n\rabcdefghijklmnopqrstuvwxyz" + 
-            String.valueOf(CHAR_OPTIONAL_WHITESPACE_WILDCARD) + String.valueOf(CHAR_WHITESPACE_WILDCARD) +
-            String.valueOf(CHAR_ALPHANUMERIC_WILDCARD) + String.valueOf(CHAR_ANY_WILDCARD)).toCharArray();
-    private static final char[] UPPER_CHARS = 
-            ("[]<>!?=-_.,:;+*()&/%$\"'@#~^ \t\n\rABCDEFGHIJKLMNOPQRSTUVWXYZ" + 
-            String.valueOf(CHAR_OPTIONAL_WHITESPACE_WILDCARD) + String.valueOf(CHAR_WHITESPACE_WILDCARD) +
-            String.valueOf(CHAR_ALPHANUMERIC_WILDCARD) + String.valueOf(CHAR_ANY_WILDCARD)).toCharArray();
+
+    /*
+     * Chars that might start a structure needing processing outside comments: '<' (comments,
+     * DOCTYPE, XML prolog), '&' (entities) and '/' (end of prototype-only comment blocks).
+     * Non-ASCII chars are never special, except the BOM.
+     */
+    private static final boolean[] TEXT_SPECIAL_CHARS = new boolean[128];
+    static {
+        TEXT_SPECIAL_CHARS['<'] = true;
+        TEXT_SPECIAL_CHARS['&'] = true;
+        TEXT_SPECIAL_CHARS['/'] = true;
+    }
 
     
-    
-    private static final int[] COMMENT_START = convertToIndexes("<!--".toCharArray()); 
-    private static final int[] COMMENT_END = convertToIndexes("-->".toCharArray());
-    private static final int[] ENTITY = convertToIndexes(('&' + String.valueOf(CHAR_ALPHANUMERIC_WILDCARD) + ';').toCharArray());
-    private static final int[] DOCTYPE =
-            convertToIndexes(("<!DOCTYPE" + String.valueOf(CHAR_WHITESPACE_WILDCARD)  + String.valueOf(CHAR_ANY_WILDCARD) + ">").toCharArray());
-    private static final int[] XML_PROLOG =
-            convertToIndexes(("<?xml" + String.valueOf(CHAR_WHITESPACE_WILDCARD)  + String.valueOf(CHAR_ANY_WILDCARD) + "?>").toCharArray());
+    private static final char[] COMMENT_START = "<!--".toCharArray(); 
+    private static final char[] COMMENT_END = "-->".toCharArray();
+    private static final char[] DOCTYPE_START = "<!DOCTYPE".toCharArray();
+    private static final char[] XML_PROLOG_START = "<?XML".toCharArray();
 
-    private static final int[] PROTOTYPE_ONLY_COMMENT_START = convertToIndexes("<!--/*/".toCharArray());
-    private static final int[] PROTOTYPE_ONLY_COMMENT_END = convertToIndexes("/*/-->".toCharArray());
+    private static final char[] PROTOTYPE_ONLY_COMMENT_START = "<!--/*/".toCharArray();
+    private static final char[] PROTOTYPE_ONLY_COMMENT_END = "/*/-->".toCharArray();
 
-    private static final int[] PARSER_LEVEL_COMMENT_START = convertToIndexes("<!--/*".toCharArray());
-    private static final int[] PARSER_LEVEL_COMMENT_END = convertToIndexes("*/-->".toCharArray());
+    private static final char[] PARSER_LEVEL_COMMENT_START = "<!--/*".toCharArray();
+    private static final char[] PARSER_LEVEL_COMMENT_END = "*/-->".toCharArray();
 
 
     private static final char[] NORMALIZED_DOCTYPE_PREFIX = "<!DOCTYPE ".toCharArray();
@@ -85,69 +90,37 @@ public final class TemplatePreprocessingReader extends Reader {
     private static final char[] NORMALIZED_DOCTYPE_SYSTEM = "SYSTEM ".toCharArray();
     
     
-    private static final char[] ENTITY_START_SUBSTITUTE_CHAR_ARRAY = new char[] { CHAR_ENTITY_START_SUBSTITUTE };
-
-    
     public static final String SYNTHETIC_ROOT_ELEMENT_NAME = "THYMELEAF_ROOT"; 
     private static final char[] SYNTHETIC_ROOT_ELEMENT_START_CHARS = ("<" + SYNTHETIC_ROOT_ELEMENT_NAME + ">").toCharArray();
     private static final char[] SYNTHETIC_ROOT_ELEMENT_END_CHARS = ("</" + SYNTHETIC_ROOT_ELEMENT_NAME + ">").toCharArray(); 
     
 
     private final Reader innerReader;
-    private final BufferedReader bufferedReader;
     private final boolean addSyntheticRootElement;
     
-    private char[] buffer;
-    private char[] overflow;
-    private int overflowIndex;
+    // Input buffer: chars read from the inner reader and not processed yet are in [inputPos, inputLen)
+    private char[] input;
+    private int inputPos = 0;
+    private int inputLen = 0;
+    private boolean inputFinished = false;
+    
+    // Processed chars that did not fit into the result of a read() call are in [pendingPos, pendingLen)
+    private char[] pending;
+    private int pendingPos = 0;
+    private int pendingLen = 0;
     
     private boolean inComment = false;
     private boolean inParserLevelComment = false;
     private boolean docTypeClauseRead = false;
     private boolean xmlPrologRead = false;
-    private int xmlPrologRemaining = -1;
     private boolean syntheticRootElementOpeningProcessed = false;
     private boolean syntheticRootElementClosingSent = false;
-    private int rootElementClosingOffset = 0;
-    
-    private boolean noMoreToRead = false;
     
     private String docTypeClause = null;
     
 
 
     
-    
-    private static int[] convertToIndexes(final char[] chars) {
-        
-        final int charsLen = chars.length;
-        final int[] result = new int[charsLen];
-        for (int i = 0; i < charsLen; i++) {
-            final char c = chars[i];
-            boolean found = false;
-            for (int j = 0; !found && j < UPPER_CHARS.length; j++) {
-                if (UPPER_CHARS[j] == c) {
-                    result[i] = j;
-                    found = true;
-                }
-            }
-            for (int j = 0; !found && j < LOWER_CHARS.length; j++) {
-                if (LOWER_CHARS[j] == c) {
-                    result[i] = j;
-                    found = true;
-                }
-            }
-            if (!found) {
-                throw new RuntimeException(
-                        "Cannot convert to index character: '" + c + "' (value: " + ((int)c) + ")");
-            }
-        }
-        return result;
-        
-    }
-    
-    
-    
     /*
      * 
      * TODO Add exceptions for not substituting anything inside [[...]]
@@ -171,10 +144,8 @@ public TemplatePreprocessingReader(final Reader in, final int bufferSize) {
     public TemplatePreprocessingReader(final Reader in, final int bufferSize, final boolean addSyntheticRootElement) {
         super();
         this.innerReader = in;
-        this.bufferedReader = new BufferedReader(this.innerReader, bufferSize);
-        this.buffer = new char[bufferSize + BUFFER_BLOCK_SIZE];
-        this.overflow = new char[bufferSize + OVERFLOW_BLOCK_SIZE];
-        this.overflowIndex = 0;
+        this.input = new char[Math.max(bufferSize, MIN_BUFFER_SIZE)];
+        this.pending = new char[SYNTHETIC_ROOT_ELEMENT_END_CHARS.length * 4];
         this.addSyntheticRootElement = addSyntheticRootElement;
     }
 
@@ -189,142 +160,132 @@ public int read(final char[] cbuf, final int off, final int len) throws IOExcept
                     new Object[] {TemplateEngine.threadIndex(),Integer.valueOf(off), Integer.valueOf(len)});
         }
         
-        if ((len * 2) > this.overflow.length) {
-            // Resize buffer and overflow
-            
-            this.buffer = new char[len + BUFFER_BLOCK_SIZE];
-            final char[] newOverflow = new char[len + OVERFLOW_BLOCK_SIZE];
-            System.arraycopy(this.overflow, 0, newOverflow, 0, this.overflowIndex);
-            this.overflow = newOverflow;
+        if (len == 0) {
+            return 0;
         }
         
+        final int last = off + len;
+        int cbufi = off;
         
-        int bufferSize = 0;
-        if (this.overflowIndex > 0) {
+        while (cbufi < last) {
             
-            final int copied =
-                copyToResult(
-                        this.overflow, 0, this.overflowIndex, 
-                        this.buffer, 0, this.buffer.length);
-            
-            bufferSize += copied;
-            
-            if (readerLogger.isTraceEnabled()) {
-                readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] READ FROM OVERFLOW BUFFER {} Some content from the overflow buffer has been copied into results.", 
-                        new Object[] {TemplateEngine.threadIndex(), Integer.valueOf(copied)});
+            if (this.pendingPos < this.pendingLen) {
+                final int copied = Math.min(this.pendingLen - this.pendingPos, last - cbufi);
+                System.arraycopy(this.pending, this.pendingPos, cbuf, cbufi, copied);
+                this.pendingPos += copied;
+                cbufi += copied;
+                continue;
             }
             
-        }
-        
-        
-        
-        char[] overflowOverflow = null;
-        if (this.overflowIndex > 0) {
-            // Overflow did not entirely fit into buffer, and some overflow
-            // had to be relocated. This overflow will have to be placed at the end of the
-            // overflow generated in the current call (if any).
-            
-            overflowOverflow = new char[this.overflowIndex];
-            System.arraycopy(this.overflow, 0, overflowOverflow, 0, this.overflowIndex);
-            
-            if (readerLogger.isTraceEnabled()) {
-                readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] RELLOCATED SOME OVERFLOW CONTENTS, WAITING TO BE ADDED TO RESULT/NEW OVERFLOW {} Some content was remaining at the overflow buffer and will have to be rellocated.", 
-                        new Object[] {TemplateEngine.threadIndex(), Integer.valueOf(this.overflowIndex)});
+            if (this.inputPos >= this.inputLen && !fillInput()) {
+                
+                if (this.addSyntheticRootElement && !this.syntheticRootElementClosingSent) {
+                    // If there is no more content to be read from the source reader, close the synthetic
+                    // root element and make it look like it was read from source (opening it first if the
+                    // template had no contents at all).
+                    this.pendingPos = 0;
+                    this.pendingLen = 0;
+                    if (!this.syntheticRootElementOpeningProcessed) {
+                        appendPending(SYNTHETIC_ROOT_ELEMENT_START_CHARS);
+                        this.syntheticRootElementOpeningProcessed = true;
+                    }
+                    appendPending(SYNTHETIC_ROOT_ELEMENT_END_CHARS);
+                    this.syntheticRootElementClosingSent = true;
+                    continue;
+                }
+                break;
+                
             }
             
-            this.overflowIndex = 0;
+            cbufi = process(cbuf, cbufi, last);
             
         }
+        
+        final int totalRead = cbufi - off;
 
+        if (readerLogger.isTraceEnabled()) {
+            readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] RETURN {} Input was read and processed. Returning content: [[{}]]", 
+                    new Object[] {TemplateEngine.threadIndex(), Integer.valueOf(totalRead), new String(cbuf, off, totalRead)});
+        }
         
+        return (totalRead == 0? -1 : totalRead);
         
-        if (!this.noMoreToRead && bufferSize < this.buffer.length) {
-            // Buffer was not filled up with content from overflow, so ask for more content
-            
-            final int toBeRead = this.buffer.length - bufferSize;
-            int reallyRead = this.bufferedReader.read(this.buffer, bufferSize, toBeRead);
-
-            if (this.addSyntheticRootElement && !this.syntheticRootElementClosingSent && (reallyRead < 0)) {
-                // If there is no more content to be read from the source reader, close the synthetic
-                // root element and make it look like it was read from source.
-
-                final int closingSizeToInsert =
-                    Math.min(
-                            (SYNTHETIC_ROOT_ELEMENT_END_CHARS.length - this.rootElementClosingOffset),
-                            (this.buffer.length - bufferSize)); 
-                reallyRead =
-                    copyToResult(
-                            SYNTHETIC_ROOT_ELEMENT_END_CHARS, this.rootElementClosingOffset, closingSizeToInsert, 
-                            this.buffer, bufferSize, this.buffer.length);
-                
-                this.rootElementClosingOffset += reallyRead;
+    }
 
-                if (this.rootElementClosingOffset >= SYNTHETIC_ROOT_ELEMENT_END_CHARS.length) {
-                    this.syntheticRootElementClosingSent = true;
-                }
-                
+
+    
+    
+    /*
+     * Processes input starting at inputPos (at least one char is known to be available), writing
+     * into cbuf from cbufi (and never beyond last) and/or into the pending buffer. Always consumes
+     * input, writes some output or does both. Returns the new value of cbufi.
+     */
+    private int process(final char[] cbuf, final int cbufi, final int last) throws IOException {
+        
+        final char[] in = this.input;
+        
+        if (this.inParserLevelComment) {
+            // Everything is discarded until the end of the parser-level comment block
+            int i = this.inputPos;
+            final int max = this.inputLen;
+            while (i < max && in[i] != '*') {
+                i++;
             }
-            
-            if (readerLogger.isTraceEnabled()) {
-                readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] READ FROM SOURCE {} A read operation was executed on the source reader (max chars requested: {}).", 
-                        new Object[] {TemplateEngine.threadIndex(), Integer.valueOf(reallyRead), Integer.valueOf(toBeRead)});
+            this.inputPos = i;
+            if (i < max) {
+                if (matches(PARSER_LEVEL_COMMENT_END)) {
+                    this.inputPos += PARSER_LEVEL_COMMENT_END.length;
+                    this.inParserLevelComment = false;
+                } else {
+                    this.inputPos++;
+                }
             }
-            
-            if (reallyRead < 0) {
-
-                
-                if (bufferSize == 0) {
-
-                    
-                    if (readerLogger.isTraceEnabled()) {
-                        readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] RETURN {} After trying to read from input: No input left, no buffer left.", 
-                                new Object[] {TemplateEngine.threadIndex(), Integer.valueOf(reallyRead)});
+            return cbufi;
+        }
+        
+        final boolean awaitingSyntheticRootElement =
+                this.addSyntheticRootElement && !this.syntheticRootElementOpeningProcessed && !this.inComment;
+        
+        if (!awaitingSyntheticRootElement) {
+            // Bulk copy of chars not starting any structure that needs processing
+            int i = this.inputPos;
+            final int max = Math.min(this.inputLen, this.inputPos + (last - cbufi));
+            if (this.inComment) {
+                final boolean checkLt = !this.docTypeClauseRead;
+                while (i < max) {
+                    final char c = in[i];
+                    if (c == '-' || c == CHAR_BOM || (checkLt && c == '<')) {
+                        break;
                     }
-                    
-                    return reallyRead;
-                    
+                    i++;
                 }
-                
-                this.noMoreToRead = true;
-                
             } else {
-                
-                bufferSize += reallyRead;
-                
+                while (i < max) {
+                    final char c = in[i];
+                    if (c < 128? TEXT_SPECIAL_CHARS[c] : c == CHAR_BOM) {
+                        break;
+                    }
+                    i++;
+                }
             }
-            
-        }
-
-        
-        
-        if (this.noMoreToRead && bufferSize == 0) {
-            // Nothing left to do. Just return -1
-
-            if (readerLogger.isTraceEnabled()) {
-                readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] RETURN -1 Reader was already marked to be finished. No more input, no more buffer.", 
-                        new Object[] {TemplateEngine.threadIndex()});
+            if (i > this.inputPos) {
+                final int copied = i - this.inputPos;
+                System.arraycopy(in, this.inputPos, cbuf, cbufi, copied);
+                this.inputPos = i;
+                return cbufi + copied;
             }
-            
-            return -1;
         }
         
+        final char c = in[this.inputPos];
         
-
-        int totalRead = 0;
-        int cbufi = off;
-        final int last = off + len;
+        if (c == CHAR_BOM) {
+            // This is a Byte Order Mark (BOM) symbol. We are working at a character level already (as opposed to
+            // a byte level), so we should be fine just ignoring it.
+            this.inputPos++;
+            return cbufi;
+        }
         
-        int buffi = 0;
-        while (cbufi < last && buffi < bufferSize) {
-
-
-            if (this.buffer[buffi] == '\uFEFF') {
-                // This is a Byte Order Mark (BOM) symbol. We are working at a character level already (as opposed to
-                // a byte level), so we should be fine just ignoring it.
-                buffi++;
-                continue;
-            }
-
+        if (c == '<' && !this.docTypeClauseRead) {
             
             /*
              * Process XML_PROLOG (if needed)
@@ -332,352 +293,297 @@ public int read(final char[] cbuf, final int off, final int len) throws IOExcept
              * Processing it specifically before any other thing ensures the synthetic
              * root element will never be inserted before it.
              */
-            if (!this.docTypeClauseRead && !this.xmlPrologRead && !this.inParserLevelComment) {
-
-                if (this.xmlPrologRemaining >= 0) {
-                    // We have still some bytes remaining from the XML PROLOG, and we 
-                    // don't want the reader to mistake them for text and input the synthetic
-                    // root element right now
-                    
-                    if (readerLogger.isTraceEnabled()) {
-                        readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] Writing remaining byte from incompletely output XML PROLOG: {}", 
-                                new Object[] {TemplateEngine.threadIndex(), String.valueOf(this.buffer[buffi])});
-                    }
-                    
-                    cbuf[cbufi++] = this.buffer[buffi++];
-                    totalRead++;
-                    this.xmlPrologRemaining--;
-                    continue;
-        
-                }
-                
-                final int matchedXmlProlog =
-                        match(XML_PROLOG, 0, XML_PROLOG.length, this.buffer, buffi, bufferSize);
-                
+            if (!this.xmlPrologRead) {
+                final int matchedXmlProlog = matchXmlProlog();
                 if (matchedXmlProlog > 0) {
-
-                    this.xmlPrologRemaining = matchedXmlProlog;
-                    
-                    final int copied =
-                        copyToResult(
-                                this.buffer, buffi, matchedXmlProlog, 
-                                cbuf, cbufi, last);
-
-                    this.xmlPrologRemaining -= copied;
-                    if (this.xmlPrologRemaining <= 0) {
-                        this.xmlPrologRead = true;
-                    }
-
-                    cbufi += copied;
-                    totalRead += copied;
-                    buffi += matchedXmlProlog;
-                    continue;
-                    
+                    setPending(this.input, this.inputPos, matchedXmlProlog);
+                    this.inputPos += matchedXmlProlog;
+                    this.xmlPrologRead = true;
+                    return cbufi;
                 }
-                
             }
-
             
             /*
              * Process DOCTYPE (if needed)
              */
-            if (!this.docTypeClauseRead && !this.inParserLevelComment) {
-                
-                final int matchedDocType =
-                        match(DOCTYPE, 0, DOCTYPE.length, this.buffer, buffi, bufferSize);
-                
-                if (matchedDocType > 0) {
-                    
-                    this.docTypeClause = new String(this.buffer, buffi, matchedDocType);
-                    this.docTypeClauseRead = true;
-                    
-                    final char[] normalizedDocType =
-                            normalizeDocTypeClause(this.buffer, buffi, matchedDocType);
-                    
-                    if (readerLogger.isTraceEnabled()) {
-                        readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] Normalized DOCTYPE clause: {}", 
-                                new Object[] {TemplateEngine.threadIndex(), new String(normalizedDocType)});
-                    }
-                    
-                    int copied = -1;
-                    if (this.addSyntheticRootElement && !this.syntheticRootElementOpeningProcessed) {
-                        // If DOCTYPE is processed, we will inject the synthetic root
-                        // element just after the DOCTYPE so that we avoid problems with
-                        // DOCTYPE clause being bigger than 'len' argument in the first 'read()' call.
-                        
-                        final char[] normalizedDocTypePlusSyntheticRootElement = 
-                                new char[normalizedDocType.length + SYNTHETIC_ROOT_ELEMENT_START_CHARS.length];
-                        System.arraycopy(normalizedDocType, 0, normalizedDocTypePlusSyntheticRootElement, 0, normalizedDocType.length);
-                        System.arraycopy(SYNTHETIC_ROOT_ELEMENT_START_CHARS, 0, normalizedDocTypePlusSyntheticRootElement, normalizedDocType.length, SYNTHETIC_ROOT_ELEMENT_START_CHARS.length);
-                        
-                        if (readerLogger.isTraceEnabled()) {
-                            readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] Synthetic root element will be output along with DOCTYPE clause: '{}'", 
-                                    new Object[] {TemplateEngine.threadIndex(), new String(normalizedDocTypePlusSyntheticRootElement)});
-                        }
-                        
-                        copied =
-                                copyToResult(
-                                        normalizedDocTypePlusSyntheticRootElement, 0, normalizedDocTypePlusSyntheticRootElement.length, 
-                                        cbuf, cbufi, last);
-                        
-                        this.syntheticRootElementOpeningProcessed = true;
-                        
-                    } else {
-                        
-                        
-                        if (readerLogger.isTraceEnabled()) {
-                            readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] DOCTYPE clause will be output, without synthetic root element: '{}'", 
-                                    new Object[] {TemplateEngine.threadIndex(), new String(normalizedDocType)});
-                        }
-
-                        copied =
-                                copyToResult(
-                                        normalizedDocType, 0, normalizedDocType.length, 
-                                        cbuf, cbufi, last);
-                        
-                    }
-                    
-                    
-                    cbufi += copied;
-                    totalRead += copied;
-                    buffi += matchedDocType;
-                    continue;
-                    
-                }
-                
+            final int matchedDocType = matchDocType();
+            if (matchedDocType > 0) {
+                processDocType(matchedDocType);
+                return cbufi;
             }
-
-            /*
-             * ------------------
-             * CHECK FOR PROTOTYPE-ONLY COMMENT BLOCKS
-             * ------------------
-             */
-
-            // Completely ignored if inside comment
-            final int matchedStartOfPrototypeOnlyComment =
-                    (this.inComment || this.inParserLevelComment?
-                            -2 : match(PROTOTYPE_ONLY_COMMENT_START, 0, PROTOTYPE_ONLY_COMMENT_START.length, this.buffer, buffi, bufferSize));
-
-            if (matchedStartOfPrototypeOnlyComment > 0) {
-
-                // no changes to "cbufi", as nothing is copied into result
-                // no changes to "totalRead", as nothing is copied into result
-                buffi += matchedStartOfPrototypeOnlyComment; // We just skip all characters in comment start
-                continue;
-
+            
+        }
+        
+        if (this.inComment) {
+            
+            if (c == '-' && matches(COMMENT_END)) {
+                this.inComment = false;
+                setPending(COMMENT_END, 0, COMMENT_END.length);
+                this.inputPos += COMMENT_END.length;
+                return cbufi;
             }
-
-
-            // Completely ignored if inside comment, in contrast with "normal" comment end
-            final int matchedEndOfPrototypeOnlyComment =
-                    (this.inComment || this.inParserLevelComment?
-                            -2 : match(PROTOTYPE_ONLY_COMMENT_END, 0, PROTOTYPE_ONLY_COMMENT_END.length, this.buffer, buffi, bufferSize));
-
-            if (matchedEndOfPrototypeOnlyComment > 0) {
-
-                // no changes to "cbufi", as nothing is copied into result
-                // no changes to "totalRead", as nothing is copied into result
-                buffi += matchedEndOfPrototypeOnlyComment; // We just skip all characters in comment end
-                continue;
-
+            
+            cbuf[cbufi] = c;
+            this.inputPos++;
+            return cbufi + 1;
+            
+        }
+        
+        if (c == '<') {
+            
+            if (matches(PROTOTYPE_ONLY_COMMENT_START)) {
+                // We just skip all characters in comment start
+                this.inputPos += PROTOTYPE_ONLY_COMMENT_START.length;
+                return cbufi;
             }
-
-
-
-            /*
-             * ------------------
-             * CHECK FOR PARSER-LEVEL COMMENT BLOCKS
-             * ------------------
-             */
-
-            // Completely ignored if inside comment
-            final int matchedStartOfParserLevelComment =
-                    (this.inComment || this.inParserLevelComment?
-                            -2 : match(PARSER_LEVEL_COMMENT_START, 0, PARSER_LEVEL_COMMENT_START.length, this.buffer, buffi, bufferSize));
-
-            if (matchedStartOfParserLevelComment > 0) {
-
-                // no changes to "cbufi", as nothing is copied into result
-                // no changes to "totalRead", as nothing is copied into result
-                buffi += matchedStartOfParserLevelComment; // We skip all characters in comment start
+            if (matches(PARSER_LEVEL_COMMENT_START)) {
+                // We skip all characters in comment start, and then everything until comment end
+                this.inputPos += PARSER_LEVEL_COMMENT_START.length;
                 this.inParserLevelComment = true;
-                continue;
-
-            }
-
-
-            // Completely ignored if inside comment, in contrast with "normal" comment end
-            final int matchedEndOfParserLevelComment =
-                    (this.inParserLevelComment ?
-                            match(PARSER_LEVEL_COMMENT_END, 0, PARSER_LEVEL_COMMENT_END.length, this.buffer, buffi, bufferSize) : -2);
-
-            if (matchedEndOfParserLevelComment > 0) {
-
-                // no changes to "cbufi", as nothing is copied into result
-                // no changes to "totalRead", as nothing is copied into result
-                buffi += matchedEndOfParserLevelComment; // We skip all characters in comment end
-                this.inParserLevelComment = false;
-                continue;
-
+                return cbufi;
             }
-
-
-
-            /*
-             * ------------------
-             * CHECK FOR NORMAL COMMENT BLOCKS (which should change the "inComment" flag)
-             * ------------------
-             */
-
-            final int matchedStartOfComment =
-                    (this.inComment || this.inParserLevelComment?
-                            -2 : match(COMMENT_START, 0, COMMENT_START.length, this.buffer, buffi, bufferSize));
-
-            if (matchedStartOfComment > 0) {
-
+            if (matches(COMMENT_START)) {
                 this.inComment = true;
-                final int copied =
-                        copyToResult(
-                                this.buffer, buffi, matchedStartOfComment,
-                                cbuf, cbufi, last);
-                cbufi += copied;
-                totalRead += copied;
-                buffi += matchedStartOfComment;
-                continue;
-
+                setPending(COMMENT_START, 0, COMMENT_START.length);
+                this.inputPos += COMMENT_START.length;
+                return cbufi;
             }
-
             
-            final int matchedEndOfComment = 
-                    (this.inComment?
-                            match(COMMENT_END, 0, COMMENT_END.length, this.buffer, buffi, bufferSize) : -2);
+        } else if (c == '/') {
             
-            if (matchedEndOfComment > 0) {
-                
-                this.inComment = false;
-                final int copied =
-                    copyToResult(
-                            this.buffer, buffi, matchedEndOfComment, 
-                            cbuf, cbufi, last);
-                cbufi += copied;
-                totalRead += copied;
-                buffi += matchedEndOfComment;
-                continue;
-                
+            if (matches(PROTOTYPE_ONLY_COMMENT_END)) {
+                // We just skip all characters in comment end
+                this.inputPos += PROTOTYPE_ONLY_COMMENT_END.length;
+                return cbufi;
             }
-
-
-
-            /*
-             * ------------------
-             * CHECK FOR ENTITIES(& sign will be replaced in order to avoid parser behaviours)
-             * ------------------
-             */
-
-            final int matchedEntity = 
-                (this.inComment || this.inParserLevelComment?
-                        -2 : match(ENTITY, 0, ENTITY.length, this.buffer, buffi, bufferSize));
             
-            if (matchedEntity > 0) {
-                
-                final int copied =
-                    copyToResult(
-                            ENTITY_START_SUBSTITUTE_CHAR_ARRAY, 0, ENTITY_START_SUBSTITUTE_CHAR_ARRAY.length, 
-                            cbuf, cbufi, last);
-                cbufi += copied;
-                totalRead += copied;
-                buffi += 1; // Only one character is substituted (&)
-                continue;
-                
-            }
-
-
-
-            /*
-             * ------------------
-             * ADD A SYNTHETIC ROOT ELEMENT IF NEEDED (e.g. in order to allow several-root-node documents)
-             * ------------------
-             */
-
-            if (!Character.isWhitespace(this.buffer[buffi]) && this.addSyntheticRootElement && !this.syntheticRootElementOpeningProcessed && !this.inComment && !this.inParserLevelComment) {
-                // This block will be reached if we did not have to process a
-                // DOCTYPE clause (because the DOCTYPE would have
-                // matched the previous block). And will not be affected by any whitespaces
-                // or comments before DOCTYPE because of the !Character.isWhitespace condition.
-                    
-                final int copied =
-                    copyToResult(
-                            SYNTHETIC_ROOT_ELEMENT_START_CHARS, 0, SYNTHETIC_ROOT_ELEMENT_START_CHARS.length, 
-                            cbuf, cbufi, last);
-                
-                cbufi += copied;
-                totalRead += copied;
-                
-                this.syntheticRootElementOpeningProcessed = true;
-                
-                continue;
-                
-            }
-
-
-            /*
-             * ------------------
-             * NOTHING ELSE TO CHECK, JUST COPY OUTPUT (if not in parser-level comment)
-             * ------------------
-             */
-
-            if (!this.inParserLevelComment) {
-                cbuf[cbufi++] = this.buffer[buffi++];
-                totalRead++;
-            } else {
-                buffi++;
-            }
-
-
         }
-
         
-        if (buffi < bufferSize) {
-            // Copy remaining buffer to overflow
-            final int toBeOverFlowed = bufferSize - buffi;
-            final int copied =
-                copyToResult(
-                        this.buffer, buffi, toBeOverFlowed, 
-                        cbuf, cbufi, last);
-            // copied must be zero
-            if (copied != 0) {
-                throw new TemplateInputException("Overflow was not correctly computed!");
-            }
+        if (awaitingSyntheticRootElement && !Character.isWhitespace(c)) {
+            // This will be reached if we did not have to process a DOCTYPE clause (because the DOCTYPE
+            // would have been processed above). And will not be affected by any whitespaces or comments
+            // before DOCTYPE because of the !Character.isWhitespace condition. The current char will
+            // be processed again after the synthetic root element has been output.
+            setPending(SYNTHETIC_ROOT_ELEMENT_START_CHARS, 0, SYNTHETIC_ROOT_ELEMENT_START_CHARS.length);
+            this.syntheticRootElementOpeningProcessed = true;
+            return cbufi;
         }
         
+        if (c == '&' && matchEntity()) {
+            // & sign will be replaced in order to avoid parser behaviours (only the & char is substituted)
+            cbuf[cbufi] = CHAR_ENTITY_START_SUBSTITUTE;
+            this.inputPos++;
+            return cbufi + 1;
+        }
         
-        if (overflowOverflow != null) {
-            
-            final int copied =
-                copyToResult(
-                        overflowOverflow, 0, overflowOverflow.length, 
-                        cbuf, cbufi, last);
-            
-            // copied must be zero
-            if (copied != 0) {
-                throw new TemplateInputException("Overflow-overflow was not correctly computed!");
+        cbuf[cbufi] = c;
+        this.inputPos++;
+        return cbufi + 1;
+        
+    }
+    
+    
+    
+    
+    private void processDocType(final int matchedDocType) {
+        
+        this.docTypeClause = new String(this.input, this.inputPos, matchedDocType);
+        this.docTypeClauseRead = true;
+        
+        final char[] normalizedDocType = normalizeDocTypeClause(this.input, this.inputPos, matchedDocType);
+        this.inputPos += matchedDocType;
+        
+        if (readerLogger.isTraceEnabled()) {
+            readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] Normalized DOCTYPE clause: {}", 
+                    new Object[] {TemplateEngine.threadIndex(), new String(normalizedDocType)});
+        }
+        
+        setPending(normalizedDocType, 0, normalizedDocType.length);
+        
+        if (this.addSyntheticRootElement && !this.syntheticRootElementOpeningProcessed) {
+            // If DOCTYPE is processed, we will inject the synthetic root
+            // element just after the DOCTYPE.
+            appendPending(SYNTHETIC_ROOT_ELEMENT_START_CHARS);
+            this.syntheticRootElementOpeningProcessed = true;
+        }
+        
+    }
+    
+    
+    
+    
+    /*
+     * Loads more chars from the inner reader into the input buffer, keeping unprocessed chars and
+     * growing the buffer if it is full. Returns false if the inner reader has no more chars.
+     */
+    private boolean fillInput() throws IOException {
+        
+        if (this.inputFinished) {
+            return false;
+        }
+        
+        if (this.inputPos > 0) {
+            final int remaining = this.inputLen - this.inputPos;
+            if (remaining > 0) {
+                System.arraycopy(this.input, this.inputPos, this.input, 0, remaining);
             }
-            
+            this.inputLen = remaining;
+            this.inputPos = 0;
         }
-
-
-        if (readerLogger.isTraceEnabled()) {
-            final char[] result = new char[totalRead];
-            System.arraycopy(cbuf, off, result, 0, totalRead);
-            readerLogger.trace("[THYMELEAF][TEMPLATEPREPROCESSINGREADER][{}] RETURN {} Input was read and processed. Returning content: [[{}]]", 
-                    new Object[] {TemplateEngine.threadIndex(), Integer.valueOf(totalRead), new String(result)});
+        
+        if (this.inputLen == this.input.length) {
+            final char[] newInput = new char[this.input.length * 2];
+            System.arraycopy(this.input, 0, newInput, 0, this.inputLen);
+            this.input = newInput;
         }
         
-
-        return totalRead;
+        int read;
+        while ((read = this.innerReader.read(this.input, this.inputLen, this.input.length - this.inputLen)) == 0) {
+            // Nothing to do, just keep on trying
+        }
+        
+        if (read < 0) {
+            this.inputFinished = true;
+            return false;
+        }
+        
+        this.inputLen += read;
+        return true;
         
     }
-
+    
+    
+    /*
+     * Makes sure the char at (inputPos + offset) has been read into the input buffer, if it exists.
+     */
+    private boolean isAvailable(final int offset) throws IOException {
+        while (this.inputPos + offset >= this.inputLen) {
+            if (!fillInput()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    
+    
+    
+    private void setPending(final char[] chars, final int off, final int len) {
+        this.pendingPos = 0;
+        this.pendingLen = 0;
+        ensurePendingCapacity(len);
+        System.arraycopy(chars, off, this.pending, 0, len);
+        this.pendingLen = len;
+    }
+    
+    
+    private void appendPending(final char[] chars) {
+        ensurePendingCapacity(this.pendingLen + chars.length);
+        System.arraycopy(chars, 0, this.pending, this.pendingLen, chars.length);
+        this.pendingLen += chars.length;
+    }
+    
+    
+    private void ensurePendingCapacity(final int capacity) {
+        if (capacity > this.pending.length) {
+            final char[] newPending = new char[Math.max(capacity, this.pending.length * 2)];
+            System.arraycopy(this.pending, 0, newPending, 0, this.pendingLen);
+            this.pending = newPending;
+        }
+    }
+    
+    
+    
+    
+    /*
+     * Case-insensitive check of whether the input starts with the specified (upper-case) chars
+     * at the current position.
+     */
+    private boolean matches(final char[] fragment) throws IOException {
+        if (!isAvailable(fragment.length - 1)) {
+            return false;
+        }
+        final char[] in = this.input;
+        final int pos = this.inputPos;
+        for (int i = 0; i < fragment.length; i++) {
+            final char f = fragment[i];
+            final char c = in[pos + i];
+            if (c != f && !(f >= 'A' && f <= 'Z' && c == (char)(f + ('a' - 'A')))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    
+    /*
+     * Matches "<?xml" + (at least one space or tab) + (anything until the first '?') + ">".
+     * Returns the length of the prolog, or -1 if it does not match.
+     */
+    private int matchXmlProlog() throws IOException {
+        if (!matches(XML_PROLOG_START)) {
+            return -1;
+        }
+        int i = XML_PROLOG_START.length;
+        if (!isAvailable(i) || !isSpaceOrTab(this.input[this.inputPos + i])) {
+            return -1;
+        }
+        while (isAvailable(i) && this.input[this.inputPos + i] != '?') {
+            i++;
+        }
+        if (!isAvailable(i + 1) || this.input[this.inputPos + i + 1] != '>') {
+            return -1;
+        }
+        return i + 2;
+    }
+    
+    
+    /*
+     * Matches "<!DOCTYPE" + (at least one space or tab) + (anything until the first '>') + ">".
+     * Returns the length of the clause, or -1 if it does not match.
+     */
+    private int matchDocType() throws IOException {
+        if (!matches(DOCTYPE_START)) {
+            return -1;
+        }
+        int i = DOCTYPE_START.length;
+        if (!isAvailable(i) || !isSpaceOrTab(this.input[this.inputPos + i])) {
+            return -1;
+        }
+        while (isAvailable(i) && this.input[this.inputPos + i] != '>') {
+            i++;
+        }
+        if (!isAvailable(i)) {
+            return -1;
+        }
+        return i + 1;
+    }
+    
+    
+    /*
+     * Matches "&" + (any number of alphanumeric chars or '#') + ";"
+     */
+    private boolean matchEntity() throws IOException {
+        int i = 1;
+        while (isAvailable(i)) {
+            final char c = this.input[this.inputPos + i];
+            if (c == ';') {
+                return true;
+            }
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '#')) {
+                return false;
+            }
+            i++;
+        }
+        return false;
+    }
+    
+    
+    private static boolean isSpaceOrTab(final char c) {
+        return (c == ' ' || c == '\t');
+    }
+    
+    
 
     
     
@@ -711,7 +617,7 @@ public int read(final CharBuffer target) throws IOException {
                     new Object[] {TemplateEngine.threadIndex()});
         }
         
-        final char[] cbuf = new char[BUFFER_BLOCK_SIZE];
+        final char[] cbuf = new char[MIN_BUFFER_SIZE];
         int totalRead = -1;
         int read;
         while ((read = read(cbuf, 0, cbuf.length)) != -1) {
@@ -754,7 +660,7 @@ public long skip(final long n) throws IOException {
 
     @Override
     public boolean ready() throws IOException {
-        return this.bufferedReader.ready() || this.overflowIndex > 0;
+        return this.pendingPos < this.pendingLen || this.inputPos < this.inputLen || this.innerReader.ready();
     }
 
 
@@ -786,170 +692,10 @@ public void reset() throws IOException {
 
     @Override
     public void close() throws IOException {
-        this.bufferedReader.close();
-    }
-    
-    
-    
-    /*
-     * fragment: the char[] containing the fragment to be copied
-     * fragmentOff: the offset for the fragment char[]
-     * fragmentLen: the length of the fragment to be copied
-     * cbuf: the result buffer
-     * cbufi: the current position in the result buffer (offset)
-     * last: the last position (non-inclusive) that can be filled in cbuf
-     * 
-     * RETURNS: the amount of chars that have been actually copied to the cbuf result array
-     */
-    private int copyToResult(
-            final char[] fragment, final int fragmentOff, final int fragmentLen, 
-            final char[] cbuf, final int cbufi, final int last) {
-        
-        if (cbufi + fragmentLen < last) {
-            
-            System.arraycopy(fragment, fragmentOff, cbuf, cbufi, fragmentLen);
-
-            //noinspection ArrayEquality
-            if (fragment == this.overflow) {
-                // Overflow has been cleaned
-                this.overflowIndex = 0;
-            }
-
-            return fragmentLen;
-            
-        }
-        
-        // There is no space at the result buffer: we must overflow
-        
-        final int toBeCopied = last - cbufi;
-        final int toBeOverflowed = fragmentLen - toBeCopied;
-        
-        if (toBeCopied > 0) {
-            System.arraycopy(fragment, fragmentOff, cbuf, cbufi, toBeCopied);
-        }
-        //noinspection ArrayEquality
-        if (fragment != this.overflow) {
-            System.arraycopy(fragment, (fragmentOff + toBeCopied), this.overflow, this.overflowIndex, toBeOverflowed);
-            this.overflowIndex += toBeOverflowed;
-        } else {
-            // Both source and target are the overflow array
-            System.arraycopy(fragment, (fragmentOff + toBeCopied), this.overflow, 0, toBeOverflowed);
-            this.overflowIndex = toBeOverflowed;
-        }
-        return toBeCopied;
-        
+        this.innerReader.close();
     }
     
     
-
-    
-    /*
-     * RETURNS:
-     *     <0 = does not start here
-     *     0  = maybe (not enough buffer to know)
-     *     >0 = does start here
-     */
-    private static int match(
-            final int[] fragment, final int fragmentOff, final int fragmentLen, 
-            final char[] buffer, final int buffi, final int bufferLast) {
-        
-        /*
-         * Trying to fail fast
-         */
-        final char f0Lower = LOWER_CHARS[fragment[fragmentOff]];
-        final char f0Upper = UPPER_CHARS[fragment[fragmentOff]];
-        if (f0Lower != CHAR_WHITESPACE_WILDCARD && f0Lower != CHAR_ALPHANUMERIC_WILDCARD && 
-            f0Lower != buffer[buffi] && f0Upper != buffer[buffi]) {
-            return -1;
-        }
-        
-        final int fragmentLast = fragmentOff + fragmentLen;  
-        
-        int buffj = buffi;
-        int fragmenti = fragmentOff;
-        while (buffj < bufferLast && fragmenti < fragmentLast) {
-
-            final int fragmentIndex = fragment[fragmenti];
-            // lower will be enough for most checks
-            final char fLower = LOWER_CHARS[fragmentIndex];
-            
-            // For wildcards, checking against lowercase will be enough (wildcards are at the same
-            // position in lower and upper case).
-            if (fLower == CHAR_WHITESPACE_WILDCARD) {
-                
-                if (buffer[buffj] != ' ' && buffer[buffj] != '\t') {
-                    if (buffj > buffi && (buffer[buffj - 1] == ' ' || buffer[buffj - 1] == '\t')) {
-                        fragmenti++;
-                    } else {
-                        // We did not find at least one whitespace
-                        return -1;
-                    }
-                } else {
-                    buffj++;
-                }
-                
-            } else if (fLower == CHAR_OPTIONAL_WHITESPACE_WILDCARD) {
-                    
-                if (buffer[buffj] != ' ' && buffer[buffj] != '\t') {
-                    fragmenti++;
-                } else {
-                    buffj++;
-                }
-                    
-            } else if (fLower == CHAR_ALPHANUMERIC_WILDCARD) {
-                
-                final char c = buffer[buffj]; 
-                final boolean isUpper = (c >= 'A' && c <= 'Z'); 
-                final boolean isLower = (c >= 'a' && c <= 'z'); 
-                final boolean isDigit = (c >= '0' && c <= '9'); 
-                final boolean isHash = (c == '#'); 
-                if ((!isUpper && !isLower && !isDigit && !isHash) ||
-                        (fragmenti + 1 < fragmentLast && 
-                                (UPPER_CHARS[fragment[fragmenti + 1]] == buffer[buffj]) ||
-                                (LOWER_CHARS[fragment[fragmenti + 1]] == buffer[buffj]))) {
-                    // Either we found a non-alphanumeric, or we simply found
-                    // a character that matches next one in fragment
-                    fragmenti++;
-                } else {
-                    buffj++;
-                }
-                
-            } else if (fLower == CHAR_ANY_WILDCARD) {
-                
-                if ((fragmenti + 1 < fragmentLast && 
-                        (UPPER_CHARS[fragment[fragmenti + 1]] == buffer[buffj]) ||
-                        (LOWER_CHARS[fragment[fragmenti + 1]] == buffer[buffj]))) {
-                    // We found a character that matches next one in fragment!
-                    fragmenti++;
-                } else {
-                    buffj++;
-                }
-                
-            } else {
-                
-                final char bufferChar = buffer[buffj];
-                        
-                if (bufferChar != UPPER_CHARS[fragmentIndex] && 
-                    bufferChar != fLower) {
-                    return -1;
-                }
-
-                buffj++;
-                fragmenti++;
-                
-            }
-            
-        }
-        if (fragmenti == fragmentLast) {
-            // Matches! and we return the number of chars that matched
-            return buffj - buffi;
-        }
-        // Was matching OK, but then we hit the end of the buffer...
-        return 0;
-        
-    }
-
-
     
     
     private static char[] normalizeDocTypeClause(final char[] buffer, final int offset, final int len) {
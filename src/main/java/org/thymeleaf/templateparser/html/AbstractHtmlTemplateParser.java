@@ -21,24 +21,35 @@
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Stack;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.thymeleaf.Configuration;
+import org.thymeleaf.dom.CDATASection;
+import org.thymeleaf.dom.Comment;
+import org.thymeleaf.dom.DocType;
 import org.thymeleaf.dom.Document;
+import org.thymeleaf.dom.Element;
+import org.thymeleaf.dom.NestableNode;
 import org.thymeleaf.dom.Node;
+import org.thymeleaf.dom.Text;
 import org.thymeleaf.exceptions.ConfigurationException;
 import org.thymeleaf.exceptions.TemplateInputException;
 import org.thymeleaf.exceptions.TemplateProcessingException;
-import org.thymeleaf.templateparser.EntityResolver;
 import org.thymeleaf.templateparser.ErrorHandler;
 import org.thymeleaf.templateparser.ITemplateParser;
 import org.thymeleaf.templateparser.TemplatePreprocessingReader;
+import org.thymeleaf.util.ArrayUtils;
 import org.thymeleaf.util.ClassLoaderUtils;
 import org.thymeleaf.util.ResourcePool;
-import org.thymeleaf.util.StandardDOMTranslator;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.DefaultHandler2;
 
 /**
  * <p>
@@ -52,6 +63,8 @@
 public abstract class AbstractHtmlTemplateParser implements ITemplateParser {
 
     private static final int BUFFER_SIZE = 8192;
+    
+    private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
 
     private final String templateModeName;
     private final boolean nekoInClasspath;
@@ -65,7 +78,7 @@ protected AbstractHtmlTemplateParser(final String templateModeName, final int po
         boolean nekoFound = true;
         try {
             ClassLoaderUtils.getClassLoader(AbstractHtmlTemplateParser.class).
-                    loadClass("org.cyberneko.html.parsers.DOMParser");
+                    loadClass("org.cyberneko.html.parsers.SAXParser");
         } catch (final ClassNotFoundException ignored) {
             nekoFound = false;
         } catch (final NoClassDefFoundError ignored) {
@@ -126,7 +139,7 @@ private static class NekoBasedHtmlParser {
         
         
         private final Logger logger = LoggerFactory.getLogger(this.getClass());
-        // The org.apache.xerces.parsers.DOMParser is not used here as a type
+        // The org.apache.xerces.parsers.SAXParser is not used here as a type
         // parameter to avoid the class loader to try to load this xerces class
         // (and fail) before we control the error at the constructor.
         private final ResourcePool<Object> pool;
@@ -144,22 +157,29 @@ private NekoBasedHtmlParser(final int poolSize) {
         public final Document parseTemplate(final Configuration configuration, final String documentName, 
                 final TemplatePreprocessingReader templateReader) {
             
-            final org.apache.xerces.parsers.DOMParser domParser = (org.apache.xerces.parsers.DOMParser) this.pool.allocate();
+            final org.apache.xerces.parsers.SAXParser saxParser = (org.apache.xerces.parsers.SAXParser) this.pool.allocate();
             
             try {
                 
-                domParser.setErrorHandler(ErrorHandler.INSTANCE);
-                domParser.setEntityResolver(new EntityResolver(configuration));
+                /*
+                 * Thymeleaf DOM nodes are built directly from the SAX events produced by nekoHTML,
+                 * without creating an intermediate W3C DOM tree.
+                 */
+                final HtmlSAXHandler handler = new HtmlSAXHandler(documentName);
+                
+                saxParser.setErrorHandler(ErrorHandler.INSTANCE);
+                saxParser.setEntityResolver(configuration.getEntityResolver());
+                saxParser.setContentHandler(handler);
+                saxParser.setProperty(LEXICAL_HANDLER_PROPERTY, handler);
                 
-                domParser.parse(new InputSource(templateReader));
-                final org.w3c.dom.Document domDocument = domParser.getDocument();
+                saxParser.parse(new InputSource(templateReader));
                 
                 if (this.canResetParsers) {
                     try {
                         /*
                          * Reset the parser so that it can be used again.
                          */
-                        domParser.reset();
+                        saxParser.reset();
                     } catch (final UnsupportedOperationException ignored) {
                         if (this.logger.isWarnEnabled()) {
                             this.logger.warn(
@@ -168,13 +188,13 @@ public final Document parseTemplate(final Configuration configuration, final Str
                                         "each time they are needed for parsing templates, which is more costly. Enabling template " +
                                         "cache is recommended, and also using a parser library which implements \"reset\" such as " +
                                         "nekoHTML version 1.9.15 or newer.",
-                                    domParser.getClass().getName());
+                                    saxParser.getClass().getName());
                         }                    
                         this.canResetParsers = false;
                     }
                 }
                 
-                return StandardDOMTranslator.translateDocument(domDocument, documentName, templateReader.getDocTypeClause());
+                return handler.buildDocument(templateReader.getDocTypeClause());
                 
             } catch (final TemplateProcessingException e) {
                 throw e;
@@ -190,15 +210,283 @@ public final Document parseTemplate(final Configuration configuration, final Str
                     }
                 }
                 
+                // Pooled parsers should not keep references to the last handler (and its DOM tree)
+                saxParser.setContentHandler(null);
+                try {
+                    saxParser.setProperty(LEXICAL_HANDLER_PROPERTY, null);
+                } catch (final Exception ignored) {
+                    // ignored
+                }
+                
                 if (this.canResetParsers) {
-                    this.pool.release(domParser);
+                    this.pool.release(saxParser);
                 } else {
-                    this.pool.discardAndReplace(domParser);
+                    this.pool.discardAndReplace(saxParser);
+                }
+
+            }
+        }
+
+        
+    }
+    
+    
+    
+    /*
+     * Builds Thymeleaf DOM nodes directly from the SAX events fired by the nekoHTML parser.
+     */
+    private static final class HtmlSAXHandler extends DefaultHandler2 {
+
+        private static final int HANDLER_BUFFER_SIZE = 512;
+
+        private final String documentName;
+        private final Stack<NestableNode> elementStack;
+        private final List<Node> rootNodes;
+        
+        private char[] textBuffer;
+        private int textBufferLen;
+        
+        private char[] cdataBuffer;
+        private int cdataBufferLen; 
+        
+        private Locator locator = null;
+        private String docTypeRootElementName = null;
+        private String docTypePublicId = null;
+        private String docTypeSystemId = null;
+        
+        private boolean cdataMode = false;
+
+        
+        
+        HtmlSAXHandler(final String documentName) {
+            
+            super();
+
+            this.documentName = documentName;
+            
+            this.elementStack = new Stack<NestableNode>();
+            this.rootNodes = new ArrayList<Node>(4);
+            
+            this.textBuffer = new char[HANDLER_BUFFER_SIZE];
+            this.cdataBuffer = new char[HANDLER_BUFFER_SIZE];
+            
+        }
+        
+
+        
+        Document buildDocument(final String docTypeClause) {
+            
+            // The DOCTYPE root element name could be null if we are parsing
+            // a non-complete document, a fragment, without a DOCTYPE declaration.
+            final DocType docType = 
+                    (this.docTypeRootElementName != null?
+                            new DocType(this.docTypeRootElementName, this.docTypePublicId, this.docTypeSystemId, docTypeClause) :
+                            null);
+            
+            final Document document = new Document(this.documentName, docType);
+            // HTML documents have no XML declaration, so the default XML version is set (as W3C DOM does)
+            document.setNodeProperty(Node.NODE_PROPERTY_XML_VERSION, "1.0");
+            document.setChildren(this.rootNodes);
+            
+            return document;
+            
+        }
+
+
+
+        @Override
+        public void endDocument() throws SAXException {
+            super.endDocument();
+            flushBuffer();
+        }
+        
+
+        
+        @Override
+        public void startCDATA() throws SAXException {
+            super.startCDATA();
+            flushBuffer();
+            this.cdataMode = true;
+        }
+
+        
+        @Override
+        public void endCDATA() throws SAXException {
+
+            super.endCDATA();
+
+            this.cdataMode = false;
+            if (this.cdataBufferLen > 0) {
+                addNode(new CDATASection(
+                        new String(this.cdataBuffer, 0, this.cdataBufferLen), this.documentName, null, true));
+                this.cdataBufferLen = 0;
+            }
+            
+        }
+        
+
+        
+        @Override
+        public void characters(final char[] ch, final int start, final int length) {
+
+            TemplatePreprocessingReader.removeEntitySubstitutions(ch, start, length);
+            if (this.cdataMode) {
+                
+                while (this.cdataBufferLen + length > this.cdataBuffer.length) {
+                    this.cdataBuffer = ArrayUtils.copyOf(this.cdataBuffer, this.cdataBuffer.length * 2);
+                }
+                System.arraycopy(ch, start, this.cdataBuffer, this.cdataBufferLen, length);
+                this.cdataBufferLen += length;
+                
+            } else {
+                
+                while (this.textBufferLen + length > this.textBuffer.length) {
+                    this.textBuffer = ArrayUtils.copyOf(this.textBuffer, this.textBuffer.length * 2);
                 }
+                System.arraycopy(ch, start, this.textBuffer, this.textBufferLen, length);
+                this.textBufferLen += length;
+                
+            }
+            
+        }
+
+        
+        @Override
+        public void ignorableWhitespace(final char[] ch, final int start, final int length)
+                throws SAXException {
+            characters(ch, start, length);
+        }
+        
+        
+
+        
+        @Override
+        public void comment(final char[] ch, final int start, final int length) 
+                throws SAXException {
+            flushBuffer();
+            addNode(new Comment(new String(ch, start, length), this.documentName));
+        }
+
+        
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) 
+                throws SAXException {
 
+            flushBuffer();
+
+            Integer lineNumber = null;
+            if (this.locator != null) {
+                lineNumber = Integer.valueOf(this.locator.getLineNumber());
             }
+            
+            final Element element = new Element(qName, this.documentName, lineNumber);
+            
+            final int attributesLen = attributes.getLength();
+            if (attributesLen == 1) {
+                element.setAttribute(
+                        attributes.getQName(0),
+                        false,
+                        TemplatePreprocessingReader.removeEntitySubstitutions(attributes.getValue(0)),
+                        true);
+            } else if (attributesLen > 1) {
+                // Attributes are added ordered by name, as they were when they came from
+                // a W3C DOM tree (Xerces keeps DOM attribute maps sorted by name)
+                final int[] order = sortAttributesByName(attributes);
+                for (int i = 0; i < attributesLen; i++) {
+                    element.setAttribute(
+                            attributes.getQName(order[i]),
+                            false,
+                            TemplatePreprocessingReader.removeEntitySubstitutions(attributes.getValue(order[i])),
+                            true);
+                }
+            }
+            
+            this.elementStack.push(element);
+            
         }
+        
+
+        
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) {
+
+            flushBuffer();
 
+            final NestableNode node = this.elementStack.pop();
+            
+            if (node instanceof Element) {
+                final Element element = (Element) node;
+                if (TemplatePreprocessingReader.SYNTHETIC_ROOT_ELEMENT_NAME.equals(element.getOriginalName())) {
+                    // If it is the synthetic root element, then we skip the element itself and just add
+                    // its children to the results.
+                    for (final Node syntheticRootChild : element.getChildren()) {
+                        addNode(syntheticRootChild);
+                    }
+                    return;
+                }
+            }
+            
+            addNode(node);
+            
+        }
+
+
+        
+        @Override
+        public void startDTD(final String name, final String publicId, final String systemId)
+                throws SAXException {
+            super.startDTD(name, publicId, systemId);
+            this.docTypeRootElementName = name;
+            this.docTypePublicId = publicId;
+            this.docTypeSystemId = systemId;
+        }
+
+        
+        
+        /*
+         * Buffer is used for accumulating text that is read in between elements,
+         * and should be flushed before creating any non-text node.
+         */
+        private void flushBuffer() {
+            if (this.textBufferLen > 0) {
+                addNode(new Text(new String(this.textBuffer, 0, this.textBufferLen), this.documentName, null, true));
+                this.textBufferLen = 0;
+            }
+        }
+
+        
+        private void addNode(final Node node) {
+            if (this.elementStack.isEmpty()) {
+                this.rootNodes.add(node);
+            } else {
+                this.elementStack.peek().addChild(node);
+            }
+        }
+
+        
+        private static int[] sortAttributesByName(final Attributes attributes) {
+            // Insertion sort: elements usually have very few attributes
+            final int attributesLen = attributes.getLength();
+            final int[] order = new int[attributesLen];
+            for (int i = 0; i < attributesLen; i++) {
+                final String name = attributes.getQName(i);
+                int j = i;
+                while (j > 0 && attributes.getQName(order[j - 1]).compareTo(name) > 0) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = i;
+            }
+            return order;
+        }
+
+
+
+        @Override
+        public void setDocumentLocator(final Locator locator) {
+            this.locator = locator; 
+        }
         
     }
     
@@ -231,7 +519,7 @@ public Object createResource() {
                 config.setProperty("http://cyberneko.org/html/properties/names/elems", "match");
                 config.setProperty("http://cyberneko.org/html/properties/names/attrs", "no-change");
 
-                return new org.apache.xerces.parsers.DOMParser(config);
+                return new org.apache.xerces.parsers.SAXParser(config);
                 
             } catch(final Exception e) {
                 throw new ConfigurationException(
@@ -0,0 +1,138 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.templateparser.html;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import org.thymeleaf.Configuration;
+import org.thymeleaf.dom.Document;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.exceptions.TemplateInputException;
+import org.thymeleaf.templateparser.DecodedTemplateReader;
+import org.thymeleaf.templateparser.ITemplateParser;
+import org.thymeleaf.templateparser.TemplatePreprocessingReader;
+import org.thymeleaf.util.ArrayUtils;
+import org.thymeleaf.util.Validate;
+
+
+/**
+ * <p>
+ *   Template parser for XHTML and HTML5 templates based on a purpose-built streaming tokenizer,
+ *   which builds Thymeleaf DOM trees directly from the template contents without using any
+ *   SAX or nekoHTML parsers, nor any {@link TemplatePreprocessingReader}.
+ * </p>
+ * <p>
+ *   Markup is expected to be well-formed in the same way as for the <tt>HTML5</tt> and <tt>XHTML</tt>
+ *   template modes, with some HTML5 syntax also being allowed:
+ * </p>
+ * <ul>
+ *   <li>Void elements (<tt>&lt;br&gt;</tt>, <tt>&lt;input&gt;</tt>...) do not need to be closed.</li>
+ *   <li>Attributes can have no value (<tt>&lt;input disabled&gt;</tt>) or unquoted values.</li>
+ *   <li>Contents of <tt>&lt;script&gt;</tt>, <tt>&lt;style&gt;</tt>, <tt>&lt;textarea&gt;</tt> and
+ *       <tt>&lt;title&gt;</tt> are not parsed as markup.</li>
+ *   <li>Element and attribute names are kept as they appear in the template.</li>
+ * </ul>
+ * <p>
+ *   No DTD validation is performed. Parser-level comments and prototype-only comment blocks are
+ *   supported natively.
+ * </p>
+ * <p>
+ *   This parser is not used by any of the standard template modes. It can be used by means of a
+ *   custom template mode handler, e.g. 
+ *   <tt>new TemplateModeHandler("HTML5", new StreamingHtml5TemplateParser(), new XhtmlHtml5TemplateWriter())</tt>.
+ * </p>
+ * <p>
+ *   This class is <b>thread-safe</b>, and needs no pooling.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class StreamingHtml5TemplateParser implements ITemplateParser {
+
+    private static final int BUFFER_SIZE = 8192;
+    
+    
+    public StreamingHtml5TemplateParser() {
+        super();
+    }
+
+    
+    
+    public Document parseTemplate(final Configuration configuration, final String documentName, final Reader source) {
+        
+        Validate.notNull(source, "Source cannot be null");
+        
+        // Preprocessing is not needed, so the original reader is used if we are given a preprocessing one
+        final Reader reader =
+                (source instanceof TemplatePreprocessingReader? 
+                        ((TemplatePreprocessingReader)source).getInnerReader() : source);
+        
+        if (reader instanceof DecodedTemplateReader) {
+            // Contents are already decoded into a buffer, which can be tokenized directly
+            final DecodedTemplateReader decodedReader = (DecodedTemplateReader) reader;
+            try {
+                return new StreamingHtml5Tokenizer(
+                        documentName, decodedReader.getBuffer(), decodedReader.getLength(), false).parseDocument();
+            } finally {
+                decodedReader.close();
+            }
+        }
+        
+        char[] buffer = new char[BUFFER_SIZE];
+        int bufferLen = 0;
+        try {
+            int read;
+            while ((read = reader.read(buffer, bufferLen, buffer.length - bufferLen)) != -1) {
+                bufferLen += read;
+                if (bufferLen == buffer.length) {
+                    buffer = ArrayUtils.copyOf(buffer, buffer.length * 2);
+                }
+            }
+        } catch (final IOException e) {
+            throw new TemplateInputException("Exception parsing document", e);
+        } finally {
+            try {
+                reader.close();
+            } catch (final Exception ignored) {
+                // ignored
+            }
+        }
+        
+        return new StreamingHtml5Tokenizer(documentName, buffer, bufferLen, false).parseDocument();
+        
+    }
+
+    
+    
+    public List<Node> parseFragment(final Configuration configuration, final String fragment) {
+        // No wrapping is needed for parsing fragments, as documents can have several root nodes
+        final char[] buffer = fragment.toCharArray();
+        final Document document = 
+                new StreamingHtml5Tokenizer(null, buffer, buffer.length, true).parseDocument();
+        return document.getChildren();
+    }
+    
+    
+}
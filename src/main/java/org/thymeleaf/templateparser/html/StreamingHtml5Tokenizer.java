@@ -0,0 +1,788 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.templateparser.html;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.thymeleaf.Standards;
+import org.thymeleaf.dom.Attribute;
+import org.thymeleaf.dom.CDATASection;
+import org.thymeleaf.dom.Comment;
+import org.thymeleaf.dom.DocType;
+import org.thymeleaf.dom.Document;
+import org.thymeleaf.dom.Element;
+import org.thymeleaf.dom.NestableNode;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.dom.Text;
+import org.thymeleaf.exceptions.TemplateInputException;
+import org.thymeleaf.util.ArrayUtils;
+
+
+/**
+ * <p>
+ *   Tokenizer for (X)HTML5 markup, used by {@link StreamingHtml5TemplateParser}. Works on the whole
+ *   template as a char array, building Thymeleaf DOM nodes directly as tokens are recognized.
+ * </p>
+ * <p>
+ *   Parser-level comments (<tt>&lt;!--/* ... *&#47;--&gt;</tt>) are skipped and the markers of
+ *   prototype-only comment blocks (<tt>&lt;!--/*&#47;</tt> and <tt>/*&#47;--&gt;</tt>) are removed
+ *   natively, in the same way {@link org.thymeleaf.templateparser.TemplatePreprocessingReader} does
+ *   for the other parsers. Texts and attribute values are kept as they appear in the template
+ *   (i.e. escaped).
+ * </p>
+ * <p>
+ *   Instances of this class are not thread-safe, and should be used for parsing only one template.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+final class StreamingHtml5Tokenizer {
+
+    private static final char[] COMMENT_START = "<!--".toCharArray();
+    private static final char[] COMMENT_END = "-->".toCharArray();
+    private static final char[] PROTOTYPE_ONLY_COMMENT_START = "<!--/*/".toCharArray();
+    private static final char[] PROTOTYPE_ONLY_COMMENT_END = "/*/-->".toCharArray();
+    private static final char[] PARSER_LEVEL_COMMENT_START = "<!--/*".toCharArray();
+    private static final char[] PARSER_LEVEL_COMMENT_END = "*/-->".toCharArray();
+    private static final char[] CDATA_START = "<![CDATA[".toCharArray();
+    private static final char[] CDATA_END = "]]>".toCharArray();
+    private static final char[] DOCTYPE_START = "<!DOCTYPE".toCharArray();
+    private static final char[] PROCESSING_INSTRUCTION_END = "?>".toCharArray();
+    private static final char[] XML_DECLARATION_START = "<?xml".toCharArray();
+
+    /*
+     * Contents of these elements are not parsed as markup, as in HTML5 (raw text elements and escapable
+     * raw text elements). Must be ordered for binary search.
+     */
+    private static final String[] RAW_TEXT_ELEMENT_NAMES = new String[] { "script", "style", "textarea", "title" };
+    
+    private static final int INITIAL_STACK_SIZE = 16;
+    private static final int INITIAL_TEXT_BUFFER_SIZE = 512;
+    
+    
+    private final String documentName;
+    private final char[] buffer;
+    private final int bufferLen;
+    
+    private int pos = 0;
+    private int line = 1;
+    private int lineStart = 0;
+    
+    private NestableNode[] elementStack = new NestableNode[INITIAL_STACK_SIZE];
+    private int elementStackLen = 0;
+    private final List<Node> rootNodes = new ArrayList<Node>(4);
+    // Mimics the XML parsers, for which whitespace in the prolog (before the first actual contents) is not reported
+    private boolean rootContentStarted;
+    
+    private char[] textBuffer = new char[INITIAL_TEXT_BUFFER_SIZE];
+    private int textBufferLen = 0;
+    
+    private DocType docType = null;
+    private String xmlVersion = null;
+    private String xmlEncoding = null;
+    private boolean xmlStandalone = false;
+    
+
+    
+    StreamingHtml5Tokenizer(final String documentName, final char[] buffer, final int bufferLen, final boolean fragment) {
+        super();
+        this.documentName = documentName;
+        this.buffer = buffer;
+        this.bufferLen = bufferLen;
+        // Fragments have no prolog, so whitespace at their beginning is significant
+        this.rootContentStarted = fragment;
+        // Byte Order Mark (BOM) is ignored
+        if (bufferLen > 0 && buffer[0] == '\uFEFF') {
+            this.pos = 1;
+            this.lineStart = 1;
+        }
+    }
+    
+    
+    
+    Document parseDocument() {
+        
+        tokenize();
+        
+        final Document document = new Document(this.documentName, this.docType);
+        // XML version defaults to 1.0 if there is no XML declaration, as with the SAX-based parsers
+        document.setNodeProperty(Node.NODE_PROPERTY_XML_VERSION, (this.xmlVersion != null? this.xmlVersion : "1.0"));
+        if (this.xmlEncoding != null) {
+            document.setNodeProperty(Node.NODE_PROPERTY_XML_ENCODING, this.xmlEncoding);
+        }
+        if (this.xmlStandalone) {
+            document.setNodeProperty(Node.NODE_PROPERTY_XML_STANDALONE, Boolean.TRUE);
+        }
+        document.setChildren(this.rootNodes);
+        return document;
+        
+    }
+    
+    
+    
+    private void tokenize() {
+        
+        while (this.pos < this.bufferLen) {
+            
+            final char c = this.buffer[this.pos];
+            
+            if (c == '<') {
+                if (tryMarkup()) {
+                    continue;
+                }
+            } else if (c == '/' && matches(PROTOTYPE_ONLY_COMMENT_END, this.pos)) {
+                // Prototype-only comment end markers are simply removed
+                this.pos += PROTOTYPE_ONLY_COMMENT_END.length;
+                continue;
+            }
+            
+            appendTextChar(c);
+            
+        }
+        
+        flushText();
+        
+        if (this.elementStackLen > 0) {
+            final Element unclosed = (Element) this.elementStack[this.elementStackLen - 1];
+            throw parsingException("Element \"" + unclosed.getOriginalName() + "\" is not closed");
+        }
+        
+    }
+    
+    
+    
+    /*
+     * Tries to recognize a markup structure starting at the current position ('<'). Returns
+     * false if what follows is not markup, in which case '<' must be considered text.
+     */
+    private boolean tryMarkup() {
+        
+        final int start = this.pos;
+        if (start + 1 >= this.bufferLen) {
+            return false;
+        }
+        final char c1 = this.buffer[start + 1];
+        
+        if (c1 == '!') {
+            
+            if (matches(PROTOTYPE_ONLY_COMMENT_START, start)) {
+                this.pos += PROTOTYPE_ONLY_COMMENT_START.length;
+                return true;
+            }
+            if (matches(PARSER_LEVEL_COMMENT_START, start)) {
+                skipParserLevelComment();
+                return true;
+            }
+            if (matches(COMMENT_START, start)) {
+                final int contentStart = start + COMMENT_START.length;
+                final int end = indexOf(COMMENT_END, contentStart);
+                if (end < 0) {
+                    throw parsingException("Comment is not closed");
+                }
+                flushText();
+                addNode(new Comment(new String(this.buffer, contentStart, end - contentStart), this.documentName));
+                advanceTo(end + COMMENT_END.length);
+                return true;
+            }
+            if (matches(CDATA_START, start)) {
+                parseCDATASection();
+                return true;
+            }
+            if (matchesIgnoreCase(DOCTYPE_START, start)) {
+                parseDocType();
+                return true;
+            }
+            return false;
+            
+        }
+        
+        if (c1 == '?') {
+            final int end = indexOf(PROCESSING_INSTRUCTION_END, start + 2);
+            if (end < 0) {
+                throw parsingException("Processing instruction is not closed");
+            }
+            if (matches(XML_DECLARATION_START, start) && this.rootNodes.isEmpty() && this.elementStackLen == 0) {
+                parseXmlDeclaration(start + XML_DECLARATION_START.length, end);
+            }
+            // Other processing instructions are ignored, as they are by the SAX-based parsers
+            flushText();
+            advanceTo(end + PROCESSING_INSTRUCTION_END.length);
+            return true;
+        }
+        
+        if (c1 == '/') {
+            if (start + 2 < this.bufferLen && isNameStart(this.buffer[start + 2])) {
+                parseCloseTag();
+                return true;
+            }
+            return false;
+        }
+        
+        if (isNameStart(c1)) {
+            parseOpenTag();
+            return true;
+        }
+        
+        return false;
+        
+    }
+    
+    
+    
+    private void parseOpenTag() {
+        
+        final int tagLine = this.line;
+        
+        this.pos++; // '<'
+        final String elementName = readName();
+        
+        flushText();
+        final Element element = new Element(elementName, this.documentName, Integer.valueOf(tagLine));
+        
+        boolean selfClosed = false;
+        while (true) {
+            
+            skipWhitespace();
+            if (this.pos >= this.bufferLen) {
+                throw parsingException("Element \"" + elementName + "\" is not correctly closed");
+            }
+            
+            final char c = this.buffer[this.pos];
+            if (c == '>') {
+                this.pos++;
+                break;
+            }
+            if (c == '/' && this.pos + 1 < this.bufferLen && this.buffer[this.pos + 1] == '>') {
+                this.pos += 2;
+                selfClosed = true;
+                break;
+            }
+            
+            parseAttribute(element);
+            
+        }
+        
+        addNode(element);
+        
+        final String normalizedName = element.getNormalizedName();
+        if (selfClosed || Arrays.binarySearch(Standards.MINIMIZABLE_XHTML_TAGS, normalizedName) >= 0) {
+            // Void elements (e.g. <br>) never have a body, even if not written as <br/>
+            return;
+        }
+        
+        if (Arrays.binarySearch(RAW_TEXT_ELEMENT_NAMES, normalizedName) >= 0) {
+            parseRawText(element);
+            return;
+        }
+        
+        pushElement(element);
+        
+    }
+    
+    
+    
+    private void parseAttribute(final Element element) {
+        
+        final int nameStart = this.pos;
+        while (this.pos < this.bufferLen) {
+            final char c = this.buffer[this.pos];
+            if (c == '=' || c == '>' || Character.isWhitespace(c) ||
+                    (c == '/' && this.pos + 1 < this.bufferLen && this.buffer[this.pos + 1] == '>')) {
+                break;
+            }
+            if (c == '"' || c == '\'' || c == '<') {
+                throw parsingException("Invalid character in attribute name");
+            }
+            this.pos++;
+        }
+        final String attributeName = new String(this.buffer, nameStart, this.pos - nameStart);
+        
+        // Repeated attributes are rejected, in the same way XML parsers do
+        final Attribute existingAttribute = 
+                element.getAttributeFromNormalizedName(Attribute.normalizeAttributeName(attributeName));
+        if (existingAttribute != null && existingAttribute.getOriginalName().equals(attributeName)) {
+            throw parsingException(
+                    "Attribute \"" + attributeName + "\" was already specified for element \"" + 
+                    element.getOriginalName() + "\"");
+        }
+        
+        skipWhitespace();
+        if (this.pos >= this.bufferLen || this.buffer[this.pos] != '=') {
+            // Attribute with no value (e.g. <input disabled>)
+            element.setAttribute(attributeName, true, null, true);
+            return;
+        }
+        
+        this.pos++; // '='
+        skipWhitespace();
+        if (this.pos >= this.bufferLen) {
+            throw parsingException("Value of attribute \"" + attributeName + "\" is not specified");
+        }
+        
+        final char quote = this.buffer[this.pos];
+        final String attributeValue;
+        if (quote == '"' || quote == '\'') {
+            final int valueStart = this.pos + 1;
+            int valueEnd = valueStart;
+            while (valueEnd < this.bufferLen && this.buffer[valueEnd] != quote) {
+                valueEnd++;
+            }
+            if (valueEnd >= this.bufferLen) {
+                throw parsingException("Value of attribute \"" + attributeName + "\" is not closed");
+            }
+            attributeValue = new String(this.buffer, valueStart, valueEnd - valueStart);
+            advanceTo(valueEnd + 1);
+        } else {
+            final int valueStart = this.pos;
+            while (this.pos < this.bufferLen) {
+                final char c = this.buffer[this.pos];
+                if (c == '>' || Character.isWhitespace(c)) {
+                    break;
+                }
+                this.pos++;
+            }
+            attributeValue = new String(this.buffer, valueStart, this.pos - valueStart);
+        }
+        
+        element.setAttribute(attributeName, false, attributeValue, true);
+        
+    }
+    
+    
+    
+    private void parseCloseTag() {
+        
+        this.pos += 2; // '</'
+        final String elementName = readName();
+        skipWhitespace();
+        if (this.pos >= this.bufferLen || this.buffer[this.pos] != '>') {
+            throw parsingException("Closing tag for element \"" + elementName + "\" is not correctly closed");
+        }
+        this.pos++;
+        
+        flushText();
+        
+        if (this.elementStackLen > 0) {
+            final Element current = (Element) this.elementStack[this.elementStackLen - 1];
+            if (current.getOriginalName().equalsIgnoreCase(elementName)) {
+                this.elementStack[--this.elementStackLen] = null;
+                return;
+            }
+        }
+        
+        if (Arrays.binarySearch(Standards.MINIMIZABLE_XHTML_TAGS, Element.normalizeElementName(elementName)) >= 0) {
+            // Closing tags for void elements (e.g. </br>) are simply ignored
+            return;
+        }
+        
+        throw parsingException("Closing tag for element \"" + elementName + "\" does not match any open element");
+        
+    }
+    
+    
+    
+    /*
+     * Contents of raw text elements (e.g. <script>) are read as text until the closing tag
+     * is found, only recognizing CDATA sections and Thymeleaf's parser-level and
+     * prototype-only comments.
+     */
+    private void parseRawText(final Element element) {
+        
+        pushElement(element);
+        final String elementName = element.getOriginalName();
+        
+        while (this.pos < this.bufferLen) {
+            
+            final char c = this.buffer[this.pos];
+            
+            if (c == '<') {
+                
+                if (isRawTextEnd(elementName)) {
+                    parseCloseTag();
+                    return;
+                }
+                if (matches(PROTOTYPE_ONLY_COMMENT_START, this.pos)) {
+                    this.pos += PROTOTYPE_ONLY_COMMENT_START.length;
+                    continue;
+                }
+                if (matches(PARSER_LEVEL_COMMENT_START, this.pos)) {
+                    skipParserLevelComment();
+                    continue;
+                }
+                if (matches(COMMENT_START, this.pos)) {
+                    // Normal comments are text here, and no markers are recognized inside them
+                    final int end = indexOf(COMMENT_END, this.pos + COMMENT_START.length);
+                    final int textEnd = (end < 0? this.bufferLen : end + COMMENT_END.length);
+                    while (this.pos < textEnd) {
+                        appendTextChar(this.buffer[this.pos]);
+                    }
+                    continue;
+                }
+                if (matches(CDATA_START, this.pos)) {
+                    parseCDATASection();
+                    continue;
+                }
+                
+            } else if (c == '/' && matches(PROTOTYPE_ONLY_COMMENT_END, this.pos)) {
+                this.pos += PROTOTYPE_ONLY_COMMENT_END.length;
+                continue;
+            }
+            
+            appendTextChar(c);
+            
+        }
+        
+        // End of template reached: unclosed element error will be raised by caller
+        
+    }
+    
+    
+    private boolean isRawTextEnd(final String elementName) {
+        final int nameLen = elementName.length();
+        final int nameEnd = this.pos + 2 + nameLen;
+        if (nameEnd >= this.bufferLen || this.buffer[this.pos + 1] != '/') {
+            return false;
+        }
+        for (int i = 0; i < nameLen; i++) {
+            if (Character.toLowerCase(this.buffer[this.pos + 2 + i]) != Character.toLowerCase(elementName.charAt(i))) {
+                return false;
+            }
+        }
+        final char c = this.buffer[nameEnd];
+        return (c == '>' || Character.isWhitespace(c));
+    }
+    
+    
+    
+    private void parseCDATASection() {
+        final int contentStart = this.pos + CDATA_START.length;
+        final int end = indexOf(CDATA_END, contentStart);
+        if (end < 0) {
+            throw parsingException("CDATA section is not closed");
+        }
+        flushText();
+        markRootContentStarted();
+        addNode(new CDATASection(
+                new String(this.buffer, contentStart, end - contentStart), this.documentName, null, true));
+        advanceTo(end + CDATA_END.length);
+    }
+    
+    
+    
+    private void skipParserLevelComment() {
+        final int end = indexOf(PARSER_LEVEL_COMMENT_END, this.pos + PARSER_LEVEL_COMMENT_START.length);
+        // If not closed, everything until the end of the template is considered to be commented out
+        advanceTo(end < 0? this.bufferLen : end + PARSER_LEVEL_COMMENT_END.length);
+    }
+    
+    
+    
+    private void parseDocType() {
+        
+        final int start = this.pos;
+        final int end = indexOf('>', start + DOCTYPE_START.length);
+        if (end < 0) {
+            throw parsingException("DOCTYPE clause is not closed");
+        }
+        flushText();
+        
+        final String docTypeClause = new String(this.buffer, start, end + 1 - start);
+        final int startLine = this.line;
+        final int startLineStart = this.lineStart;
+        
+        // DOCTYPE root element name, and then PUBLIC and/or SYSTEM ids (if any)
+        this.pos = start + DOCTYPE_START.length;
+        skipWhitespace();
+        final int rootNameStart = this.pos;
+        while (this.pos < end && !Character.isWhitespace(this.buffer[this.pos])) {
+            this.pos++;
+        }
+        final String rootElementName = new String(this.buffer, rootNameStart, this.pos - rootNameStart);
+        
+        String publicId = null;
+        String systemId = null;
+        skipWhitespace();
+        if (this.pos + 6 <= end) {
+            final String keyword = new String(this.buffer, this.pos, 6);
+            if ("PUBLIC".equalsIgnoreCase(keyword)) {
+                this.pos += 6;
+                publicId = readQuotedDocTypeValue(end);
+                systemId = readQuotedDocTypeValue(end);
+            } else if ("SYSTEM".equalsIgnoreCase(keyword)) {
+                this.pos += 6;
+                systemId = readQuotedDocTypeValue(end);
+            }
+        }
+        
+        this.docType = new DocType(rootElementName, publicId, systemId, docTypeClause);
+        // As with the other parsers, anything after the DOCTYPE clause is considered document contents
+        markRootContentStarted();
+        
+        this.pos = start;
+        this.line = startLine;
+        this.lineStart = startLineStart;
+        advanceTo(end + 1);
+        
+    }
+    
+    
+    private String readQuotedDocTypeValue(final int end) {
+        skipWhitespace();
+        if (this.pos >= end) {
+            return null;
+        }
+        final char quote = this.buffer[this.pos];
+        if (quote != '"' && quote != '\'') {
+            return null;
+        }
+        final int valueStart = this.pos + 1;
+        int valueEnd = valueStart;
+        while (valueEnd < end && this.buffer[valueEnd] != quote) {
+            valueEnd++;
+        }
+        this.pos = Math.min(valueEnd + 1, end);
+        return new String(this.buffer, valueStart, valueEnd - valueStart);
+    }
+    
+    
+    
+    private void parseXmlDeclaration(final int start, final int end) {
+        final String declaration = new String(this.buffer, start, end - start);
+        this.xmlVersion = getPseudoAttributeValue(declaration, "version");
+        this.xmlEncoding = getPseudoAttributeValue(declaration, "encoding");
+        this.xmlStandalone = "yes".equals(getPseudoAttributeValue(declaration, "standalone"));
+    }
+    
+    
+    private static String getPseudoAttributeValue(final String declaration, final String name) {
+        final int nameIndex = declaration.indexOf(name);
+        if (nameIndex < 0) {
+            return null;
+        }
+        int i = nameIndex + name.length();
+        final int declarationLen = declaration.length();
+        while (i < declarationLen && (Character.isWhitespace(declaration.charAt(i)) || declaration.charAt(i) == '=')) {
+            i++;
+        }
+        if (i >= declarationLen) {
+            return null;
+        }
+        final char quote = declaration.charAt(i);
+        if (quote != '"' && quote != '\'') {
+            return null;
+        }
+        final int valueEnd = declaration.indexOf(quote, i + 1);
+        if (valueEnd < 0) {
+            return null;
+        }
+        return declaration.substring(i + 1, valueEnd);
+    }
+    
+
+    
+    
+    /*
+     * ------------------
+     * Text and node management
+     * ------------------
+     */
+    
+    
+    private void appendTextChar(final char c) {
+        if (this.textBufferLen == this.textBuffer.length) {
+            this.textBuffer = ArrayUtils.copyOf(this.textBuffer, this.textBuffer.length * 2);
+        }
+        this.textBuffer[this.textBufferLen++] = c;
+        this.pos++;
+        if (c == '\n') {
+            this.line++;
+            this.lineStart = this.pos;
+        }
+    }
+    
+    
+    private void flushText() {
+        
+        if (this.textBufferLen == 0) {
+            return;
+        }
+        
+        int textStart = 0;
+        if (!this.rootContentStarted && this.elementStackLen == 0) {
+            while (textStart < this.textBufferLen && Character.isWhitespace(this.textBuffer[textStart])) {
+                textStart++;
+            }
+            if (textStart == this.textBufferLen) {
+                // Whitespace before any actual contents of the document is ignored
+                this.textBufferLen = 0;
+                return;
+            }
+            markRootContentStarted();
+        }
+        
+        addNode(new Text(
+                new String(this.textBuffer, textStart, this.textBufferLen - textStart), this.documentName, null, true));
+        this.textBufferLen = 0;
+        
+    }
+    
+    
+    private void markRootContentStarted() {
+        this.rootContentStarted = true;
+    }
+    
+    
+    private void addNode(final Node node) {
+        if (this.elementStackLen == 0) {
+            if (node instanceof Element) {
+                markRootContentStarted();
+            }
+            this.rootNodes.add(node);
+        } else {
+            this.elementStack[this.elementStackLen - 1].addChild(node);
+        }
+    }
+    
+    
+    private void pushElement(final Element element) {
+        if (this.elementStackLen == this.elementStack.length) {
+            this.elementStack = ArrayUtils.copyOf(this.elementStack, this.elementStack.length * 2);
+        }
+        this.elementStack[this.elementStackLen++] = element;
+    }
+    
+    
+    
+    
+    /*
+     * ------------------
+     * Low-level scanning
+     * ------------------
+     */
+    
+    
+    private String readName() {
+        final int nameStart = this.pos;
+        while (this.pos < this.bufferLen && isNameChar(this.buffer[this.pos])) {
+            this.pos++;
+        }
+        return new String(this.buffer, nameStart, this.pos - nameStart);
+    }
+    
+    
+    private void skipWhitespace() {
+        while (this.pos < this.bufferLen && Character.isWhitespace(this.buffer[this.pos])) {
+            if (this.buffer[this.pos] == '\n') {
+                this.line++;
+                this.lineStart = this.pos + 1;
+            }
+            this.pos++;
+        }
+    }
+    
+    
+    /*
+     * Moves the current position forward, keeping line count
+     */
+    private void advanceTo(final int newPos) {
+        for (int i = this.pos; i < newPos; i++) {
+            if (this.buffer[i] == '\n') {
+                this.line++;
+                this.lineStart = i + 1;
+            }
+        }
+        this.pos = newPos;
+    }
+    
+    
+    private boolean matches(final char[] token, final int offset) {
+        final int tokenLen = token.length;
+        if (offset + tokenLen > this.bufferLen) {
+            return false;
+        }
+        for (int i = 0; i < tokenLen; i++) {
+            if (this.buffer[offset + i] != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    
+    private boolean matchesIgnoreCase(final char[] token, final int offset) {
+        final int tokenLen = token.length;
+        if (offset + tokenLen > this.bufferLen) {
+            return false;
+        }
+        for (int i = 0; i < tokenLen; i++) {
+            if (Character.toUpperCase(this.buffer[offset + i]) != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    
+    private int indexOf(final char[] token, final int fromOffset) {
+        final char first = token[0];
+        final int max = this.bufferLen - token.length;
+        for (int i = fromOffset; i <= max; i++) {
+            if (this.buffer[i] == first && matches(token, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    
+    private int indexOf(final char c, final int fromOffset) {
+        for (int i = fromOffset; i < this.bufferLen; i++) {
+            if (this.buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    
+    private static boolean isNameStart(final char c) {
+        return Character.isLetter(c) || c == '_' || c == ':';
+    }
+    
+    
+    private static boolean isNameChar(final char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == ':' || c == '-' || c == '.';
+    }
+    
+    
+    private TemplateInputException parsingException(final String reason) {
+        final String message = 
+                String.format("Exception parsing document: template=\"%s\", line %d - column %d (%s)",
+                        this.documentName, Integer.valueOf(this.line), Integer.valueOf(this.pos - this.lineStart + 1), reason);
+        return new TemplateInputException(message);
+    }
+    
+    
+}
@@ -0,0 +1,279 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.templateparser.precompiled;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.thymeleaf.dom.Document;
+import org.thymeleaf.exceptions.TemplateInputException;
+import org.thymeleaf.util.Validate;
+
+
+/**
+ * <p>
+ *   Bundle of already-parsed templates, normally created at build time by
+ *   {@link TemplatePrecompiler} and read at runtime by
+ *   {@link org.thymeleaf.templateresolver.PrecompiledTemplateResolver}.
+ * </p>
+ * <p>
+ *   Each entry in the bundle contains the template mode the template was parsed with and
+ *   the binary (serialized) form of the {@link Document} returned by the template parser,
+ *   before any precomputation is applied to it. This way, templates can be read from the bundle
+ *   without any parsing operations being needed.
+ * </p>
+ * <p>
+ *   Objects of this class are <b>not</b> thread-safe during construction (i.e. when calling
+ *   {@link #addTemplate(String, String, Document)}), but are thread-safe once they have been
+ *   completely built or read.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class PrecompiledTemplateBundle {
+
+    /**
+     * <p>
+     *   Default name of the classpath resource in which bundles are expected to be
+     *   found: <tt>META-INF/thymeleaf/templates.bundle</tt>
+     * </p>
+     */
+    public static final String DEFAULT_BUNDLE_RESOURCE_NAME = "META-INF/thymeleaf/templates.bundle";
+
+    private static final int BUNDLE_MAGIC = 0x544C4243; // "TLBC"
+    // Version 2: DOM node serialized form changed in 2.1.5 (packed node flags and line numbers)
+    private static final int BUNDLE_FORMAT_VERSION = 2;
+
+    private final Map<String,BundleEntry> entries;
+    
+    
+
+    public PrecompiledTemplateBundle() {
+        super();
+        this.entries = new LinkedHashMap<String, BundleEntry>(20);
+    }
+    
+
+    
+    /**
+     * <p>
+     *   Adds a parsed template to the bundle. The document should not have been
+     *   precomputed yet.
+     * </p>
+     * 
+     * @param templateName the name of the template.
+     * @param templateMode the template mode used for parsing the template.
+     * @param document the parsed document.
+     */
+    public void addTemplate(final String templateName, final String templateMode, final Document document) {
+        Validate.notNull(templateName, "Template name cannot be null");
+        Validate.notNull(templateMode, "Template mode cannot be null");
+        Validate.notNull(document, "Document cannot be null");
+        this.entries.put(templateName, new BundleEntry(templateMode, serializeDocument(document)));
+    }
+    
+
+    public boolean containsTemplate(final String templateName) {
+        return this.entries.containsKey(templateName);
+    }
+    
+    
+    public Set<String> getTemplateNames() {
+        return Collections.unmodifiableSet(this.entries.keySet());
+    }
+    
+    
+    public int size() {
+        return this.entries.size();
+    }
+    
+    
+    /**
+     * <p>
+     *   Returns the template mode that was used for parsing the specified template, or
+     *   <tt>null</tt> if the template is not contained in this bundle.
+     * </p>
+     * 
+     * @param templateName the name of the template.
+     * @return the template mode.
+     */
+    public String getTemplateMode(final String templateName) {
+        final BundleEntry entry = this.entries.get(templateName);
+        if (entry == null) {
+            return null;
+        }
+        return entry.templateMode;
+    }
+    
+
+    /**
+     * <p>
+     *   Returns an input stream on the binary form of the specified template, or
+     *   <tt>null</tt> if the template is not contained in this bundle. The result
+     *   of this method can be converted into a {@link Document} by calling
+     *   {@link #readDocument(InputStream)}.
+     * </p>
+     * 
+     * @param templateName the name of the template.
+     * @return the input stream, or null.
+     */
+    public InputStream getTemplateAsStream(final String templateName) {
+        final BundleEntry entry = this.entries.get(templateName);
+        if (entry == null) {
+            return null;
+        }
+        return new ByteArrayInputStream(entry.serializedDocument);
+    }
+    
+    
+    
+    
+    /**
+     * <p>
+     *   Writes the bundle to the specified output stream. The output stream is
+     *   not closed.
+     * </p>
+     * 
+     * @param outputStream the output stream to write to.
+     * @throws IOException if the bundle cannot be written.
+     */
+    public void write(final OutputStream outputStream) throws IOException {
+        Validate.notNull(outputStream, "Output stream cannot be null");
+        final DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+        dataOutputStream.writeInt(BUNDLE_MAGIC);
+        dataOutputStream.writeInt(BUNDLE_FORMAT_VERSION);
+        dataOutputStream.writeInt(this.entries.size());
+        for (final Map.Entry<String,BundleEntry> entry : this.entries.entrySet()) {
+            dataOutputStream.writeUTF(entry.getKey());
+            dataOutputStream.writeUTF(entry.getValue().templateMode);
+            dataOutputStream.writeInt(entry.getValue().serializedDocument.length);
+            dataOutputStream.write(entry.getValue().serializedDocument);
+        }
+        dataOutputStream.flush();
+    }
+    
+    
+    /**
+     * <p>
+     *   Reads a bundle from the specified input stream. The input stream is
+     *   not closed.
+     * </p>
+     * 
+     * @param inputStream the input stream to read from.
+     * @return the read bundle.
+     * @throws IOException if the bundle cannot be read or is not a valid template bundle.
+     */
+    public static PrecompiledTemplateBundle read(final InputStream inputStream) throws IOException {
+        Validate.notNull(inputStream, "Input stream cannot be null");
+        final DataInputStream dataInputStream = new DataInputStream(inputStream);
+        if (dataInputStream.readInt() != BUNDLE_MAGIC) {
+            throw new IOException("Input is not a Thymeleaf precompiled template bundle");
+        }
+        final int formatVersion = dataInputStream.readInt();
+        if (formatVersion != BUNDLE_FORMAT_VERSION) {
+            throw new IOException(
+                    "Unsupported precompiled template bundle format version: " + formatVersion);
+        }
+        final PrecompiledTemplateBundle bundle = new PrecompiledTemplateBundle();
+        final int numEntries = dataInputStream.readInt();
+        for (int i = 0; i < numEntries; i++) {
+            final String templateName = dataInputStream.readUTF();
+            final String templateMode = dataInputStream.readUTF();
+            final byte[] serializedDocument = new byte[dataInputStream.readInt()];
+            dataInputStream.readFully(serializedDocument);
+            bundle.entries.put(templateName, new BundleEntry(templateMode, serializedDocument));
+        }
+        return bundle;
+    }
+    
+    
+    
+    
+    /**
+     * <p>
+     *   Reads a {@link Document} from its binary form, as returned by
+     *   {@link #getTemplateAsStream(String)}. Each call to this method returns
+     *   a new Document object.
+     * </p>
+     * 
+     * @param inputStream the input stream containing the binary form of the document.
+     * @return the document.
+     */
+    public static Document readDocument(final InputStream inputStream) {
+        Validate.notNull(inputStream, "Input stream cannot be null");
+        try {
+            final ObjectInputStream objectInputStream = new ObjectInputStream(inputStream);
+            try {
+                return (Document) objectInputStream.readObject();
+            } finally {
+                objectInputStream.close();
+            }
+        } catch (final TemplateInputException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new TemplateInputException("Exception reading precompiled template", e);
+        }
+    }
+    
+    
+    private static byte[] serializeDocument(final Document document) {
+        try {
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(4096);
+            final ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+            objectOutputStream.writeObject(document);
+            objectOutputStream.close();
+            return byteArrayOutputStream.toByteArray();
+        } catch (final IOException e) {
+            throw new TemplateInputException(
+                    "Exception serializing template \"" + document.getDocumentName() + "\"", e);
+        }
+    }
+    
+    
+    
+    
+    private static final class BundleEntry {
+        
+        final String templateMode;
+        final byte[] serializedDocument;
+        
+        BundleEntry(final String templateMode, final byte[] serializedDocument) {
+            super();
+            this.templateMode = templateMode;
+            this.serializedDocument = serializedDocument;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,312 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.templateparser.precompiled;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.thymeleaf.Configuration;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.dom.Document;
+import org.thymeleaf.exceptions.ConfigurationException;
+import org.thymeleaf.templatemode.ITemplateModeHandler;
+import org.thymeleaf.templatemode.StandardTemplateModeHandlers;
+import org.thymeleaf.templateparser.ITemplateParser;
+import org.thymeleaf.templateresolver.FileTemplateResolver;
+import org.thymeleaf.util.Validate;
+
+
+/**
+ * <p>
+ *   Build-time tool that parses all the templates in a directory using the
+ *   {@link ITemplateParser} configured for their template mode, and creates a
+ *   {@link PrecompiledTemplateBundle} with the results.
+ * </p>
+ * <p>
+ *   Precompiling templates allows template syntax errors to be detected at build time instead
+ *   of at application startup, and also allows templates to be read at runtime (by means
+ *   of {@link org.thymeleaf.templateresolver.PrecompiledTemplateResolver}) with no parsing
+ *   cost at all.
+ * </p>
+ * <p>
+ *   The template mode applied to each file is selected by file suffix, and the <i>template name</i>
+ *   for each file will be its path relative to the templates directory, without the suffix
+ *   and using <tt>/</tt> as a separator (e.g. <tt>templates/home/index.html</tt> will
+ *   be bundled as <tt>home/index</tt>).
+ * </p>
+ * <p>
+ *   This class can be executed from command line (for instance, from the <tt>exec-maven-plugin</tt>
+ *   at the <tt>process-classes</tt> phase of a build), with the following syntax:
+ * </p>
+ * <pre>
+ *   TemplatePrecompiler &lt;templatesDir&gt; &lt;bundleFile&gt; [&lt;suffix&gt;=&lt;templateMode&gt; ...]
+ * </pre>
+ * <p>
+ *   If no suffix-to-template mode mappings are specified, <tt>.html=HTML5</tt> will be used.
+ *   Execution ends with a non-zero exit status if any of the templates could not be parsed.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class TemplatePrecompiler {
+
+    /**
+     * <p>
+     *   Default suffix for templates to be precompiled: <tt>.html</tt>
+     * </p>
+     */
+    public static final String DEFAULT_SUFFIX = ".html";
+
+    /**
+     * <p>
+     *   Default template mode for templates to be precompiled: <tt>HTML5</tt>
+     * </p>
+     */
+    public static final String DEFAULT_TEMPLATE_MODE = 
+            StandardTemplateModeHandlers.HTML5.getTemplateModeName();
+    
+    
+    private final TemplateEngine templateEngine;
+    private final Map<String,String> templateModesBySuffix;
+    private String characterEncoding = "UTF-8";
+    
+    
+
+    /**
+     * <p>
+     *   Creates a new precompiler which will use the configuration (dialects, template mode
+     *   handlers) of the specified template engine. The template engine will be initialized
+     *   if it is not already.
+     * </p>
+     * 
+     * @param templateEngine the template engine.
+     */
+    public TemplatePrecompiler(final TemplateEngine templateEngine) {
+        super();
+        Validate.notNull(templateEngine, "Template Engine cannot be null");
+        this.templateEngine = templateEngine;
+        this.templateModesBySuffix = new LinkedHashMap<String, String>(4);
+    }
+    
+
+    
+    public void addTemplateModeForSuffix(final String suffix, final String templateMode) {
+        Validate.notEmpty(suffix, "Suffix cannot be null or empty");
+        Validate.notEmpty(templateMode, "Template mode cannot be null or empty");
+        this.templateModesBySuffix.put(suffix, templateMode);
+    }
+    
+    
+    public String getCharacterEncoding() {
+        return this.characterEncoding;
+    }
+    
+    
+    public void setCharacterEncoding(final String characterEncoding) {
+        Validate.notEmpty(characterEncoding, "Character encoding cannot be null or empty");
+        this.characterEncoding = characterEncoding;
+    }
+    
+    
+    
+    /**
+     * <p>
+     *   Parses all the templates found (recursively) at the specified directory and adds
+     *   them to the specified bundle.
+     * </p>
+     * 
+     * @param templatesDirectory the directory containing the templates.
+     * @param bundle the bundle the parsed templates will be added to.
+     * @return the list of errors found (one per template that could not be parsed). Will be
+     *         empty if every template was correctly parsed.
+     */
+    public List<String> precompile(final File templatesDirectory, final PrecompiledTemplateBundle bundle) {
+        
+        Validate.notNull(templatesDirectory, "Templates directory cannot be null");
+        Validate.notNull(bundle, "Bundle cannot be null");
+        
+        if (!templatesDirectory.isDirectory()) {
+            throw new ConfigurationException(
+                    "Cannot precompile templates: \"" + templatesDirectory + "\" is not a directory");
+        }
+        
+        if (!this.templateEngine.isInitialized()) {
+            this.templateEngine.initialize();
+        }
+        final Configuration configuration = this.templateEngine.getConfiguration();
+
+        final Map<String,String> templateModes = 
+                (this.templateModesBySuffix.isEmpty()? 
+                        Collections.singletonMap(DEFAULT_SUFFIX, DEFAULT_TEMPLATE_MODE) :
+                        this.templateModesBySuffix);
+
+        final List<String> errors = new ArrayList<String>(5);
+        precompileDirectory(configuration, templateModes, templatesDirectory, "", bundle, errors);
+        return errors;
+        
+    }
+    
+    
+    
+    private void precompileDirectory(
+            final Configuration configuration, final Map<String,String> templateModes, 
+            final File directory, final String namePrefix, 
+            final PrecompiledTemplateBundle bundle, final List<String> errors) {
+        
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Sorting makes the resulting bundle reproducible across builds
+        Arrays.sort(files);
+        
+        for (final File file : files) {
+            
+            if (file.isDirectory()) {
+                precompileDirectory(
+                        configuration, templateModes, file, namePrefix + file.getName() + '/', bundle, errors);
+                continue;
+            }
+            
+            for (final Map.Entry<String,String> templateModeEntry : templateModes.entrySet()) {
+                
+                final String suffix = templateModeEntry.getKey();
+                if (!file.getName().endsWith(suffix)) {
+                    continue;
+                }
+                
+                final String templateMode = templateModeEntry.getValue();
+                final String fileName = file.getName();
+                final String templateName = 
+                        namePrefix + fileName.substring(0, fileName.length() - suffix.length());
+                
+                try {
+                    final Document document = parse(configuration, templateMode, templateName, file);
+                    bundle.addTemplate(templateName, templateMode, document);
+                } catch (final Exception e) {
+                    errors.add(
+                            "Error precompiling template \"" + templateName + "\" (" + file.getPath() + ") " +
+                            "in mode " + templateMode + ": " + e.getMessage());
+                }
+                break;
+                
+            }
+            
+        }
+        
+    }
+    
+    
+    
+    private Document parse(final Configuration configuration, final String templateMode, 
+            final String templateName, final File file) throws IOException {
+        
+        final ITemplateModeHandler templateModeHandler = configuration.getTemplateModeHandler(templateMode);
+        if (templateModeHandler == null) {
+            throw new ConfigurationException(
+                    "Template mode \"" + templateMode + "\" has not been configured");
+        }
+        
+        final Reader reader = new InputStreamReader(new FileInputStream(file), this.characterEncoding);
+        try {
+            return templateModeHandler.getTemplateParser().parseTemplate(configuration, templateName, reader);
+        } finally {
+            reader.close();
+        }
+        
+    }
+    
+    
+    
+    
+    public static void main(final String[] args) throws IOException {
+        
+        if (args.length < 2) {
+            System.err.println(
+                    "Usage: " + TemplatePrecompiler.class.getName() + 
+                    " <templatesDir> <bundleFile> [<suffix>=<templateMode> ...]");
+            System.exit(2);
+            return;
+        }
+        
+        final File templatesDirectory = new File(args[0]);
+        final File bundleFile = new File(args[1]);
+
+        // The template resolver is never really used, but the engine requires one in order to initialize
+        final FileTemplateResolver templateResolver = new FileTemplateResolver();
+        templateResolver.setPrefix(templatesDirectory.getPath() + File.separator);
+        
+        final TemplateEngine templateEngine = new TemplateEngine();
+        templateEngine.setTemplateResolver(templateResolver);
+        
+        final TemplatePrecompiler precompiler = new TemplatePrecompiler(templateEngine);
+        for (int i = 2; i < args.length; i++) {
+            final int equalsPos = args[i].indexOf('=');
+            if (equalsPos <= 0) {
+                System.err.println("Invalid suffix-to-template mode mapping: \"" + args[i] + "\"");
+                System.exit(2);
+                return;
+            }
+            precompiler.addTemplateModeForSuffix(args[i].substring(0, equalsPos), args[i].substring(equalsPos + 1));
+        }
+        
+        final PrecompiledTemplateBundle bundle = new PrecompiledTemplateBundle();
+        final List<String> errors = precompiler.precompile(templatesDirectory, bundle);
+        
+        if (!errors.isEmpty()) {
+            for (final String error : errors) {
+                System.err.println(error);
+            }
+            System.err.println(errors.size() + " template(s) could not be precompiled");
+            System.exit(1);
+            return;
+        }
+        
+        final File bundleDirectory = bundleFile.getAbsoluteFile().getParentFile();
+        if (bundleDirectory != null && !bundleDirectory.isDirectory() && !bundleDirectory.mkdirs()) {
+            throw new IOException("Could not create directory " + bundleDirectory);
+        }
+        final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(bundleFile));
+        try {
+            bundle.write(outputStream);
+        } finally {
+            outputStream.close();
+        }
+        
+        System.out.println(bundle.size() + " template(s) precompiled into " + bundleFile.getPath());
+        
+    }
+    
+}
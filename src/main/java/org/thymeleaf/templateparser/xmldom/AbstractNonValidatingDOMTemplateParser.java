@@ -36,7 +36,6 @@
 import org.thymeleaf.exceptions.ParserInitializationException;
 import org.thymeleaf.exceptions.TemplateInputException;
 import org.thymeleaf.exceptions.TemplateProcessingException;
-import org.thymeleaf.templateparser.EntityResolver;
 import org.thymeleaf.templateparser.ErrorHandler;
 import org.thymeleaf.templateparser.ITemplateParser;
 import org.thymeleaf.templateparser.TemplatePreprocessingReader;
@@ -131,7 +130,7 @@ protected final Document parseTemplateUsingPool(final Configuration configuratio
         
         try {
             
-            docBuilder.setEntityResolver(new EntityResolver(configuration));
+            docBuilder.setEntityResolver(configuration.getEntityResolver());
             docBuilder.setErrorHandler(ErrorHandler.INSTANCE);
 
             /*
@@ -79,6 +79,9 @@ public abstract class AbstractNonValidatingSAXTemplateParser implements ITemplat
 
     private static final int BUFFER_SIZE = 8192;
 
+    private static final String APACHE_XERCES_PACKAGE_PREFIX = "org.apache.xerces.";
+    private static final String GRAMMAR_POOL_PROPERTY = "http://apache.org/xml/properties/internal/grammar-pool";
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final ResourcePool<SAXParser> pool;
     private boolean canResetParsers = true;
@@ -197,14 +200,26 @@ private static Document doParse(
 
         final InputSource inputSource = new InputSource(reader);
         
+        final EntityResolver entityResolver = configuration.getEntityResolver();
+        
         final XmlSAXHandler handler = 
-                new XmlSAXHandler(documentName, new EntityResolver(configuration), ErrorHandler.INSTANCE);
+                new XmlSAXHandler(documentName, entityResolver, ErrorHandler.INSTANCE);
         
         saxParser.setProperty(
             "http://xml.org/sax/properties/lexical-handler", handler);
         saxParser.setProperty(
                 "http://xml.org/sax/properties/declaration-handler", handler);
         
+        if (saxParser.getClass().getName().startsWith(APACHE_XERCES_PACKAGE_PREFIX)) {
+            // DTDs are cached in the configuration's grammar pool, so that they are not resolved
+            // and parsed again for every template. Needs to be set for every parsing, as resetting
+            // the parser also resets its properties.
+            final Object grammarPool = entityResolver.getGrammarPool();
+            if (grammarPool != null) {
+                saxParser.setProperty(GRAMMAR_POOL_PROPERTY, grammarPool);
+            }
+        }
+        
         
         saxParser.parse(inputSource, handler);
         
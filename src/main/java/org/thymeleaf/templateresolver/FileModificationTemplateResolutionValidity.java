@@ -0,0 +1,152 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.templateresolver;
+
+import java.io.File;
+
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Implementation of {@link ITemplateResolutionValidity} that considers
+ *   a cached template valid for as long as the file it was read from has not
+ *   been modified (or removed).
+ * </p>
+ * <p>
+ *   The modification date of the file is recorded when this object is created, and
+ *   compared with the file's current one each time {@link #isCacheStillValid()} is
+ *   called. In order to avoid hitting the file system on every single template
+ *   access, such checks can be rate-limited by means of a <i>check interval</i>: during
+ *   that interval after the last check, the result of that last check is returned
+ *   without consulting the file system again.
+ * </p>
+ * <p>
+ *   Once a modification has been detected, this validity will always be invalid.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public class FileModificationTemplateResolutionValidity 
+        implements ITemplateResolutionValidity {
+
+    private final File file;
+    private final long lastModified;
+    private final long checkIntervalMs;
+    
+    private volatile long lastCheckTimeInMillis;
+    private volatile boolean modified;
+    
+    
+
+    /**
+     * <p>
+     *   Creates a new instance of this validity implementation.
+     * </p>
+     * 
+     * @param file the file the template is read from.
+     * @param checkIntervalMs the minimum amount of milliseconds between two checks
+     *        on the file's modification date (0 for checking on every access).
+     */
+    public FileModificationTemplateResolutionValidity(final File file, final long checkIntervalMs) {
+        super();
+        Validate.notNull(file, "File cannot be null");
+        Validate.isTrue(checkIntervalMs >= 0, "Check interval cannot be negative");
+        this.file = file;
+        this.lastModified = file.lastModified();
+        this.checkIntervalMs = checkIntervalMs;
+        this.lastCheckTimeInMillis = System.currentTimeMillis();
+        this.modified = false;
+    }
+    
+    
+
+    /**
+     * <p>
+     *   Returns the file the template is read from.
+     * </p>
+     * 
+     * @return the file
+     */
+    public File getFile() {
+        return this.file;
+    }
+    
+
+    /**
+     * <p>
+     *   Returns the minimum amount of milliseconds between two checks on the 
+     *   file's modification date.
+     * </p>
+     * 
+     * @return the check interval in milliseconds
+     */
+    public long getCheckIntervalMs() {
+        return this.checkIntervalMs;
+    }
+
+    
+    /**
+     * <p>
+     *   Returns true. Templates are always considered cacheable using this
+     *   validity implementation.
+     * </p>
+     * 
+     * @return true
+     */
+    public boolean isCacheable() {
+        return true;
+    }
+
+    
+    /**
+     * <p>
+     *   Returns whether the template resolution can still be considered valid, i.e.
+     *   whether the file has not been modified or removed since this object
+     *   was created.
+     * </p>
+     * 
+     * @return whether the (cached) template resolution can still be considered valid.  
+     */
+    public boolean isCacheStillValid() {
+        
+        if (this.modified) {
+            return false;
+        }
+        
+        final long currentTimeInMillis = System.currentTimeMillis();
+        if (currentTimeInMillis < this.lastCheckTimeInMillis + this.checkIntervalMs) {
+            return true;
+        }
+        this.lastCheckTimeInMillis = currentTimeInMillis;
+        
+        // File.lastModified() returns 0 if the file does not exist (anymore)
+        final long currentLastModified = this.file.lastModified();
+        if (currentLastModified == 0L || currentLastModified != this.lastModified) {
+            this.modified = true;
+            return false;
+        }
+        return true;
+        
+    }
+    
+}
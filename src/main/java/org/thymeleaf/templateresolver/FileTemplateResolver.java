@@ -19,15 +19,26 @@
  */
 package org.thymeleaf.templateresolver;
 
+import java.io.File;
+
+import org.thymeleaf.TemplateProcessingParameters;
 import org.thymeleaf.exceptions.ConfigurationException;
 import org.thymeleaf.resourceresolver.FileResourceResolver;
 import org.thymeleaf.resourceresolver.IResourceResolver;
+import org.thymeleaf.util.Validate;
 
 /**
  * <p>
  *   Implementation of {@link ITemplateResolver} that extends {@link TemplateResolver}
  *   and uses a {@link FileResourceResolver} for resource resolution.
  * </p>
+ * <p>
+ *   Optionally (see {@link #setCheckFileModification(boolean)}), cacheable templates
+ *   can be kept in cache for as long as the files they were read from are not modified,
+ *   by means of a {@link FileModificationTemplateResolutionValidity}. This allows
+ *   changes in template files to be applied (almost) immediately, without having to
+ *   periodically re-parse unchanged templates as a TTL would do.
+ * </p>
  * 
  * @author Daniel Fern&aacute;ndez
  * 
@@ -37,6 +48,19 @@
 public class FileTemplateResolver
         extends TemplateResolver {
 
+    /**
+     * <p>
+     *   Default value for the minimum amount of milliseconds between two checks on the
+     *   modification date of a template file: <tt>1000</tt>.
+     * </p>
+     * 
+     * @since 2.1.5
+     */
+    public static final long DEFAULT_FILE_MODIFICATION_CHECK_INTERVAL_MS = 1000L;
+    
+    
+    private boolean checkFileModification = false;
+    private long fileModificationCheckIntervalMs = DEFAULT_FILE_MODIFICATION_CHECK_INTERVAL_MS;
     
     
     
@@ -48,6 +72,78 @@ public FileTemplateResolver() {
     
     
 
+    /**
+     * <p>
+     *   Returns whether cacheable templates resolved by this resolver will be considered
+     *   valid only for as long as their files are not modified.
+     * </p>
+     * 
+     * @return whether file modification will be checked
+     * @since 2.1.5
+     */
+    public final boolean getCheckFileModification() {
+        checkInitialized();
+        return this.checkFileModification;
+    }
+
+    
+    /**
+     * <p>
+     *   Sets whether cacheable templates resolved by this resolver will be considered
+     *   valid only for as long as their files are not modified. Default is <tt>false</tt>.
+     * </p>
+     * <p>
+     *   If set to <tt>true</tt>, cacheable templates will be resolved with a 
+     *   {@link FileModificationTemplateResolutionValidity}, and any TTL set by means
+     *   of {@link #setCacheTTLMs(Long)} will be ignored. Non-cacheable templates are not
+     *   affected.
+     * </p>
+     * 
+     * @param checkFileModification whether file modification should be checked
+     * @since 2.1.5
+     */
+    public void setCheckFileModification(final boolean checkFileModification) {
+        checkNotInitialized();
+        this.checkFileModification = checkFileModification;
+    }
+
+    
+    /**
+     * <p>
+     *   Returns the minimum amount of milliseconds between two checks on the modification
+     *   date of a template file.
+     * </p>
+     * 
+     * @return the check interval in milliseconds
+     * @since 2.1.5
+     */
+    public final long getFileModificationCheckIntervalMs() {
+        checkInitialized();
+        return this.fileModificationCheckIntervalMs;
+    }
+
+    
+    /**
+     * <p>
+     *   Sets the minimum amount of milliseconds between two checks on the modification
+     *   date of a template file (only applies if {@link #setCheckFileModification(boolean)}
+     *   has been set to <tt>true</tt>). Default is 
+     *   {@link #DEFAULT_FILE_MODIFICATION_CHECK_INTERVAL_MS}. A value of <tt>0</tt> means
+     *   the file will be checked each time the cached template is accessed.
+     * </p>
+     * 
+     * @param fileModificationCheckIntervalMs the new check interval in milliseconds
+     * @since 2.1.5
+     */
+    public void setFileModificationCheckIntervalMs(final long fileModificationCheckIntervalMs) {
+        checkNotInitialized();
+        Validate.isTrue(fileModificationCheckIntervalMs >= 0, "Check interval cannot be negative");
+        this.fileModificationCheckIntervalMs = fileModificationCheckIntervalMs;
+    }
+    
+    
+    
+
     
     /**
      * <p>
@@ -69,6 +165,23 @@ public void setResourceResolver(final IResourceResolver resourceResolver) {
                 "you want to set your own resource resolver, use " + TemplateResolver.class.getName() + 
                 "instead");
     }
+    
+    
+    
+    
+    @Override
+    protected ITemplateResolutionValidity computeValidity(final TemplateProcessingParameters templateProcessingParameters) {
+        
+        final ITemplateResolutionValidity validity = super.computeValidity(templateProcessingParameters);
+        
+        if (!this.checkFileModification || !validity.isCacheable()) {
+            return validity;
+        }
+        
+        final File templateFile = new File(computeResourceName(templateProcessingParameters));
+        return new FileModificationTemplateResolutionValidity(templateFile, this.fileModificationCheckIntervalMs);
+        
+    }
 
     
     
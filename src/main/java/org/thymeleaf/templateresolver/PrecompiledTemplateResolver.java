@@ -0,0 +1,179 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.templateresolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.thymeleaf.TemplateProcessingParameters;
+import org.thymeleaf.exceptions.ConfigurationException;
+import org.thymeleaf.resourceresolver.IResourceResolver;
+import org.thymeleaf.resourceresolver.PrecompiledTemplateResourceResolver;
+import org.thymeleaf.templateparser.precompiled.PrecompiledTemplateBundle;
+import org.thymeleaf.util.ClassLoaderUtils;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Implementation of {@link ITemplateResolver} that resolves templates from a
+ *   {@link PrecompiledTemplateBundle} read from the classpath, normally created at build time
+ *   by {@link org.thymeleaf.templateparser.precompiled.TemplatePrecompiler}.
+ * </p>
+ * <p>
+ *   Templates resolved by this resolver require no parsing: the template mode used for each
+ *   of them is the one they were precompiled with, and only templates contained in the bundle
+ *   are considered resolvable (so that other resolvers in the chain can take care of the rest).
+ * </p>
+ * <p>
+ *   Resolved templates are always considered cacheable, as the contents of the bundle cannot change.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public class PrecompiledTemplateResolver 
+        extends AbstractTemplateResolver {
+
+    
+    private String bundleResourceName = PrecompiledTemplateBundle.DEFAULT_BUNDLE_RESOURCE_NAME;
+    private PrecompiledTemplateBundle bundle = null;
+    private PrecompiledTemplateResourceResolver resourceResolver = null;
+    
+    
+    public PrecompiledTemplateResolver() {
+        super();
+    }
+    
+    
+    
+    @Override
+    protected void initializeSpecific() {
+        
+        if (this.bundle == null) {
+            
+            final InputStream inputStream =
+                    ClassLoaderUtils.getClassLoader(PrecompiledTemplateResolver.class).getResourceAsStream(this.bundleResourceName);
+            if (inputStream == null) {
+                throw new ConfigurationException(
+                        "Cannot initialize template resolver: precompiled template bundle \"" + 
+                        this.bundleResourceName + "\" could not be found in classpath");
+            }
+            try {
+                try {
+                    this.bundle = PrecompiledTemplateBundle.read(inputStream);
+                } finally {
+                    inputStream.close();
+                }
+            } catch (final IOException e) {
+                throw new ConfigurationException(
+                        "Cannot initialize template resolver: precompiled template bundle \"" + 
+                        this.bundleResourceName + "\" could not be read", e);
+            }
+            
+        }
+        
+        this.resourceResolver = new PrecompiledTemplateResourceResolver(this.bundle);
+        
+    }
+    
+    
+    
+    /**
+     * <p>
+     *   Returns the name of the classpath resource containing the bundle. Default is
+     *   {@link PrecompiledTemplateBundle#DEFAULT_BUNDLE_RESOURCE_NAME}.
+     * </p>
+     * 
+     * @return the bundle resource name
+     */
+    public String getBundleResourceName() {
+        return this.bundleResourceName;
+    }
+
+    
+    /**
+     * <p>
+     *   Sets the name of the classpath resource containing the bundle.
+     * </p>
+     * 
+     * @param bundleResourceName the bundle resource name
+     */
+    public void setBundleResourceName(final String bundleResourceName) {
+        checkNotInitialized();
+        Validate.notEmpty(bundleResourceName, "Bundle resource name cannot be null or empty");
+        this.bundleResourceName = bundleResourceName;
+    }
+
+    
+    /**
+     * <p>
+     *   Sets an already-read bundle to be used by this resolver. If set, the bundle resource
+     *   name will be ignored.
+     * </p>
+     * 
+     * @param bundle the bundle
+     */
+    public void setBundle(final PrecompiledTemplateBundle bundle) {
+        checkNotInitialized();
+        this.bundle = bundle;
+    }
+    
+    
+    
+    @Override
+    protected boolean computeResolvable(final TemplateProcessingParameters templateProcessingParameters) {
+        return this.bundle.containsTemplate(templateProcessingParameters.getTemplateName()) &&
+                super.computeResolvable(templateProcessingParameters);
+    }
+
+
+    @Override
+    protected String computeResourceName(final TemplateProcessingParameters templateProcessingParameters) {
+        return templateProcessingParameters.getTemplateName();
+    }
+
+
+    @Override
+    protected IResourceResolver computeResourceResolver(final TemplateProcessingParameters templateProcessingParameters) {
+        return this.resourceResolver;
+    }
+
+
+    @Override
+    protected String computeCharacterEncoding(final TemplateProcessingParameters templateProcessingParameters) {
+        // Precompiled templates are not read as text
+        return null;
+    }
+
+
+    @Override
+    protected String computeTemplateMode(final TemplateProcessingParameters templateProcessingParameters) {
+        return this.bundle.getTemplateMode(templateProcessingParameters.getTemplateName());
+    }
+
+
+    @Override
+    protected ITemplateResolutionValidity computeValidity(final TemplateProcessingParameters templateProcessingParameters) {
+        return AlwaysValidTemplateResolutionValidity.INSTANCE;
+    }
+    
+}
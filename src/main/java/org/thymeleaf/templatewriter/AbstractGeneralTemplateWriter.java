@@ -35,6 +35,7 @@
 import org.thymeleaf.dom.Macro;
 import org.thymeleaf.dom.Node;
 import org.thymeleaf.dom.Text;
+import org.thymeleaf.util.DOMUtils;
 import org.thymeleaf.util.Validate;
 
 
@@ -56,6 +57,19 @@ public abstract class AbstractGeneralTemplateWriter implements ITemplateWriter {
     
     private static final char[] XML_DECLARATION_PREFIX = "<?xml version=\"1.0\"".toCharArray();
     private static final char[] XML_DECLARATION_SUFFIX = "?>\n".toCharArray();
+    
+    /*
+     * Whether the nodes being written by each thread are inside a whitespace-sensitive element, set
+     * by every element for its children while minimizing whitespace. Kept per thread instead of being
+     * passed as a parameter so that writing still goes through the protected write* methods, which
+     * subclasses might override (writers are shared by all executions).
+     */
+    private static final ThreadLocal<WritingState> WRITING_STATE = new ThreadLocal<WritingState>() {
+        @Override
+        protected WritingState initialValue() {
+            return new WritingState();
+        }
+    };
 
 
 
@@ -78,6 +92,24 @@ public void write(final Arguments arguments, final Writer writer, final Document
     protected abstract boolean useXhtmlTagMinimizationRules();
     
     
+    /**
+     * <p>
+     *   Returns whether this writer will minimize whitespace in output (collapsing whitespace
+     *   in texts and removing comments) for the specified configuration.
+     * </p>
+     * <p>
+     *   Default implementation returns false.
+     * </p>
+     * 
+     * @param configuration the configuration being applied.
+     * @return true if whitespace should be minimized, false if not.
+     * @since 2.1.5
+     */
+    public boolean isMinimizingWhitespace(final Configuration configuration) {
+        return false;
+    }
+    
+    
     
     
     protected void writeDocument(final Arguments arguments, final Writer writer, final Document document) 
@@ -141,6 +173,77 @@ public void writeNode(final Arguments arguments, final Writer writer, final Node
             return;
         }
         
+        if (!isMinimizingWhitespace(arguments.getConfiguration())) {
+            dispatchNode(arguments, writer, node);
+            return;
+        }
+        
+        final WritingState writingState = WRITING_STATE.get();
+        if (writingState.depth > 0) {
+            // Writing children of another node: sensitivity has already been set by it
+            dispatchNode(arguments, writer, node);
+            return;
+        }
+        writeNode(arguments, writer, node, writingState, DOMUtils.isInsideWhitespaceSensitiveElement(node));
+    
+    }
+
+    
+    /**
+     * <p>
+     *   Writes a node, specifying whether it is contained in an element in which whitespace is
+     *   significant (see {@link Element#isWhitespaceSensitiveIfWeb()}), which will affect output
+     *   if whitespace is being minimized (see {@link #isMinimizingWhitespace(Configuration)}).
+     * </p>
+     * <p>
+     *   This allows writing nodes that have been detached from their original ancestors, or are
+     *   copies of other nodes. Whitespace sensitivity of the nodes' descendants is computed while
+     *   writing them.
+     * </p>
+     * 
+     * @param arguments the arguments.
+     * @param writer the writer output will be written to.
+     * @param node the node to be written.
+     * @param insideWhitespaceSensitiveElement whether the node is inside a whitespace-sensitive element.
+     * @throws IOException if an error happens while writing.
+     * @since 2.1.5
+     */
+    public void writeNode(final Arguments arguments, final Writer writer, final Node node, 
+            final boolean insideWhitespaceSensitiveElement) 
+            throws IOException {
+        
+        Validate.notNull(arguments, "Arguments cannot be null");
+        if (node == null) {
+            return;
+        }
+        
+        if (!isMinimizingWhitespace(arguments.getConfiguration())) {
+            dispatchNode(arguments, writer, node);
+            return;
+        }
+        writeNode(arguments, writer, node, WRITING_STATE.get(), insideWhitespaceSensitiveElement);
+        
+    }
+    
+    
+    private void writeNode(final Arguments arguments, final Writer writer, final Node node, 
+            final WritingState writingState, final boolean insideWhitespaceSensitiveElement) 
+            throws IOException {
+        final boolean previousInsideWhitespaceSensitiveElement = writingState.insideWhitespaceSensitiveElement;
+        writingState.insideWhitespaceSensitiveElement = insideWhitespaceSensitiveElement;
+        writingState.depth++;
+        try {
+            dispatchNode(arguments, writer, node);
+        } finally {
+            writingState.depth--;
+            writingState.insideWhitespaceSensitiveElement = previousInsideWhitespaceSensitiveElement;
+        }
+    }
+    
+    
+    private void dispatchNode(final Arguments arguments, final Writer writer, final Node node) 
+            throws IOException {
+        
         if (node instanceof Element) {
             writeElement(arguments, writer, (Element)node);
         } else if (node instanceof GroupNode) {
@@ -211,13 +314,11 @@ protected void writeElement(final Arguments arguments, final Writer writer, fina
                     writer.write(' ');
                     writer.write(attribute.getOriginalName());
                     
-                    final String attrValue = attribute.getEscapedValue();
-                    if (!(attrValue == null && attribute.isOnlyName())) {
+                    // Attribute values are escaped directly into the writer
+                    if (!(attribute.getOriginalValue() == null && attribute.isOnlyName())) {
                         writer.write('=');
                         writer.write('\"');
-                        if (attrValue != null) {
-                            writer.write(attrValue);
-                        }
+                        attribute.writeEscapedValue(writer);
                         writer.write('\"');
                     }
                         
@@ -251,10 +352,25 @@ protected void writeElement(final Arguments arguments, final Writer writer, fina
 
         if (element.hasChildren()) {
             writer.write('>');
+            // Children of whitespace-sensitive elements are marked as such (only needed when minimizing)
+            final WritingState writingState = 
+                    (element.isWhitespaceSensitiveIfWeb() && isMinimizingWhitespace(arguments.getConfiguration())?
+                            WRITING_STATE.get() : null);
+            final boolean previousInsideWhitespaceSensitiveElement = 
+                    (writingState != null && writingState.insideWhitespaceSensitiveElement);
+            if (writingState != null) {
+                writingState.insideWhitespaceSensitiveElement = true;
+            }
             final Node[] children = element.unsafeGetChildrenNodeArray();
             final int childrenLen = element.numChildren();
-            for (int i = 0; i < childrenLen; i++) {
-                writeNode(arguments, writer, children[i]);
+            try {
+                for (int i = 0; i < childrenLen; i++) {
+                    writeNode(arguments, writer, children[i]);
+                }
+            } finally {
+                if (writingState != null) {
+                    writingState.insideWhitespaceSensitiveElement = previousInsideWhitespaceSensitiveElement;
+                }
             }
             if (representationInTemplate != RepresentationInTemplate.ONLY_OPEN) {
                 writer.write('<');
@@ -304,15 +420,20 @@ protected void writeElement(final Arguments arguments, final Writer writer, fina
     protected void writeCDATASection(final Arguments arguments, final Writer writer, final CDATASection cdataSection) 
             throws IOException {
         writer.write(CDATA_PREFIX);
-        writer.write(cdataSection.getEscapedContent());
+        cdataSection.writeEscapedContent(writer);
         writer.write(CDATA_SUFFIX);
     }
 
     
     
-    @SuppressWarnings("unused")
     protected void writeComment(final Arguments arguments, final Writer writer, final Comment comment) 
             throws IOException {
+        if (isMinimizingWhitespace(arguments.getConfiguration()) && 
+                !isConditionalComment(comment) && 
+                !isInsideWhitespaceSensitiveElement(comment)) {
+            // Comments are removed when minimizing, except for IE conditional comments
+            return;
+        }
         writer.write(COMMENT_PREFIX);
         writer.write(comment.getContent());
         writer.write(COMMENT_SUFFIX);
@@ -320,10 +441,35 @@ protected void writeComment(final Arguments arguments, final Writer writer, fina
 
     
     
-    @SuppressWarnings("unused")
     protected void writeText(final Arguments arguments, final Writer writer, final Text text) 
             throws IOException {
-        writer.write(text.getEscapedContent());
+        if (isMinimizingWhitespace(arguments.getConfiguration()) && 
+                !isInsideWhitespaceSensitiveElement(text)) {
+            text.writeMinimizedEscapedContent(writer);
+            return;
+        }
+        text.writeEscapedContent(writer);
+    }
+    
+    
+    
+    /*
+     * Only walks up the node's ancestors if it is not being written through writeNode (e.g. if a
+     * subclass writes it directly), as sensitivity is otherwise passed down while writing.
+     */
+    private static boolean isInsideWhitespaceSensitiveElement(final Node node) {
+        final WritingState writingState = WRITING_STATE.get();
+        if (writingState.depth > 0) {
+            return writingState.insideWhitespaceSensitiveElement;
+        }
+        return DOMUtils.isInsideWhitespaceSensitiveElement(node);
+    }
+
+    
+    
+    private static boolean isConditionalComment(final Comment comment) {
+        final String content = comment.getContent();
+        return content.startsWith("[if") || content.endsWith("<![endif]");
     }
 
     
@@ -334,6 +480,20 @@ protected void writeMacro(final Arguments arguments, final Writer writer, final
         writer.write(macro.getContent());
     }
     
+    
+    
+    private static final class WritingState {
+        
+        // Number of nested writeNode calls currently being executed (0 = not writing)
+        int depth = 0;
+        boolean insideWhitespaceSensitiveElement = false;
+        
+        WritingState() {
+            super();
+        }
+        
+    }
+    
 
     
     
@@ -19,6 +19,7 @@
  */
 package org.thymeleaf.templatewriter;
 
+import org.thymeleaf.Configuration;
 
 
 /**
@@ -44,6 +45,14 @@ protected boolean shouldWriteXmlDeclaration() {
     protected boolean useXhtmlTagMinimizationRules() {
         return true;
     }
+
+    /**
+     * @since 2.1.5
+     */
+    @Override
+    public boolean isMinimizingWhitespace(final Configuration configuration) {
+        return configuration.isWhitespaceMinimizationEnabled();
+    }
     
     
 }
@@ -0,0 +1,112 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.util;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+
+/*
+ * Readable properties (names and read methods, in introspection order) of a bean class, 
+ * excluding "class". Introspection is performed only once per class.
+ *
+ * Only classes loaded by this class' class loader or any of its parents are kept in the cache, so
+ * that the cache never prevents other class loaders (e.g. those of redeployed applications) from
+ * being garbage collected.
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.1.5
+ */
+final class BeanReadableProperties {
+
+    private static final ConcurrentHashMap<Class<?>,BeanReadableProperties> cache =
+            new ConcurrentHashMap<Class<?>, BeanReadableProperties>(20, 0.75f, 4);
+    
+    final String[] names;
+    final Method[] readMethods;
+    
+    
+    
+    static BeanReadableProperties forClass(final Class<?> beanClass) throws IntrospectionException {
+        
+        final BeanReadableProperties cached = cache.get(beanClass);
+        if (cached != null) {
+            return cached;
+        }
+        
+        final BeanReadableProperties properties = new BeanReadableProperties(beanClass);
+        if (isCacheable(beanClass)) {
+            cache.put(beanClass, properties);
+        }
+        return properties;
+        
+    }
+    
+    
+    private static boolean isCacheable(final Class<?> beanClass) {
+        final ClassLoader beanClassLoader = beanClass.getClassLoader();
+        if (beanClassLoader == null) {
+            // Bootstrap class loader
+            return true;
+        }
+        ClassLoader classLoader = BeanReadableProperties.class.getClassLoader();
+        while (classLoader != null) {
+            if (classLoader == beanClassLoader) {
+                return true;
+            }
+            classLoader = classLoader.getParent();
+        }
+        return false;
+    }
+    
+    
+    
+    private BeanReadableProperties(final Class<?> beanClass) throws IntrospectionException {
+        
+        super();
+        
+        final PropertyDescriptor[] descriptors = Introspector.getBeanInfo(beanClass).getPropertyDescriptors();
+        
+        final List<String> nameList = new ArrayList<String>(descriptors.length);
+        final List<Method> readMethodList = new ArrayList<Method>(descriptors.length);
+        for (final PropertyDescriptor descriptor : descriptors) {
+            final Method readMethod =  descriptor.getReadMethod();
+            if (readMethod != null) {
+                final String name = descriptor.getName();
+                if (!"class".equals(name.toLowerCase())) {
+                    nameList.add(name);
+                    readMethodList.add(readMethod);
+                }
+            }
+        }
+        
+        this.names = nameList.toArray(new String[nameList.size()]);
+        this.readMethods = readMethodList.toArray(new Method[readMethodList.size()]);
+        
+    }
+    
+}
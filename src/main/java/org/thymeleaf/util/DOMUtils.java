@@ -44,6 +44,7 @@
 import org.thymeleaf.exceptions.TemplateOutputException;
 import org.thymeleaf.messageresolver.StandardMessageResolver;
 import org.thymeleaf.resourceresolver.ClassLoaderResourceResolver;
+import org.thymeleaf.templatemode.ITemplateModeHandler;
 import org.thymeleaf.templatemode.StandardTemplateModeHandlers;
 import org.thymeleaf.templateparser.ITemplateParser;
 import org.thymeleaf.templateparser.html.LegacyHtml5TemplateParser;
@@ -53,6 +54,7 @@
 import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 import org.thymeleaf.templateresolver.TemplateResolution;
 import org.thymeleaf.templatewriter.AbstractGeneralTemplateWriter;
+import org.thymeleaf.templatewriter.ITemplateWriter;
 import org.thymeleaf.templatewriter.XhtmlHtml5TemplateWriter;
 import org.thymeleaf.templatewriter.XmlTemplateWriter;
 
@@ -88,6 +90,16 @@ public static List<Node> extractFragmentByElementAndAttributeValue(
         final String normalizedElementName = Element.normalizeElementName(elementName);
         final String normalizedAttributeName = Attribute.normalizeAttributeName(attributeName);
         
+        final Document indexedDocument = getIndexedDocument(rootNodes);
+        if (indexedDocument != null) {
+            final List<NestableAttributeHolderNode> candidates =
+                    indexedDocument.getFragmentIndexCandidates(normalizedAttributeName, attributeValue);
+            if (candidates != null) {
+                return extractFragmentFromIndexCandidates(
+                        candidates, normalizedElementName, normalizedAttributeName, attributeValue);
+            }
+        }
+        
         final List<Node> fragmentNodes = new ArrayList<Node>(5);
         for (final Node rootNode : rootNodes) {
             final List<Node> extraction = 
@@ -102,6 +114,88 @@ public static List<Node> extractFragmentByElementAndAttributeValue(
 
     
     
+    /**
+     * <p>
+     *   Returns the document represented by the specified list of nodes (either a list containing only
+     *   the document itself, or a list containing all of its children) if such document has been
+     *   indexed (see {@link Document#buildFragmentIndex(java.util.Set)}).
+     * </p>
+     * 
+     * @param rootNodes the nodes on which a search is going to be performed.
+     * @return the indexed document, or null if the nodes do not represent an indexed document.
+     * @since 2.1.5
+     */
+    public static Document getIndexedDocument(final List<Node> rootNodes) {
+        
+        if (rootNodes == null || rootNodes.isEmpty()) {
+            return null;
+        }
+        
+        final Node firstRootNode = rootNodes.get(0);
+        if (firstRootNode instanceof Document) {
+            return (rootNodes.size() == 1 && ((Document)firstRootNode).hasFragmentIndex()? (Document)firstRootNode : null);
+        }
+        
+        if (!(firstRootNode.getParent() instanceof Document)) {
+            return null;
+        }
+        final Document document = (Document) firstRootNode.getParent();
+        if (!document.hasFragmentIndex() || document.numChildren() != rootNodes.size()) {
+            return null;
+        }
+        for (final Node rootNode : rootNodes) {
+            if (rootNode.getParent() != document) {
+                return null;
+            }
+        }
+        return document;
+        
+    }
+    
+    
+    
+    /*
+     * Applies the same matching as extractFragmentFromNode to the (document-ordered) candidates
+     * obtained from a fragment index, keeping only the outermost matches.
+     */
+    private static List<Node> extractFragmentFromIndexCandidates(
+            final List<NestableAttributeHolderNode> candidates, final String normalizedElementName, 
+            final String normalizedAttributeName, final String attributeValue) {
+        
+        final List<Node> fragmentNodes = new ArrayList<Node>(5);
+        for (final NestableAttributeHolderNode candidate : candidates) {
+            
+            if (candidate instanceof Element) {
+                if (normalizedElementName != null && !normalizedElementName.equals(((Element)candidate).getNormalizedName())) {
+                    continue;
+                }
+            } else if (normalizedElementName != null) {
+                continue;
+            }
+            
+            final String candidateAttrValue = candidate.getAttributeValue(normalizedAttributeName);
+            if (candidateAttrValue == null || !candidateAttrValue.trim().equals(attributeValue)) {
+                continue;
+            }
+            
+            // Nodes nested inside an already selected node are never selected by themselves
+            boolean nested = false;
+            NestableNode ancestor = candidate.getParent();
+            while (ancestor != null && !nested) {
+                nested = fragmentNodes.contains(ancestor);
+                ancestor = ancestor.getParent();
+            }
+            if (!nested) {
+                fragmentNodes.add(candidate);
+            }
+            
+        }
+        return fragmentNodes;
+        
+    }
+    
+    
+    
     private static List<Node> extractFragmentFromNode(
             final Node node, final String normalizedElementName, final String normalizedAttributeName, final String attributeValue) {
         
@@ -469,6 +563,59 @@ private static String unescapeXmlEntity(
     
     
     
+    /**
+     * <p>
+     *   Checks whether a node is contained (at any level) in an element in which whitespace
+     *   is significant in XHTML and HTML5 output (see {@link Element#isWhitespaceSensitiveIfWeb()}).
+     * </p>
+     * 
+     * @param node the node to be checked.
+     * @return true if the node is inside a whitespace-sensitive element, false if not.
+     * @since 2.1.5
+     */
+    public static boolean isInsideWhitespaceSensitiveElement(final Node node) {
+        Validate.notNull(node, "Node cannot be null");
+        NestableNode parent = node.getParent();
+        while (parent != null) {
+            if (parent instanceof Element && ((Element)parent).isWhitespaceSensitiveIfWeb()) {
+                return true;
+            }
+            parent = parent.getParent();
+        }
+        return false;
+    }
+    
+    
+    /**
+     * <p>
+     *   Checks whether the output of the template being processed will be whitespace-minimized,
+     *   according to the template writer configured for its template mode
+     *   (see {@link AbstractGeneralTemplateWriter#isMinimizingWhitespace(Configuration)}).
+     * </p>
+     * 
+     * @param arguments the arguments of the template being processed.
+     * @return true if output will be whitespace-minimized, false if not.
+     * @since 2.1.5
+     */
+    public static boolean isMinimizingWhitespace(final Arguments arguments) {
+        Validate.notNull(arguments, "Arguments cannot be null");
+        final Configuration configuration = arguments.getConfiguration();
+        if (!configuration.isWhitespaceMinimizationEnabled()) {
+            return false;
+        }
+        final ITemplateModeHandler templateModeHandler = 
+                configuration.getTemplateModeHandler(arguments.getTemplateResolution().getTemplateMode());
+        if (templateModeHandler == null) {
+            return false;
+        }
+        final ITemplateWriter templateWriter = templateModeHandler.getTemplateWriter();
+        return (templateWriter instanceof AbstractGeneralTemplateWriter &&
+                ((AbstractGeneralTemplateWriter)templateWriter).isMinimizingWhitespace(configuration));
+    }
+    
+    
+    
+    
     public static String getXmlFor(final Node node) {
         return getOutputFor(node, new XmlTemplateWriter(), "XML");
     }
@@ -0,0 +1,137 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+
+
+/**
+ * <p>
+ *   Utility methods for writing escaped markup text directly into a {@link Writer}.
+ * </p>
+ * <p>
+ *   Escaping performed here is equivalent to that of
+ *   {@link org.unbescape.html.HtmlEscape#escapeHtml4Xml(String)} (only the markup-significant
+ *   characters <tt>&quot;</tt>, <tt>&amp;</tt>, <tt>&#39;</tt>, <tt>&lt;</tt> and <tt>&gt;</tt> are
+ *   escaped), but no intermediate String is created: texts not needing any escaping are written
+ *   unchanged, and the rest are written in segments.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class EscapeUtils {
+
+
+    /**
+     * <p>
+     *   Checks whether the specified text contains any characters that would need
+     *   to be escaped when output as markup text (element text or attribute values).
+     * </p>
+     * 
+     * @param text the text to be checked.
+     * @return true if the text needs escaping, false if not (or if it is null).
+     */
+    public static boolean needsHtml4XmlEscape(final String text) {
+        if (text == null) {
+            return false;
+        }
+        return firstEscapeIndex(text) >= 0;
+    }
+
+
+    /**
+     * <p>
+     *   Writes the specified text into the writer, applying HTML4/XML escaping. Texts
+     *   that do not need escaping are written as-is.
+     * </p>
+     * 
+     * @param text the text to be written (nothing will be written if null).
+     * @param writer the writer the escaped text will be written to.
+     * @throws IOException if writing fails.
+     */
+    public static void escapeHtml4Xml(final String text, final Writer writer) throws IOException {
+
+        if (text == null) {
+            return;
+        }
+
+        final int firstEscapeIndex = firstEscapeIndex(text);
+        if (firstEscapeIndex < 0) {
+            writer.write(text);
+            return;
+        }
+
+        final int textLen = text.length();
+        int lastWritten = 0;
+        for (int i = firstEscapeIndex; i < textLen; i++) {
+            final String replacement = escapeReplacement(text.charAt(i));
+            if (replacement != null) {
+                if (i > lastWritten) {
+                    writer.write(text, lastWritten, i - lastWritten);
+                }
+                writer.write(replacement);
+                lastWritten = i + 1;
+            }
+        }
+        if (textLen > lastWritten) {
+            writer.write(text, lastWritten, textLen - lastWritten);
+        }
+
+    }
+
+
+
+    private static int firstEscapeIndex(final String text) {
+        final int textLen = text.length();
+        for (int i = 0; i < textLen; i++) {
+            final char c = text.charAt(i);
+            // Quick range check first: all markup-significant chars are in the [0x22, 0x3E] range
+            if (c <= '>' && c >= '\"' && escapeReplacement(c) != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    private static String escapeReplacement(final char c) {
+        switch (c) {
+            case '\"' : return "&quot;";
+            case '&' : return "&amp;";
+            case '\'' : return "&#39;";
+            case '<' : return "&lt;";
+            case '>' : return "&gt;";
+            default : return null;
+        }
+    }
+
+
+
+    private EscapeUtils() {
+        super();
+    }
+
+
+}
@@ -20,14 +20,11 @@
 package org.thymeleaf.util;
 
 import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 
@@ -58,6 +55,22 @@ public static String print(final Object object) {
     }
 
 
+    /**
+     * <p>
+     *   Prints an object directly into an existing output buffer, avoiding the creation of
+     *   an intermediate String.
+     * </p>
+     * 
+     * @param output the output buffer.
+     * @param object the object to be printed.
+     * @since 2.1.5
+     */
+    public static void printTo(final StringBuilder output, final Object object) {
+        Validate.notNull(output, "Output cannot be null");
+        print(output, object);
+    }
+
+
     public static String printString(final String str) {
         final StringBuilder output = new StringBuilder();
         if (str == null) {
@@ -350,20 +363,18 @@ private static void printKeyValue(final StringBuilder output, final Object key,
 
     private static void printObject(final StringBuilder output, final Object object) {
         try {
-            final PropertyDescriptor[] descriptors =
-                    Introspector.getBeanInfo(object.getClass()).getPropertyDescriptors();
-            final Map<String,Object> properties = new LinkedHashMap<String, Object>(descriptors.length + 1, 1.0f);
-            for (final PropertyDescriptor descriptor : descriptors) {
-                final Method readMethod =  descriptor.getReadMethod();
-                if (readMethod != null) {
-                    final String name = descriptor.getName();
-                    if (!"class".equals(name.toLowerCase())) {
-                        final Object value = readMethod.invoke(object);
-                        properties.put(name, value);
-                    }
+            // Introspection results are cached per class, and properties are output directly
+            final BeanReadableProperties properties = BeanReadableProperties.forClass(object.getClass());
+            final String[] names = properties.names;
+            final Method[] readMethods = properties.readMethods;
+            output.append('{');
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) {
+                    output.append(',');
                 }
+                printKeyValue(output, names[i], readMethods[i].invoke(object));
             }
-            printMap(output, properties);
+            output.append('}');
         } catch (final IllegalAccessException e) {
             throw new IllegalArgumentException("Could not perform introspection on object of class " + object.getClass().getName(), e);
         } catch (final InvocationTargetException e) {
@@ -380,11 +391,11 @@ private static void printEnum(final StringBuilder output, final Object object) {
         final Enum<?> enumObject = (Enum<?>) object;
         final Class<?> enumClass = object.getClass();
         
-        final Map<String,Object> properties = new LinkedHashMap<String, Object>(3, 1.0f);
-        properties.put("$type", enumClass.getSimpleName());
-        properties.put("$name", enumObject.name());
-
-        printMap(output, properties);
+        output.append('{');
+        printKeyValue(output, "$type", enumClass.getSimpleName());
+        output.append(',');
+        printKeyValue(output, "$name", enumObject.name());
+        output.append('}');
         
     }
 
@@ -19,14 +19,16 @@
  */
 package org.thymeleaf.util;
 
+import java.io.File;
 import java.io.InputStream;
-import java.text.MessageFormat;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
@@ -34,6 +36,7 @@
 import org.thymeleaf.Arguments;
 import org.thymeleaf.Configuration;
 import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.TemplateProcessingParameters;
 import org.thymeleaf.cache.ICache;
 import org.thymeleaf.cache.ICacheManager;
 import org.thymeleaf.exceptions.TemplateInputException;
@@ -41,6 +44,7 @@
 import org.thymeleaf.messageresolver.IMessageResolver;
 import org.thymeleaf.messageresolver.MessageResolution;
 import org.thymeleaf.resourceresolver.ClassLoaderResourceResolver;
+import org.thymeleaf.resourceresolver.FileResourceResolver;
 import org.thymeleaf.resourceresolver.IResourceResolver;
 
 
@@ -63,6 +67,10 @@ public final class MessageResolutionUtils {
     private static final Pattern CLASS_NAME_SEPARATOR_PATTERN = Pattern.compile("\\.");
 
     private static final String CLASS_CACHE_PREFIX = "{class_msg}";
+    private static final String BUNDLE_CACHE_PREFIX = "{bundle_msg}";
+    
+    private static final SingleFlightLoader<MessagesLoadKey,Properties> messagesLoader = 
+            new SingleFlightLoader<MessagesLoadKey, Properties>();
 
     
     public static String resolveMessageForTemplate(
@@ -141,13 +149,16 @@ public static String resolveMessageForClass(
         }
         
         if (properties == null) {
+            final ICache<String,Properties> cacheForBundles = messagesCache;
             if (logger.isDebugEnabled()) {
                 logger.debug("[THYMELEAF][{}] Resolving uncached messages for class \"{}\" and locale \"{}\". Messages will be retrieved from files", new Object[] {TemplateEngine.threadIndex(), targetClass.getName(), locale});
             }
-            properties = loadMessagesForClass(targetClass, locale);
-            if (messagesCache != null) {
-                messagesCache.put(cacheKey, properties);
-            }
+            properties = 
+                    loadCachedMessages(messagesCache, cacheKey, new Callable<Properties>() {
+                        public Properties call() {
+                            return loadMessagesForClass(cacheForBundles, targetClass, locale);
+                        }
+                    });
         } else {
             if (logger.isTraceEnabled()) {
                 logger.trace("[THYMELEAF][{}] Resolving messages for class \"{}\" and locale \"{}\". Messages are CACHED", new Object[] {TemplateEngine.threadIndex(), targetClass.getName(), locale});
@@ -170,13 +181,62 @@ public static String resolveMessageForClass(
             return messageValue;
         }
 
-        final MessageFormat messageFormat = new MessageFormat(messageValue, locale);
-        return messageFormat.format(messageParameters);
+        return ResolvedMessages.formatMessage(properties, messageKey, messageValue, locale, messageParameters);
 
     }
     
     
     
+    /**
+     * <p>
+     *   Loads a set of messages by executing the specified loader and puts them into the
+     *   messages cache (if not null). Concurrent calls for the same cache and key will
+     *   execute the loader only once, sharing the result.
+     * </p>
+     * <p>
+     *   <b>This method is meant only for internal use</b>.
+     * </p>
+     * 
+     * @param messagesCache the messages cache (can be null).
+     * @param cacheKey the key of the messages in the cache.
+     * @param loader the loader for the messages.
+     * @return the loaded messages.
+     * @since 2.1.5
+     */
+    public static Properties loadCachedMessages(
+            final ICache<String,Properties> messagesCache, final String cacheKey, final Callable<Properties> loader) {
+        
+        Validate.notNull(cacheKey, "Cache key cannot be null");
+        Validate.notNull(loader, "Loader cannot be null");
+
+        if (messagesCache == null) {
+            try {
+                return loader.call();
+            } catch (final RuntimeException e) {
+                throw e;
+            } catch (final Exception e) {
+                throw new TemplateProcessingException("Exception loading messages", e);
+            }
+        }
+        
+        return messagesLoader.load(
+                new MessagesLoadKey(messagesCache, cacheKey),
+                new Callable<Properties>() {
+                    public Properties call() throws Exception {
+                        final Properties cachedMeanwhile = messagesCache.get(cacheKey);
+                        if (cachedMeanwhile != null) {
+                            return cachedMeanwhile;
+                        }
+                        final Properties loaded = loader.call();
+                        messagesCache.put(cacheKey, loaded);
+                        return loaded;
+                    }
+                });
+        
+    }
+    
+    
+    
     public static String getAbsentMessageRepresentation(final String messageKey, final Locale locale) {
         Validate.notNull(messageKey, "Message key cannot be null");
         if (locale != null) {
@@ -189,7 +249,7 @@ public static String getAbsentMessageRepresentation(final String messageKey, fin
     
     
     private static Properties loadMessagesForClass(
-            final Class<?> targetClass, final Locale locale) {
+            final ICache<String,Properties> messagesCache, final Class<?> targetClass, final Locale locale) {
         
         Validate.notNull(targetClass, "Target class cannot be null");
         Validate.notNull(locale, "Locale cannot be null");
@@ -198,12 +258,12 @@ private static Properties loadMessagesForClass(
         Class<?> currentClass = targetClass;
         
         String base = getClassNameBase(currentClass);
-        properties.add(loadCombinedMessagesFilesFromBaseName(null, null, base, locale, null));
+        properties.add(loadCombinedMessagesFilesFromBaseName(null, null, messagesCache, base, locale, null));
         
         while (!currentClass.getSuperclass().equals(Object.class)) {
             currentClass = currentClass.getSuperclass();
             base = getClassNameBase(currentClass);
-            properties.add(loadCombinedMessagesFilesFromBaseName(null, null, base, locale, null));
+            properties.add(loadCombinedMessagesFilesFromBaseName(null, null, messagesCache, base, locale, null));
         }
         
         return combineMessages(properties, null);
@@ -217,6 +277,50 @@ private static Properties loadMessagesForClass(
     public static Properties loadCombinedMessagesFilesFromBaseName(
             final Arguments arguments, final IResourceResolver resourceResolver,
             final String baseName, final Locale locale, final Properties defaultMessages) {
+        
+        ICache<String,Properties> messagesCache = null;
+        if (arguments != null) {
+            final ICacheManager cacheManager = arguments.getConfiguration().getCacheManager();
+            if (cacheManager != null) {
+                messagesCache = cacheManager.getMessageCache();
+            }
+        }
+        
+        return loadCombinedMessagesFilesFromBaseName(
+                arguments, resourceResolver, messagesCache, baseName, locale, defaultMessages);
+        
+    }
+    
+    
+    
+    /**
+     * <p>
+     *   Loads and combines the messages files for a base name and locale (for example, 
+     *   <tt>base_ll_CC.properties</tt>, <tt>base_ll.properties</tt> and <tt>base.properties</tt>).
+     * </p>
+     * <p>
+     *   If a messages cache is specified, each of the messages files (<i>bundles</i>) will also
+     *   be cached there on its own, so that bundles are shared among all the sets of messages using
+     *   them (for example, by templates or classes with a common base name or superclass). 
+     *   Non-existing messages files are cached too (as empty bundles), so that resources are not
+     *   looked for again. Bundles are identified by the name of the resource resolver and the name
+     *   of the resource, so resource resolvers should resolve message resources independently
+     *   of the template being processed.
+     * </p>
+     * 
+     * @param arguments the arguments (can be null).
+     * @param resourceResolver the resource resolver (if null, a {@link ClassLoaderResourceResolver} will be used).
+     * @param messagesCache the messages cache to be used for bundles (can be null).
+     * @param baseName the base name of the messages files.
+     * @param locale the locale.
+     * @param defaultMessages the default messages (can be null).
+     * @return the combined messages.
+     * @since 2.1.5
+     */
+    public static Properties loadCombinedMessagesFilesFromBaseName(
+            final Arguments arguments, final IResourceResolver resourceResolver,
+            final ICache<String,Properties> messagesCache,
+            final String baseName, final Locale locale, final Properties defaultMessages) {
 
         /*
          * Both arguments and resource resolver can be null 
@@ -230,17 +334,29 @@ public static Properties loadCombinedMessagesFilesFromBaseName(
 
         final IResourceResolver usedResourceResolver = 
             (resourceResolver != null? resourceResolver : new ClassLoaderResourceResolver());
+        final TemplateProcessingParameters templateProcessingParameters =
+            (arguments == null? null : arguments.getTemplateProcessingParameters());
         
         final List<Properties> messages = new ArrayList<Properties>(10);
         for (final String messageResourceName : messageResourceNames) {
-            final InputStream messageFileInputStream =
-                usedResourceResolver.getResourceAsStream((arguments == null? null : arguments.getTemplateProcessingParameters()), messageResourceName);
-            if (messageFileInputStream != null) {
-                messages.add(loadMessages(messageFileInputStream));
-                if (logger.isDebugEnabled()) {
-                    logger.debug("[THYMELEAF][{}] Loading messages for locale \"{}\" from processed file: {}", new Object[] {TemplateEngine.threadIndex(), locale, messageResourceName});
-                }
+            
+            final String bundleCacheKey = 
+                    BUNDLE_CACHE_PREFIX + usedResourceResolver.getName() + ':' + messageResourceName;
+            
+            Properties bundle = (messagesCache == null? null : messagesCache.get(bundleCacheKey));
+            if (bundle == null) {
+                bundle = 
+                        loadCachedMessages(messagesCache, bundleCacheKey, new Callable<Properties>() {
+                            public Properties call() {
+                                return loadMessagesBundle(
+                                        templateProcessingParameters, usedResourceResolver, 
+                                        messageResourceName, bundleCacheKey, locale);
+                            }
+                        });
             }
+            
+            messages.add(bundle);
+            
         }
         
         return combineMessages(messages, defaultMessages);
@@ -250,24 +366,68 @@ public static Properties loadCombinedMessagesFilesFromBaseName(
     
     
     
-    private static Properties combineMessages(final List<Properties> props, final Properties defaultMessages) {
+    private static Properties loadMessagesBundle(
+            final TemplateProcessingParameters templateProcessingParameters, 
+            final IResourceResolver resourceResolver, final String messageResourceName, 
+            final String bundleCacheKey, final Locale locale) {
         
-        Validate.notNull(props, "Message specifications cannot be null");
+        // Modification time is read before the file, so that no modifications are missed
+        final File messageFile = computeMessageFile(resourceResolver, messageResourceName);
+        final long messageFileLastModified = (messageFile == null? 0L : messageFile.lastModified());
         
-        final Properties messages =
-            (defaultMessages == null? new Properties() : new Properties(defaultMessages));
+        final InputStream messageFileInputStream =
+            resourceResolver.getResourceAsStream(templateProcessingParameters, messageResourceName);
         
-        for (final Properties messagesSpecification : props) {
-            if (messagesSpecification != null) {
-                for (final Entry<Object,Object> entry : messagesSpecification.entrySet()) {
-                    if (!messages.containsKey(entry.getKey())) {
-                        messages.put(entry.getKey(), entry.getValue()); 
-                    }
+        Properties loadedMessages = null;
+        if (messageFileInputStream != null) {
+            loadedMessages = loadMessages(messageFileInputStream);
+            if (logger.isDebugEnabled()) {
+                logger.debug("[THYMELEAF][{}] Loading messages for locale \"{}\" from processed file: {}", new Object[] {TemplateEngine.threadIndex(), locale, messageResourceName});
+            }
+        }
+        
+        return new ResolvedMessages(loadedMessages, bundleCacheKey, messageFile, messageFileLastModified);
+        
+    }
+    
+    
+    
+    /*
+     * Only messages resolved from the file system (directly or through the class loader) can be
+     * checked for modifications.
+     */
+    private static File computeMessageFile(
+            final IResourceResolver resourceResolver, final String messageResourceName) {
+        
+        if (resourceResolver instanceof FileResourceResolver) {
+            return new File(messageResourceName);
+        }
+        
+        if (resourceResolver instanceof ClassLoaderResourceResolver) {
+            final URL messageResourceURL = 
+                    ClassLoaderUtils.getClassLoader(ClassLoaderResourceResolver.class).getResource(messageResourceName);
+            if (messageResourceURL != null && "file".equals(messageResourceURL.getProtocol())) {
+                try {
+                    return new File(messageResourceURL.toURI());
+                } catch (final URISyntaxException ignored) {
+                    // The file will simply not be checked
+                } catch (final IllegalArgumentException ignored) {
+                    // The file will simply not be checked
                 }
             }
         }
         
-        return messages;
+        return null;
+        
+    }
+    
+    
+    
+    
+    private static Properties combineMessages(final List<Properties> props, final Properties defaultMessages) {
+        
+        Validate.notNull(props, "Message specifications cannot be null");
+        return new ResolvedMessages(props, defaultMessages);
         
     }
     
@@ -380,5 +540,42 @@ private MessageResolutionUtils() {
         super();
     }
     
+    
+    
+    
+    /*
+     * Messages caches can be shared among several template engines (and their configurations), so
+     * concurrent loads are identified by both the cache object itself and the key.
+     */
+    private static final class MessagesLoadKey {
+        
+        private final ICache<String,Properties> messagesCache;
+        private final String cacheKey;
+        
+        MessagesLoadKey(final ICache<String,Properties> messagesCache, final String cacheKey) {
+            super();
+            this.messagesCache = messagesCache;
+            this.cacheKey = cacheKey;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MessagesLoadKey)) {
+                return false;
+            }
+            final MessagesLoadKey other = (MessagesLoadKey) o;
+            return this.messagesCache == other.messagesCache && this.cacheKey.equals(other.cacheKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(this.messagesCache) + this.cacheKey.hashCode();
+        }
+        
+    }
+    
 
 }
@@ -0,0 +1,812 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.util;
+
+import java.io.File;
+import java.io.InputStream;
+import java.text.Format;
+import java.text.MessageFormat;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+
+
+/**
+ * <p>
+ *   Immutable {@link Properties} implementation used for storing the sets of messages resolved
+ *   (and cached) for a specific template or class and locale.
+ * </p>
+ * <p>
+ *   All messages, including those coming from the <i>default messages</i>, are flattened at
+ *   creation time into an open-addressed table of String keys and values, so that 
+ *   {@link #getProperty(String)} does not need to acquire any locks nor walk any chains of
+ *   default properties. This table is the only storage for the messages: the {@link Properties}
+ *   and {@link java.util.Hashtable} query methods are views over it, and the modification methods
+ *   throw {@link UnsupportedOperationException}. Only String keys and values are kept.
+ * </p>
+ * <p>
+ *   Besides the messages themselves, objects of this class keep the compiled {@link MessageFormat}
+ *   objects for the messages that have been formatted with them, so that message patterns are 
+ *   parsed only once during the life of the set of messages. 
+ * </p>
+ * <p>
+ *   <b>This class is meant only for internal use</b>.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ */
+public final class ResolvedMessages extends Properties {
+
+    private static final long serialVersionUID = -2950315683219764214L;
+
+    private static final Object[] EMPTY_MESSAGE_PARAMETERS = new Object[0];
+
+    // Open-addressed (linear probing) table. Capacity is a power of two, at most half full.
+    private final String[] tableKeys;
+    private final String[] tableValues;
+    private final int[] tableHashes;
+    private final int tableMask;
+    private final int tableSize;
+    
+    // Not serialized: a deserialized set of messages will simply compile its formats again
+    private transient ConcurrentHashMap<String,CompiledMessageFormat> compiledFormats;
+
+    // Source tracking for sets of messages loaded from a single resource (bundles) and for
+    // combinations of them. Not serialized: deserialized messages will simply not be reloadable.
+    private final transient String sourceKey;
+    private final transient File sourceFile;
+    private final transient long sourceLastModified;
+    private final transient ResolvedMessages[] sourceBundles;
+    private transient volatile long lastSourceCheckTimeInMillis;
+    
+    
+    
+    /**
+     * <p>
+     *   Creates a new set of messages by combining the specified message sets and default 
+     *   messages. When a message key is present in more than one set, the first set (in list
+     *   order) containing it takes precedence, and default messages are only used for keys not
+     *   present in any of the sets.
+     * </p>
+     * 
+     * @param messageSets the message sets to be combined (might contain nulls).
+     * @param defaultMessages the default messages (can be null).
+     */
+    public ResolvedMessages(final List<Properties> messageSets, final Properties defaultMessages) {
+        this(messageSets, defaultMessages, null, null, 0L);
+    }
+    
+    
+    /**
+     * <p>
+     *   Creates a new set of messages loaded from a single resource (a <i>bundle</i>), identified
+     *   by a source key (usually its key at the message cache). If the resource is a file in the
+     *   file system, changes to it can be detected with {@link #checkModifiedSources(long)}, both
+     *   for this set of messages and for any sets created by combining it with others.
+     * </p>
+     * 
+     * @param messages the loaded messages (null if the resource does not exist).
+     * @param sourceKey the key identifying the resource.
+     * @param sourceFile the file for the resource (null if it is not in the file system).
+     * @param sourceLastModified the last modification time of the file, obtained <i>before</i>
+     *                           reading it (0 if it does not exist).
+     */
+    public ResolvedMessages(final Properties messages, final String sourceKey, 
+            final File sourceFile, final long sourceLastModified) {
+        this((messages == null? Collections.<Properties>emptyList() : Collections.singletonList(messages)),
+                null, sourceKey, sourceFile, sourceLastModified);
+        Validate.notNull(sourceKey, "Source key cannot be null");
+    }
+
+    
+    private ResolvedMessages(final List<Properties> messageSets, final Properties defaultMessages,
+            final String sourceKey, final File sourceFile, final long sourceLastModified) {
+        
+        super();
+        
+        Validate.notNull(messageSets, "Message sets cannot be null");
+        
+        this.sourceKey = sourceKey;
+        this.sourceFile = sourceFile;
+        this.sourceLastModified = sourceLastModified;
+        
+        final List<ResolvedMessages> bundles = new ArrayList<ResolvedMessages>(messageSets.size());
+        for (final Properties messageSet : messageSets) {
+            if (messageSet instanceof ResolvedMessages && ((ResolvedMessages)messageSet).sourceKey != null) {
+                bundles.add((ResolvedMessages) messageSet);
+            }
+        }
+        this.sourceBundles = bundles.toArray(new ResolvedMessages[bundles.size()]);
+        this.lastSourceCheckTimeInMillis = System.currentTimeMillis();
+        
+        // Only used for flattening: the inherited Hashtable is never populated
+        final Map<String,String> messages = new HashMap<String, String>();
+        for (final Properties messageSet : messageSets) {
+            if (messageSet != null) {
+                for (final Entry<Object,Object> entry : messageSet.entrySet()) {
+                    addIfAbsent(messages, entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (defaultMessages != null) {
+            // Includes the defaults of the default messages, if any
+            final Enumeration<?> defaultKeys = defaultMessages.propertyNames();
+            while (defaultKeys.hasMoreElements()) {
+                final Object key = defaultKeys.nextElement();
+                addIfAbsent(messages, key, defaultMessages.getProperty((String) key));
+            }
+        }
+        
+        int capacity = 2;
+        while (capacity < messages.size() * 2) {
+            capacity <<= 1;
+        }
+        
+        this.tableKeys = new String[capacity];
+        this.tableValues = new String[capacity];
+        this.tableHashes = new int[capacity];
+        this.tableMask = capacity - 1;
+        this.tableSize = messages.size();
+        
+        for (final Entry<String,String> entry : messages.entrySet()) {
+            final String key = entry.getKey();
+            final int hash = hash(key);
+            int index = hash & this.tableMask;
+            while (this.tableKeys[index] != null) {
+                index = (index + 1) & this.tableMask;
+            }
+            this.tableKeys[index] = key;
+            this.tableValues[index] = entry.getValue();
+            this.tableHashes[index] = hash;
+        }
+        
+        this.compiledFormats = new ConcurrentHashMap<String, CompiledMessageFormat>(16, 0.75f, 2);
+        
+    }
+
+    
+    
+    /**
+     * <p>
+     *   Returns the key identifying the resource this set of messages was loaded from, or null
+     *   if it was not loaded from a single resource.
+     * </p>
+     * 
+     * @return the source key.
+     */
+    public String getSourceKey() {
+        return this.sourceKey;
+    }
+    
+    
+    /**
+     * <p>
+     *   Checks whether any of the files this set of messages was created from (either directly or
+     *   through the bundles it combines) have been modified, created or deleted since they were
+     *   read. Checks are performed at most once every <tt>checkIntervalMs</tt> milliseconds:
+     *   calls in between will simply report no modifications.
+     * </p>
+     * 
+     * @param checkIntervalMs the minimum interval between checks, in milliseconds.
+     * @return the source keys of the modified bundles (empty if none).
+     */
+    public List<String> checkModifiedSources(final long checkIntervalMs) {
+        
+        final long now = System.currentTimeMillis();
+        if (now - this.lastSourceCheckTimeInMillis < checkIntervalMs) {
+            return Collections.emptyList();
+        }
+        this.lastSourceCheckTimeInMillis = now;
+        
+        List<String> modifiedSourceKeys = null;
+        if (isSourceModified()) {
+            modifiedSourceKeys = new ArrayList<String>(2);
+            modifiedSourceKeys.add(this.sourceKey);
+        }
+        if (this.sourceBundles != null) {
+            for (final ResolvedMessages sourceBundle : this.sourceBundles) {
+                if (sourceBundle.isSourceModified()) {
+                    if (modifiedSourceKeys == null) {
+                        modifiedSourceKeys = new ArrayList<String>(2);
+                    }
+                    modifiedSourceKeys.add(sourceBundle.sourceKey);
+                }
+            }
+        }
+        
+        if (modifiedSourceKeys == null) {
+            return Collections.emptyList();
+        }
+        return modifiedSourceKeys;
+        
+    }
+    
+    
+    private boolean isSourceModified() {
+        return this.sourceFile != null && this.sourceFile.lastModified() != this.sourceLastModified;
+    }
+    
+    
+    
+    private static void addIfAbsent(
+            final Map<String,String> messages, final Object key, final Object value) {
+        if (key instanceof String && value instanceof String && !messages.containsKey(key)) {
+            messages.put((String) key, (String) value);
+        }
+    }
+    
+    
+    private static int hash(final String key) {
+        final int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+    
+    
+    private String lookup(final String key) {
+        final int hash = hash(key);
+        int index = hash & this.tableMask;
+        String tableKey;
+        while ((tableKey = this.tableKeys[index]) != null) {
+            if (tableKey == key || (this.tableHashes[index] == hash && tableKey.equals(key))) {
+                return this.tableValues[index];
+            }
+            index = (index + 1) & this.tableMask;
+        }
+        return null;
+    }
+    
+    
+    
+    
+    @Override
+    public String getProperty(final String key) {
+        if (key == null) {
+            // Same behaviour as Properties
+            throw new NullPointerException();
+        }
+        return lookup(key);
+    }
+
+    
+    @Override
+    public String getProperty(final String key, final String defaultValue) {
+        final String value = getProperty(key);
+        return (value == null? defaultValue : value);
+    }
+
+    
+    @Override
+    public Object get(final Object key) {
+        if (key == null) {
+            // Same behaviour as Hashtable
+            throw new NullPointerException();
+        }
+        return (key instanceof String? lookup((String) key) : null);
+    }
+
+    
+    // Not annotated: only present in Map since Java 8
+    public Object getOrDefault(final Object key, final Object defaultValue) {
+        final Object value = get(key);
+        return (value == null? defaultValue : value);
+    }
+
+    
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    
+    @Override
+    public boolean contains(final Object value) {
+        if (value == null) {
+            // Same behaviour as Hashtable
+            throw new NullPointerException();
+        }
+        for (final String tableValue : this.tableValues) {
+            if (tableValue != null && tableValue.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    
+    @Override
+    public boolean containsValue(final Object value) {
+        return contains(value);
+    }
+
+    
+    @Override
+    public int size() {
+        return this.tableSize;
+    }
+
+    
+    @Override
+    public boolean isEmpty() {
+        return this.tableSize == 0;
+    }
+
+    
+    @Override
+    public Enumeration<Object> keys() {
+        return new TableIterator<Object>(TableIterator.KEYS);
+    }
+
+    
+    @Override
+    public Enumeration<Object> elements() {
+        return new TableIterator<Object>(TableIterator.VALUES);
+    }
+
+    
+    @Override
+    public Enumeration<?> propertyNames() {
+        return keys();
+    }
+
+    
+    // Not annotated: only present in Properties since Java 6
+    public Set<String> stringPropertyNames() {
+        return new TableSet<String>(TableIterator.KEYS);
+    }
+
+    
+    @Override
+    public Set<Object> keySet() {
+        return new TableSet<Object>(TableIterator.KEYS);
+    }
+
+    
+    @Override
+    public Collection<Object> values() {
+        return new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return new TableIterator<Object>(TableIterator.VALUES);
+            }
+            @Override
+            public int size() {
+                return ResolvedMessages.this.tableSize;
+            }
+        };
+    }
+
+    
+    @Override
+    public Set<Entry<Object,Object>> entrySet() {
+        return new TableSet<Entry<Object,Object>>(TableIterator.ENTRIES);
+    }
+
+    
+    @Override
+    public boolean equals(final Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Map)) {
+            return false;
+        }
+        final Map<?,?> map = (Map<?,?>) o;
+        if (map.size() != this.tableSize) {
+            return false;
+        }
+        for (int i = 0; i < this.tableKeys.length; i++) {
+            if (this.tableKeys[i] != null && !this.tableValues[i].equals(map.get(this.tableKeys[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    
+    @Override
+    public int hashCode() {
+        // Same as the sum of the hash codes of the entries, as specified by Map
+        int hashCode = 0;
+        for (int i = 0; i < this.tableKeys.length; i++) {
+            if (this.tableKeys[i] != null) {
+                hashCode += this.tableKeys[i].hashCode() ^ this.tableValues[i].hashCode();
+            }
+        }
+        return hashCode;
+    }
+
+    
+    @Override
+    public String toString() {
+        final StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append('{');
+        for (int i = 0; i < this.tableKeys.length; i++) {
+            if (this.tableKeys[i] != null) {
+                if (strBuilder.length() > 1) {
+                    strBuilder.append(", ");
+                }
+                strBuilder.append(this.tableKeys[i]).append('=').append(this.tableValues[i]);
+            }
+        }
+        strBuilder.append('}');
+        return strBuilder.toString();
+    }
+
+    
+    
+    
+    @Override
+    public synchronized Object put(final Object key, final Object value) {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+
+    
+    @Override
+    public synchronized Object setProperty(final String key, final String value) {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+
+    
+    @Override
+    public synchronized void putAll(final Map<? extends Object, ? extends Object> map) {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+
+    
+    @Override
+    public synchronized Object remove(final Object key) {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+
+    
+    @Override
+    public synchronized void clear() {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+
+    
+    @Override
+    public synchronized void load(final InputStream inStream) {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+
+    
+    @Override
+    public synchronized void loadFromXML(final InputStream in) {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+
+    
+    // Not annotated: only present in Map since Java 8
+    public Object putIfAbsent(final Object key, final Object value) {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+
+    
+    // Not annotated: only present in Map since Java 8
+    public boolean remove(final Object key, final Object value) {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+
+    
+    // Not annotated: only present in Map since Java 8
+    public Object replace(final Object key, final Object value) {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+
+    
+    // Not annotated: only present in Map since Java 8
+    public boolean replace(final Object key, final Object oldValue, final Object newValue) {
+        throw new UnsupportedOperationException("Resolved messages cannot be modified");
+    }
+    
+    
+    
+    /**
+     * <p>
+     *   Formats a message value obtained from the specified set of messages, with the specified
+     *   parameters, in the same way as {@link MessageFormat#format(Object)} would.
+     * </p>
+     * <p>
+     *   Message values that contain no format elements nor quotes are returned directly, without
+     *   creating any objects. For the rest, if the set of messages is a {@link ResolvedMessages} 
+     *   object, the compiled {@link MessageFormat} will be reused across calls.
+     * </p>
+     * 
+     * @param messages the set of messages the value was obtained from.
+     * @param messageKey the key of the message.
+     * @param messageValue the value of the message (its pattern).
+     * @param locale the locale.
+     * @param messageParameters the message parameters (can be null).
+     * @return the formatted message.
+     */
+    public static String formatMessage(
+            final Properties messages, final String messageKey, final String messageValue,
+            final Locale locale, final Object[] messageParameters) {
+
+        Validate.notNull(messageKey, "Message key cannot be null");
+        Validate.notNull(messageValue, "Message value cannot be null");
+        
+        if (!requiresFormatting(messageValue)) {
+            return messageValue;
+        }
+        
+        final Object[] parameters = 
+                (messageParameters != null? messageParameters : EMPTY_MESSAGE_PARAMETERS);
+        
+        if (!(messages instanceof ResolvedMessages)) {
+            return new MessageFormat(messageValue, locale).format(parameters);
+        }
+        
+        return ((ResolvedMessages)messages).getCompiledFormat(messageKey, messageValue, locale).format(parameters);
+        
+    }
+    
+    
+    
+    /*
+     * Without '{' there is no format element, and without '\'' nothing to unquote, so
+     * MessageFormat would output the pattern as is.
+     */
+    private static boolean requiresFormatting(final String messageValue) {
+        final int messageValueLen = messageValue.length();
+        for (int i = 0; i < messageValueLen; i++) {
+            final char c = messageValue.charAt(i);
+            if (c == '{' || c == '\'') {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    
+    
+    private CompiledMessageFormat getCompiledFormat(
+            final String messageKey, final String messageValue, final Locale locale) {
+        
+        if (this.compiledFormats == null) {
+            return new CompiledMessageFormat(messageValue, locale);
+        }
+        
+        final CompiledMessageFormat compiledFormat = this.compiledFormats.get(messageKey);
+        if (compiledFormat != null && compiledFormat.matches(messageValue, locale)) {
+            return compiledFormat;
+        }
+        
+        // Either not compiled yet, or this set of messages has been modified since
+        final CompiledMessageFormat newCompiledFormat = new CompiledMessageFormat(messageValue, locale);
+        this.compiledFormats.put(messageKey, newCompiledFormat);
+        return newCompiledFormat;
+        
+    }
+    
+    
+    
+    @Override
+    public synchronized Object clone() {
+        // The table is never modified, so it can be shared with the clone
+        final ResolvedMessages clone = (ResolvedMessages) super.clone();
+        clone.compiledFormats = new ConcurrentHashMap<String, CompiledMessageFormat>(16, 0.75f, 2);
+        return clone;
+    }
+    
+    
+    
+    
+    /*
+     * Unmodifiable views over the table, for the Hashtable and Properties query methods.
+     */
+    private final class TableSet<E> extends AbstractSet<E> {
+        
+        private final int mode;
+        
+        TableSet(final int mode) {
+            super();
+            this.mode = mode;
+        }
+        
+        @Override
+        public Iterator<E> iterator() {
+            return new TableIterator<E>(this.mode);
+        }
+        
+        @Override
+        public int size() {
+            return ResolvedMessages.this.tableSize;
+        }
+        
+        @Override
+        public boolean contains(final Object o) {
+            if (this.mode == TableIterator.KEYS) {
+                return o != null && containsKey(o);
+            }
+            return super.contains(o);
+        }
+        
+    }
+    
+    
+    private final class TableIterator<E> implements Iterator<E>, Enumeration<E> {
+        
+        static final int KEYS = 0;
+        static final int VALUES = 1;
+        static final int ENTRIES = 2;
+        
+        private final int mode;
+        private int index;
+        
+        TableIterator(final int mode) {
+            super();
+            this.mode = mode;
+            this.index = advance(0);
+        }
+        
+        private int advance(final int from) {
+            int i = from;
+            while (i < ResolvedMessages.this.tableKeys.length && ResolvedMessages.this.tableKeys[i] == null) {
+                i++;
+            }
+            return i;
+        }
+        
+        public boolean hasNext() {
+            return this.index < ResolvedMessages.this.tableKeys.length;
+        }
+        
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final String key = ResolvedMessages.this.tableKeys[this.index];
+            final String value = ResolvedMessages.this.tableValues[this.index];
+            this.index = advance(this.index + 1);
+            switch (this.mode) {
+                case KEYS: return (E) key;
+                case VALUES: return (E) value;
+                default: return (E) new TableEntry(key, value);
+            }
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException("Resolved messages cannot be modified");
+        }
+        
+        public boolean hasMoreElements() {
+            return hasNext();
+        }
+        
+        public E nextElement() {
+            return next();
+        }
+        
+    }
+    
+    
+    private static final class TableEntry implements Entry<Object,Object> {
+        
+        private final String key;
+        private final String value;
+        
+        TableEntry(final String key, final String value) {
+            super();
+            this.key = key;
+            this.value = value;
+        }
+        
+        public Object getKey() {
+            return this.key;
+        }
+        
+        public Object getValue() {
+            return this.value;
+        }
+        
+        public Object setValue(final Object newValue) {
+            throw new UnsupportedOperationException("Resolved messages cannot be modified");
+        }
+        
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            final Entry<?,?> entry = (Entry<?,?>) o;
+            return this.key.equals(entry.getKey()) && this.value.equals(entry.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return this.key.hashCode() ^ this.value.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            return this.key + "=" + this.value;
+        }
+        
+    }
+    
+    
+    
+    
+    /*
+     * MessageFormat objects are not thread-safe in general, but formatting only modifies their
+     * subformats (e.g. a NumberFormat for "{0,number}"), so formats without them can be shared.
+     * Those which have them are cloned for each use, which is still much cheaper than parsing.
+     */
+    private static final class CompiledMessageFormat {
+        
+        private final String pattern;
+        private final Locale locale;
+        private final MessageFormat messageFormat;
+        private final boolean shareable;
+        
+        CompiledMessageFormat(final String pattern, final Locale locale) {
+            super();
+            this.pattern = pattern;
+            this.locale = locale;
+            this.messageFormat = new MessageFormat(pattern, locale);
+            this.shareable = hasNoSubformats(this.messageFormat);
+        }
+        
+        boolean matches(final String messageValue, final Locale messageLocale) {
+            return (this.pattern == messageValue || this.pattern.equals(messageValue)) &&
+                   (this.locale == null? messageLocale == null : this.locale.equals(messageLocale));
+        }
+        
+        String format(final Object[] parameters) {
+            if (this.shareable) {
+                return this.messageFormat.format(parameters);
+            }
+            return ((MessageFormat) this.messageFormat.clone()).format(parameters);
+        }
+        
+        private static boolean hasNoSubformats(final MessageFormat messageFormat) {
+            for (final Format format : messageFormat.getFormats()) {
+                if (format != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+    }
+    
+    
+}
@@ -0,0 +1,127 @@
+/*
+ * =============================================================================
+ * 
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ * 
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ * 
+ * =============================================================================
+ */
+package org.thymeleaf.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.thymeleaf.exceptions.TemplateProcessingException;
+
+
+/**
+ * <p>
+ *   Ensures that, for each key, only one thread at a time executes the (expensive) operation
+ *   needed for loading the value associated with it. Any other threads asking for the same key
+ *   while the load operation is in progress will wait for it to finish and receive the same
+ *   result (or exception).
+ * </p>
+ * <p>
+ *   This avoids <i>cache stampedes</i>: situations in which a popular cache entry expires or is
+ *   evicted and a large number of concurrent requests try to rebuild it at the same time.
+ * </p>
+ * <p>
+ *   Values are not cached by this class: once a load operation finishes, its key is forgotten, and
+ *   the next call for it will trigger a new load. Callers are expected to check their caches
+ *   before calling {@link #load(Object, Callable)}, and to put loaded values into their caches
+ *   from the loader itself.
+ * </p>
+ * <p>
+ *   Objects of this class are <b>thread-safe</b>.
+ * </p>
+ * 
+ * @author Daniel Fern&aacute;ndez
+ * 
+ * @since 2.1.5
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the loaded values
+ */
+public final class SingleFlightLoader<K,V> {
+
+    private final ConcurrentHashMap<K,FutureTask<V>> loadsInProgress;
+    
+    
+    public SingleFlightLoader() {
+        super();
+        this.loadsInProgress = new ConcurrentHashMap<K, FutureTask<V>>(16);
+    }
+    
+    
+    
+    /**
+     * <p>
+     *   Loads the value for the specified key, executing the specified loader only if
+     *   there is no other load in progress for the same key. If there is, waits for it
+     *   and returns its result.
+     * </p>
+     * <p>
+     *   Note that the returned value might be shared among several threads.
+     * </p>
+     * 
+     * @param key the key
+     * @param loader the loader to be executed if no load is in progress for the key.
+     * @return the loaded value.
+     */
+    public V load(final K key, final Callable<V> loader) {
+        
+        Validate.notNull(key, "Key cannot be null");
+        Validate.notNull(loader, "Loader cannot be null");
+        
+        final FutureTask<V> task = new FutureTask<V>(loader);
+        final FutureTask<V> inProgress = this.loadsInProgress.putIfAbsent(key, task);
+        
+        if (inProgress != null) {
+            return waitFor(inProgress);
+        }
+        
+        try {
+            task.run();
+        } finally {
+            this.loadsInProgress.remove(key, task);
+        }
+        return waitFor(task);
+        
+    }
+    
+    
+    
+    private static <V> V waitFor(final FutureTask<V> task) {
+        
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemplateProcessingException("Interrupted while waiting for a concurrent load operation", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TemplateProcessingException("Exception during load operation", cause);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,326 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.thymeleaf.Configuration;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.dom.AbstractTextNode;
+import org.thymeleaf.dom.Attribute;
+import org.thymeleaf.dom.Comment;
+import org.thymeleaf.dom.DocType;
+import org.thymeleaf.dom.Document;
+import org.thymeleaf.dom.Element;
+import org.thymeleaf.dom.NestableNode;
+import org.thymeleaf.dom.Node;
+import org.thymeleaf.templatemode.StandardTemplateModeHandlers;
+import org.thymeleaf.templateparser.ITemplateParser;
+import org.thymeleaf.templateparser.html.StreamingHtml5TemplateParser;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+
+
+
+/**
+ * <p>
+ *   Standalone comparison of the SAX-based parser used by the standard <tt>HTML5</tt>
+ *   template mode and {@link StreamingHtml5TemplateParser}: every template in the corpus
+ *   is parsed with both, the resulting DOMs are checked to be equivalent (node types,
+ *   names, attributes, texts, comments, DOCTYPE and node properties) and the time each
+ *   parser takes is reported.
+ * </p>
+ * <p>
+ *   This is not a unit test: run it with <tt>main</tt>, optionally specifying a folder
+ *   containing <tt>.html</tt> files to be used as corpus instead of the built-in one,
+ *   and the number of measured parses per template (default 500). Templates declaring
+ *   an XHTML DOCTYPE will show differences, as only the SAX parser applies the
+ *   attribute defaults in the DTD (e.g. <tt>xml:space</tt> in <tt>&lt;script&gt;</tt>).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.1.5
+ *
+ */
+public final class Html5ParserComparison {
+
+    private static final String[] TEMPLATES = new String[] {
+        "<!DOCTYPE html>\n" +
+        "<html xmlns:th=\"http://www.thymeleaf.org\">\n" +
+        "<head>\n" +
+        "  <meta charset=\"utf-8\" />\n" +
+        "  <title th:text=\"#{title}\">Title &amp; more</title>\n" +
+        "  <link rel=\"stylesheet\" href=\"style.css\" th:href=\"@{/style.css}\" />\n" +
+        "  <style>p > a { color: red; }</style>\n" +
+        "  <script th:inline=\"javascript\">\n" +
+        "  /*<![CDATA[*/\n" +
+        "    var user = /*[[${user}]]*/ 'Someone';\n" +
+        "  /*]]>*/\n" +
+        "  </script>\n" +
+        "</head>\n" +
+        "<body>\n" +
+        "  <!-- A regular comment -->\n" +
+        "  <!--/* A parser-level comment, removed at parsing time */-->\n" +
+        "  <!--/*/ <p th:text=\"${onlyProcessed}\">Only when processed</p> /*/-->\n" +
+        "  <form action=\"#\" th:action=\"@{/save}\" method=\"post\">\n" +
+        "    <input type=\"checkbox\" checked=\"checked\" th:field=\"*{active}\" />\n" +
+        "    <textarea rows=\"3\">Some &lt;text&gt; here</textarea>\n" +
+        "    <br />\n" +
+        "  </form>\n" +
+        "  <table>\n" +
+        "    <tr th:each=\"item : ${items}\"><td th:text=\"${item.name}\">Name</td><td>&#169; &#x00A0;</td></tr>\n" +
+        "  </table>\n" +
+        "  <![CDATA[ Some <raw> data ]]>\n" +
+        "  <div th:fragment=\"footer\" class=\"a  b\" data-x=\"'quoted'\">&copy; 2014</div>\n" +
+        "</body>\n" +
+        "</html>\n",
+
+        "<html>\n" +
+        "<body>\n" +
+        "  <ul th:switch=\"${kind}\">\n" +
+        "    <li th:case=\"'a'\">A</li>\n" +
+        "    <li th:case=\"*\">Other</li>\n" +
+        "  </ul>\n" +
+        "  <p th:utext=\"${html}\">Text with &quot;quotes&quot; and &apos;apostrophes&apos;</p>\n" +
+        "  <img src=\"a.png\" alt=\"\" />\n" +
+        "</body>\n" +
+        "</html>\n",
+
+        "<div th:fragment=\"f (one, two)\">\n" +
+        "  <span th:text=\"${one}\">1</span>\n" +
+        "  <span th:text=\"${two}\">2</span>\n" +
+        "</div>\n"
+    };
+
+    private static final String[] FRAGMENTS = new String[] {
+        " <td>a</td> <b>x</b> &amp; y ",
+        "text <!-- comment --> <br/>",
+        "<p th:text=\"${a}\">a<span>b</span>c</p>"
+    };
+
+    private static final int DEFAULT_ITERATIONS = 500;
+
+
+
+    public static void main(final String[] args) throws Exception {
+
+        final Map<String,String> templates = new LinkedHashMap<String,String>();
+        if (args.length > 0) {
+            final File[] files = new File(args[0]).listFiles();
+            if (files == null) {
+                throw new IOException("Could not list folder " + args[0]);
+            }
+            for (final File file : files) {
+                if (file.isFile() && file.getName().endsWith(".html")) {
+                    templates.put(file.getName(), read(file));
+                }
+            }
+        } else {
+            for (int i = 0; i < TEMPLATES.length; i++) {
+                templates.put("template" + i, TEMPLATES[i]);
+            }
+        }
+        final int iterations = (args.length > 1? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS);
+
+        final TemplateEngine templateEngine = new TemplateEngine();
+        templateEngine.setTemplateResolver(new ClassLoaderTemplateResolver());
+        templateEngine.initialize();
+        final Configuration configuration = templateEngine.getConfiguration();
+
+        final ITemplateParser saxParser = StandardTemplateModeHandlers.HTML5.getTemplateParser();
+        final ITemplateParser streamingParser = new StreamingHtml5TemplateParser();
+
+        int differences = 0;
+
+        for (final Map.Entry<String,String> template : templates.entrySet()) {
+            final String saxDump = dumpTemplate(saxParser, configuration, template.getKey(), template.getValue());
+            final String streamingDump =
+                    dumpTemplate(streamingParser, configuration, template.getKey(), template.getValue());
+            differences += report(template.getKey(), saxDump, streamingDump);
+        }
+
+        if (args.length == 0) {
+            for (int i = 0; i < FRAGMENTS.length; i++) {
+                final String saxDump = dumpFragment(saxParser, configuration, FRAGMENTS[i]);
+                final String streamingDump = dumpFragment(streamingParser, configuration, FRAGMENTS[i]);
+                differences += report("fragment" + i, saxDump, streamingDump);
+            }
+        }
+
+        System.out.println("Parses per template: " + iterations);
+        time("SAX parser (ms)", saxParser, configuration, templates, iterations);
+        time("Streaming parser (ms)", streamingParser, configuration, templates, iterations);
+
+        if (differences > 0) {
+            System.out.println("Templates with differences: " + differences);
+            System.exit(1);
+        }
+
+    }
+
+
+
+    private static String read(final File file) throws IOException {
+        final Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            final StringBuilder contents = new StringBuilder();
+            final char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                contents.append(buffer, 0, read);
+            }
+            return contents.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+
+
+    private static int report(final String name, final String saxDump, final String streamingDump) {
+        if (saxDump.equals(streamingDump)) {
+            System.out.println(name + ": SAME");
+            return 0;
+        }
+        System.out.println(name + ": DIFFERENT");
+        System.out.println("--- SAX parser\n" + saxDump + "--- Streaming parser\n" + streamingDump);
+        return 1;
+    }
+
+
+    private static String dumpTemplate(final ITemplateParser parser, final Configuration configuration,
+            final String name, final String template) {
+        final StringBuilder dump = new StringBuilder();
+        try {
+            dump(parser.parseTemplate(configuration, name, new StringReader(template)), "", dump);
+        } catch (final Exception e) {
+            dump.append(e.getClass().getName()).append(": ").append(e.getMessage()).append('\n');
+        }
+        return dump.toString();
+    }
+
+
+    private static String dumpFragment(final ITemplateParser parser, final Configuration configuration,
+            final String fragment) {
+        final StringBuilder dump = new StringBuilder();
+        try {
+            for (final Node node : parser.parseFragment(configuration, fragment)) {
+                dump(node, "", dump);
+            }
+        } catch (final Exception e) {
+            dump.append(e.getClass().getName()).append(": ").append(e.getMessage()).append('\n');
+        }
+        return dump.toString();
+    }
+
+
+    private static void dump(final Node node, final String indent, final StringBuilder dump) {
+
+        dump.append(indent).append(node.getClass().getSimpleName());
+        if (!node.getNodePropertyNames().isEmpty()) {
+            dump.append(' ').append(new TreeMap<String,Object>(node.unsafeGetNodeProperties()));
+        }
+
+        if (node instanceof Document) {
+            final DocType docType = ((Document) node).getDocType();
+            if (docType != null) {
+                dump.append(" [").append(docType.getRootElementName()).append('|').append(docType.getPublicId());
+                dump.append('|').append(docType.getSystemId()).append('|').append(docType.getOriginalDocTypeClause());
+                dump.append(']');
+            }
+        } else if (node instanceof Element) {
+            final Element element = (Element) node;
+            dump.append(" <").append(element.getOriginalName()).append('>');
+            for (final Attribute attribute : element.getAttributeMap().values()) {
+                dump.append(' ').append(attribute.getOriginalName());
+                dump.append("=[").append(attribute.getOriginalValue()).append(']');
+            }
+        } else if (node instanceof AbstractTextNode) {
+            dump.append(" [").append(escape(((AbstractTextNode) node).getOriginalContent())).append(']');
+        } else if (node instanceof Comment) {
+            dump.append(" [").append(escape(((Comment) node).getContent())).append(']');
+        }
+        dump.append('\n');
+
+        if (node instanceof NestableNode) {
+            final List<Node> children = ((NestableNode) node).getChildren();
+            for (final Node child : children) {
+                if (child.getParent() != node) {
+                    dump.append(indent).append("  (wrong parent)\n");
+                }
+                dump(child, indent + "  ", dump);
+            }
+        }
+
+    }
+
+
+    private static String escape(final String text) {
+        return text.replace("\n", "\\n");
+    }
+
+
+
+    private static void time(final String name, final ITemplateParser parser, final Configuration configuration,
+            final Map<String,String> templates, final int iterations) {
+
+        // Warm up, so that measurements do not include compilation
+        parseAll(parser, configuration, templates, iterations);
+
+        final long start = System.nanoTime();
+        parseAll(parser, configuration, templates, iterations);
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.println(name + ": " + (elapsed / 1000000L) +
+                " (" + (elapsed / 1000L / ((long) iterations * templates.size())) + " us/parse)");
+
+    }
+
+
+    private static void parseAll(final ITemplateParser parser, final Configuration configuration,
+            final Map<String,String> templates, final int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            for (final Map.Entry<String,String> template : templates.entrySet()) {
+                try {
+                    parser.parseTemplate(configuration, template.getKey(), new StringReader(template.getValue()));
+                } catch (final Exception ignored) {
+                    // Already reported when comparing
+                }
+            }
+        }
+    }
+
+
+
+    private Html5ParserComparison() {
+        super();
+    }
+
+}
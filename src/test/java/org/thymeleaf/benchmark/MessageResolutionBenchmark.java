@@ -0,0 +1,240 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.messageresolver.StandardMessageResolver;
+import org.thymeleaf.templateresolver.FileTemplateResolver;
+import org.thymeleaf.util.ResolvedMessages;
+
+
+
+
+/**
+ * <p>
+ *   Standalone benchmark of concurrent message resolution, both for whole templates
+ *   made of <tt>#{...}</tt> expressions and for the raw lookups on the resolved
+ *   message sets (compared with {@link Properties} objects chained through their
+ *   defaults, as message sets were stored before 2.1.5).
+ * </p>
+ * <p>
+ *   This is not a unit test: run it with <tt>main</tt>, optionally specifying the
+ *   number of threads (default 32) and the duration of each measurement in seconds
+ *   (default 5).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.1.5
+ *
+ */
+public final class MessageResolutionBenchmark {
+
+    private static final int MESSAGE_COUNT = 200;
+    private static final int EXPRESSIONS_PER_TEMPLATE = 50;
+
+
+
+    public static void main(final String[] args) throws Exception {
+
+        final int threads = (args.length > 0? Integer.parseInt(args[0]) : 32);
+        final long durationMs = (args.length > 1? Long.parseLong(args[1]) : 5L) * 1000L;
+
+        final File dir = createTemplateDirectory();
+
+        final FileTemplateResolver templateResolver = new FileTemplateResolver();
+        templateResolver.setPrefix(dir.getAbsolutePath() + File.separator);
+        templateResolver.setSuffix(".html");
+        templateResolver.setTemplateMode("HTML5");
+
+        final TemplateEngine templateEngine = new TemplateEngine();
+        templateEngine.setTemplateResolver(templateResolver);
+        templateEngine.setMessageResolver(new StandardMessageResolver());
+
+        final Locale locale = Locale.ENGLISH;
+
+        System.out.println("Threads: " + threads + ", duration: " + (durationMs / 1000L) + "s");
+
+        run("Template #{...} resolution (templates/s)", threads, durationMs, 1, new Operation() {
+            public void execute(final int iteration) {
+                templateEngine.process("messages", new Context(locale));
+            }
+        });
+
+        final Properties defaults = new Properties();
+        final Properties chained = new Properties(defaults);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            if (i % 2 == 0) {
+                chained.setProperty("message" + i, "Message " + i);
+            } else {
+                defaults.setProperty("message" + i, "Default message " + i);
+            }
+        }
+        final Properties resolved =
+                new ResolvedMessages(Collections.<Properties>singletonList(chained), defaults);
+        final String[] keys = new String[MESSAGE_COUNT];
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            keys[i] = "message" + i;
+        }
+
+        run("Chained Properties lookups (lookups/s)", threads, durationMs, 1000, new Operation() {
+            public void execute(final int iteration) {
+                if (chained.getProperty(keys[iteration % MESSAGE_COUNT]) == null) {
+                    throw new IllegalStateException();
+                }
+            }
+        });
+
+        run("ResolvedMessages lookups (lookups/s)", threads, durationMs, 1000, new Operation() {
+            public void execute(final int iteration) {
+                if (resolved.getProperty(keys[iteration % MESSAGE_COUNT]) == null) {
+                    throw new IllegalStateException();
+                }
+            }
+        });
+
+    }
+
+
+
+    private static File createTemplateDirectory() throws IOException {
+
+        final File dir = File.createTempFile("thymeleaf-benchmark", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+        dir.deleteOnExit();
+
+        final StringBuilder template = new StringBuilder();
+        template.append("<!DOCTYPE html>\n<html><body>\n");
+        for (int i = 0; i < EXPRESSIONS_PER_TEMPLATE; i++) {
+            template.append("<p th:text=\"#{message").append(i).append("}\">...</p>\n");
+            template.append("<p th:text=\"#{formatted").append(i).append("(").append(i).append(")}\">...</p>\n");
+        }
+        template.append("</body></html>\n");
+        write(new File(dir, "messages.html"), template.toString());
+
+        final StringBuilder messages = new StringBuilder();
+        for (int i = 0; i < EXPRESSIONS_PER_TEMPLATE; i++) {
+            messages.append("message").append(i).append("=Message ").append(i).append('\n');
+            messages.append("formatted").append(i).append("=Formatted {0} message\n");
+        }
+        write(new File(dir, "messages.properties"), messages.toString());
+
+        return dir;
+
+    }
+
+
+    private static void write(final File file, final String contents) throws IOException {
+        file.deleteOnExit();
+        final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+    }
+
+
+
+    private static void run(final String name, final int threads, final long durationMs,
+            final int batchSize, final Operation operation) throws InterruptedException {
+
+        // Warm up, so that measurements do not include compilation nor cache loading
+        measure(threads, durationMs / 2L, batchSize, operation);
+
+        final long operations = measure(threads, durationMs, batchSize, operation);
+        System.out.println(name + ": " + ((operations * 1000L) / durationMs));
+
+    }
+
+
+    private static long measure(final int threads, final long durationMs,
+            final int batchSize, final Operation operation) throws InterruptedException {
+
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[] deadline = new long[1];
+
+        final List<Thread> workers = new ArrayList<Thread>(threads);
+        for (int t = 0; t < threads; t++) {
+            final Thread worker = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    long count = 0L;
+                    int iteration = 0;
+                    while (System.currentTimeMillis() < deadline[0]) {
+                        // Checking the clock is expensive compared to single lookups
+                        for (int i = 0; i < batchSize; i++) {
+                            operation.execute(iteration++);
+                        }
+                        count += batchSize;
+                    }
+                    operations.addAndGet(count);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        deadline[0] = System.currentTimeMillis() + durationMs;
+        start.countDown();
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+
+        return operations.get();
+
+    }
+
+
+
+    private static interface Operation {
+
+        public void execute(final int iteration);
+
+    }
+
+
+
+    private MessageResolutionBenchmark() {
+        super();
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.benchmark;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.thymeleaf.templateparser.TemplatePreprocessingReader;
+
+
+
+
+/**
+ * <p>
+ *   Standalone benchmark of {@link TemplatePreprocessingReader}, compared with the
+ *   implementation it replaced in 2.1.5 ({@link PreviousTemplatePreprocessingReader}).
+ * </p>
+ * <p>
+ *   A large template containing all the structures the reader transforms (DOCTYPE and
+ *   XML prolog, comments, parser-level and prototype-only comments, entities) is first
+ *   read with both readers using several read sizes, checking that output and DOCTYPE
+ *   clause are identical. Then the throughput of each reader is measured.
+ * </p>
+ * <p>
+ *   The previous reader could miss structures straddling its internal blocks when
+ *   read in large chunks, so the output it produces when read one char at a time is
+ *   used as reference, and any difference it shows with other read sizes is only
+ *   reported as such.
+ * </p>
+ * <p>
+ *   This is not a unit test: run it with <tt>main</tt>, optionally specifying the
+ *   number of sections in the generated template (default 20000) and the duration
+ *   of each measurement in seconds (default 5).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 2.1.5
+ *
+ */
+public final class TemplatePreprocessingReaderBenchmark {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int[] READ_SIZES = new int[] { 1, 7, 100, 1024, 8192, 100000 };
+
+
+
+    public static void main(final String[] args) throws Exception {
+
+        final int sections = (args.length > 0? Integer.parseInt(args[0]) : 20000);
+        final long durationMs = (args.length > 1? Long.parseLong(args[1]) : 5L) * 1000L;
+
+        final String template = createTemplate(sections);
+
+        System.out.println("Template size: " + template.length() + " chars, duration: " + (durationMs / 1000L) + "s");
+
+        boolean identical = true;
+        for (final boolean addSyntheticRootElement : new boolean[] { true, false }) {
+
+            final PreviousTemplatePreprocessingReader referenceReader =
+                    new PreviousTemplatePreprocessingReader(
+                            new StringReader(template), BUFFER_SIZE, addSyntheticRootElement);
+            final String referenceOutput = readFully(referenceReader, 1);
+            final String referenceDocTypeClause = referenceReader.getDocTypeClause();
+
+            for (final int readSize : READ_SIZES) {
+
+                final PreviousTemplatePreprocessingReader previousReader =
+                        new PreviousTemplatePreprocessingReader(
+                                new StringReader(template), BUFFER_SIZE, addSyntheticRootElement);
+                final String previousOutput = readFully(previousReader, readSize);
+
+                final TemplatePreprocessingReader currentReader =
+                        new TemplatePreprocessingReader(
+                                new StringReader(template), BUFFER_SIZE, addSyntheticRootElement);
+                final String currentOutput = readFully(currentReader, readSize);
+
+                final boolean same =
+                        referenceOutput.equals(currentOutput) &&
+                        equals(referenceDocTypeClause, currentReader.getDocTypeClause());
+                System.out.println(
+                        "Read size " + readSize + (addSyntheticRootElement? ", synthetic root" : "") +
+                        ": " + (same? "SAME" : "DIFFERENT") +
+                        (referenceOutput.equals(previousOutput)? "" : " (previous reader missed structures)"));
+                identical &= same;
+
+            }
+
+        }
+
+        run("Previous reader (MB/s)", template, durationMs, new ReaderFactory() {
+            public Reader create(final Reader in) {
+                return new PreviousTemplatePreprocessingReader(in, BUFFER_SIZE, true);
+            }
+        });
+
+        run("Current reader (MB/s)", template, durationMs, new ReaderFactory() {
+            public Reader create(final Reader in) {
+                return new TemplatePreprocessingReader(in, BUFFER_SIZE, true);
+            }
+        });
+
+        if (!identical) {
+            System.out.println("Outputs differ");
+            System.exit(1);
+        }
+
+    }
+
+
+
+    private static String createTemplate(final int sections) {
+
+        final StringBuilder template = new StringBuilder();
+        template.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        template.append("<!doctype html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\"\n");
+        template.append("    \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">\n");
+        template.append("<html xmlns:th=\"http://www.thymeleaf.org\">\n<body>\n");
+        for (int i = 0; i < sections; i++) {
+            template.append("<div class=\"section\" th:id=\"${'section").append(i).append("'}\">\n");
+            template.append("  <p th:text=\"#{message").append(i).append("}\">Some text &amp; more &copy; &#169;</p>\n");
+            template.append("  <!-- Regular comment ").append(i).append(" -->\n");
+            template.append("  <!--/* Parser-level comment <p>removed</p> */-->\n");
+            template.append("  <!--/*/ <span th:text=\"${value}\">Prototype-only</span> /*/-->\n");
+            template.append("  <a href=\"page.html?a=1&amp;b=2\" th:href=\"@{/page(a=1,b=2)}\">Link &gt;</a>\n");
+            template.append("</div>\n");
+        }
+        template.append("</body>\n</html>\n");
+        return template.toString();
+
+    }
+
+
+    private static String readFully(final Reader reader, final int readSize) throws IOException {
+        final StringBuilder output = new StringBuilder();
+        final char[] buffer = new char[readSize];
+        int read;
+        while ((read = reader.read(buffer, 0, readSize)) != -1) {
+            output.append(buffer, 0, read);
+        }
+        reader.close();
+        return output.toString();
+    }
+
+
+    private static boolean equals(final String one, final String other) {
+        return (one == null? other == null : one.equals(other));
+    }
+
+
+
+    private static void run(final String name, final String template, final long durationMs,
+            final ReaderFactory factory) throws IOException {
+
+        // Warm up, so that measurements do not include compilation
+        measure(template, durationMs / 2L, factory);
+
+        final long chars = measure(template, durationMs, factory);
+        System.out.println(name + ": " + ((chars * 1000L) / durationMs / (1024L * 1024L)));
+
+    }
+
+
+    private static long measure(final String template, final long durationMs,
+            final ReaderFactory factory) throws IOException {
+
+        final char[] buffer = new char[BUFFER_SIZE];
+        final long deadline = System.currentTimeMillis() + durationMs;
+        long chars = 0L;
+        while (System.currentTimeMillis() < deadline) {
+            final Reader reader = factory.create(new StringReader(template));
+            while (reader.read(buffer, 0, BUFFER_SIZE) != -1) {
+                // Only reading is measured
+            }
+            reader.close();
+            chars += template.length();
+        }
+        return chars;
+
+    }
+
+
+
+    private static interface ReaderFactory {
+
+        public Reader create(final Reader in);
+
+    }
+
+
+
+    private TemplatePreprocessingReaderBenchmark() {
+        super();
+    }
+
+}